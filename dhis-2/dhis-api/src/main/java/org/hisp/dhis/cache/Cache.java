@@ -63,7 +63,9 @@ public interface Cache<V>
      * provides a simple substitute for the conventional "if cached, return;
      * otherwise create, cache and return" pattern. If value is null, the given
      * mapping function is evaluated and inserted into this cache unless
-     * {@code null}. Note: This method will return the defaultValue in case of
+     * {@code null}. If the cache was built with single-flight loading enabled,
+     * concurrent calls for the same absent key wait for a single evaluation of
+     * the mapping function instead of evaluating it each. Note: This method will return the defaultValue in case of
      * absence of associated cache value. But will not store the default value
      * into the cache.
      *
@@ -123,6 +125,16 @@ public interface Cache<V>
      */
     void invalidateAll();
     
+    /**
+     * Returns the number of calls to {@link #get(String, Function)} which were
+     * served by waiting for a concurrent in-flight load of the same key instead
+     * of evaluating the mapping function. Always 0 unless the cache was built
+     * with single-flight loading enabled.
+     *
+     * @return the number of coalesced loads.
+     */
+    long getCoalescedLoadCount();
+
     /**
      * Returns the type of the cache. IN_MEMORY or REDIS or NONE.
      * 
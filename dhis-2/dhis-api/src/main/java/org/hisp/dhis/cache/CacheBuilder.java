@@ -107,6 +107,17 @@ public interface CacheBuilder<V>
      */
     public CacheBuilder<V> forceInMemory();
 
+    /**
+     * Configure the cache instance to coalesce concurrent loads of the same key
+     * through {@link Cache#get(String, java.util.function.Function)}, so that
+     * the mapping function is evaluated once while other callers wait for the
+     * result. For shared caches the coalescing applies across nodes. Ideally
+     * used for caches with expensive mapping functions and hot keys.
+     *
+     * @return The builder instance.
+     */
+    public CacheBuilder<V> withSingleFlightLoading();
+
     /**
      * Configure the cache instance to disable caching.
      *
@@ -150,6 +161,12 @@ public interface CacheBuilder<V>
      */
     public boolean isExpiryEnabled();
 
+    /**
+     * Getter for singleFlightLoading
+     * @return the singleFlightLoading flag set in the builder
+     */
+    public boolean isSingleFlightLoading();
+
     /**
      * Getter for expiryInSeconds
      * @return the expiryInSeconds value set in the builder
@@ -51,6 +51,8 @@ public class LocalCache<V> implements Cache<V>
 
     private V defaultValue;
 
+    private SingleFlightLoader<V> singleFlightLoader;
+
     /**
      * Constructor to instantiate LocalCache object.
      *
@@ -87,6 +89,7 @@ public class LocalCache<V> implements Cache<V>
         // Using unknown typed key for builder and casting it
         this.cache2kInstance = (org.cache2k.Cache<String, V>) builder.build();
         this.defaultValue = cacheBuilder.getDefaultValue();
+        this.singleFlightLoader = cacheBuilder.isSingleFlightLoading() ? new SingleFlightLoader<>() : null;
     }
 
     @Override
@@ -110,12 +113,17 @@ public class LocalCache<V> implements Cache<V>
         }
 
         V value = cache2kInstance.get( key );
-        if ( value == null )
+
+        if ( value == null && singleFlightLoader != null )
+        {
+            value = singleFlightLoader.load( key, k -> loadAndPut( k, mappingFunction ) );
+        }
+        else if ( value == null )
         {
             value = mappingFunction.apply( key );
         }
 
-        if ( value != null )
+        if ( value != null && singleFlightLoader == null )
         {
             cache2kInstance.put( key, value );
         }
@@ -158,9 +166,37 @@ public class LocalCache<V> implements Cache<V>
         cache2kInstance.clear();
     }
 
+    @Override
+    public long getCoalescedLoadCount()
+    {
+        return singleFlightLoader != null ? singleFlightLoader.getCoalescedLoadCount() : 0;
+    }
+
     @Override
     public CacheType getCacheType()
     {
         return CacheType.IN_MEMORY;
     }
+
+    /**
+     * Loads the value for the given key and stores it in the cache before the
+     * in-flight load is released. Checks the cache again first as the value
+     * may have been stored by a load which completed in the meantime.
+     */
+    private V loadAndPut( String key, Function<String, V> mappingFunction )
+    {
+        V value = cache2kInstance.get( key );
+
+        if ( value == null )
+        {
+            value = mappingFunction.apply( key );
+
+            if ( value != null )
+            {
+                cache2kInstance.put( key, value );
+            }
+        }
+
+        return value;
+    }
 }
@@ -109,6 +109,12 @@ public class NoOpCache<V> implements Cache<V>
         // No operation
     }
 
+    @Override
+    public long getCoalescedLoadCount()
+    {
+        return 0;
+    }
+
     @Override
     public CacheType getCacheType()
     {
@@ -59,6 +59,8 @@ public class SimpleCacheBuilder<V> implements CacheBuilder<V>
 
     private boolean disabled;
 
+    private boolean singleFlightLoading;
+
     public SimpleCacheBuilder()
     {
         // Applying sensible defaults explicitly
@@ -69,6 +71,7 @@ public class SimpleCacheBuilder<V> implements CacheBuilder<V>
         this.defaultValue = null;
         this.expiryEnabled = false;
         this.disabled = false;
+        this.singleFlightLoading = false;
         this.initialCapacity = 16;
     }
     
@@ -132,6 +135,12 @@ public class SimpleCacheBuilder<V> implements CacheBuilder<V>
         return this;
     }
 
+    public CacheBuilder<V> withSingleFlightLoading()
+    {
+        this.singleFlightLoading = true;
+        return this;
+    }
+
     public CacheBuilder<V> disabled()
     {
         this.disabled = true;
@@ -190,6 +199,11 @@ public class SimpleCacheBuilder<V> implements CacheBuilder<V>
         return disabled;
     }
 
+    public boolean isSingleFlightLoading()
+    {
+        return singleFlightLoading;
+    }
+
     public long getExpiryInSeconds()
     {
         return expiryInSeconds;
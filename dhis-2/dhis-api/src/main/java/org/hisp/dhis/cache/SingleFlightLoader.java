@@ -0,0 +1,157 @@
+package org.hisp.dhis.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key so that the loading function is
+ * only evaluated once per key at any point in time. Callers arriving while a
+ * load for the key is in flight wait for and share the result of that load
+ * instead of evaluating the function themselves.
+ * <p>
+ * The loading function is expected to store the computed value in the backing
+ * cache before returning, so that callers arriving after the in-flight load
+ * completes are served from the cache.
+ *
+ * @param <V> the value type
+ */
+public class SingleFlightLoader<V>
+{
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlightLoads = new ConcurrentHashMap<>();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong coalescedLoadCount = new AtomicLong();
+
+    /**
+     * Returns the value for the given key by evaluating the given loading
+     * function, or by waiting for an in-flight evaluation for the same key if
+     * one exists. Exceptions thrown by the loading function are propagated to
+     * all callers waiting for the load.
+     *
+     * @param key the key to load.
+     * @param loadingFunction the function which computes and caches the value.
+     * @return the loaded value, possibly null.
+     */
+    public V load( String key, Function<String, V> loadingFunction )
+    {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = inFlightLoads.putIfAbsent( key, future );
+
+        if ( inFlight != null )
+        {
+            coalescedLoadCount.incrementAndGet();
+            return await( inFlight );
+        }
+
+        try
+        {
+            loadCount.incrementAndGet();
+            V value = loadingFunction.apply( key );
+            future.complete( value );
+            return value;
+        }
+        catch ( RuntimeException | Error ex )
+        {
+            future.completeExceptionally( ex );
+            throw ex;
+        }
+        finally
+        {
+            inFlightLoads.remove( key, future );
+        }
+    }
+
+    /**
+     * Registers a load which was coalesced outside of this loader, for instance
+     * by waiting for a load performed by another node in a cluster.
+     */
+    public void recordCoalescedLoad()
+    {
+        coalescedLoadCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of times the loading function has been evaluated.
+     */
+    public long getLoadCount()
+    {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the number of loads which were served by waiting for an
+     * in-flight load instead of evaluating the loading function.
+     */
+    public long getCoalescedLoadCount()
+    {
+        return coalescedLoadCount.get();
+    }
+
+    /**
+     * Returns the number of loads currently in flight.
+     */
+    public int getInFlightLoadCount()
+    {
+        return inFlightLoads.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private V await( CompletableFuture<V> future )
+    {
+        try
+        {
+            return future.join();
+        }
+        catch ( CompletionException ex )
+        {
+            Throwable cause = ex.getCause();
+
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+
+            throw ex;
+        }
+    }
+}
@@ -191,6 +191,17 @@ public interface DataValueService
      */
     List<DeflatedDataValue> getDeflatedDataValues( DataExportParams params );
 
+    /**
+     * Returns deflated data values which match the data element, period,
+     * organisation unit, category option combo and attribute option combo of
+     * any of the given data values, including soft deleted data values. The
+     * data values are looked up with a single query.
+     *
+     * @param dataValues the data values to look up.
+     * @return a list of deflated data values.
+     */
+    List<DeflatedDataValue> getDeflatedDataValues( Collection<DataValue> dataValues );
+
     /**
      * Gets the number of DataValues persisted since the given number of days.
      *
@@ -178,6 +178,9 @@ public enum ErrorCode
     E7129( "Program is specified but does not exist: `{0}`" ),
     E7130( "Program stage is specified but does not exist: `{0}`" ),
     E7131( "Query failed, likely because the query timed out" ),
+    E7132( "Query was rejected because the server is busy, please try again later" ),
+    E7133( "Query was cancelled" ),
+    E7134( "Query was rejected because its estimated row count: `{0}` exceeds the max: `{1}`" ),
 
     /* Event analytics */
     E7200( "At least one organisation unit must be specified" ),
@@ -208,6 +211,8 @@ public enum ErrorCode
     E7225( "Program stage is mandatory for data element dimensions in enrollment analytics queries: `{0}`" ),
     E7226( "Dimension is not a valid query item: `{0}`" ),
     E7227( "Relationship entity type not supported: `{0}`" ),
+    E7228( "Page token is invalid: `{0}`" ),
+    E7229( "Sorting is not supported for streamed event queries" ),
 
     /* Org unit analytics */
     E7300( "At least one organisation unit must be specified" ),
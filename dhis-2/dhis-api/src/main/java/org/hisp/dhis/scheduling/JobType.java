@@ -74,6 +74,7 @@ public enum JobType
     TRACKER_IMPORT_JOB( "trackerImportJob", false ),
     TRACKER_IMPORT_NOTIFICATION_JOB( "trackerImportNotificationJob", false ),
     TRACKER_IMPORT_RULE_ENGINE_JOB( "trackerImportRuleEngineJob", false ),
+    TRACKED_ENTITY_ATTRIBUTE_SEARCH_INDEX( "trackedEntityAttributeSearchIndexJob", true ),
 
     // Internal jobs
     LEADER_ELECTION( "leaderElectionJob", false ),
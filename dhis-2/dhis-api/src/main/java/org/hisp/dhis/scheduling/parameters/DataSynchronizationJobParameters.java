@@ -55,6 +55,8 @@ public class DataSynchronizationJobParameters implements JobParameters
 
     private int pageSize = 10000;
 
+    private String dataValueCursor;
+
     @JsonProperty
     @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
     public int getPageSize()
@@ -67,6 +69,23 @@ public class DataSynchronizationJobParameters implements JobParameters
         this.pageSize = pageSize;
     }
 
+    /**
+     * Position up to which data values were synchronized by an unfinished
+     * run, which allows for the next run to resume from there. Maintained by
+     * the data synchronization job.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public String getDataValueCursor()
+    {
+        return dataValueCursor;
+    }
+
+    public void setDataValueCursor( final String dataValueCursor )
+    {
+        this.dataValueCursor = dataValueCursor;
+    }
+
     @Override
     public Optional<ErrorReport> validate()
     {
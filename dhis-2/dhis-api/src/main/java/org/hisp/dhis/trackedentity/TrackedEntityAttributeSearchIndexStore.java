@@ -0,0 +1,100 @@
+package org.hisp.dhis.trackedentity;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Set;
+
+/**
+ * Store for the search index of tracked entity attribute values. The index
+ * holds lower case values of searchable attributes in a trigram indexed side
+ * table, which is kept up to date by the database as attribute values are
+ * written, and is used for LIKE, EQ and query searches on tracked entity
+ * instances. Attributes are identified by their internal identifiers.
+ */
+public interface TrackedEntityAttributeSearchIndexStore
+{
+    String ID = TrackedEntityAttributeSearchIndexStore.class.getName();
+
+    /**
+     * Indicates whether the search index is available in the database.
+     */
+    boolean isAvailable();
+
+    /**
+     * Creates the search index in the database if it is not available, for
+     * instance because the pg_trgm extension was not installed when the
+     * database was migrated.
+     *
+     * @return true if the search index is available after this call.
+     */
+    boolean createIndex();
+
+    /**
+     * Returns the attributes which are fully indexed and can be searched
+     * through the index.
+     *
+     * @return a set of attribute identifiers, empty if the index is not
+     *         available.
+     */
+    Set<Long> getReadyAttributes();
+
+    /**
+     * Returns the attributes which are held by the index, including attributes
+     * which are being indexed.
+     *
+     * @return a set of attribute identifiers.
+     */
+    Set<Long> getIndexedAttributes();
+
+    /**
+     * Returns the attributes which should be held by the index, which are the
+     * attributes which are searchable for a program or tracked entity type, or
+     * unique, and not confidential.
+     *
+     * @return a set of attribute identifiers.
+     */
+    Set<Long> getSearchableAttributes();
+
+    /**
+     * Adds the given attribute to the index. The index is maintained for the
+     * attribute from this point, and the existing values of the attribute are
+     * indexed before the attribute is made available for searches.
+     *
+     * @param attributeId the attribute identifier.
+     * @return the number of indexed values.
+     */
+    int addAttribute( long attributeId );
+
+    /**
+     * Removes the given attribute and its values from the index.
+     *
+     * @param attributeId the attribute identifier.
+     */
+    void removeAttribute( long attributeId );
+}
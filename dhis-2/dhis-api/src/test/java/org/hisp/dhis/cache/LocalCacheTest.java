@@ -0,0 +1,136 @@
+package org.hisp.dhis.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LocalCacheTest
+{
+    private static final int THREADS = 8;
+
+    @Test
+    public void testSingleFlightLoadingCoalescesConcurrentLoads()
+        throws Exception
+    {
+        Cache<String> cache = new SimpleCacheBuilder<String>()
+            .forRegion( "singleFlight" )
+            .withMaximumSize( 100 )
+            .withSingleFlightLoading()
+            .build();
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+
+        try
+        {
+            List<Future<String>> futures = new ArrayList<>();
+
+            for ( int i = 0; i < THREADS; i++ )
+            {
+                futures.add( executor.submit( () -> cache.get( "key", key -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    await( release );
+                    return "value";
+                } ).orElse( null ) ) );
+            }
+
+            started.await( 10, TimeUnit.SECONDS );
+
+            // Give the remaining threads time to join the in-flight load
+
+            Thread.sleep( 200 );
+            release.countDown();
+
+            for ( Future<String> future : futures )
+            {
+                assertEquals( "value", future.get( 10, TimeUnit.SECONDS ) );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals( 1, loads.get() );
+        assertEquals( THREADS - 1, cache.getCoalescedLoadCount() );
+        assertEquals( "value", cache.getIfPresent( "key" ).orElse( null ) );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void testSingleFlightLoadingPropagatesException()
+    {
+        Cache<String> cache = new SimpleCacheBuilder<String>()
+            .withMaximumSize( 100 )
+            .withSingleFlightLoading()
+            .build();
+
+        cache.get( "key", key -> {
+            throw new IllegalStateException( "Load failed" );
+        } );
+    }
+
+    @Test
+    public void testLoadingWithoutSingleFlight()
+    {
+        Cache<String> cache = new SimpleCacheBuilder<String>()
+            .withMaximumSize( 100 )
+            .build();
+
+        assertEquals( "value", cache.get( "key", key -> "value" ).orElse( null ) );
+        assertEquals( "value", cache.getIfPresent( "key" ).orElse( null ) );
+        assertEquals( 0, cache.getCoalescedLoadCount() );
+    }
+
+    private static void await( CountDownLatch latch )
+    {
+        try
+        {
+            latch.await( 10, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
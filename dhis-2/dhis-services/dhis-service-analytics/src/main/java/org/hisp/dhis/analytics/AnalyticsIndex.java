@@ -47,6 +47,12 @@ public class AnalyticsIndex
 {
     public static final String PREFIX_INDEX = "in_";
 
+    /**
+     * Max length of the column part of index names, which keeps index names of
+     * composite indexes within the database identifier length limit.
+     */
+    private static final int MAX_COLUMN_NAME_LENGTH = 40;
+
     /**
      * Table name.
      */
@@ -80,15 +86,16 @@ public class AnalyticsIndex
 
     /**
      * Returns index name for column. Purpose of code suffix is to avoid uniqueness
-     * collision between indexes for temporary and real tables.
+     * collision between indexes for temporary and real tables. The column part
+     * of the name is truncated for indexes on many columns.
      *
      * @param tableType the {@link AnalyticsTableType}.
      */
     public String getIndexName( AnalyticsTableType tableType )
     {
-        String columnName = StringUtils.join( this.getColumns(), "_" );
+        String columnName = StringUtils.left( removeQuote( StringUtils.join( this.getColumns(), "_" ) ), MAX_COLUMN_NAME_LENGTH );
 
-        return quote( PREFIX_INDEX + removeQuote( columnName ) + "_" + shortenTableName( this.getTable(), tableType ) + "_" + CodeGenerator.generateCode( 5 ) );
+        return quote( PREFIX_INDEX + columnName + "_" + shortenTableName( this.getTable(), tableType ) + "_" + CodeGenerator.generateCode( 5 ) );
     }
 
     /**
@@ -45,8 +45,9 @@ public interface AnalyticsManager
     /**
      * Retrieves aggregated data values for the given query. The data is returned
      * as a mapping where the key is concatenated from the dimension options for
-     * all dimensions separated by "-", and the value is the data value. This
-     * method is invoked asynchronously. The value class can be Double or String.
+     * all dimensions separated by "-", and the value is the data value. The
+     * query is executed in the calling thread and the returned future is
+     * complete. The value class can be Double or String.
      *
      * @param params the query to retrieve aggregated data for.
      * @param tableType the {@link AnalyticsTableType}.
@@ -56,6 +57,17 @@ public interface AnalyticsManager
      */
     Future<Map<String, Object>> getAggregatedDataValues( DataQueryParams params, AnalyticsTableType tableType, int maxLimit );
 
+    /**
+     * Returns the number of rows the query planner estimates the query for the
+     * given query to read, which is the largest row estimate of the nodes in
+     * the query plan. Returns 0 if the analytics table does not exist.
+     *
+     * @param params the query to estimate.
+     * @param tableType the {@link AnalyticsTableType}.
+     * @return the row estimate.
+     */
+    long getRowEstimate( DataQueryParams params, AnalyticsTableType tableType );
+
     /**
      * Inserts entries for the aggregation periods mapped to each data period
      * in the given data value map. Removes the original entry for the data period.
@@ -121,6 +121,19 @@ public interface AnalyticsService
      */
     Grid getAggregatedDataValues( DataQueryParams params, List<String> columns, List<String> rows );
 
+    /**
+     * Generates aggregated values for the given query and stores the result in
+     * the analytics cache, replacing any cached result for the query. Used to
+     * refresh cached results in place after analytics tables are updated.
+     * Does nothing if the analytics cache is not enabled. Security
+     * constraints are applied for the current user, so when invoked without a
+     * current user only results which are not constrained by a user are
+     * refreshed.
+     *
+     * @param params the data query parameters.
+     */
+    void refreshAggregatedDataValues( DataQueryParams params );
+
     /**
      * Generates a raw data value grid for the given query. The grid will
      * represent a table with denormalized raw data. This means that no
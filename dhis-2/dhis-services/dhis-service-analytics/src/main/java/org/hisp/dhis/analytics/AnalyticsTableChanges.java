@@ -0,0 +1,134 @@
+package org.hisp.dhis.analytics;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Collections;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Class representing the data which was changed by an incremental analytics
+ * table update. Used to invalidate only the affected analytics cache entries.
+ */
+public class AnalyticsTableChanges
+{
+    private static final AnalyticsTableChanges NONE = new AnalyticsTableChanges( null,
+        Collections.emptySet(), Collections.emptySet(), Collections.emptySet() );
+
+    /**
+     * The type of the updated analytics table, or null if no data was changed.
+     */
+    private final AnalyticsTableType tableType;
+
+    /**
+     * The years of the changed data, i.e. the affected table partitions.
+     */
+    private final Set<Integer> years;
+
+    /**
+     * The identifiers of the data elements of the changed data.
+     */
+    private final Set<String> dataElements;
+
+    /**
+     * The identifiers of the organisation units of the changed data, including
+     * all ancestors of those organisation units.
+     */
+    private final Set<String> orgUnits;
+
+    public AnalyticsTableChanges( AnalyticsTableType tableType, Set<Integer> years, Set<String> dataElements,
+        Set<String> orgUnits )
+    {
+        this.tableType = tableType;
+        this.years = ImmutableSet.copyOf( years );
+        this.dataElements = ImmutableSet.copyOf( dataElements );
+        this.orgUnits = ImmutableSet.copyOf( orgUnits );
+    }
+
+    /**
+     * Returns an instance representing no changed data.
+     */
+    public static AnalyticsTableChanges none()
+    {
+        return NONE;
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether any data was changed.
+     */
+    public boolean hasChanges()
+    {
+        return !years.isEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // Get methods
+    // -------------------------------------------------------------------------
+
+    public AnalyticsTableType getTableType()
+    {
+        return tableType;
+    }
+
+    public Set<Integer> getYears()
+    {
+        return years;
+    }
+
+    public Set<String> getDataElements()
+    {
+        return dataElements;
+    }
+
+    public Set<String> getOrgUnits()
+    {
+        return orgUnits;
+    }
+
+    // -------------------------------------------------------------------------
+    // toString
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+            .add( "table type", tableType )
+            .add( "years", years )
+            .add( "data elements", dataElements.size() )
+            .add( "org units", orgUnits.size() )
+            .toString();
+    }
+}
@@ -0,0 +1,116 @@
+package org.hisp.dhis.analytics;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Class representing a chunk of an analytics table partition. Chunks of the
+ * same partition are populated concurrently into the same table.
+ */
+public class AnalyticsTableChunk
+{
+    /**
+     * The partition which this chunk is part of.
+     */
+    private AnalyticsTablePartition partition;
+
+    /**
+     * The SQL condition which constrains the data of this chunk, null if the
+     * chunk represents the entire partition.
+     */
+    private String condition;
+
+    /**
+     * The number of this chunk within the partition, starting at 1.
+     */
+    private int chunkNo;
+
+    /**
+     * The total number of chunks of the partition.
+     */
+    private int chunkCount;
+
+    public AnalyticsTableChunk( AnalyticsTablePartition partition, String condition, int chunkNo, int chunkCount )
+    {
+        this.partition = partition;
+        this.condition = condition;
+        this.chunkNo = chunkNo;
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * Creates a chunk representing the entire given partition.
+     *
+     * @param partition the {@link AnalyticsTablePartition}.
+     */
+    public AnalyticsTableChunk( AnalyticsTablePartition partition )
+    {
+        this( partition, null, 1, 1 );
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    public boolean hasCondition()
+    {
+        return condition != null;
+    }
+
+    public AnalyticsTablePartition getPartition()
+    {
+        return partition;
+    }
+
+    public String getCondition()
+    {
+        return condition;
+    }
+
+    public int getChunkNo()
+    {
+        return chunkNo;
+    }
+
+    public int getChunkCount()
+    {
+        return chunkCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+            .add( "partition", partition.getTempTableName() )
+            .add( "chunk", chunkNo + "/" + chunkCount )
+            .add( "condition", condition )
+            .toString();
+    }
+}
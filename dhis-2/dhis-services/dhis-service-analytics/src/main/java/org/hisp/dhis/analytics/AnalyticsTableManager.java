@@ -30,6 +30,7 @@ package org.hisp.dhis.analytics;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
@@ -90,9 +91,19 @@ public interface AnalyticsTableManager
     /**
      * Attempts to drop and then create analytics table.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param table the analytics table.
      */
-    void createTable( AnalyticsTable table );
+    void createTable( AnalyticsTableUpdateParams params, AnalyticsTable table );
+
+    /**
+     * Returns the indexes to create on the given analytics table partitions,
+     * according to the configured {@link AnalyticsTableIndexStrategy}.
+     *
+     * @param partitions the list of {@link AnalyticsTablePartition}.
+     * @return a list of {@link AnalyticsIndex}.
+     */
+    List<AnalyticsIndex> getIndexes( List<AnalyticsTablePartition> partitions );
 
     /**
      * Creates single indexes on the given columns of the analytics table with
@@ -103,6 +114,34 @@ public interface AnalyticsTableManager
      */
     Future<?> createIndexesAsync( ConcurrentLinkedQueue<AnalyticsIndex> indexes );
 
+    /**
+     * Creates pre-aggregated rollup tables from the populated temporary table
+     * partitions. Rollup tables are swapped together with the analytics tables.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param tables the analytics tables.
+     */
+    void createRollupTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables );
+
+    /**
+     * Indicates whether this manager supports incremental updates through
+     * {@link #updateChangedData(AnalyticsTableUpdateParams, Map)}.
+     */
+    boolean isIncrementalUpdateSupported();
+
+    /**
+     * Updates the data which was changed since the last successful analytics
+     * table update in place, without creating temporary tables. Data which was
+     * deleted from the database is not detected, and is only removed by a full
+     * analytics table update.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param aggregationLevels map of aggregation level to data element identifiers,
+     *        ordered by deepest level first.
+     * @return the {@link AnalyticsTableChanges}.
+     */
+    AnalyticsTableChanges updateChangedData( AnalyticsTableUpdateParams params, Map<Integer, Collection<String>> aggregationLevels );
+
     /**
      * Attempts to drop the analytics table with partitions and rename the temporary
      * table with partitions as replacement.
@@ -116,15 +155,45 @@ public interface AnalyticsTableManager
      */
     void swapTable( AnalyticsTableUpdateParams params, AnalyticsTable table );
 
+    /**
+     * Splits the given analytics table partitions into chunks which can be
+     * populated concurrently.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param partitions the analytics table partitions.
+     * @return a list of {@link AnalyticsTableChunk}.
+     */
+    List<AnalyticsTableChunk> getTableChunks( AnalyticsTableUpdateParams params, List<AnalyticsTablePartition> partitions );
+
     /**
      * Copies and denormalizes rows from data value table into analytics table.
      * The data range is based on the start date of the data value row.
      *
      * @param params the {@link AnalyticsTableUpdateParams}.
-     * @param tablePartitions the analytics table partitions.
+     * @param tableChunks the analytics table partition chunks.
      * @return a future representing the asynchronous task.
      */
-    Future<?> populateTablesAsync( AnalyticsTableUpdateParams params, ConcurrentLinkedQueue<AnalyticsTablePartition> tablePartitions );
+    Future<?> populateTablesAsync( AnalyticsTableUpdateParams params, ConcurrentLinkedQueue<AnalyticsTableChunk> tableChunks );
+
+    /**
+     * Makes the given temporary analytics table and its partitions logged if
+     * they were created as unlogged tables.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param table the {@link AnalyticsTable}.
+     */
+    void setTableLogged( AnalyticsTableUpdateParams params, AnalyticsTable table );
+
+    /**
+     * Returns the years of data which are affected by populating the given
+     * analytics table partition. For regular partitions this is the year of
+     * the partition. For the latest partition this is the years of the data
+     * which was updated within the time range of the partition.
+     *
+     * @param partition the analytics table partition.
+     * @return a set of years, or null if the years cannot be determined.
+     */
+    Set<Integer> getPartitionYears( AnalyticsTablePartition partition );
 
     /**
      * Invokes analytics table SQL hooks for the table type.
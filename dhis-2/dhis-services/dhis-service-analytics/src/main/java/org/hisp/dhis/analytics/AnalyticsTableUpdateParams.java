@@ -35,6 +35,7 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfile;
 import org.hisp.dhis.calendar.Calendar;
 import org.hisp.dhis.calendar.DateTimeUnit;
 import org.hisp.dhis.period.PeriodType;
@@ -56,6 +57,18 @@ public class AnalyticsTableUpdateParams
      */
     private Integer lastYears;
 
+    /**
+     * Indicates whether to update the data which was changed since the last
+     * successful analytics table update in place in the existing tables.
+     */
+    private boolean incrementalUpdate;
+
+    /**
+     * Indicates whether to create temporary analytics tables as unlogged
+     * tables, which are made logged before being swapped in.
+     */
+    private boolean unloggedTables;
+
     /**
      * Indicates whether to skip update of resource tables.
      */
@@ -81,6 +94,11 @@ public class AnalyticsTableUpdateParams
      */
     private Date lastSuccessfulUpdate;
 
+    /**
+     * Profile of the update process.
+     */
+    private AnalyticsTableProfile profile;
+
     /**
      * Current date, only used for testing
      */
@@ -101,6 +119,16 @@ public class AnalyticsTableUpdateParams
         return lastYears;
     }
 
+    public boolean isIncrementalUpdate()
+    {
+        return incrementalUpdate;
+    }
+
+    public boolean isUnloggedTables()
+    {
+        return unloggedTables;
+    }
+
     public boolean isSkipResourceTables()
     {
         return skipResourceTables;
@@ -126,6 +154,11 @@ public class AnalyticsTableUpdateParams
         return lastSuccessfulUpdate;
     }
 
+    public AnalyticsTableProfile getProfile()
+    {
+        return profile;
+    }
+
     /**
      * Indicates whether this is a partial update of analytics tables, i.e.
      * if only certain partitions are to be updated and not all partitions
@@ -133,7 +166,7 @@ public class AnalyticsTableUpdateParams
      */
     public boolean isPartialUpdate()
     {
-        return lastYears != null || isLatestUpdate();
+        return lastYears != null || isLatestUpdate() || incrementalUpdate;
     }
 
     /**
@@ -153,6 +186,8 @@ public class AnalyticsTableUpdateParams
     {
         return MoreObjects.toStringHelper( this )
             .add( "last years", lastYears )
+            .add( "incremental update", incrementalUpdate )
+            .add( "unlogged tables", unloggedTables )
             .add( "skip resource tables", skipResourceTables )
             .add( "skip table types", skipTableTypes )
             .add( "start time", DateUtils.getLongDateString( startTime ) )
@@ -195,13 +230,17 @@ public class AnalyticsTableUpdateParams
         AnalyticsTableUpdateParams params = new AnalyticsTableUpdateParams();
 
         params.lastYears = this.lastYears;
+        params.incrementalUpdate = this.incrementalUpdate;
+        params.unloggedTables = this.unloggedTables;
         params.skipResourceTables = this.skipResourceTables;
         params.skipTableTypes = new HashSet<>( this.skipTableTypes );
         params.jobId = this.jobId;
         params.startTime = this.startTime;
         params.lastSuccessfulUpdate = this.lastSuccessfulUpdate;
+        params.profile = this.profile;
+        params.today = this.today;
 
-        return this;
+        return params;
     }
 
     public static Builder newBuilder()
@@ -243,6 +282,24 @@ public class AnalyticsTableUpdateParams
             return this;
         }
 
+        public Builder withIncrementalUpdate()
+        {
+            this.params.incrementalUpdate = true;
+            return this;
+        }
+
+        public Builder withIncrementalUpdate( boolean incrementalUpdate )
+        {
+            this.params.incrementalUpdate = incrementalUpdate;
+            return this;
+        }
+
+        public Builder withUnloggedTables( boolean unloggedTables )
+        {
+            this.params.unloggedTables = unloggedTables;
+            return this;
+        }
+
         public Builder withSkipResourceTables( boolean skipResourceTables )
         {
             this.params.skipResourceTables = skipResourceTables;
@@ -273,6 +330,12 @@ public class AnalyticsTableUpdateParams
             return this;
         }
 
+        public Builder withProfile( AnalyticsTableProfile profile )
+        {
+            this.params.profile = profile;
+            return this;
+        }
+
         /**
          * This builder property is only used for testing purposes.
          *
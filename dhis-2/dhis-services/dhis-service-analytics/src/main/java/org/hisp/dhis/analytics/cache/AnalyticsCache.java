@@ -32,21 +32,48 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.logging.LogFactory.getLog;
+import static org.hisp.dhis.analytics.cache.AnalyticsCacheMetrics.RESULT_COALESCED;
+import static org.hisp.dhis.analytics.cache.AnalyticsCacheMetrics.RESULT_HIT;
+import static org.hisp.dhis.analytics.cache.AnalyticsCacheMetrics.RESULT_MISS;
 import static org.hisp.dhis.commons.util.SystemUtils.isTestRun;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.logging.Log;
+import org.hisp.dhis.analytics.AnalyticsTableChanges;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.event.EventQueryParams;
+import org.hisp.dhis.analytics.table.PartitionUtils;
 import org.hisp.dhis.cache.Cache;
 import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.CacheType;
+import org.hisp.dhis.common.DimensionalItemObject;
 import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.ReportingRate;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementOperand;
+import org.hisp.dhis.program.ProgramDataElementDimensionItem;
+import org.hisp.dhis.program.ProgramIndicator;
+import org.hisp.dhis.program.ProgramTrackedEntityAttributeDimensionItem;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * This is just a wrapper class responsible for keeping and isolating all
  * caching definition related to the analytics caching, decoupling it from the
@@ -65,6 +92,37 @@ public class AnalyticsCache
 
     private final AnalyticsCacheSettings analyticsCacheSettings;
 
+    /**
+     * Registry of queries currently being fetched, keyed on the query key.
+     * Identical concurrent queries share the grid future of the first query.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Grid>> inFlightQueries = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the analytics table partitions (years), data elements and
+     * organisation units read by each cached query, keyed on the query key.
+     */
+    private final ConcurrentMap<String, CacheScope> keyScopes = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of the entries which are refreshed in place by the analytics cache
+     * warm-up, and are hence kept when the analytics tables they read are
+     * replaced.
+     */
+    private final Set<String> refreshKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Keys of the entries which read replaced analytics tables and were kept
+     * to be refreshed in place, but have not been refreshed yet.
+     */
+    private final Set<String> staleKeys = ConcurrentHashMap.newKeySet();
+
+    private final AnalyticsCacheMetrics metrics = new AnalyticsCacheMetrics();
+
+    private static final String QUERY_TYPE_AGGREGATE = "aggregate";
+
+    private static final String QUERY_TYPE_EVENT = "event";
+
     private static final int MAX_CACHE_ENTRIES = 20000;
 
     private static final String CACHE_REGION = "analyticsResponse";
@@ -91,6 +149,10 @@ public class AnalyticsCache
      * fetched by the function provided. In this case, the fetched Grid will be
      * cached, so the next consumers can hit the cache only.
      * 
+     * Concurrent calls for identical DataQueryParams are coalesced, meaning
+     * that only the first call fetches the Grid while the other calls wait for
+     * and share the result of the first call.
+     * 
      * The TTL of the cached object will be set accordingly to the cache settings
      * available at {@link org.hisp.dhis.analytics.cache.AnalyticsCacheSettings}.
      * 
@@ -100,20 +162,66 @@ public class AnalyticsCache
      */
     public Grid getOrFetch( final DataQueryParams params, final Function<DataQueryParams, Grid> function )
     {
-        final Optional<Grid> cachedGrid = get( params.getKey() );
+        final String key = params.getKey();
+        final String queryType = getQueryType( params );
+
+        final Optional<Grid> cachedGrid = get( key );
 
         if ( cachedGrid.isPresent() )
         {
+            metrics.increment( RESULT_HIT, queryType );
             return cachedGrid.get();
         }
-        else
-        {
-            final Grid grid = function.apply( params );
 
-            put( params, grid );
+        final CompletableFuture<Grid> future = new CompletableFuture<>();
+        final CompletableFuture<Grid> inFlightQuery = inFlightQueries.putIfAbsent( key, future );
+
+        if ( inFlightQuery != null )
+        {
+            metrics.increment( RESULT_COALESCED, queryType );
+            return await( inFlightQuery );
+        }
 
+        try
+        {
+            final Grid grid = fetchAndPut( params, function, queryType );
+            future.complete( grid );
             return grid;
         }
+        catch ( RuntimeException | Error ex )
+        {
+            future.completeExceptionally( ex );
+            throw ex;
+        }
+        finally
+        {
+            inFlightQueries.remove( key, future );
+        }
+    }
+
+    /**
+     * This method fetches the Grid related to the given DataQueryParams through
+     * the function provided and caches it, replacing any Grid already cached
+     * for the DataQueryParams. Consumers keep hitting the previously cached
+     * Grid until the fetch completes, so the cache is refreshed in place.
+     * 
+     * @param params the current DataQueryParams.
+     * @param function that fetches a grid based on the given DataQueryParams.
+     * @return the fetched Grid.
+     */
+    public Grid refresh( final DataQueryParams params, final Function<DataQueryParams, Grid> function )
+    {
+        final String queryType = getQueryType( params );
+
+        final long start = System.nanoTime();
+
+        final Grid grid = function.apply( params );
+
+        metrics.recordLoadTime( queryType, System.nanoTime() - start );
+
+        put( params, grid );
+
+        return grid;
     }
 
     /**
@@ -128,15 +236,17 @@ public class AnalyticsCache
      */
     public void put( final DataQueryParams params, final Grid grid )
     {
+        final CacheScope scope = getScope( params );
+
         if ( analyticsCacheSettings.isProgressiveCachingEnabled() )
         {
             // Uses the progressive TTL
-            put( params.getKey(), grid, analyticsCacheSettings.progressiveExpirationTimeOrDefault( params.getLatestEndDate() ) );
+            put( params.getKey(), grid, analyticsCacheSettings.progressiveExpirationTimeOrDefault( params.getLatestEndDate() ), scope );
         }
         else
         {
             // Respects the fixed (predefined) caching TTL
-            put( params.getKey(), grid, analyticsCacheSettings.fixedExpirationTimeOrDefault() );
+            put( params.getKey(), grid, analyticsCacheSettings.fixedExpirationTimeOrDefault(), scope );
         }
     }
 
@@ -150,7 +260,7 @@ public class AnalyticsCache
      */
     public void put( final String key, final Grid grid, final long ttlInSeconds )
     {
-        queryCache.put( key, grid, ttlInSeconds );
+        put( key, grid, ttlInSeconds, CacheScope.UNKNOWN );
     }
 
     /**
@@ -159,14 +269,151 @@ public class AnalyticsCache
     public void invalidateAll()
     {
         queryCache.invalidateAll();
+        keyScopes.clear();
+        staleKeys.clear();
         log.info( "Analytics cache cleared" );
     }
 
+    /**
+     * Sets the keys of the entries which are refreshed in place by the
+     * analytics cache warm-up. These entries are marked stale rather than
+     * removed by {@link #invalidateTables(AnalyticsTableType, Set)}, so that
+     * consumers keep hitting them until they are refreshed.
+     *
+     * @param keys the keys of the entries to refresh in place.
+     */
+    public void setRefreshKeys( final Set<String> keys )
+    {
+        refreshKeys.clear();
+        refreshKeys.addAll( keys );
+    }
+
+    /**
+     * Removes the cache entries of queries which read the given analytics
+     * table type, and any of the given partitions (years). Entries which are
+     * refreshed in place by the analytics cache warm-up are marked stale
+     * instead, see {@link #setRefreshKeys(Set)} and {@link #invalidateStale()}.
+     * Entries of queries which read other analytics tables are kept.
+     *
+     * The index is kept in memory, hence this falls back to invalidating all
+     * entries if the cache is not an in-memory cache.
+     *
+     * @param tableType the type of the replaced analytics tables.
+     * @param partitions the replaced partitions (years), or null if all
+     *        partitions were replaced.
+     */
+    public void invalidateTables( final AnalyticsTableType tableType, final Set<Integer> partitions )
+    {
+        if ( queryCache.getCacheType() != CacheType.IN_MEMORY )
+        {
+            invalidateAll();
+            return;
+        }
+
+        int invalidated = 0;
+        int stale = 0;
+
+        for ( Map.Entry<String, CacheScope> entry : keyScopes.entrySet() )
+        {
+            final CacheScope scope = entry.getValue();
+
+            if ( scope.readsTableType( tableType ) && ( partitions == null || scope.readsAnyPartition( partitions ) ) )
+            {
+                if ( refreshKeys.contains( entry.getKey() ) )
+                {
+                    staleKeys.add( entry.getKey() );
+                    stale++;
+                }
+                else
+                {
+                    queryCache.invalidate( entry.getKey() );
+                    keyScopes.remove( entry.getKey(), scope );
+                    invalidated++;
+                }
+            }
+        }
+
+        log.info( format( "Analytics cache invalidated %d and marked stale %d entries for table: %s, partitions: %s",
+            invalidated, stale, tableType, partitions ) );
+    }
+
+    /**
+     * Removes the stale cache entries which were not refreshed, and clears
+     * the keys of the entries to refresh in place.
+     *
+     * @return the number of removed entries.
+     */
+    public int invalidateStale()
+    {
+        int invalidated = 0;
+
+        for ( String key : staleKeys )
+        {
+            if ( staleKeys.remove( key ) )
+            {
+                queryCache.invalidate( key );
+                keyScopes.remove( key );
+                invalidated++;
+            }
+        }
+
+        refreshKeys.clear();
+
+        log.info( format( "Analytics cache invalidated %d stale entries", invalidated ) );
+
+        return invalidated;
+    }
+
+    /**
+     * Removes the cache entries of queries which may read any of the data
+     * changed by an incremental analytics table update. An entry is removed if
+     * the query reads the updated analytics table type, and any of the changed
+     * partitions (years), and any of the changed data elements, and any of the
+     * changed organisation units or their ancestors. Table types, partitions,
+     * data elements and organisation units which are unknown for a query are
+     * considered to match.
+     * 
+     * The index is kept in memory, hence this falls back to invalidating all
+     * entries if the cache is not an in-memory cache.
+     * 
+     * @param changes the {@link AnalyticsTableChanges}.
+     */
+    public void invalidate( final AnalyticsTableChanges changes )
+    {
+        if ( queryCache.getCacheType() != CacheType.IN_MEMORY )
+        {
+            invalidateAll();
+            return;
+        }
+
+        final int invalidated = invalidate( scope ->
+            scope.readsTableType( changes.getTableType() ) &&
+            scope.readsAnyPartition( changes.getYears() ) &&
+            scope.readsAnyDataElement( changes.getDataElements() ) &&
+            scope.readsAnyOrgUnit( changes.getOrgUnits() ) );
+
+        log.info( format( "Analytics cache invalidated %d entries for changes: %s", invalidated, changes ) );
+    }
+
     public boolean isEnabled()
     {
         return analyticsCacheSettings.isCachingEnabled();
     }
 
+    /**
+     * Returns the number of queries currently being fetched.
+     */
+    public int getInFlightQueryCount()
+    {
+        return inFlightQueries.size();
+    }
+
+    @Autowired( required = false )
+    public void setMeterRegistry( final MeterRegistry meterRegistry )
+    {
+        metrics.setMeterRegistry( meterRegistry );
+    }
+
     @PostConstruct
     public void init()
     {
@@ -183,4 +430,240 @@ public class AnalyticsCache
         log.info( format( "Analytics server-side cache is enabled with expiration time (in seconds): %d",
             initialExpirationTime ) );
     }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Fetches the Grid for the given DataQueryParams and caches it. Checks the
+     * cache again first, as the Grid may have been cached by a query which
+     * completed after the initial cache lookup.
+     */
+    private Grid fetchAndPut( final DataQueryParams params, final Function<DataQueryParams, Grid> function,
+        final String queryType )
+    {
+        final Optional<Grid> cachedGrid = get( params.getKey() );
+
+        if ( cachedGrid.isPresent() )
+        {
+            metrics.increment( RESULT_HIT, queryType );
+            return cachedGrid.get();
+        }
+
+        metrics.increment( RESULT_MISS, queryType );
+
+        final long start = System.nanoTime();
+
+        final Grid grid = function.apply( params );
+
+        metrics.recordLoadTime( queryType, System.nanoTime() - start );
+
+        put( params, grid );
+
+        return grid;
+    }
+
+    /**
+     * Caches the given Grid and records the scope of the query in the index.
+     * Entries of the index for which the Grid has been evicted from the cache
+     * are pruned once the index grows beyond twice the max number of cache
+     * entries.
+     */
+    private void put( final String key, final Grid grid, final long ttlInSeconds, final CacheScope scope )
+    {
+        queryCache.put( key, grid, ttlInSeconds );
+        keyScopes.put( key, scope );
+        staleKeys.remove( key );
+
+        if ( keyScopes.size() > MAX_CACHE_ENTRIES * 2 )
+        {
+            pruneKeyScopes();
+        }
+    }
+
+    private synchronized void pruneKeyScopes()
+    {
+        keyScopes.keySet().removeIf( key -> !queryCache.getIfPresent( key ).isPresent() );
+    }
+
+    /**
+     * Removes the cache entries for which the scope matches the given
+     * predicate.
+     *
+     * @return the number of removed entries.
+     */
+    private int invalidate( final Predicate<CacheScope> predicate )
+    {
+        int invalidated = 0;
+
+        for ( Map.Entry<String, CacheScope> entry : keyScopes.entrySet() )
+        {
+            if ( predicate.test( entry.getValue() ) )
+            {
+                queryCache.invalidate( entry.getKey() );
+                keyScopes.remove( entry.getKey(), entry.getValue() );
+                invalidated++;
+            }
+        }
+
+        return invalidated;
+    }
+
+    /**
+     * Returns the scope of the given query. Data elements are known only if
+     * all data items of the query are data elements or data element operands,
+     * as other data items like indicators may read any data element.
+     */
+    private CacheScope getScope( final DataQueryParams params )
+    {
+        final Set<Integer> partitions = PartitionUtils.getPartitions( params ).getPartitions();
+
+        final Set<String> dataElements = new HashSet<>();
+
+        for ( DimensionalItemObject item : params.getAllDataDimensionItems() )
+        {
+            if ( item instanceof DataElement )
+            {
+                dataElements.add( item.getUid() );
+            }
+            else if ( item instanceof DataElementOperand && ( (DataElementOperand) item ).getDataElement() != null )
+            {
+                dataElements.add( ( (DataElementOperand) item ).getDataElement().getUid() );
+            }
+            else
+            {
+                dataElements.clear();
+                break;
+            }
+        }
+
+        final Set<String> orgUnits = new HashSet<>();
+
+        params.getOrganisationUnits().forEach( ou -> orgUnits.add( ou.getUid() ) );
+        params.getFilterOrganisationUnits().forEach( ou -> orgUnits.add( ou.getUid() ) );
+
+        return new CacheScope( getTableTypes( params ), partitions, dataElements, orgUnits );
+    }
+
+    /**
+     * Returns the analytics table types read by the given query. Table types
+     * are known only if all data items of the query map to specific tables, as
+     * other data items like indicators may read any table.
+     */
+    private Set<AnalyticsTableType> getTableTypes( final DataQueryParams params )
+    {
+        final Set<AnalyticsTableType> tableTypes = new HashSet<>();
+
+        if ( params instanceof EventQueryParams )
+        {
+            tableTypes.add( AnalyticsTableType.EVENT );
+            tableTypes.add( AnalyticsTableType.ENROLLMENT );
+            return tableTypes;
+        }
+
+        for ( DimensionalItemObject item : params.getAllDataDimensionItems() )
+        {
+            if ( item instanceof DataElement || item instanceof DataElementOperand )
+            {
+                tableTypes.add( AnalyticsTableType.DATA_VALUE );
+            }
+            else if ( item instanceof ReportingRate )
+            {
+                tableTypes.add( AnalyticsTableType.COMPLETENESS );
+                tableTypes.add( AnalyticsTableType.COMPLETENESS_TARGET );
+            }
+            else if ( item instanceof ProgramIndicator || item instanceof ProgramDataElementDimensionItem ||
+                item instanceof ProgramTrackedEntityAttributeDimensionItem )
+            {
+                tableTypes.add( AnalyticsTableType.EVENT );
+                tableTypes.add( AnalyticsTableType.ENROLLMENT );
+            }
+            else
+            {
+                return new HashSet<>();
+            }
+        }
+
+        return tableTypes;
+    }
+
+    private Grid await( final CompletableFuture<Grid> future )
+    {
+        try
+        {
+            return future.join();
+        }
+        catch ( CompletionException ex )
+        {
+            if ( ex.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) ex.getCause();
+            }
+            else if ( ex.getCause() instanceof Error )
+            {
+                throw (Error) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    private String getQueryType( final DataQueryParams params )
+    {
+        return params instanceof EventQueryParams ? QUERY_TYPE_EVENT : QUERY_TYPE_AGGREGATE;
+    }
+
+    /**
+     * The analytics table types, partitions (years), data elements and
+     * organisation units read by a cached query. An empty set means that the items are unknown, in which
+     * case the query is considered to read any item.
+     */
+    private static class CacheScope
+    {
+        private static final CacheScope UNKNOWN = new CacheScope( Collections.emptySet(),
+            Collections.emptySet(), Collections.emptySet(), Collections.emptySet() );
+
+        private final Set<AnalyticsTableType> tableTypes;
+
+        private final Set<Integer> partitions;
+
+        private final Set<String> dataElements;
+
+        private final Set<String> orgUnits;
+
+        CacheScope( Set<AnalyticsTableType> tableTypes, Set<Integer> partitions, Set<String> dataElements,
+            Set<String> orgUnits )
+        {
+            this.tableTypes = tableTypes;
+            this.partitions = partitions;
+            this.dataElements = dataElements;
+            this.orgUnits = orgUnits;
+        }
+
+        boolean readsTableType( AnalyticsTableType tableType )
+        {
+            return readsAny( tableTypes, Collections.singleton( tableType ) );
+        }
+
+        boolean readsAnyPartition( Set<Integer> items )
+        {
+            return readsAny( partitions, items );
+        }
+
+        boolean readsAnyDataElement( Set<String> items )
+        {
+            return readsAny( dataElements, items );
+        }
+
+        boolean readsAnyOrgUnit( Set<String> items )
+        {
+            return readsAny( orgUnits, items );
+        }
+
+        private static <T> boolean readsAny( Set<T> scopeItems, Set<T> items )
+        {
+            return scopeItems.isEmpty() || !Collections.disjoint( scopeItems, items );
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package org.hisp.dhis.analytics.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the usage of the {@link AnalyticsCache} as Micrometer meters, tagged
+ * by query type. Meters are looked up in the registry on each call, which
+ * returns the already registered meter after the first call. Does nothing if
+ * no meter registry is available.
+ */
+class AnalyticsCacheMetrics
+{
+    private static final String REQUESTS = "analytics.cache.requests";
+
+    private static final String LOAD_TIME = "analytics.cache.load";
+
+    private static final String TAG_RESULT = "result";
+
+    private static final String TAG_QUERY_TYPE = "queryType";
+
+    static final String RESULT_HIT = "hit";
+
+    static final String RESULT_MISS = "miss";
+
+    static final String RESULT_COALESCED = "coalesced";
+
+    private MeterRegistry meterRegistry;
+
+    void setMeterRegistry( MeterRegistry meterRegistry )
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Increments the request counter for the given result and query type.
+     *
+     * @param result the request result, one of hit, miss or coalesced.
+     * @param queryType the query type.
+     */
+    void increment( String result, String queryType )
+    {
+        if ( meterRegistry != null )
+        {
+            Counter.builder( REQUESTS )
+                .description( "The number of analytics cache requests by result" )
+                .tag( TAG_RESULT, result )
+                .tag( TAG_QUERY_TYPE, queryType )
+                .register( meterRegistry )
+                .increment();
+        }
+    }
+
+    /**
+     * Records the time spent on loading a grid which was not cached.
+     *
+     * @param queryType the query type.
+     * @param nanos the load time in nanoseconds.
+     */
+    void recordLoadTime( String queryType, long nanos )
+    {
+        if ( meterRegistry != null )
+        {
+            Timer.builder( LOAD_TIME )
+                .description( "The time spent on loading analytics grids on cache misses" )
+                .tag( TAG_QUERY_TYPE, queryType )
+                .register( meterRegistry )
+                .record( nanos, TimeUnit.NANOSECONDS );
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package org.hisp.dhis.analytics.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_CACHE_WARM_UP_CONCURRENCY;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_CACHE_WARM_UP_DASHBOARD_ITEMS;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_CACHE_WARM_UP_QUERY_LIMIT;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_CACHE_WARM_UP_TIME_BUDGET;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.analytics.AnalyticsService;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.DataQueryService;
+import org.hisp.dhis.analytics.cache.AnalyticsQueryFrequencyTracker.TrackedQuery;
+import org.hisp.dhis.common.AnalyticalObject;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.dashboard.Dashboard;
+import org.hisp.dhis.dashboard.DashboardItem;
+import org.hisp.dhis.dbms.DbmsUtils;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.util.Clock;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Refreshes the analytics cache in place after analytics tables are updated,
+ * so that the first users after an analytics table update are served from the
+ * cache. The queries to refresh are the most frequently requested queries as
+ * recorded by the {@link AnalyticsQueryFrequencyTracker}, and optionally the
+ * favorites on dashboards. The number of concurrent queries and the total time
+ * spent are bounded by system settings. Queries are refreshed on threads
+ * without a current user, so that only results which are not constrained by a
+ * user are refreshed.
+ */
+@Slf4j
+@Component
+public class AnalyticsCacheWarmer
+{
+    private final AnalyticsService analyticsService;
+
+    private final DataQueryService dataQueryService;
+
+    private final IdentifiableObjectManager idObjectManager;
+
+    private final SystemSettingManager systemSettingManager;
+
+    private final AnalyticsCache analyticsCache;
+
+    private final AnalyticsQueryFrequencyTracker queryFrequencyTracker;
+
+    private final SessionFactory sessionFactory;
+
+    /**
+     * Executor for refreshing queries, sized from the warm-up concurrency
+     * system setting on every warm-up.
+     */
+    private final ThreadPoolExecutor executor;
+
+    public AnalyticsCacheWarmer( AnalyticsService analyticsService, DataQueryService dataQueryService,
+        IdentifiableObjectManager idObjectManager, SystemSettingManager systemSettingManager,
+        AnalyticsCache analyticsCache, AnalyticsQueryFrequencyTracker queryFrequencyTracker,
+        SessionFactory sessionFactory )
+    {
+        checkNotNull( analyticsService );
+        checkNotNull( dataQueryService );
+        checkNotNull( idObjectManager );
+        checkNotNull( systemSettingManager );
+        checkNotNull( analyticsCache );
+        checkNotNull( queryFrequencyTracker );
+        checkNotNull( sessionFactory );
+
+        this.analyticsService = analyticsService;
+        this.dataQueryService = dataQueryService;
+        this.idObjectManager = idObjectManager;
+        this.systemSettingManager = systemSettingManager;
+        this.analyticsCache = analyticsCache;
+        this.queryFrequencyTracker = queryFrequencyTracker;
+        this.sessionFactory = sessionFactory;
+        this.executor = new ThreadPoolExecutor( 1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat( "analytics-cache-warm-up-%d" ).setDaemon( true ).build() );
+        this.executor.allowCoreThreadTimeOut( true );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Marks the cached results of the most frequently requested queries to be
+     * refreshed in place by the next warm-up, so that they are kept when the
+     * analytics tables they read are replaced. Does nothing if the analytics
+     * cache is not enabled.
+     */
+    public void prepareWarmUp()
+    {
+        final int queryLimit = (Integer) systemSettingManager.getSystemSetting( ANALYTICS_CACHE_WARM_UP_QUERY_LIMIT );
+
+        if ( analyticsCache.isEnabled() && queryLimit > 0 )
+        {
+            analyticsCache.setRefreshKeys( queryFrequencyTracker.getMostFrequentKeys( queryLimit ) );
+        }
+    }
+
+    /**
+     * Removes the cached results which were kept to be refreshed in place but
+     * were not refreshed, for instance because the analytics table update
+     * failed.
+     */
+    public void invalidateStale()
+    {
+        if ( analyticsCache.isEnabled() )
+        {
+            analyticsCache.invalidateStale();
+        }
+    }
+
+    /**
+     * Refreshes the cached results of the most frequently requested queries and
+     * of the favorites on dashboards, as configured through system settings.
+     * Cached results which were kept to be refreshed in place but could not be
+     * refreshed are removed afterwards. Does nothing if the analytics cache is
+     * not enabled.
+     *
+     * @return the number of refreshed queries.
+     */
+    @Transactional( readOnly = true )
+    public int warmUp()
+    {
+        try
+        {
+            return warmUpInternal();
+        }
+        finally
+        {
+            invalidateStale();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private int warmUpInternal()
+    {
+        final int queryLimit = (Integer) systemSettingManager.getSystemSetting( ANALYTICS_CACHE_WARM_UP_QUERY_LIMIT );
+        final boolean dashboardItems = (Boolean) systemSettingManager.getSystemSetting( ANALYTICS_CACHE_WARM_UP_DASHBOARD_ITEMS );
+
+        if ( !analyticsCache.isEnabled() || ( queryLimit <= 0 && !dashboardItems ) )
+        {
+            return 0;
+        }
+
+        final Clock clock = new Clock( log ).startClock();
+
+        final Map<String, DataQueryParams> queries = new LinkedHashMap<>();
+
+        if ( queryLimit > 0 )
+        {
+            getFrequentQueries( queryLimit ).forEach( params -> queries.put( params.getKey(), params ) );
+        }
+
+        if ( dashboardItems )
+        {
+            getDashboardItemQueries().forEach( params -> queries.putIfAbsent( params.getKey(), params ) );
+        }
+
+        clock.logTime( String.format( "Found %d queries for analytics cache warm-up", queries.size() ) );
+
+        final int refreshed = refresh( queries.values() );
+
+        clock.logTime( String.format( "Analytics cache warm-up done, refreshed %d of %d queries", refreshed, queries.size() ) );
+
+        return refreshed;
+    }
+
+    /**
+     * Refreshes the given queries concurrently. Queries which are not started
+     * within the time budget are skipped.
+     *
+     * @param queries the queries to refresh.
+     * @return the number of refreshed queries.
+     */
+    private synchronized int refresh( Collection<DataQueryParams> queries )
+    {
+        final int concurrency = Math.max( 1, (Integer) systemSettingManager.getSystemSetting( ANALYTICS_CACHE_WARM_UP_CONCURRENCY ) );
+        final long timeBudgetMillis = TimeUnit.SECONDS.toMillis( (Integer) systemSettingManager.getSystemSetting( ANALYTICS_CACHE_WARM_UP_TIME_BUDGET ) );
+        final long deadline = System.currentTimeMillis() + timeBudgetMillis;
+
+        final AtomicInteger refreshed = new AtomicInteger();
+
+        setConcurrency( concurrency );
+
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for ( DataQueryParams params : queries )
+        {
+            futures.add( executor.submit( () -> refresh( params, deadline, refreshed ) ) );
+        }
+
+        try
+        {
+            for ( Future<?> future : futures )
+            {
+                future.get( Math.max( 0, deadline - System.currentTimeMillis() ), TimeUnit.MILLISECONDS );
+            }
+        }
+        catch ( TimeoutException ex )
+        {
+            log.warn( "Analytics cache warm-up exceeded time budget, remaining queries were skipped" );
+        }
+        catch ( ExecutionException | CancellationException ex )
+        {
+            log.warn( "Analytics cache warm-up failed", ex );
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            futures.forEach( future -> future.cancel( true ) );
+        }
+
+        return refreshed.get();
+    }
+
+    /**
+     * Sets the number of threads of the executor. The max pool size must not
+     * be lower than the core pool size at any time.
+     */
+    private void setConcurrency( int concurrency )
+    {
+        if ( concurrency > executor.getMaximumPoolSize() )
+        {
+            executor.setMaximumPoolSize( concurrency );
+            executor.setCorePoolSize( concurrency );
+        }
+        else
+        {
+            executor.setCorePoolSize( concurrency );
+            executor.setMaximumPoolSize( concurrency );
+        }
+    }
+
+    private void refresh( DataQueryParams params, long deadline, AtomicInteger refreshed )
+    {
+        if ( System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted() )
+        {
+            return;
+        }
+
+        DbmsUtils.bindSessionToThread( sessionFactory );
+
+        try
+        {
+            analyticsService.refreshAggregatedDataValues( params );
+            refreshed.incrementAndGet();
+        }
+        catch ( RuntimeException ex )
+        {
+            log.warn( String.format( "Analytics cache warm-up failed for query: '%s'", params.getKey() ), ex );
+        }
+        finally
+        {
+            DbmsUtils.unbindSessionFromThread( sessionFactory );
+        }
+    }
+
+    /**
+     * Rebuilds the most frequently requested queries. Queries which no longer
+     * translate into a valid query, for instance because metadata was removed,
+     * or which no longer translate into the tracked query, are skipped.
+     *
+     * @param limit the max number of queries to return.
+     */
+    private List<DataQueryParams> getFrequentQueries( int limit )
+    {
+        final List<DataQueryParams> queries = new ArrayList<>();
+
+        for ( TrackedQuery query : queryFrequencyTracker.getMostFrequentTrackedQueries( limit ) )
+        {
+            try
+            {
+                DataQueryParams params = query.withOptions( dataQueryService.getFromRequest( query.getRequest() ) );
+
+                if ( query.getKey().equals( params.getKey() ) )
+                {
+                    queries.add( params );
+                }
+                else
+                {
+                    log.debug( String.format( "Skipping frequent query for analytics cache warm-up: '%s'", query.getKey() ) );
+                }
+            }
+            catch ( RuntimeException ex )
+            {
+                log.debug( "Skipping frequent query for analytics cache warm-up", ex );
+            }
+        }
+
+        return queries;
+    }
+
+    /**
+     * Returns the queries for the visualizations, charts and report tables on
+     * dashboards. Favorites which do not translate into a valid query are
+     * skipped.
+     */
+    private List<DataQueryParams> getDashboardItemQueries()
+    {
+        final Map<String, AnalyticalObject> objects = new LinkedHashMap<>();
+
+        for ( Dashboard dashboard : idObjectManager.getAllNoAcl( Dashboard.class ) )
+        {
+            for ( DashboardItem item : dashboard.getItems() )
+            {
+                AnalyticalObject object = getAnalyticalObject( item );
+
+                if ( object != null )
+                {
+                    objects.putIfAbsent( object.getUid(), object );
+                }
+            }
+        }
+
+        final List<DataQueryParams> queries = new ArrayList<>();
+
+        for ( AnalyticalObject object : objects.values() )
+        {
+            try
+            {
+                queries.add( dataQueryService.getFromAnalyticalObject( object ) );
+            }
+            catch ( RuntimeException ex )
+            {
+                log.debug( String.format( "Skipping favorite for analytics cache warm-up: '%s'", object.getUid() ), ex );
+            }
+        }
+
+        return queries;
+    }
+
+    private AnalyticalObject getAnalyticalObject( DashboardItem item )
+    {
+        if ( item.getVisualization() != null )
+        {
+            return item.getVisualization();
+        }
+        else if ( item.getChart() != null )
+        {
+            return item.getChart();
+        }
+
+        return item.getReportTable();
+    }
+}
@@ -0,0 +1,335 @@
+package org.hisp.dhis.analytics.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.hisp.dhis.common.DimensionalObject.DIMENSION_NAME_SEP;
+import static org.hisp.dhis.common.DimensionalObject.OPTION_SEP;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.MeasureFilter;
+import org.hisp.dhis.analytics.OutputFormat;
+import org.hisp.dhis.common.DataQueryRequest;
+import org.hisp.dhis.common.DimensionalItemObject;
+import org.hisp.dhis.common.DimensionalObject;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps track of how frequently analytics queries are requested, keyed on the
+ * {@link DataQueryParams} key. Only the key, a {@link DataQueryRequest}
+ * holding the identifiers needed to rebuild the query and the options which
+ * are part of the key but not of the request are retained, not the params
+ * with their metadata objects. The number of tracked queries is
+ * bounded. When the bound is exceeded, the counts of all tracked queries are halved and
+ * queries which are no longer requested are dropped, which makes recently
+ * popular queries win over queries which were popular in the past.
+ */
+@Component
+public class AnalyticsQueryFrequencyTracker
+{
+    private static final int MAX_TRACKED_QUERIES = 1000;
+
+    private final ConcurrentMap<String, TrackedQuery> queries = new ConcurrentHashMap<>();
+
+    /**
+     * Records a request for the given query.
+     *
+     * @param params the {@link DataQueryParams}.
+     */
+    public void record( final DataQueryParams params )
+    {
+        queries.computeIfAbsent( params.getKey(), key -> new TrackedQuery( key, params ) ).increment();
+
+        if ( queries.size() > MAX_TRACKED_QUERIES )
+        {
+            decay();
+        }
+    }
+
+    /**
+     * Returns the most frequently requested queries, most frequent first.
+     *
+     * @param limit the max number of queries to return.
+     * @return a list of {@link DataQueryRequest}.
+     */
+    public List<DataQueryRequest> getMostFrequentQueries( final int limit )
+    {
+        return getMostFrequentTrackedQueries( limit ).stream()
+            .map( TrackedQuery::getRequest )
+            .collect( toList() );
+    }
+
+    /**
+     * Returns the keys of the most frequently requested queries.
+     *
+     * @param limit the max number of keys to return.
+     * @return a set of {@link DataQueryParams} keys.
+     */
+    public Set<String> getMostFrequentKeys( final int limit )
+    {
+        return getMostFrequentTrackedQueries( limit ).stream()
+            .map( TrackedQuery::getKey )
+            .collect( toSet() );
+    }
+
+    /**
+     * Returns the most frequently requested queries, most frequent first.
+     *
+     * @param limit the max number of queries to return.
+     * @return a list of {@link TrackedQuery}.
+     */
+    public List<TrackedQuery> getMostFrequentTrackedQueries( final int limit )
+    {
+        return queries.values().stream()
+            .sorted( Comparator.comparingLong( TrackedQuery::getCount ).reversed() )
+            .limit( limit )
+            .collect( toList() );
+    }
+
+    /**
+     * Returns the number of tracked queries.
+     */
+    public int getTrackedQueryCount()
+    {
+        return queries.size();
+    }
+
+    /**
+     * Clears all tracked queries.
+     */
+    public void clear()
+    {
+        queries.clear();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private synchronized void decay()
+    {
+        if ( queries.size() <= MAX_TRACKED_QUERIES )
+        {
+            return;
+        }
+
+        queries.values().forEach( TrackedQuery::halve );
+        queries.values().removeIf( query -> query.getCount() == 0 );
+
+        if ( queries.size() > MAX_TRACKED_QUERIES )
+        {
+            queries.values().stream()
+                .sorted( Comparator.comparingLong( TrackedQuery::getCount ) )
+                .limit( queries.size() - MAX_TRACKED_QUERIES )
+                .collect( toList() )
+                .forEach( query -> queries.remove( query.getKey(), query ) );
+        }
+    }
+
+    /**
+     * Returns a {@link DataQueryRequest} from which the given query can be
+     * rebuilt. Dimensions and filters are described by identifiers only.
+     *
+     * @param params the {@link DataQueryParams}.
+     */
+    private static DataQueryRequest toRequest( DataQueryParams params )
+    {
+        return DataQueryRequest.newBuilder()
+            .dimension( getDimensionParams( params.getDimensions() ) )
+            .filter( getDimensionParams( params.getFilters() ) )
+            .aggregationType( getAggregationType( params.getAggregationType() ) )
+            .measureCriteria( getMeasureCriteriaParam( params.getMeasureCriteria() ) )
+            .preAggregationMeasureCriteria( getMeasureCriteriaParam( params.getPreAggregateMeasureCriteria() ) )
+            .startDate( params.getStartDate() )
+            .endDate( params.getEndDate() )
+            .order( params.getOrder() )
+            .timeField( params.getTimeField() )
+            .orgUnitField( params.getOrgUnitField() )
+            .skipMeta( params.isSkipMeta() )
+            .skipData( params.isSkipData() )
+            .skipRounding( params.isSkipRounding() )
+            .completedOnly( params.isCompletedOnly() )
+            .hierarchyMeta( params.isHierarchyMeta() )
+            .ignoreLimit( params.isIgnoreLimit() )
+            .hideEmptyRows( params.isHideEmptyRows() )
+            .hideEmptyColumns( params.isHideEmptyColumns() )
+            .showHierarchy( params.isShowHierarchy() )
+            .includeNumDen( params.isIncludeNumDen() )
+            .includeMetadataDetails( params.isIncludeMetadataDetails() )
+            .displayProperty( params.getDisplayProperty() )
+            .outputIdScheme( params.getOutputIdScheme() )
+            .duplicatesOnly( params.isDuplicatesOnly() )
+            .approvalLevel( params.getApprovalLevel() )
+            .apiVersion( params.getApiVersion() )
+            .userOrgUnitType( params.getUserOrgUnitType() )
+            .build();
+    }
+
+    /**
+     * Returns the dimension params in the order of the given dimensions, as
+     * the order of dimensions is part of the query key.
+     */
+    private static Set<String> getDimensionParams( List<DimensionalObject> dimensions )
+    {
+        return dimensions.stream()
+            .map( AnalyticsQueryFrequencyTracker::getDimensionParam )
+            .collect( toCollection( LinkedHashSet::new ) );
+    }
+
+    private static String getDimensionParam( DimensionalObject dimension )
+    {
+        if ( dimension.getItems().isEmpty() )
+        {
+            return dimension.getDimension();
+        }
+
+        return dimension.getDimension() + DIMENSION_NAME_SEP + dimension.getItems().stream()
+            .map( DimensionalItemObject::getDimensionItem )
+            .collect( joining( OPTION_SEP ) );
+    }
+
+    private static String getMeasureCriteriaParam( Map<MeasureFilter, Double> measureCriteria )
+    {
+        if ( measureCriteria == null || measureCriteria.isEmpty() )
+        {
+            return null;
+        }
+
+        return measureCriteria.entrySet().stream()
+            .map( entry -> entry.getKey().name() + DIMENSION_NAME_SEP + entry.getValue() )
+            .collect( joining( OPTION_SEP ) );
+    }
+
+    /**
+     * Returns the {@link AggregationType} which maps to the given analytics
+     * aggregation type, or null if there is none.
+     */
+    private static AggregationType getAggregationType( AnalyticsAggregationType type )
+    {
+        if ( type == null )
+        {
+            return null;
+        }
+
+        return Arrays.stream( AggregationType.values() )
+            .filter( candidate -> {
+                AnalyticsAggregationType analyticsType = AnalyticsAggregationType.fromAggregationType( candidate );
+
+                return analyticsType.getAggregationType() == type.getAggregationType() &&
+                    analyticsType.getPeriodAggregationType() == type.getPeriodAggregationType();
+            } )
+            .findFirst()
+            .orElse( null );
+    }
+
+    /**
+     * A tracked query. Holds the {@link DataQueryRequest} from which the query
+     * can be rebuilt, and the options which are part of the query key but
+     * cannot be expressed through the request.
+     */
+    public static class TrackedQuery
+    {
+        private final String key;
+
+        private final DataQueryRequest request;
+
+        private final boolean skipHeaders;
+
+        private final boolean includePeriodStartEndDates;
+
+        private final OutputFormat outputFormat;
+
+        private final AtomicLong count = new AtomicLong();
+
+        TrackedQuery( String key, DataQueryParams params )
+        {
+            this.key = key;
+            this.request = toRequest( params );
+            this.skipHeaders = params.isSkipHeaders();
+            this.includePeriodStartEndDates = params.isIncludePeriodStartEndDates();
+            this.outputFormat = params.getOutputFormat();
+        }
+
+        /**
+         * Returns the given params, rebuilt from the request of this query,
+         * with the options which are not part of the request applied.
+         *
+         * @param params the {@link DataQueryParams} rebuilt from the request.
+         * @return a {@link DataQueryParams}.
+         */
+        public DataQueryParams withOptions( DataQueryParams params )
+        {
+            return DataQueryParams.newBuilder( params )
+                .withSkipHeaders( skipHeaders )
+                .withIncludePeriodStartEndDates( includePeriodStartEndDates )
+                .withOutputFormat( outputFormat )
+                .build();
+        }
+
+        public String getKey()
+        {
+            return key;
+        }
+
+        public DataQueryRequest getRequest()
+        {
+            return request;
+        }
+
+        long getCount()
+        {
+            return count.get();
+        }
+
+        void increment()
+        {
+            count.incrementAndGet();
+        }
+
+        void halve()
+        {
+            count.updateAndGet( value -> value / 2 );
+        }
+    }
+}
@@ -28,8 +28,15 @@ package org.hisp.dhis.analytics.config;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_QUERY_TIMEOUT;
+
+import javax.sql.DataSource;
+
 import org.hisp.dhis.analytics.AnalyticsTableManager;
+import org.hisp.dhis.analytics.cache.AnalyticsCache;
 import org.hisp.dhis.analytics.table.DefaultAnalyticsTableService;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler;
+import org.hisp.dhis.analytics.util.QueryTimeoutJdbcTemplate;
 import org.hisp.dhis.dataelement.DataElementService;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.resourcetable.ResourceTableService;
@@ -38,6 +45,7 @@ import org.hisp.dhis.system.notification.Notifier;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
  * @author Luciano Fiandesio
@@ -45,73 +53,94 @@ import org.springframework.context.annotation.Configuration;
 @Configuration("analyticsServiceConfig")
 public class ServiceConfig
 {
+    /**
+     * Read-only {@link JdbcTemplate} for analytics queries, which applies the
+     * analytics query timeout system setting to every statement.
+     */
+    @Bean( "analyticsJdbcTemplate" )
+    public JdbcTemplate analyticsJdbcTemplate( @Qualifier( "readOnlyDataSource" ) DataSource dataSource,
+        SystemSettingManager systemSettingManager )
+    {
+        JdbcTemplate jdbcTemplate = new QueryTimeoutJdbcTemplate( dataSource,
+            () -> (Integer) systemSettingManager.getSystemSetting( ANALYTICS_QUERY_TIMEOUT ) );
+        jdbcTemplate.setFetchSize( 1000 );
+        return jdbcTemplate;
+    }
+
     @Bean( "org.hisp.dhis.analytics.AnalyticsTableService" )
     public DefaultAnalyticsTableService analyticsTableService(
         @Qualifier( "org.hisp.dhis.analytics.AnalyticsTableManager" ) AnalyticsTableManager tableManager,
         OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-        ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+        ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+        AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-            resourceTableService, notifier, systemSettingManager );
+            resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 
     @Bean( "org.hisp.dhis.analytics.CompletenessTableService" )
     public DefaultAnalyticsTableService completenessTableService(
             @Qualifier( "org.hisp.dhis.analytics.CompletenessTableManager" ) AnalyticsTableManager tableManager,
             OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+            AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-                resourceTableService, notifier, systemSettingManager );
+                resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 
     @Bean( "org.hisp.dhis.analytics.CompletenessTargetTableService" )
     public DefaultAnalyticsTableService completenessTargetTableService(
             @Qualifier( "org.hisp.dhis.analytics.CompletenessTargetTableManager" ) AnalyticsTableManager tableManager,
             OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+            AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-                resourceTableService, notifier, systemSettingManager );
+                resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 
     @Bean( "org.hisp.dhis.analytics.OrgUnitTargetTableService" )
     public DefaultAnalyticsTableService orgUnitTargetTableService(
             @Qualifier( "org.hisp.dhis.analytics.OrgUnitTargetTableManager" ) AnalyticsTableManager tableManager,
             OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+            AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-                resourceTableService, notifier, systemSettingManager );
+                resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 
     @Bean( "org.hisp.dhis.analytics.EventAnalyticsTableService" )
     public DefaultAnalyticsTableService eventAnalyticsTableService(
             @Qualifier( "org.hisp.dhis.analytics.EventAnalyticsTableManager" ) AnalyticsTableManager tableManager,
             OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+            AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-                resourceTableService, notifier, systemSettingManager );
+                resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 
     @Bean( "org.hisp.dhis.analytics.ValidationResultTableService" )
     public DefaultAnalyticsTableService validationResultTableService(
             @Qualifier( "org.hisp.dhis.analytics.ValidationResultAnalyticsTableManager" ) AnalyticsTableManager tableManager,
             OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+            AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-                resourceTableService, notifier, systemSettingManager );
+                resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 
     @Bean( "org.hisp.dhis.analytics.EnrollmentAnalyticsTableService" )
     public DefaultAnalyticsTableService enrollmentAnalyticsTableManager(
             @Qualifier( "org.hisp.dhis.analytics.EnrollmentAnalyticsTableManager" ) AnalyticsTableManager tableManager,
             OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+            ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+            AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         return new DefaultAnalyticsTableService( tableManager, organisationUnitService, dataElementService,
-                resourceTableService, notifier, systemSettingManager );
+                resourceTableService, notifier, systemSettingManager, analyticsCache, profiler );
     }
 }
@@ -0,0 +1,458 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.hisp.dhis.analytics.util.AnalyticsUtils.throwIllegalQueryEx;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_MAX_CONCURRENT_QUERY_COST;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_MAX_CONCURRENT_USER_QUERIES;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_MAX_QUERY_ROW_ESTIMATE;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_QUERY_QUEUE_SIZE;
+import static org.hisp.dhis.setting.SettingKey.ANALYTICS_QUERY_TIMEOUT;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import org.hisp.dhis.analytics.DataQueryGroups;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.common.IllegalQueryException;
+import org.hisp.dhis.common.QueryRuntimeException;
+import org.hisp.dhis.feedback.ErrorCode;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control for analytics queries. Each query is assigned a cost, and
+ * queries are admitted as long as the total cost of running queries stays
+ * within the max concurrent query cost system setting. Queries which cannot
+ * be admitted wait in a bounded queue in arrival order, except that queries
+ * of users who already run their share of concurrent queries are passed over
+ * in favor of queries of other users. Queries are rejected when the queue is
+ * full or when they are not admitted within the query timeout.
+ * <p>
+ * A query with a cost above the max is admitted when no other queries are
+ * running. Admission control is disabled when the max concurrent query cost
+ * is zero.
+ * <p>
+ * The permit of an admitted query can be retained by the tasks which run the
+ * statements of the query, so that the cost is released only once the last
+ * statement has ended, also when the query is cancelled.
+ */
+@Slf4j
+@Component
+public class AnalyticsQueryAdmission
+{
+    private static final long DEFAULT_MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis( 60 );
+
+    /**
+     * Number of rows estimated to be read by a query which count as one unit
+     * of cost.
+     */
+    private static final long ROWS_PER_COST_UNIT = 1_000_000;
+
+    private static final String QUEUED = "analytics.queries.queued";
+
+    private static final String RUNNING_COST = "analytics.queries.running.cost";
+
+    private static final String REJECTED = "analytics.queries.rejected";
+
+    private static final String TAG_REASON = "reason";
+
+    private static final String REASON_QUEUE_FULL = "queueFull";
+
+    private static final String REASON_TIMEOUT = "timeout";
+
+    private final SystemSettingManager systemSettingManager;
+
+    private final LinkedList<Ticket> queue = new LinkedList<>();
+
+    private final Map<String, Integer> runningUserQueries = new HashMap<>();
+
+    private long runningCost = 0;
+
+    private int runningQueries = 0;
+
+    private MeterRegistry meterRegistry;
+
+    public AnalyticsQueryAdmission( SystemSettingManager systemSettingManager )
+    {
+        checkNotNull( systemSettingManager );
+
+        this.systemSettingManager = systemSettingManager;
+    }
+
+    @Autowired( required = false )
+    public void setMeterRegistry( final MeterRegistry meterRegistry )
+    {
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder( QUEUED, this, AnalyticsQueryAdmission::getQueuedQueryCount )
+            .description( "The number of analytics queries waiting for admission" )
+            .register( meterRegistry );
+
+        Gauge.builder( RUNNING_COST, this, AnalyticsQueryAdmission::getRunningCost )
+            .description( "The total cost of running analytics queries" )
+            .register( meterRegistry );
+    }
+
+    /**
+     * Returns the cost of the given query groups. The cost of each query is
+     * the number of table partitions it reads, counting at least one, or the
+     * number of rows the query planner estimates it to read in units of
+     * {@link #ROWS_PER_COST_UNIT} rows, whichever is larger. The cost of the
+     * query groups is the sum of the cost of the queries.
+     * <p>
+     * Row estimates are only requested when admission control or the max
+     * query row estimate is enabled. Queries estimated to read more rows than
+     * the max query row estimate are rejected.
+     *
+     * @param queryGroups the {@link DataQueryGroups}.
+     * @param rowEstimator function returning the row estimate of a query.
+     * @return the cost of the query groups.
+     * @throws IllegalQueryException with {@link ErrorCode#E7134} if the row
+     *         estimate of a query is above the max query row estimate.
+     */
+    public long getCost( DataQueryGroups queryGroups, ToLongFunction<DataQueryParams> rowEstimator )
+    {
+        final int maxCost = getIntSetting( ANALYTICS_MAX_CONCURRENT_QUERY_COST );
+        final int maxRowEstimate = getIntSetting( ANALYTICS_MAX_QUERY_ROW_ESTIMATE );
+        final boolean estimateRows = maxCost > 0 || maxRowEstimate > 0;
+
+        long cost = 0;
+
+        for ( DataQueryParams query : queryGroups.getAllQueries() )
+        {
+            long partitionCost = query.hasPartitions() ? Math.max( 1, query.getPartitions().getPartitions().size() ) : 1;
+            long rowEstimate = estimateRows ? rowEstimator.applyAsLong( query ) : 0;
+
+            if ( maxRowEstimate > 0 && rowEstimate > maxRowEstimate )
+            {
+                throwIllegalQueryEx( ErrorCode.E7134, rowEstimate, maxRowEstimate );
+            }
+
+            long rowCost = ( rowEstimate + ROWS_PER_COST_UNIT - 1 ) / ROWS_PER_COST_UNIT;
+
+            cost += Math.max( partitionCost, rowCost );
+        }
+
+        return cost;
+    }
+
+    /**
+     * Returns the analytics query timeout in seconds, 0 if none.
+     */
+    public int getQueryTimeout()
+    {
+        return getIntSetting( ANALYTICS_QUERY_TIMEOUT );
+    }
+
+    /**
+     * Admits a query of the given user and cost, waiting for running queries
+     * to complete if necessary. The returned permit must be closed when the
+     * query completes.
+     *
+     * @param username the username of the user running the query.
+     * @param cost the cost of the query.
+     * @return a {@link Permit}.
+     * @throws QueryRuntimeException with {@link ErrorCode#E7132} if the query
+     *         is rejected, or {@link ErrorCode#E7133} if the thread is
+     *         interrupted while waiting.
+     */
+    public Permit acquire( String username, long cost )
+    {
+        final int maxCost = getIntSetting( ANALYTICS_MAX_CONCURRENT_QUERY_COST );
+
+        if ( maxCost <= 0 )
+        {
+            return new Permit( null, 0, false );
+        }
+
+        final int maxUserQueries = getIntSetting( ANALYTICS_MAX_CONCURRENT_USER_QUERIES );
+        final int queueSize = getIntSetting( ANALYTICS_QUERY_QUEUE_SIZE );
+        final int queryTimeout = getQueryTimeout();
+        final long maxWaitMillis = queryTimeout > 0 ? TimeUnit.SECONDS.toMillis( queryTimeout ) : DEFAULT_MAX_WAIT_MILLIS;
+
+        final Ticket ticket = new Ticket( username, Math.max( 1, cost ) );
+
+        synchronized ( this )
+        {
+            if ( queue.isEmpty() && canAdmit( ticket, maxCost, maxUserQueries ) )
+            {
+                return admit( ticket );
+            }
+
+            if ( queue.size() >= queueSize )
+            {
+                reject( REASON_QUEUE_FULL, ticket );
+            }
+
+            queue.add( ticket );
+
+            final long deadline = System.currentTimeMillis() + maxWaitMillis;
+
+            try
+            {
+                while ( true )
+                {
+                    if ( isNext( ticket, maxCost, maxUserQueries ) )
+                    {
+                        queue.remove( ticket );
+                        notifyAll();
+
+                        return admit( ticket );
+                    }
+
+                    long remaining = deadline - System.currentTimeMillis();
+
+                    if ( remaining <= 0 )
+                    {
+                        queue.remove( ticket );
+                        notifyAll();
+
+                        reject( REASON_TIMEOUT, ticket );
+                    }
+
+                    wait( remaining );
+                }
+            }
+            catch ( InterruptedException ex )
+            {
+                queue.remove( ticket );
+                notifyAll();
+
+                Thread.currentThread().interrupt();
+
+                throw new QueryRuntimeException( ErrorCode.E7133, ex );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queries waiting for admission.
+     */
+    public synchronized int getQueuedQueryCount()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Returns the total cost of running queries.
+     */
+    public synchronized long getRunningCost()
+    {
+        return runningCost;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the given ticket is the first ticket in the queue which
+     * is within the share of its user, and whether it fits within the max
+     * cost. Tickets behind a ticket which does not fit wait as well, so that
+     * costly queries are not starved by cheap ones.
+     */
+    private boolean isNext( Ticket ticket, int maxCost, int maxUserQueries )
+    {
+        Iterator<Ticket> iterator = queue.iterator();
+
+        while ( iterator.hasNext() )
+        {
+            Ticket next = iterator.next();
+
+            if ( !isWithinUserShare( next, maxUserQueries ) )
+            {
+                continue;
+            }
+
+            return next == ticket && isWithinCost( next, maxCost );
+        }
+
+        return false;
+    }
+
+    private boolean canAdmit( Ticket ticket, int maxCost, int maxUserQueries )
+    {
+        return isWithinUserShare( ticket, maxUserQueries ) && isWithinCost( ticket, maxCost );
+    }
+
+    private boolean isWithinUserShare( Ticket ticket, int maxUserQueries )
+    {
+        return maxUserQueries <= 0 || ticket.username == null ||
+            runningUserQueries.getOrDefault( ticket.username, 0 ) < maxUserQueries;
+    }
+
+    private boolean isWithinCost( Ticket ticket, int maxCost )
+    {
+        return runningQueries == 0 || runningCost + ticket.cost <= maxCost;
+    }
+
+    private Permit admit( Ticket ticket )
+    {
+        runningCost += ticket.cost;
+        runningQueries++;
+
+        if ( ticket.username != null )
+        {
+            runningUserQueries.merge( ticket.username, 1, Integer::sum );
+        }
+
+        return new Permit( ticket.username, ticket.cost, true );
+    }
+
+    private synchronized void release( Permit permit )
+    {
+        runningCost -= permit.cost;
+        runningQueries--;
+
+        if ( permit.username != null )
+        {
+            runningUserQueries.computeIfPresent( permit.username, ( user, count ) -> count > 1 ? count - 1 : null );
+        }
+
+        notifyAll();
+    }
+
+    private void reject( String reason, Ticket ticket )
+    {
+        log.warn( String.format( "Analytics query rejected, reason: '%s', user: '%s', cost: %d, running cost: %d, queued: %d",
+            reason, ticket.username, ticket.cost, runningCost, queue.size() ) );
+
+        if ( meterRegistry != null )
+        {
+            Counter.builder( REJECTED )
+                .description( "The number of rejected analytics queries by reason" )
+                .tag( TAG_REASON, reason )
+                .register( meterRegistry )
+                .increment();
+        }
+
+        throw new QueryRuntimeException( ErrorCode.E7132, null );
+    }
+
+    private int getIntSetting( SettingKey key )
+    {
+        Integer value = (Integer) systemSettingManager.getSystemSetting( key );
+
+        return value != null ? value : 0;
+    }
+
+    private static class Ticket
+    {
+        private final String username;
+
+        private final long cost;
+
+        Ticket( String username, long cost )
+        {
+            this.username = username;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Permit for an admitted query. The permit is held by the caller of
+     * {@link #acquire(String, long)} and by each task which retains it. The
+     * cost is released when the caller and all tasks which retained the
+     * permit have closed it. Closing a released permit has no effect.
+     */
+    public class Permit
+        implements AutoCloseable
+    {
+        private final String username;
+
+        private final long cost;
+
+        private final boolean admitted;
+
+        private int holders = 1;
+
+        private boolean released = false;
+
+        private Permit( String username, long cost, boolean admitted )
+        {
+            this.username = username;
+            this.cost = cost;
+            this.admitted = admitted;
+        }
+
+        /**
+         * Retains the permit for a task of the query. The task must close the
+         * permit when it ends.
+         *
+         * @return true if the permit was retained, false if the permit is
+         *         already released, in which case the task must not run.
+         */
+        public boolean retain()
+        {
+            synchronized ( AnalyticsQueryAdmission.this )
+            {
+                if ( released )
+                {
+                    return false;
+                }
+
+                holders++;
+                return true;
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            synchronized ( AnalyticsQueryAdmission.this )
+            {
+                if ( released || --holders > 0 )
+                {
+                    return;
+                }
+
+                released = true;
+
+                if ( admitted )
+                {
+                    release( this );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.external.conf.ConfigurationKey.CONNECTION_POOL_MAX_SIZE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hisp.dhis.datasource.DataSourceManager;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executor for analytics sub-queries with a dedicated, bounded thread pool.
+ * The number of threads is derived from the size of the connection pool of
+ * the read-only data source: all connections of the read replicas if any are
+ * configured, otherwise half of the connections of the main data source,
+ * which is shared with the rest of the system.
+ * <p>
+ * Tasks are submitted per request. The number of tasks of a request which
+ * run concurrently is bounded by the max fan-out, so that a single request
+ * cannot occupy the whole pool. Tasks run in one of two lanes. Interactive
+ * tasks are always taken before background tasks. Background requests, such
+ * as those of predictors, validation rule analysis and push analysis, are
+ * bounded by half of the max fan-out.
+ */
+@Slf4j
+@Component
+public class AnalyticsQueryExecutor
+{
+    private static final int DEFAULT_POOL_SIZE = 80;
+
+    private static final int MIN_PARALLELISM = 2;
+
+    private static final String QUEUE_TIME = "analytics.query.queue.time";
+
+    private static final String QUEUED = "analytics.query.queued";
+
+    private static final String ACTIVE = "analytics.query.active";
+
+    private static final String TAG_LANE = "lane";
+
+    /**
+     * The lane of an analytics task. Lanes are ordered by priority.
+     */
+    public enum Lane
+    {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private final int parallelism;
+
+    private final int maxFanOut;
+
+    private final int maxBackgroundFanOut;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    public AnalyticsQueryExecutor( DhisConfigurationProvider config, DataSourceManager dataSourceManager )
+    {
+        this( getParallelism( config, dataSourceManager ) );
+    }
+
+    /**
+     * @param parallelism the number of threads.
+     */
+    AnalyticsQueryExecutor( int parallelism )
+    {
+        this.parallelism = parallelism;
+        this.maxFanOut = Math.max( MIN_PARALLELISM, parallelism / 4 );
+        this.maxBackgroundFanOut = Math.max( 1, maxFanOut / 2 );
+        this.executor = new ThreadPoolExecutor( parallelism, parallelism, 60L, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat( "analytics-query-%d" ).setDaemon( true ).build() );
+        this.executor.allowCoreThreadTimeOut( true );
+
+        log.info( String.format( "Analytics query executor initialized, parallelism: %d, max fan-out: %d, max background fan-out: %d",
+            parallelism, maxFanOut, maxBackgroundFanOut ) );
+    }
+
+    @Autowired( required = false )
+    public void setMeterRegistry( final MeterRegistry meterRegistry )
+    {
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder( QUEUED, executor, e -> e.getQueue().size() )
+            .description( "The number of analytics query runners waiting for a thread" )
+            .register( meterRegistry );
+
+        Gauge.builder( ACTIVE, executor, ThreadPoolExecutor::getActiveCount )
+            .description( "The number of threads running analytics queries" )
+            .register( meterRegistry );
+    }
+
+    /**
+     * Submits the given tasks of a single request for execution. At most the
+     * max fan-out number of tasks run concurrently for interactive requests,
+     * and the max background fan-out number of tasks for background requests.
+     * Cancelling a returned future before its task has started prevents the
+     * task from running.
+     *
+     * @param tasks the tasks.
+     * @param lane the {@link Lane}.
+     * @return futures for the results of the tasks, in the order of the tasks.
+     */
+    public <T> List<Future<T>> submit( List<Callable<T>> tasks, Lane lane )
+    {
+        final long submitted = System.nanoTime();
+        final long order = sequence.getAndIncrement();
+
+        final Queue<Task<T>> pending = new ConcurrentLinkedQueue<>();
+        final List<Future<T>> futures = new ArrayList<>( tasks.size() );
+
+        for ( Callable<T> callable : tasks )
+        {
+            Task<T> task = new Task<>( callable );
+            pending.add( task );
+            futures.add( task.future );
+        }
+
+        final int fanOut = Math.min( lane == Lane.INTERACTIVE ? maxFanOut : maxBackgroundFanOut, tasks.size() );
+
+        for ( int i = 0; i < fanOut; i++ )
+        {
+            try
+            {
+                executor.execute( new Runner<>( pending, lane, order, submitted ) );
+            }
+            catch ( RejectedExecutionException ex )
+            {
+                pending.forEach( task -> task.future.completeExceptionally( ex ) );
+                break;
+            }
+        }
+
+        return futures;
+    }
+
+    /**
+     * Returns the number of threads.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Returns the max number of concurrently running tasks per interactive
+     * request.
+     */
+    public int getMaxFanOut()
+    {
+        return maxFanOut;
+    }
+
+    /**
+     * Returns the max number of concurrently running tasks per background
+     * request.
+     */
+    public int getMaxBackgroundFanOut()
+    {
+        return maxBackgroundFanOut;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private static int getParallelism( DhisConfigurationProvider config, DataSourceManager dataSourceManager )
+    {
+        int poolSize = NumberUtils.toInt( config.getProperty( CONNECTION_POOL_MAX_SIZE ), DEFAULT_POOL_SIZE );
+        int replicas = dataSourceManager.getReadReplicaCount();
+
+        return Math.max( MIN_PARALLELISM, replicas > 0 ? poolSize * replicas : poolSize / 2 );
+    }
+
+    private void recordQueueTime( Lane lane, long eligible )
+    {
+        if ( meterRegistry != null )
+        {
+            Timer.builder( QUEUE_TIME )
+                .description( "The time analytics queries wait before they start" )
+                .tag( TAG_LANE, lane.name().toLowerCase() )
+                .register( meterRegistry )
+                .record( System.nanoTime() - eligible, TimeUnit.NANOSECONDS );
+        }
+    }
+
+    private static class Task<T>
+    {
+        private final Callable<T> callable;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task( Callable<T> callable )
+        {
+            this.callable = callable;
+        }
+    }
+
+    /**
+     * Runs the pending tasks of a request one after the other. Runners are
+     * ordered by lane first and submission order second. The queue time of a
+     * task is measured from when it became eligible to run, which is the
+     * submission of the request for the first task of a runner and the end
+     * of the previous task of the runner for the following tasks, so that
+     * time spent waiting for the other tasks of the same request within the
+     * fan-out is not counted.
+     */
+    private class Runner<T>
+        implements Runnable, Comparable<Runner<?>>
+    {
+        private final Queue<Task<T>> pending;
+
+        private final Lane lane;
+
+        private final long order;
+
+        private final long submitted;
+
+        Runner( Queue<Task<T>> pending, Lane lane, long order, long submitted )
+        {
+            this.pending = pending;
+            this.lane = lane;
+            this.order = order;
+            this.submitted = submitted;
+        }
+
+        @Override
+        public void run()
+        {
+            Task<T> task;
+
+            long eligible = submitted;
+
+            while ( ( task = pending.poll() ) != null )
+            {
+                if ( task.future.isDone() )
+                {
+                    continue; // Cancelled
+                }
+
+                recordQueueTime( lane, eligible );
+
+                try
+                {
+                    task.future.complete( task.callable.call() );
+                }
+                catch ( Throwable ex )
+                {
+                    task.future.completeExceptionally( ex );
+                }
+
+                eligible = System.nanoTime();
+            }
+        }
+
+        @Override
+        public int compareTo( Runner<?> other )
+        {
+            int result = lane.compareTo( other.lane );
+
+            return result != 0 ? result : Long.compare( order, other.order );
+        }
+    }
+}
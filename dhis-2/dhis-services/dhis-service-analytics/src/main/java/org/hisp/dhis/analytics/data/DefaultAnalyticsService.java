@@ -77,7 +77,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -99,6 +104,7 @@ import org.hisp.dhis.analytics.QueryValidator;
 import org.hisp.dhis.analytics.RawAnalyticsManager;
 import org.hisp.dhis.analytics.SortOrder;
 import org.hisp.dhis.analytics.cache.AnalyticsCache;
+import org.hisp.dhis.analytics.cache.AnalyticsQueryFrequencyTracker;
 import org.hisp.dhis.analytics.event.EventAnalyticsService;
 import org.hisp.dhis.analytics.event.EventQueryParams;
 import org.hisp.dhis.analytics.resolver.ExpressionResolver;
@@ -115,7 +121,9 @@ import org.hisp.dhis.common.DimensionalObjectUtils;
 import org.hisp.dhis.common.Grid;
 import org.hisp.dhis.common.GridHeader;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
+import org.hisp.dhis.common.QueryRuntimeException;
 import org.hisp.dhis.common.ReportingRateMetric;
+import org.hisp.dhis.common.UserContext;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.common.event.ApplicationCacheClearedEvent;
 import org.hisp.dhis.commons.collection.ListUtils;
@@ -126,6 +134,7 @@ import org.hisp.dhis.constant.ConstantService;
 import org.hisp.dhis.dataelement.DataElementOperand;
 import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
 import org.hisp.dhis.expression.ExpressionService;
+import org.hisp.dhis.feedback.ErrorCode;
 import org.hisp.dhis.indicator.Indicator;
 import org.hisp.dhis.indicator.IndicatorValue;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
@@ -136,7 +145,7 @@ import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
-import org.hisp.dhis.system.grid.ListGrid;
+import org.hisp.dhis.system.grid.ColumnarGrid;
 import org.hisp.dhis.system.util.MathUtils;
 import org.hisp.dhis.util.ObjectUtils;
 import org.hisp.dhis.util.Timer;
@@ -190,6 +199,12 @@ public class DefaultAnalyticsService
 
     private final AnalyticsCache analyticsCache;
 
+    private final AnalyticsQueryFrequencyTracker queryFrequencyTracker;
+
+    private final AnalyticsQueryAdmission queryAdmission;
+
+    private final AnalyticsQueryExecutor queryExecutor;
+
     // -------------------------------------------------------------------------
     // AnalyticsService implementation
     // -------------------------------------------------------------------------
@@ -200,7 +215,8 @@ public class DefaultAnalyticsService
         ConstantService constantService, ExpressionService expressionService,
         OrganisationUnitService organisationUnitService, SystemSettingManager systemSettingManager,
         EventAnalyticsService eventAnalyticsService, DataQueryService dataQueryService, ExpressionResolver resolver,
-        AnalyticsCache analyticsCache )
+        AnalyticsCache analyticsCache, AnalyticsQueryFrequencyTracker queryFrequencyTracker,
+        AnalyticsQueryAdmission queryAdmission, AnalyticsQueryExecutor queryExecutor )
     {
         checkNotNull( analyticsManager );
         checkNotNull( rawAnalyticsManager );
@@ -215,6 +231,9 @@ public class DefaultAnalyticsService
         checkNotNull( dataQueryService );
         checkNotNull( resolver );
         checkNotNull(analyticsCache);
+        checkNotNull( queryFrequencyTracker );
+        checkNotNull( queryAdmission );
+        checkNotNull( queryExecutor );
 
         this.analyticsManager = analyticsManager;
         this.rawAnalyticsManager = rawAnalyticsManager;
@@ -229,6 +248,9 @@ public class DefaultAnalyticsService
         this.dataQueryService = dataQueryService;
         this.resolver = resolver;
         this.analyticsCache = analyticsCache;
+        this.queryFrequencyTracker = queryFrequencyTracker;
+        this.queryAdmission = queryAdmission;
+        this.queryExecutor = queryExecutor;
     }
 
     @Override
@@ -240,20 +262,52 @@ public class DefaultAnalyticsService
 
         securityManager.decideAccess( params );
 
+        final String requestKey = params.getKey();
+
         params = securityManager.withDataApprovalConstraints( params );
         params = securityManager.withUserConstraints( params );
 
         queryValidator.validate( params );
 
+        final DataQueryParams immutableParams = DataQueryParams.newBuilder( params ).build();
+
+        // ---------------------------------------------------------------------
+        // Only track queries which are not constrained by the current user, as
+        // tracked queries are refreshed without a user by the cache warm-up
+        // ---------------------------------------------------------------------
+
+        if ( requestKey.equals( immutableParams.getKey() ) )
+        {
+            queryFrequencyTracker.record( immutableParams );
+        }
+
         if ( analyticsCache.isEnabled() )
         {
-            final DataQueryParams immutableParams = DataQueryParams.newBuilder( params ).build();
             return analyticsCache.getOrFetch( params, p -> getAggregatedDataValueGridInternal( immutableParams ) );
         }
 
         return getAggregatedDataValueGridInternal( params );
     }
 
+    @Override
+    public void refreshAggregatedDataValues( DataQueryParams params )
+    {
+        if ( !analyticsCache.isEnabled() )
+        {
+            return;
+        }
+
+        securityManager.decideAccess( params );
+
+        params = securityManager.withDataApprovalConstraints( params );
+        params = securityManager.withUserConstraints( params );
+
+        queryValidator.validate( params );
+
+        final DataQueryParams immutableParams = DataQueryParams.newBuilder( params ).build();
+        analyticsCache.refresh( params, p -> getAggregatedDataValueGridInternal( immutableParams ) );
+    }
+
     @Override
     public Grid getAggregatedDataValues( DataQueryParams params, List<String> columns, List<String> rows )
     {
@@ -340,7 +394,7 @@ public class DefaultAnalyticsService
         // Headers
         // ---------------------------------------------------------------------
 
-        Grid grid = new ListGrid();
+        Grid grid = new ColumnarGrid();
 
         addHeaders( params, grid );
 
@@ -1032,7 +1086,7 @@ public class DefaultAnalyticsService
 
         Map<String, Object> valueMap = AnalyticsUtils.getAggregatedDataValueMapping( grid );
 
-        return visualization.getGrid( new ListGrid( grid.getMetaData(), grid.getInternalMetaData() ), valueMap, params.getDisplayProperty(), false );
+        return visualization.getGrid( new ColumnarGrid( grid.getMetaData(), grid.getInternalMetaData() ), valueMap, params.getDisplayProperty(), false );
     }
 
     // -------------------------------------------------------------------------
@@ -1207,38 +1261,82 @@ public class DefaultAnalyticsService
 
         Map<String, Object> map = new HashMap<>();
 
-        for ( List<DataQueryParams> queries : queryGroups.getSequentialQueries() )
+        int queryTimeout = queryAdmission.getQueryTimeout();
+
+        long deadline = queryTimeout > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( queryTimeout ) : 0;
+
+        AnalyticsQueryExecutor.Lane lane = UserContext.haveUser() ? AnalyticsQueryExecutor.Lane.INTERACTIVE : AnalyticsQueryExecutor.Lane.BACKGROUND;
+
+        long cost = queryAdmission.getCost( queryGroups, query -> analyticsManager.getRowEstimate( query, tableType ) );
+
+        timer.getSplitTime( "Estimated analytics query cost: " + cost );
+
+        try ( AnalyticsQueryAdmission.Permit permit = queryAdmission.acquire( UserContext.getUsername(), cost ) )
         {
-            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            timer.getSplitTime( "Admitted analytics query" );
 
-            for ( DataQueryParams query : queries )
+            for ( List<DataQueryParams> queries : queryGroups.getSequentialQueries() )
             {
-                futures.add( analyticsManager.getAggregatedDataValues( query, tableType, maxLimit ) );
-            }
+                List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
 
-            for ( Future<Map<String, Object>> future : futures )
-            {
-                try
+                for ( DataQueryParams query : queries )
                 {
-                    Map<String, Object> taskValues = future.get();
+                    tasks.add( () -> {
+                        if ( !permit.retain() )
+                        {
+                            throw new CancellationException( "Analytics query permit was released" );
+                        }
 
-                    if ( taskValues != null )
-                    {
-                        map.putAll( taskValues );
-                    }
+                        try
+                        {
+                            return analyticsManager.getAggregatedDataValues( query, tableType, maxLimit ).get();
+                        }
+                        finally
+                        {
+                            permit.close();
+                        }
+                    } );
                 }
-                catch ( Exception ex )
+
+                List<Future<Map<String, Object>>> futures = queryExecutor.submit( tasks, lane );
+
+                for ( Future<Map<String, Object>> future : futures )
                 {
-                    log.error( DebugUtils.getStackTrace( ex ) );
-                    log.error( DebugUtils.getStackTrace( ex.getCause() ) );
+                    try
+                    {
+                        Map<String, Object> taskValues = getTaskValues( future, deadline );
 
-                    if ( ex.getCause() != null && ex.getCause() instanceof RuntimeException )
+                        if ( taskValues != null )
+                        {
+                            map.putAll( taskValues );
+                        }
+                    }
+                    catch ( TimeoutException ex )
                     {
-                        throw (RuntimeException) ex.getCause(); // Throw the real exception instead of execution exception
+                        cancel( futures );
+                        log.warn( ErrorCode.E7131.getMessage(), ex );
+                        throw new QueryRuntimeException( ErrorCode.E7131, ex );
                     }
-                    else
+                    catch ( InterruptedException ex )
                     {
-                        throw new RuntimeException( "Error during execution of aggregation query task", ex );
+                        cancel( futures );
+                        Thread.currentThread().interrupt();
+                        throw new QueryRuntimeException( ErrorCode.E7133, ex );
+                    }
+                    catch ( Exception ex )
+                    {
+                        cancel( futures );
+                        log.error( DebugUtils.getStackTrace( ex ) );
+                        log.error( DebugUtils.getStackTrace( ex.getCause() ) );
+
+                        if ( ex.getCause() != null && ex.getCause() instanceof RuntimeException )
+                        {
+                            throw (RuntimeException) ex.getCause(); // Throw the real exception instead of execution exception
+                        }
+                        else
+                        {
+                            throw new RuntimeException( "Error during execution of aggregation query task", ex );
+                        }
                     }
                 }
             }
@@ -1249,6 +1347,37 @@ public class DefaultAnalyticsService
         return map;
     }
 
+    /**
+     * Waits for the given query task to complete, until the given deadline.
+     *
+     * @param future the query task.
+     * @param deadline the deadline in milliseconds, 0 if none.
+     * @return the result of the query task.
+     */
+    private Map<String, Object> getTaskValues( Future<Map<String, Object>> future, long deadline )
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if ( deadline == 0 )
+        {
+            return future.get();
+        }
+
+        return future.get( Math.max( 0, deadline - System.currentTimeMillis() ), TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Cancels the given query tasks. Tasks which have not started yet will not
+     * run. Running statements are bounded by the query timeout, and hold the
+     * query permit until they end, so that their cost is not released while
+     * they still run in the database.
+     *
+     * @param futures the query tasks.
+     */
+    private void cancel( List<Future<Map<String, Object>>> futures )
+    {
+        futures.forEach( future -> future.cancel( true ) );
+    }
+
     /**
      * Returns headers, raw data and meta data as a grid.
      *
@@ -1257,7 +1386,7 @@ public class DefaultAnalyticsService
      */
     private Grid getRawDataGrid( DataQueryParams params )
     {
-        Grid grid = new ListGrid();
+        Grid grid = new ColumnarGrid();
 
         params = preHandleRawDataQuery( params );
 
@@ -37,10 +37,12 @@ import static org.hisp.dhis.analytics.util.AnalyticsUtils.throwIllegalQueryEx;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
 
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.AnalyticsTablePartition;
 import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.DataQueryGroups;
 import org.hisp.dhis.analytics.DataQueryParams;
@@ -57,17 +59,24 @@ import org.hisp.dhis.common.DimensionType;
 import org.hisp.dhis.common.DimensionalItemObject;
 import org.hisp.dhis.common.DimensionalObject;
 import org.hisp.dhis.common.ListMap;
+import org.hisp.dhis.commons.collection.ListUtils;
 import org.hisp.dhis.commons.collection.PaginatedList;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementGroup;
 import org.hisp.dhis.feedback.ErrorCode;
+import org.hisp.dhis.period.MonthlyPeriodType;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.period.QuarterlyPeriodType;
+import org.hisp.dhis.period.YearlyPeriodType;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.system.util.MathUtils;
 import org.hisp.dhis.util.ObjectUtils;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 import lombok.extern.slf4j.Slf4j;
@@ -80,17 +89,25 @@ import lombok.extern.slf4j.Slf4j;
 public class DefaultQueryPlanner
     implements QueryPlanner
 {
+    private static final Set<String> ROLLUP_PERIOD_TYPES = ImmutableSet.of(
+        YearlyPeriodType.NAME.toLowerCase(), QuarterlyPeriodType.NAME.toLowerCase(), MonthlyPeriodType.NAME.toLowerCase() );
+
     private final QueryValidator queryValidator;
 
     private final PartitionManager partitionManager;
 
-    public DefaultQueryPlanner( QueryValidator queryValidator, PartitionManager partitionManager )
+    private final SystemSettingManager systemSettingManager;
+
+    public DefaultQueryPlanner( QueryValidator queryValidator, PartitionManager partitionManager,
+        SystemSettingManager systemSettingManager )
     {
         checkNotNull( queryValidator );
         checkNotNull( partitionManager );
+        checkNotNull( systemSettingManager );
 
         this.queryValidator = queryValidator;
         this.partitionManager = partitionManager;
+        this.systemSettingManager = systemSettingManager;
     }
 
     // -------------------------------------------------------------------------
@@ -131,6 +148,15 @@ public class DefaultQueryPlanner
             currentQueries.forEach( query -> queries.addAll( grouper.apply( query ) ) );
         }
 
+        // ---------------------------------------------------------------------
+        // Route queries to pre-aggregated rollup tables where possible
+        // ---------------------------------------------------------------------
+
+        if ( AnalyticsTableType.DATA_VALUE == plannerParams.getTableType() )
+        {
+            queries.replaceAll( query -> withRollupTable( query ) );
+        }
+
         // ---------------------------------------------------------------------
         // Split queries until optimal number
         // ---------------------------------------------------------------------
@@ -674,6 +700,114 @@ public class DefaultQueryPlanner
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Returns a copy of the given query which reads from the rollup table, if
+     * rollup tables are enabled, the query can be answered from the rollup
+     * table and the rollup table exists for all partitions of the query.
+     * Otherwise the given query is returned. The existence of rollup tables
+     * is looked up in the cached analytics partitions.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @return a {@link DataQueryParams}.
+     */
+    private DataQueryParams withRollupTable( DataQueryParams params )
+    {
+        Integer rollupLevel = (Integer) systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL );
+
+        if ( rollupLevel == null || rollupLevel <= 0 || !isRollupEligible( params, rollupLevel ) )
+        {
+            return params;
+        }
+
+        String rollupTableName = PartitionUtils.getRollupTableName( rollupLevel );
+
+        boolean rollupExists = params.getPartitions().getPartitions().stream()
+            .allMatch( partition -> partitionManager.analyticsTableExists( AnalyticsTableType.DATA_VALUE,
+                PartitionUtils.getPartitionName( rollupTableName, partition ) ) );
+
+        if ( !rollupExists )
+        {
+            return params;
+        }
+
+        log.debug( String.format( "Using rollup table: '%s'", rollupTableName ) );
+
+        return DataQueryParams.newBuilder( params )
+            .withTableName( rollupTableName )
+            .build();
+    }
+
+    /**
+     * Indicates whether the given query can be answered from a rollup table
+     * with the given organisation unit level. This is the case for sum queries
+     * of numeric data elements by data, yearly, quarterly or monthly periods
+     * and organisation units up to the rollup level only. Queries which depend
+     * on the "latest" partition, data approval, period start and end dates,
+     * timeliness or measure criteria, including pre-aggregate measure criteria
+     * which apply to the non-aggregated values, cannot be answered from a
+     * rollup table.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @param rollupLevel the organisation unit level of the rollup table.
+     */
+    private boolean isRollupEligible( DataQueryParams params, int rollupLevel )
+    {
+        AnalyticsAggregationType aggregationType = params.getAggregationType();
+
+        if ( aggregationType == null || !aggregationType.isAggregationType( AggregationType.SUM ) ||
+            !aggregationType.isPeriodAggregationType( AggregationType.SUM ) || aggregationType.isDisaggregation() ||
+            !params.isDataType( DataType.NUMERIC ) )
+        {
+            return false;
+        }
+
+        if ( params.isSkipPartitioning() || !params.hasPartitions() ||
+            params.getPartitions().getPartitions().contains( AnalyticsTablePartition.LATEST_PARTITION ) )
+        {
+            return false;
+        }
+
+        if ( params.isDataApproval() || params.hasStartEndDate() || params.isTimely() ||
+            params.hasMeasureCriteria() || params.hasPreAggregateMeasureCriteria() ||
+            params.isRestrictByOrgUnitOpeningClosedDate() ||
+            params.isRestrictByCategoryOptionStartEndDate() )
+        {
+            return false;
+        }
+
+        return ListUtils.union( params.getDimensions(), params.getFilters() ).stream()
+            .allMatch( dimension -> isRollupDimension( dimension, rollupLevel ) );
+    }
+
+    /**
+     * Indicates whether the given dimension is present in a rollup table with
+     * the given organisation unit level.
+     *
+     * @param dimension the {@link DimensionalObject}.
+     * @param rollupLevel the organisation unit level of the rollup table.
+     */
+    private boolean isRollupDimension( DimensionalObject dimension, int rollupLevel )
+    {
+        if ( DimensionType.DATA_X == dimension.getDimensionType() )
+        {
+            return dimension.getItems().stream().allMatch( item -> item instanceof DataElement );
+        }
+        else if ( DimensionType.PERIOD == dimension.getDimensionType() )
+        {
+            return ROLLUP_PERIOD_TYPES.contains( dimension.getDimensionName() );
+        }
+        else if ( DimensionType.ORGANISATION_UNIT == dimension.getDimensionType() )
+        {
+            String name = dimension.getDimensionName();
+
+            return name != null && name.startsWith( LEVEL_PREFIX ) &&
+                MathUtils.isInteger( name.substring( LEVEL_PREFIX.length() ) ) &&
+                Integer.parseInt( name.substring( LEVEL_PREFIX.length() ) ) <= rollupLevel;
+        }
+
+        return false;
+    }
+
     /**
      * Log query split operation.
      *
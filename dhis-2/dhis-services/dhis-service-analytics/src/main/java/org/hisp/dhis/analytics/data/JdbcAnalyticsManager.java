@@ -39,12 +39,10 @@ import static org.hisp.dhis.analytics.AggregationType.STDDEV;
 import static org.hisp.dhis.analytics.AggregationType.SUM;
 import static org.hisp.dhis.analytics.AggregationType.VARIANCE;
 import static org.hisp.dhis.analytics.DataQueryParams.LEVEL_PREFIX;
-import static org.hisp.dhis.analytics.DataQueryParams.VALUE_ID;
 import static org.hisp.dhis.analytics.DataType.TEXT;
 import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.ANALYTICS_TBL_ALIAS;
 import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.quote;
 import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.quoteAlias;
-import static org.hisp.dhis.analytics.util.AnalyticsUtils.throwIllegalQueryEx;
 import static org.hisp.dhis.common.DimensionalObject.DIMENSION_SEP;
 import static org.hisp.dhis.common.IdentifiableObjectUtils.getUids;
 import static org.hisp.dhis.commons.util.TextUtils.getQuotedCommaDelimitedString;
@@ -53,12 +51,13 @@ import static org.hisp.dhis.util.DateUtils.getMediumDateString;
 
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.hisp.dhis.analytics.AggregationType;
@@ -87,10 +86,9 @@ import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodType;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -114,6 +112,7 @@ public class JdbcAnalyticsManager
 {
     private static final String COL_APPROVALLEVEL = "approvallevel";
     private static final int LAST_VALUE_YEARS_OFFSET = -10;
+    private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile( "\"Plan Rows\":\\s*(\\d+)" );
 
     private static final Map<MeasureFilter, String> OPERATOR_SQL_MAP = ImmutableMap.<MeasureFilter, String>builder()
         .put( MeasureFilter.EQ, "=" )
@@ -127,7 +126,7 @@ public class JdbcAnalyticsManager
 
     private final JdbcTemplate jdbcTemplate;
 
-    public JdbcAnalyticsManager( QueryPlanner queryPlanner, @Qualifier( "readOnlyJdbcTemplate" ) JdbcTemplate jdbcTemplate )
+    public JdbcAnalyticsManager( QueryPlanner queryPlanner, @Qualifier( "analyticsJdbcTemplate" ) JdbcTemplate jdbcTemplate )
     {
         checkNotNull( queryPlanner );
         checkNotNull( jdbcTemplate );
@@ -141,7 +140,6 @@ public class JdbcAnalyticsManager
     // -------------------------------------------------------------------------
 
     @Override
-    @Async
     public Future<Map<String, Object>> getAggregatedDataValues( DataQueryParams params, AnalyticsTableType tableType, int maxLimit )
     {
         assertQuery( params );
@@ -151,27 +149,9 @@ public class JdbcAnalyticsManager
             ListMap<DimensionalItemObject, DimensionalItemObject> dataPeriodAggregationPeriodMap =
                 params.getDataPeriodAggregationPeriodMap();
 
-            if ( params.isDisaggregation() && params.hasDataPeriodType() )
-            {
-                params = DataQueryParams.newBuilder( params )
-                    .withDataPeriodsForAggregationPeriods( dataPeriodAggregationPeriodMap )
-                    .build();
-
-                params = queryPlanner.assignPartitionsFromQueryPeriods( params, tableType );
-            }
-
-            String sql = getSelectClause( params );
+            params = getQueryParams( params, tableType );
 
-            sql += getFromClause( params );
-
-            sql += getWhereClause( params, tableType );
-
-            sql += getGroupByClause( params );
-
-            if ( params.hasMeasureCriteria() && params.isDataType( DataType.NUMERIC ) )
-            {
-                sql += getMeasureCriteriaSql( params );
-            }
+            String sql = getAggregatedValueSql( params, tableType );
 
             log.debug( sql );
 
@@ -191,7 +171,7 @@ public class JdbcAnalyticsManager
 
             return new AsyncResult<>( map );
         }
-        catch ( DataAccessResourceFailureException ex )
+        catch ( DataAccessResourceFailureException | QueryTimeoutException ex )
         {
             log.warn( ErrorCode.E7131.getMessage(), ex );
             throw new QueryRuntimeException( ErrorCode.E7131, ex );
@@ -203,6 +183,41 @@ public class JdbcAnalyticsManager
         }
     }
 
+    @Override
+    public long getRowEstimate( DataQueryParams params, AnalyticsTableType tableType )
+    {
+        assertQuery( params );
+
+        try
+        {
+            params = getQueryParams( params, tableType );
+
+            String plan = jdbcTemplate.queryForObject( "explain (format json) " +
+                getAggregatedValueSql( params, tableType ), String.class );
+
+            long rowEstimate = 0;
+
+            Matcher matcher = PLAN_ROWS_PATTERN.matcher( plan );
+
+            while ( matcher.find() )
+            {
+                rowEstimate = Math.max( rowEstimate, Long.parseLong( matcher.group( 1 ) ) );
+            }
+
+            return rowEstimate;
+        }
+        catch ( BadSqlGrammarException ex )
+        {
+            log.info( AnalyticsUtils.ERR_MSG_TABLE_NOT_EXISTING, ex );
+            return 0;
+        }
+        catch ( DataAccessResourceFailureException | QueryTimeoutException ex )
+        {
+            log.warn( ErrorCode.E7131.getMessage(), ex );
+            throw new QueryRuntimeException( ErrorCode.E7131, ex );
+        }
+    }
+
     @Override
     public void replaceDataPeriodsWithAggregationPeriods( Map<String, Object> dataValueMap,
         DataQueryParams params, ListMap<DimensionalItemObject, DimensionalItemObject> dataPeriodAggregationPeriodMap )
@@ -650,54 +665,59 @@ public class JdbcAnalyticsManager
     }
 
     /**
-     * Retrieves data from the database based on the given query and SQL and puts
-     * into a value key and value mapping.
+     * Returns the query to run for the given query. For disaggregation queries
+     * with a data period type, the aggregation periods are replaced with the
+     * data periods and the partitions are assigned from the data periods.
      */
-    private Map<String, Object> getKeyValueMap( DataQueryParams params, String sql, int maxLimit )
+    private DataQueryParams getQueryParams( DataQueryParams params, AnalyticsTableType tableType )
     {
-        Map<String, Object> map = new HashMap<>();
-
-        log.debug( String.format( "Analytics SQL: %s", sql ) );
+        if ( params.isDisaggregation() && params.hasDataPeriodType() )
+        {
+            params = DataQueryParams.newBuilder( params )
+                .withDataPeriodsForAggregationPeriods( params.getDataPeriodAggregationPeriodMap() )
+                .build();
 
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+            params = queryPlanner.assignPartitionsFromQueryPeriods( params, tableType );
+        }
 
-        int counter = 0;
+        return params;
+    }
 
-        while ( rowSet.next() )
-        {
-            boolean exceedsMaxLimit = maxLimit > 0 && ++counter > maxLimit;
+    /**
+     * Generates the SQL for retrieving aggregated data values for the given
+     * query.
+     */
+    private String getAggregatedValueSql( DataQueryParams params, AnalyticsTableType tableType )
+    {
+        String sql = getSelectClause( params );
 
-            if ( exceedsMaxLimit )
-            {
-                throwIllegalQueryEx( ErrorCode.E7128, maxLimit );
-            }
+        sql += getFromClause( params );
 
-            StringBuilder key = new StringBuilder();
+        sql += getWhereClause( params, tableType );
 
-            for ( DimensionalObject dim : params.getDimensions() )
-            {
-                String value = dim.isFixed() ? dim.getDimensionName() : rowSet.getString( dim.getDimensionName() );
+        sql += getGroupByClause( params );
 
-                key.append( value ).append( DIMENSION_SEP );
-            }
+        if ( params.hasMeasureCriteria() && params.isDataType( DataType.NUMERIC ) )
+        {
+            sql += getMeasureCriteriaSql( params );
+        }
 
-            key.deleteCharAt( key.length() - 1 );
+        return sql;
+    }
 
-            if ( params.isDataType( TEXT ) )
-            {
-                String value = rowSet.getString( VALUE_ID );
+    /**
+     * Retrieves data from the database based on the given query and SQL and puts
+     * into a value key and value mapping.
+     */
+    private Map<String, Object> getKeyValueMap( DataQueryParams params, String sql, int maxLimit )
+    {
+        log.debug( String.format( "Analytics SQL: %s", sql ) );
 
-                map.put( key.toString(), value );
-            }
-            else // NUMERIC
-            {
-                Double value = rowSet.getDouble( VALUE_ID );
+        KeyValueRowCallbackHandler handler = new KeyValueRowCallbackHandler( params, maxLimit );
 
-                map.put( key.toString(), value );
-            }
-        }
+        jdbcTemplate.query( sql, handler );
 
-        return map;
+        return handler.getKeyValueMap();
     }
 
     /**
@@ -72,7 +72,7 @@ public class JdbcRawAnalyticsManager
 
     private final JdbcTemplate jdbcTemplate;
 
-    public JdbcRawAnalyticsManager( @Qualifier( "readOnlyJdbcTemplate" ) JdbcTemplate jdbcTemplate )
+    public JdbcRawAnalyticsManager( @Qualifier( "analyticsJdbcTemplate" ) JdbcTemplate jdbcTemplate )
     {
         checkNotNull( jdbcTemplate );
         this.jdbcTemplate = jdbcTemplate;
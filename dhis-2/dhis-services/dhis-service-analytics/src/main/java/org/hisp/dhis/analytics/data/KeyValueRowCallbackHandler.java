@@ -0,0 +1,168 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.analytics.DataQueryParams.VALUE_ID;
+import static org.hisp.dhis.analytics.DataType.TEXT;
+import static org.hisp.dhis.analytics.util.AnalyticsUtils.throwIllegalQueryEx;
+import static org.hisp.dhis.common.DimensionalObject.DIMENSION_SEP;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.common.DimensionalObject;
+import org.hisp.dhis.feedback.ErrorCode;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * Collects the rows of an aggregated analytics query into a key-value map,
+ * where the key is the dimension item identifiers of the row joined with
+ * {@link DimensionalObject#DIMENSION_SEP} and the value is the aggregated
+ * value.
+ * <p>
+ * Rows are put into the map one by one as they are read from the JDBC result
+ * set, so that neither a copy of the result set, as held by a
+ * {@code SqlRowSet}, nor any other intermediate copy of the rows is held next
+ * to the map. Note that this does not stream the result from the database, as
+ * the PostgreSQL driver reads the complete result into memory unless a fetch
+ * size is set and auto-commit is off, which is not the case for analytics
+ * queries.
+ * <p>
+ * Not thread-safe, use one instance per query.
+ */
+class KeyValueRowCallbackHandler
+    implements RowCallbackHandler
+{
+    private final int maxLimit;
+
+    private final boolean text;
+
+    /**
+     * Column names of the dimensions, null for fixed dimensions.
+     */
+    private final String[] columns;
+
+    /**
+     * Dimension names of fixed dimensions, which are used as key component,
+     * null for other dimensions.
+     */
+    private final String[] fixedItems;
+
+    private final Map<String, Object> map = new HashMap<>();
+
+    private final StringBuilder key = new StringBuilder();
+
+    private int rows = 0;
+
+    /**
+     * @param params the {@link DataQueryParams} of the query.
+     * @param maxLimit the max number of rows, 0 for no limit.
+     */
+    KeyValueRowCallbackHandler( DataQueryParams params, int maxLimit )
+    {
+        List<DimensionalObject> dimensions = params.getDimensions();
+
+        this.maxLimit = maxLimit;
+        this.text = params.isDataType( TEXT );
+        this.columns = new String[dimensions.size()];
+        this.fixedItems = new String[dimensions.size()];
+
+        for ( int i = 0; i < dimensions.size(); i++ )
+        {
+            DimensionalObject dimension = dimensions.get( i );
+
+            if ( dimension.isFixed() )
+            {
+                fixedItems[i] = dimension.getDimensionName();
+            }
+            else
+            {
+                columns[i] = dimension.getDimensionName();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // RowCallbackHandler implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void processRow( ResultSet rs )
+        throws SQLException
+    {
+        if ( maxLimit > 0 && rows >= maxLimit )
+        {
+            throwIllegalQueryEx( ErrorCode.E7128, maxLimit );
+        }
+
+        key.setLength( 0 );
+
+        for ( int i = 0; i < columns.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                key.append( DIMENSION_SEP );
+            }
+
+            key.append( columns[i] != null ? rs.getString( columns[i] ) : fixedItems[i] );
+        }
+
+        map.put( key.toString(), text ? rs.getString( VALUE_ID ) : (Object) rs.getDouble( VALUE_ID ) );
+
+        rows++;
+    }
+
+    // -------------------------------------------------------------------------
+    // Get methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the number of processed rows.
+     */
+    int getRowCount()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the key-value map of the processed rows. Values are strings for
+     * text queries and doubles otherwise. If several rows have the same key,
+     * the value of the last row wins.
+     *
+     * @return a key-value map.
+     */
+    Map<String, Object> getKeyValueMap()
+    {
+        return map;
+    }
+}
@@ -28,7 +28,11 @@ package org.hisp.dhis.analytics.event;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.GridHeader;
 
 import org.hisp.dhis.analytics.Rectangle;
 
@@ -41,6 +45,8 @@ public interface EventAnalyticsManager
 
     Grid getEvents( EventQueryParams params, Grid grid, int maxLimit );
 
+    void streamEvents( EventQueryParams params, List<GridHeader> headers, EventPageToken pageToken, Consumer<List<Object>> rowConsumer );
+
     Grid getEventClusters( EventQueryParams params, Grid grid, int maxLimit );
 
     long getEventCount( EventQueryParams params );
@@ -102,6 +102,18 @@ public interface EventAnalyticsService
      */
     Grid getEvents( EventQueryParams params );
 
+    /**
+     * Streams the events matching the given query to the given handler as they
+     * are read from the database, without holding them in memory. Events are
+     * ordered by event date and event identifier. If the query is paged, pages
+     * are addressed through page tokens instead of page numbers.
+     *
+     * @param params the event query parameters.
+     * @param pageToken the token of the page to start after, can be null.
+     * @param handler the {@link EventStreamHandler}.
+     */
+    void streamEvents( EventQueryParams params, EventPageToken pageToken, EventStreamHandler handler );
+
     /**
      * Returns a list of event clusters matching the given query.
      *
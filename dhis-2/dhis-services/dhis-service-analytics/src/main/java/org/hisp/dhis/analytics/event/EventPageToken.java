@@ -0,0 +1,133 @@
+package org.hisp.dhis.analytics.event;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.analytics.util.AnalyticsUtils.throwIllegalQueryEx;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.feedback.ErrorCode;
+
+/**
+ * Keyset pagination token for streamed event queries. Events are streamed
+ * ordered by event date and event identifier, and the token holds the event
+ * date and identifier of the last event of a page. The next page starts after
+ * that event, which avoids scanning and discarding the events of all previous
+ * pages as offset based paging does.
+ */
+public class EventPageToken
+{
+    private static final String SEPARATOR = ";";
+
+    private final Timestamp eventDate;
+
+    private final String event;
+
+    /**
+     * @param eventDate the event date.
+     * @param event the event identifier.
+     */
+    public EventPageToken( Timestamp eventDate, String event )
+    {
+        this.eventDate = eventDate;
+        this.event = event;
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Decodes the given token.
+     *
+     * @param token the encoded token.
+     * @return an {@link EventPageToken}, or null if the token is blank.
+     * @throws org.hisp.dhis.common.IllegalQueryException if the token is invalid.
+     */
+    public static EventPageToken decode( String token )
+    {
+        if ( StringUtils.isBlank( token ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            String value = new String( Base64.getUrlDecoder().decode( token ), StandardCharsets.UTF_8 );
+            String[] parts = value.split( SEPARATOR );
+
+            if ( parts.length == 2 && CodeGenerator.isValidUid( parts[1] ) )
+            {
+                return new EventPageToken( Timestamp.valueOf( parts[0] ), parts[1] );
+            }
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            // Handled below
+        }
+
+        throwIllegalQueryEx( ErrorCode.E7228, token );
+
+        return null;
+    }
+
+    /**
+     * Returns the token as an URL safe string.
+     */
+    public String encode()
+    {
+        String value = eventDate.toString() + SEPARATOR + event;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString( value.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Get methods
+    // -------------------------------------------------------------------------
+
+    public Timestamp getEventDate()
+    {
+        return eventDate;
+    }
+
+    public String getEvent()
+    {
+        return event;
+    }
+
+    @Override
+    public String toString()
+    {
+        return encode();
+    }
+}
@@ -0,0 +1,65 @@
+package org.hisp.dhis.analytics.event;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.common.GridHeader;
+
+/**
+ * Receives the headers, rows and meta data of a streamed event query, in that
+ * order. Rows are passed on as they are read from the database, and are not
+ * retained by the caller.
+ */
+public interface EventStreamHandler
+{
+    /**
+     * Handles the headers. Invoked once before any row.
+     *
+     * @param headers the list of {@link GridHeader}.
+     */
+    void handleHeaders( List<GridHeader> headers );
+
+    /**
+     * Handles a row.
+     *
+     * @param row the row values, in the order of the headers.
+     */
+    void handleRow( List<Object> row );
+
+    /**
+     * Handles the meta data. Invoked once after the last row.
+     *
+     * @param metaData the meta data map, empty if meta data is skipped.
+     * @param nextPageToken the token of the next page, or null if there are no
+     *        more pages.
+     */
+    void handleMetaData( Map<String, Object> metaData, EventPageToken nextPageToken );
+}
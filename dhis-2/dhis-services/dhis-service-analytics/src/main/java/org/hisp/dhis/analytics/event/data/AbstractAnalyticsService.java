@@ -79,31 +79,13 @@ public abstract class AbstractAnalyticsService
         // Decide access, add constraints and validate
         // ---------------------------------------------------------------------
 
-        securityManager.decideAccessEventQuery( params );
-
-        params = securityManager.withUserConstraints( params );
-
-        queryValidator.validate( params );
-
-        params = new EventQueryParams.Builder( params )
-            .withStartEndDatesForPeriods()
-            .build();
+        params = getValidatedParams( params );
 
         // ---------------------------------------------------------------------
         // Headers
         // ---------------------------------------------------------------------
 
-        Grid grid = createGridWithHeaders( params );
-
-        for ( DimensionalObject dimension : params.getDimensions() )
-        {
-            grid.addHeader( new GridHeader( dimension.getDimension(), dimension.getDisplayProperty( params.getDisplayProperty() ), ValueType.TEXT, String.class.getName(), false, true ) );
-        }
-
-        for ( QueryItem item : params.getItems() )
-        {
-            grid.addHeader( new GridHeader( item.getItem().getUid(), item.getItem().getDisplayProperty( params.getDisplayProperty() ), item.getValueType(), item.getTypeAsString(), false, true, item.getOptionSet(), item.getLegendSet() ) );
-        }
+        Grid grid = createGridWithAllHeaders( params );
 
         // ---------------------------------------------------------------------
         // Data
@@ -140,6 +122,48 @@ public abstract class AbstractAnalyticsService
         return grid;
     }
 
+    /**
+     * Decides access, adds user constraints and validates the given query.
+     *
+     * @param params the {@link EventQueryParams}.
+     * @return the query with start and end dates for periods.
+     */
+    protected EventQueryParams getValidatedParams( EventQueryParams params )
+    {
+        securityManager.decideAccessEventQuery( params );
+
+        params = securityManager.withUserConstraints( params );
+
+        queryValidator.validate( params );
+
+        return new EventQueryParams.Builder( params )
+            .withStartEndDatesForPeriods()
+            .build();
+    }
+
+    /**
+     * Creates a grid with the fixed headers and the headers of the dimensions
+     * and items of the given query.
+     *
+     * @param params the {@link EventQueryParams}.
+     */
+    protected Grid createGridWithAllHeaders( EventQueryParams params )
+    {
+        Grid grid = createGridWithHeaders( params );
+
+        for ( DimensionalObject dimension : params.getDimensions() )
+        {
+            grid.addHeader( new GridHeader( dimension.getDimension(), dimension.getDisplayProperty( params.getDisplayProperty() ), ValueType.TEXT, String.class.getName(), false, true ) );
+        }
+
+        for ( QueryItem item : params.getItems() )
+        {
+            grid.addHeader( new GridHeader( item.getItem().getUid(), item.getItem().getDisplayProperty( params.getDisplayProperty() ), item.getValueType(), item.getTypeAsString(), false, true, item.getOptionSet(), item.getLegendSet() ) );
+        }
+
+        return grid;
+    }
+
     protected abstract Grid createGridWithHeaders( EventQueryParams params );
 
     protected abstract long addEventData( Grid grid, EventQueryParams params );
@@ -41,6 +41,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.EventOutputType;
 import org.hisp.dhis.analytics.SortOrder;
+import org.hisp.dhis.analytics.event.EventPageToken;
 import org.hisp.dhis.analytics.event.EventQueryParams;
 import org.hisp.dhis.analytics.event.ProgramIndicatorSubqueryBuilder;
 import org.hisp.dhis.analytics.util.AnalyticsUtils;
@@ -83,6 +84,8 @@ public abstract class AbstractJdbcEventAnalyticsManager
     private static final String NA = "[N/A]";
     protected static final String COL_COUNT = "count";
     protected static final String COL_EXTENT = "extent";
+    protected static final String COL_EVENT = "psi";
+    protected static final String COL_EVENT_DATE = "executiondate";
     protected static final int COORD_DEC = 6;
 
     protected static final int LAST_VALUE_YEARS_OFFSET = -10;
@@ -95,7 +98,7 @@ public abstract class AbstractJdbcEventAnalyticsManager
 
     protected final ProgramIndicatorSubqueryBuilder programIndicatorSubqueryBuilder;
 
-    public AbstractJdbcEventAnalyticsManager( @Qualifier( "readOnlyJdbcTemplate" ) JdbcTemplate jdbcTemplate,
+    public AbstractJdbcEventAnalyticsManager( @Qualifier( "analyticsJdbcTemplate" ) JdbcTemplate jdbcTemplate,
         StatementBuilder statementBuilder, ProgramIndicatorService programIndicatorService,
         ProgramIndicatorSubqueryBuilder programIndicatorSubqueryBuilder )
     {
@@ -628,6 +631,42 @@ public abstract class AbstractJdbcEventAnalyticsManager
         return sql;
     }
 
+    /**
+     * Generates a SQL query for streaming events. Events are ordered by event
+     * date and event identifier, which allows for keyset paging where each page
+     * starts after the last event of the previous page.
+     *
+     * @param params an {@see EventQueryParams} to drive the query generation
+     * @param pageToken the token of the last event of the previous page, can
+     *        be null
+     *
+     * @return a SQL query
+     */
+    String getEventsStreamSql( EventQueryParams params, EventPageToken pageToken )
+    {
+        String keyColumns = quoteAlias( COL_EVENT_DATE ) + "," + quoteAlias( COL_EVENT );
+
+        String sql = getSelectClause( params );
+
+        sql += getFromClause( params );
+
+        sql += getWhereClause( params );
+
+        if ( pageToken != null )
+        {
+            sql += "and (" + keyColumns + ") > (cast('" + pageToken.getEventDate() + "' as timestamp),'" + pageToken.getEvent() + "') ";
+        }
+
+        sql += "order by " + keyColumns + " ";
+
+        if ( params.isPaging() )
+        {
+            sql += "limit " + params.getPageSizeWithDefault();
+        }
+
+        return sql;
+    }
+
     /**
      * Wraps the provided interface around a common exception handling strategy
      *
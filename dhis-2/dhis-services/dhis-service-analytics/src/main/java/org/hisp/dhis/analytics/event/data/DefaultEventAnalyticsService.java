@@ -51,12 +51,15 @@ import static org.hisp.dhis.reporttable.ReportTable.SPACE;
 import static org.hisp.dhis.reporttable.ReportTable.TOTAL_COLUMN_PRETTY_NAME;
 import static org.hisp.dhis.analytics.util.AnalyticsUtils.throwIllegalQueryEx;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.analytics.AnalyticsSecurityManager;
@@ -69,9 +72,11 @@ import org.hisp.dhis.analytics.event.EventAnalyticsManager;
 import org.hisp.dhis.analytics.event.EventAnalyticsService;
 import org.hisp.dhis.analytics.event.EventAnalyticsUtils;
 import org.hisp.dhis.analytics.event.EventDataQueryService;
+import org.hisp.dhis.analytics.event.EventPageToken;
 import org.hisp.dhis.analytics.event.EventQueryParams;
 import org.hisp.dhis.analytics.event.EventQueryPlanner;
 import org.hisp.dhis.analytics.event.EventQueryValidator;
+import org.hisp.dhis.analytics.event.EventStreamHandler;
 import org.hisp.dhis.analytics.util.AnalyticsUtils;
 import org.hisp.dhis.common.AnalyticalObject;
 import org.hisp.dhis.common.DimensionalObject;
@@ -563,6 +568,46 @@ public class DefaultEventAnalyticsService
         return getGrid( params );
     }
 
+    @Override
+    public void streamEvents( EventQueryParams params, EventPageToken pageToken, EventStreamHandler handler )
+    {
+        if ( params.isSorting() )
+        {
+            throwIllegalQueryEx( ErrorCode.E7229 );
+        }
+
+        params = getValidatedParams( params );
+
+        Grid grid = createGridWithAllHeaders( params );
+
+        handler.handleHeaders( grid.getHeaders() );
+
+        final int eventIndex = grid.getIndexOfHeader( ITEM_EVENT );
+        final int eventDateIndex = grid.getIndexOfHeader( ITEM_EVENT_DATE );
+        final AtomicReference<List<Object>> lastRow = new AtomicReference<>();
+        final AtomicInteger rowCount = new AtomicInteger();
+
+        EventQueryParams plannedParams = queryPlanner.planEventQuery( params );
+
+        if ( plannedParams.getPartitions().hasAny() )
+        {
+            eventAnalyticsManager.streamEvents( plannedParams, grid.getHeaders(), pageToken, row -> {
+                handler.handleRow( row );
+                lastRow.set( row );
+                rowCount.incrementAndGet();
+            } );
+        }
+
+        addMetadata( params, grid );
+
+        List<Object> row = lastRow.get();
+
+        EventPageToken nextPageToken = params.isPaging() && row != null && rowCount.get() >= params.getPageSizeWithDefault() ?
+            new EventPageToken( Timestamp.valueOf( String.valueOf( row.get( eventDateIndex ) ) ), String.valueOf( row.get( eventIndex ) ) ) : null;
+
+        handler.handleMetaData( grid.getMetaData(), nextPageToken );
+    }
+
     @Override
     public Grid getEventClusters( EventQueryParams params )
     {
@@ -43,8 +43,14 @@ import static org.hisp.dhis.commons.util.TextUtils.getQuotedCommaDelimitedString
 import static org.hisp.dhis.commons.util.TextUtils.removeLastOr;
 import static org.hisp.dhis.util.DateUtils.getMediumDateString;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -52,6 +58,7 @@ import org.apache.commons.math3.util.Precision;
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.Rectangle;
 import org.hisp.dhis.analytics.event.EventAnalyticsManager;
+import org.hisp.dhis.analytics.event.EventPageToken;
 import org.hisp.dhis.analytics.event.EventQueryParams;
 import org.hisp.dhis.analytics.event.ProgramIndicatorSubqueryBuilder;
 import org.hisp.dhis.analytics.util.AnalyticsUtils;
@@ -76,9 +83,12 @@ import org.hisp.dhis.program.AnalyticsPeriodBoundary;
 import org.hisp.dhis.program.AnalyticsType;
 import org.hisp.dhis.program.ProgramIndicatorService;
 import org.hisp.dhis.system.util.MathUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -101,7 +111,13 @@ public class JdbcEventAnalyticsManager
     extends AbstractJdbcEventAnalyticsManager
         implements EventAnalyticsManager
 {
-    public JdbcEventAnalyticsManager( JdbcTemplate jdbcTemplate, StatementBuilder statementBuilder,
+    /**
+     * The number of rows fetched from the database cursor at a time when
+     * streaming events.
+     */
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    public JdbcEventAnalyticsManager( @Qualifier( "analyticsJdbcTemplate" ) JdbcTemplate jdbcTemplate, StatementBuilder statementBuilder,
         ProgramIndicatorService programIndicatorService, ProgramIndicatorSubqueryBuilder programIndicatorSubqueryBuilder )
     {
         super( jdbcTemplate, statementBuilder, programIndicatorService, programIndicatorSubqueryBuilder );
@@ -132,28 +148,107 @@ public class JdbcEventAnalyticsManager
         {
             grid.addRow();
 
-            int index = 1;
+            getRow( params, grid.getHeaders(), rowSet ).forEach( grid::addValue );
+        }
+    }
+
+    @Override
+    public void streamEvents( EventQueryParams params, List<GridHeader> headers, EventPageToken pageToken,
+        Consumer<List<Object>> rowConsumer )
+    {
+        String sql = getEventsStreamSql( params, pageToken );
+
+        log.debug( String.format( "Analytics event stream SQL: %s", sql ) );
+
+        withExceptionHandling( () -> jdbcTemplate.execute( (StatementCallback<Void>) statement -> {
+            streamEvents( params, headers, sql, statement, rowConsumer );
+            return null;
+        } ) );
+    }
+
+    /**
+     * Streams events from a database cursor. The PostgreSQL driver only uses
+     * a cursor when auto-commit is disabled and a fetch size is set, otherwise
+     * it reads the full result set into memory. The statement is created by
+     * the {@link JdbcTemplate}, so that its statement settings such as the
+     * query timeout apply, and the fetch size is set on top.
+     *
+     * @param params the {@link EventQueryParams}.
+     * @param headers the list of {@link GridHeader}.
+     * @param sql the SQL statement used to retrieve events.
+     * @param statement the statement.
+     * @param rowConsumer the consumer of event rows.
+     */
+    private void streamEvents( EventQueryParams params, List<GridHeader> headers, String sql,
+        Statement statement, Consumer<List<Object>> rowConsumer )
+        throws SQLException
+    {
+        final Connection connection = statement.getConnection();
+        final boolean autoCommit = connection.getAutoCommit();
+
+        if ( autoCommit )
+        {
+            connection.setAutoCommit( false );
+        }
+
+        try
+        {
+            statement.setFetchSize( STREAM_FETCH_SIZE );
 
-            for ( GridHeader header : grid.getHeaders() )
+            try ( ResultSet resultSet = statement.executeQuery( sql ) )
             {
-                if ( ITEM_LONGITUDE.equals( header.getName() ) || ITEM_LATITUDE.equals( header.getName() ) )
-                {
-                    double val = rowSet.getDouble( index );
-                    grid.addValue( Precision.round( val, COORD_DEC ) );
-                }
-                else if ( Double.class.getName().equals( header.getType() ) && !header.hasLegendSet() )
-                {
-                    double val = rowSet.getDouble( index );
-                    grid.addValue( params.isSkipRounding() ? val : MathUtils.getRounded( val ) );
-                }
-                else
+                SqlRowSet rowSet = new ResultSetWrappingSqlRowSet( resultSet );
+
+                while ( rowSet.next() )
                 {
-                    grid.addValue( rowSet.getString( index ) );
+                    rowConsumer.accept( getRow( params, headers, rowSet ) );
                 }
+            }
+        }
+        finally
+        {
+            if ( autoCommit )
+            {
+                connection.rollback();
+                connection.setAutoCommit( true );
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the current row of the given row set.
+     *
+     * @param params the {@link EventQueryParams}.
+     * @param headers the list of {@link GridHeader}.
+     * @param rowSet the {@link SqlRowSet}.
+     */
+    private List<Object> getRow( EventQueryParams params, List<GridHeader> headers, SqlRowSet rowSet )
+    {
+        List<Object> row = new ArrayList<>( headers.size() );
+
+        int index = 1;
 
-                index++;
+        for ( GridHeader header : headers )
+        {
+            if ( ITEM_LONGITUDE.equals( header.getName() ) || ITEM_LATITUDE.equals( header.getName() ) )
+            {
+                double val = rowSet.getDouble( index );
+                row.add( Precision.round( val, COORD_DEC ) );
             }
+            else if ( Double.class.getName().equals( header.getType() ) && !header.hasLegendSet() )
+            {
+                double val = rowSet.getDouble( index );
+                row.add( params.isSkipRounding() ? val : MathUtils.getRounded( val ) );
+            }
+            else
+            {
+                row.add( rowSet.getString( index ) );
+            }
+
+            index++;
         }
+
+        return row;
     }
 
     @Override
@@ -28,10 +28,10 @@ package org.hisp.dhis.analytics.partition;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.hisp.dhis.analytics.AnalyticsTableType;
@@ -53,7 +53,7 @@ import lombok.extern.slf4j.Slf4j;
 public class JdbcPartitionManager
     implements PartitionManager
 {
-    private Map<AnalyticsTableType, Set<String>> analyticsPartitions = new HashMap<>();
+    private final Map<AnalyticsTableType, Set<String>> analyticsPartitions = new ConcurrentHashMap<>();
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
@@ -95,6 +95,12 @@ public class JdbcPartitionManager
         return count > 0;
     }
 
+    @Override
+    public boolean analyticsTableExists( AnalyticsTableType tableType, String table )
+    {
+        return getAnalyticsPartitions( tableType ).contains( table );
+    }
+
     @Override
     public void filterNonExistingPartitions( Partitions partitions, String tableName )
     {
@@ -111,11 +117,17 @@ public class JdbcPartitionManager
 
     }
 
+    @Override
+    public void clearCaches()
+    {
+        analyticsPartitions.clear();
+        log.info( "Analytics partition cache cleared" );
+    }
+
     @Override
     @EventListener
     public void handleApplicationCachesCleared( ApplicationCacheClearedEvent event )
     {
-        analyticsPartitions = new HashMap<>();
-        log.info( "Analytics partition cache cleared" );
+        clearCaches();
     }
 }
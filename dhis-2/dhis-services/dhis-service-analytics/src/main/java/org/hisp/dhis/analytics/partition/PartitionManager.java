@@ -55,6 +55,16 @@ public interface PartitionManager
      */
     boolean tableExists( String table );
 
+    /**
+     * Indicates whether the given analytics table exists among the cached
+     * analytics tables of the given table type. Does not query the database
+     * unless the tables of the table type are not cached.
+     *
+     * @param tableType the {@link AnalyticsTableType}.
+     * @param table the analytics table name.
+     */
+    boolean analyticsTableExists( AnalyticsTableType tableType, String table );
+
     /**
      * Filters the set of integers for which a database partition table
      * exists.
@@ -64,6 +74,12 @@ public interface PartitionManager
      */
     void filterNonExistingPartitions( Partitions partitions, String tableName );
 
+    /**
+     * Clears the cached analytics tables. Must be invoked when analytics
+     * tables have been created or dropped.
+     */
+    void clearCaches();
+
     /**
      * Event handler for {@link ApplicationCacheClearedEvent}.
      *
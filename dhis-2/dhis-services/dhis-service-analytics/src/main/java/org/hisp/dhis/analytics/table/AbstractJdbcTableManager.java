@@ -35,11 +35,15 @@ import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.analytics.*;
 import org.hisp.dhis.analytics.partition.PartitionManager;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileEntry.Type;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler;
 import org.hisp.dhis.calendar.Calendar;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.IdentifiableObjectManager;
@@ -53,12 +57,15 @@ import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnitGroupSet;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.period.QuarterlyPeriodType;
+import org.hisp.dhis.period.YearlyPeriodType;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.system.database.DatabaseInfo;
 import org.hisp.dhis.util.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
@@ -93,6 +100,26 @@ public abstract class AbstractJdbcTableManager
 
     protected static final Set<ValueType> NO_INDEX_VAL_TYPES = ImmutableSet.of( ValueType.TEXT, ValueType.LONG_TEXT );
 
+    /**
+     * Columns which hold a single value in a yearly table partition.
+     */
+    private static final Set<String> YEARLY_PARTITION_CONSTANT_COLUMNS = ImmutableSet.of(
+        quote( "year" ), quote( YearlyPeriodType.NAME.toLowerCase() ) );
+
+    /**
+     * Columns which hold a few values only in a yearly table partition, which
+     * are the year and the columns of period types of a quarter or longer. An
+     * index on such a column matches a large share of the partition, so that
+     * the database scans the partition rather than using the index.
+     */
+    private static final Set<String> YEARLY_PARTITION_LOW_CARDINALITY_COLUMNS = ImmutableSet.<String> builder()
+        .add( quote( "year" ) )
+        .addAll( PeriodType.getAvailablePeriodTypes().stream()
+            .filter( pt -> pt.getFrequencyOrder() >= QuarterlyPeriodType.FREQUENCY_ORDER )
+            .map( pt -> quote( pt.getName().toLowerCase() ) )
+            .collect( Collectors.toSet() ) )
+        .build();
+
     public static final String PREFIX_ORGUNITGROUPSET = "ougs_";
     public static final String PREFIX_ORGUNITLEVEL = "uidlevel";
 
@@ -118,6 +145,8 @@ public abstract class AbstractJdbcTableManager
 
     protected JdbcTemplate jdbcTemplate;
 
+    private AnalyticsTableProfiler profiler;
+
     @Autowired
     public AbstractJdbcTableManager( IdentifiableObjectManager idObjectManager,
         OrganisationUnitService organisationUnitService, CategoryService categoryService,
@@ -150,6 +179,12 @@ public abstract class AbstractJdbcTableManager
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @Autowired
+    public void setProfiler( AnalyticsTableProfiler profiler )
+    {
+        this.profiler = profiler;
+    }
+
     // -------------------------------------------------------------------------
     // Implementation
     // -------------------------------------------------------------------------
@@ -180,11 +215,96 @@ public abstract class AbstractJdbcTableManager
     {
     }
 
+    /**
+     * Override in order to create pre-aggregated rollup tables.
+     */
+    @Override
+    public void createRollupTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    {
+    }
+
+    /**
+     * Override in order to support incremental updates.
+     */
+    @Override
+    public boolean isIncrementalUpdateSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Override in order to support incremental updates.
+     */
+    @Override
+    public AnalyticsTableChanges updateChangedData( AnalyticsTableUpdateParams params, Map<Integer, Collection<String>> aggregationLevels )
+    {
+        return AnalyticsTableChanges.none();
+    }
+
     @Override
-    public void createTable( AnalyticsTable table )
+    public void createTable( AnalyticsTableUpdateParams params, AnalyticsTable table )
     {
-        createTempTable( table );
-        createTempTablePartitions( table );
+        createTempTable( params, table );
+        createTempTablePartitions( params, table );
+    }
+
+    @Override
+    public List<AnalyticsIndex> getIndexes( List<AnalyticsTablePartition> partitions )
+    {
+        final boolean selective = AnalyticsTableIndexStrategy.SELECTIVE == getIndexStrategy();
+        final List<List<String>> queryIndexColumns = selective ? getQueryIndexColumns() : new ArrayList<>();
+
+        final Set<AnalyticsIndex> indexes = new LinkedHashSet<>();
+
+        for ( AnalyticsTablePartition partition : partitions )
+        {
+            final String tableName = partition.getTempTableName();
+            final List<AnalyticsTableColumn> columns = partition.getMasterTable().getDimensionColumns();
+            final boolean yearly = partition.getYear() != null && !partition.isLatestPartition();
+
+            final Set<String> tableColumns = columns.stream()
+                .map( AnalyticsTableColumn::getName )
+                .collect( Collectors.toSet() );
+
+            final List<List<String>> compositeColumns = queryIndexColumns.stream()
+                .map( queryColumns -> yearly ? queryColumns.stream()
+                    .filter( col -> !YEARLY_PARTITION_CONSTANT_COLUMNS.contains( col ) )
+                    .collect( Collectors.toList() ) : queryColumns )
+                .filter( queryColumns -> queryColumns.size() > 1 && tableColumns.containsAll( queryColumns ) )
+                .collect( Collectors.toList() );
+
+            final Set<String> skipColumns = new HashSet<>();
+
+            if ( selective )
+            {
+                compositeColumns.forEach( queryColumns -> skipColumns.add( queryColumns.get( 0 ) ) );
+
+                if ( yearly )
+                {
+                    skipColumns.addAll( YEARLY_PARTITION_LOW_CARDINALITY_COLUMNS );
+                }
+            }
+
+            for ( AnalyticsTableColumn col : columns )
+            {
+                if ( col.isSkipIndex() || ( !col.hasIndexColumns() && col.getIndexType() == null &&
+                    skipColumns.contains( col.getName() ) ) )
+                {
+                    continue;
+                }
+
+                List<String> indexColumns = col.hasIndexColumns() ? col.getIndexColumns() : Lists.newArrayList( col.getName() );
+
+                indexes.add( new AnalyticsIndex( tableName, indexColumns, col.getIndexType() ) );
+            }
+
+            for ( List<String> queryColumns : compositeColumns )
+            {
+                indexes.add( new AnalyticsIndex( tableName, queryColumns, null ) );
+            }
+        }
+
+        return new ArrayList<>( indexes );
     }
 
     @Override
@@ -208,8 +328,16 @@ public abstract class AbstractJdbcTableManager
 
             log.debug( "Create index: " + indexName + " SQL: " + sql );
 
+            Timer timer = new SystemTimer().start();
+
             jdbcTemplate.execute( sql );
 
+            if ( profiler != null )
+            {
+                profiler.record( Type.INDEX, getAnalyticsTableType(), indexName, timer.stop().duration(),
+                    null, getRelationSize( "pg_relation_size", indexName ) );
+            }
+
             log.debug( "Created index: " + indexName );
         }
 
@@ -260,28 +388,82 @@ public abstract class AbstractJdbcTableManager
     {
         String sql = StringUtils.trimToEmpty( statementBuilder.getAnalyze( tableName ) );
 
+        Timer timer = new SystemTimer().start();
+
         executeSilently( sql );
+
+        if ( profiler != null )
+        {
+            profiler.record( Type.TABLE, getAnalyticsTableType(), tableName, timer.stop().duration(),
+                getRowEstimate( tableName ), getRelationSize( "pg_total_relation_size", tableName ) );
+        }
+    }
+
+    /**
+     * Override in order to split partitions into chunks.
+     */
+    @Override
+    public List<AnalyticsTableChunk> getTableChunks( AnalyticsTableUpdateParams params, List<AnalyticsTablePartition> partitions )
+    {
+        return partitions.stream()
+            .map( AnalyticsTableChunk::new )
+            .collect( Collectors.toList() );
     }
 
     @Override
     @Async
-    public Future<?> populateTablesAsync( AnalyticsTableUpdateParams params, ConcurrentLinkedQueue<AnalyticsTablePartition> partitions )
+    public Future<?> populateTablesAsync( AnalyticsTableUpdateParams params, ConcurrentLinkedQueue<AnalyticsTableChunk> chunks )
     {
         taskLoop: while ( true )
         {
-            AnalyticsTablePartition partition = partitions.poll();
+            AnalyticsTableChunk chunk = chunks.poll();
 
-            if ( partition == null )
+            if ( chunk == null )
             {
                 break taskLoop;
             }
 
-            populateTable( params, partition );
+            Timer timer = new SystemTimer().start();
+
+            populateTable( params, chunk );
+
+            log.info( String.format( "Populated chunk %d of %d for table: %s in: %s", chunk.getChunkNo(),
+                chunk.getChunkCount(), chunk.getPartition().getTempTableName(), timer.stop().toString() ) );
+
+            if ( profiler != null )
+            {
+                profiler.record( Type.POPULATE, getAnalyticsTableType(), String.format( "%s chunk %d of %d",
+                    chunk.getPartition().getTempTableName(), chunk.getChunkNo(), chunk.getChunkCount() ), timer.duration() );
+            }
         }
 
         return null;
     }
 
+    @Override
+    public void setTableLogged( AnalyticsTableUpdateParams params, AnalyticsTable table )
+    {
+        if ( !params.isUnloggedTables() )
+        {
+            return;
+        }
+
+        for ( AnalyticsTablePartition partition : table.getTablePartitions() )
+        {
+            invokeTimeAndLog( "alter table " + partition.getTempTableName() + " set logged",
+                String.format( "Set table logged: %s", partition.getTempTableName() ) );
+        }
+
+        invokeTimeAndLog( "alter table " + table.getTempTableName() + " set logged",
+            String.format( "Set table logged: %s", table.getTempTableName() ) );
+    }
+
+    @Override
+    public Set<Integer> getPartitionYears( AnalyticsTablePartition partition )
+    {
+        return partition.isLatestPartition() ? null : Sets.newHashSet( partition.getYear() );
+    }
+
     @Override
     public int invokeAnalyticsTableSqlHooks()
     {
@@ -311,6 +493,30 @@ public abstract class AbstractJdbcTableManager
      */
     protected abstract void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition );
 
+    /**
+     * Populates the given chunk of an analytics table partition. Override in
+     * order to support chunks with conditions.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param chunk the {@link AnalyticsTableChunk} to populate.
+     */
+    protected void populateTable( AnalyticsTableUpdateParams params, AnalyticsTableChunk chunk )
+    {
+        Assert.isTrue( !chunk.hasCondition(), "Table chunks with conditions are not supported" );
+
+        populateTable( params, chunk.getPartition() );
+    }
+
+    /**
+     * Returns the column combinations of composite indexes for the dimensions
+     * most frequently queried together, used by the selective index strategy.
+     * Override in order to support indexes learned from queries.
+     */
+    protected List<List<String>> getQueryIndexColumns()
+    {
+        return new ArrayList<>();
+    }
+
     /**
      * Indicates whether data was created or updated for the given time range since
      * last successful "latest" table partition update.
@@ -373,15 +579,16 @@ public abstract class AbstractJdbcTableManager
     /**
      * Drops and creates the given analytics table.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param table the {@link AnalyticsTable}.
      */
-    protected void createTempTable( AnalyticsTable table )
+    protected void createTempTable( AnalyticsTableUpdateParams params, AnalyticsTable table )
     {
         validateDimensionColumns( table.getDimensionColumns() );
 
         final String tableName = table.getTempTableName();
 
-        String sqlCreate = "create table " + tableName + " (";
+        String sqlCreate = "create " + getTableType( params ) + "table " + tableName + " (";
 
         for ( AnalyticsTableColumn col : ListUtils.union( table.getDimensionColumns(), table.getValueColumns() ) )
         {
@@ -402,16 +609,17 @@ public abstract class AbstractJdbcTableManager
     /**
      * Drops and creates the table partitions for the given analytics table.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param table the {@link AnalyticsTable}.
      */
-    protected void createTempTablePartitions( AnalyticsTable table )
+    protected void createTempTablePartitions( AnalyticsTableUpdateParams params, AnalyticsTable table )
     {
         for ( AnalyticsTablePartition partition : table.getTablePartitions() )
         {
             final String tableName = partition.getTempTableName();
             final List<String> checks = getPartitionChecks( partition );
 
-            String sqlCreate = "create table " + tableName + " (";
+            String sqlCreate = "create " + getTableType( params ) + "table " + tableName + " (";
 
             if ( !checks.isEmpty() )
             {
@@ -438,6 +646,24 @@ public abstract class AbstractJdbcTableManager
         return "with(autovacuum_enabled = false)";
     }
 
+    /**
+     * Returns the table type SQL keyword for temporary analytics tables.
+     * Unlogged tables are not written to the write-ahead log, which speeds
+     * up population, and are made logged before being swapped in.
+     */
+    private String getTableType( AnalyticsTableUpdateParams params )
+    {
+        return params.isUnloggedTables() ? "unlogged " : "";
+    }
+
+    /**
+     * Returns the configured {@link AnalyticsTableIndexStrategy}.
+     */
+    protected AnalyticsTableIndexStrategy getIndexStrategy()
+    {
+        return (AnalyticsTableIndexStrategy) systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_INDEX_STRATEGY );
+    }
+
     /**
      * Creates a {@link AnalyticsTable} with partitions based on a list of years with data.
      *
@@ -556,6 +782,53 @@ public abstract class AbstractJdbcTableManager
         jdbcTemplate.execute( sql );
 
         log.info( String.format( "%s in: %s", logMessage, timer.stop().toString() ) );
+
+        if ( profiler != null )
+        {
+            profiler.record( Type.STATEMENT, getAnalyticsTableType(), logMessage, timer.duration() );
+        }
+    }
+
+    /**
+     * Returns the estimated number of rows of the given table, which is
+     * accurate after the table is analyzed, or null if not available.
+     *
+     * @param tableName the table name.
+     */
+    private Long getRowEstimate( String tableName )
+    {
+        final String sql = "select cast(reltuples as bigint) from pg_class where relname = ?";
+
+        try
+        {
+            return jdbcTemplate.queryForList( sql, Long.class, tableName ).stream().findFirst().orElse( null );
+        }
+        catch ( DataAccessException ex )
+        {
+            log.debug( String.format( "Failed to get row estimate of table: %s", tableName ), ex );
+            return null;
+        }
+    }
+
+    /**
+     * Returns the size in bytes of the given relation, or null if not available.
+     *
+     * @param sizeFunction the database size function.
+     * @param relationName the name of the table or index.
+     */
+    private Long getRelationSize( String sizeFunction, String relationName )
+    {
+        final String sql = "select " + sizeFunction + "(cast(? as regclass))";
+
+        try
+        {
+            return jdbcTemplate.queryForObject( sql, Long.class, relationName );
+        }
+        catch ( DataAccessException ex )
+        {
+            log.debug( String.format( "Failed to get size of relation: %s", relationName ), ex );
+            return null;
+        }
     }
 
     /**
@@ -615,7 +888,7 @@ public abstract class AbstractJdbcTableManager
      * @param tempTableName the temporary table name.
      * @param realTableName the real table name.
      */
-    private void swapTable( String tempTableName, String realTableName )
+    protected void swapTable( String tempTableName, String realTableName )
     {
         final String sql =
             "drop table if exists " + realTableName + " cascade; " +
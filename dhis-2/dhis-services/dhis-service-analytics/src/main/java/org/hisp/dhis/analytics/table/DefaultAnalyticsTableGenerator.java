@@ -42,8 +42,12 @@ import org.hisp.dhis.analytics.AnalyticsTableGenerator;
 import org.hisp.dhis.analytics.AnalyticsTableService;
 import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.cache.AnalyticsCacheWarmer;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler.PhaseTimer;
 import org.hisp.dhis.commons.collection.CollectionUtils;
 import org.hisp.dhis.commons.util.DebugUtils;
+import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.message.MessageService;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.scheduling.JobConfiguration;
@@ -74,21 +78,34 @@ public class DefaultAnalyticsTableGenerator
 
     private Notifier notifier;
 
+    private AnalyticsCacheWarmer analyticsCacheWarmer;
+
+    private AnalyticsTableProfiler profiler;
+
+    private PartitionManager partitionManager;
+
     public DefaultAnalyticsTableGenerator( List<AnalyticsTableService> analyticsTableServices,
         ResourceTableService resourceTableService, MessageService messageService,
-        SystemSettingManager systemSettingManager, Notifier notifier )
+        SystemSettingManager systemSettingManager, Notifier notifier, AnalyticsCacheWarmer analyticsCacheWarmer,
+        AnalyticsTableProfiler profiler, PartitionManager partitionManager )
     {
         checkNotNull( analyticsTableServices );
         checkNotNull( resourceTableService );
         checkNotNull( messageService );
         checkNotNull( systemSettingManager );
         checkNotNull( notifier );
+        checkNotNull( analyticsCacheWarmer );
+        checkNotNull( profiler );
+        checkNotNull( partitionManager );
 
         this.analyticsTableServices = analyticsTableServices;
         this.resourceTableService = resourceTableService;
         this.messageService = messageService;
         this.systemSettingManager = systemSettingManager;
         this.notifier = notifier;
+        this.analyticsCacheWarmer = analyticsCacheWarmer;
+        this.profiler = profiler;
+        this.partitionManager = partitionManager;
     }
 
     // -------------------------------------------------------------------------
@@ -110,20 +127,27 @@ public class DefaultAnalyticsTableGenerator
 
         params = AnalyticsTableUpdateParams.newBuilder( params )
             .withLastSuccessfulUpdate( lastSuccessfulUpdate )
+            .withUnloggedTables( Boolean.TRUE.equals( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_UNLOGGED ) ) )
+            .withProfile( profiler.startRun( params ) )
             .build();
 
         log.info( String.format( "Found %d analytics table types: %s", availableTypes.size(), availableTypes ) );
         log.info( String.format( "Analytics table update: %s", params ) );
         log.info( String.format( "Last successful analytics table update: '%s'", getLongDateString( lastSuccessfulUpdate ) ) );
 
+        analyticsCacheWarmer.prepareWarmUp();
+
         try
         {
             notifier.clear( jobId ).notify( jobId, "Analytics table update process started" );
 
-            if ( !params.isSkipResourceTables() && !params.isLatestUpdate() )
+            if ( !params.isSkipResourceTables() && !params.isLatestUpdate() && !params.isIncrementalUpdate() )
             {
                 notifier.notify( jobId, "Updating resource tables" );
+
+                PhaseTimer phaseTimer = profiler.startPhases( params, null );
                 generateResourceTables();
+                phaseTimer.endPhase( "generateResourceTables" );
             }
 
             for ( AnalyticsTableService service : analyticsTableServices )
@@ -150,19 +174,39 @@ public class DefaultAnalyticsTableGenerator
 
             messageService.sendSystemErrorNotification( "Analytics table process failed", ex );
 
+            profiler.finishRun( params, false );
+
+            partitionManager.clearCaches();
+
+            analyticsCacheWarmer.invalidateStale();
+
             throw ex;
         }
 
+        profiler.finishRun( params, true );
+
+        partitionManager.clearCaches();
+
         if ( params.isLatestUpdate() )
         {
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_UPDATE, params.getStartTime() );
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_RUNTIME, DateUtils.getPrettyInterval( clock.getSplitTime() ) );
         }
+        else if ( params.isIncrementalUpdate() )
+        {
+            // Table types without incremental update support updated the latest partition
+
+            systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_UPDATE, params.getStartTime() );
+            systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_INCREMENTAL_ANALYTICS_TABLES_UPDATE, params.getStartTime() );
+            systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_INCREMENTAL_ANALYTICS_TABLES_RUNTIME, DateUtils.getPrettyInterval( clock.getSplitTime() ) );
+        }
         else
         {
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE, params.getStartTime() );
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_RUNTIME, DateUtils.getPrettyInterval( clock.getSplitTime() ) );
         }
+
+        warmUpAnalyticsCache( jobId );
     }
 
     @Override
@@ -172,6 +216,8 @@ public class DefaultAnalyticsTableGenerator
         {
             service.dropTables();
         }
+
+        partitionManager.clearCaches();
     }
 
     @Override
@@ -201,6 +247,29 @@ public class DefaultAnalyticsTableGenerator
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Refreshes the analytics cache after the analytics tables are updated.
+     * Failures are logged and do not fail the analytics table update.
+     *
+     * @param jobId the {@link JobConfiguration}.
+     */
+    private void warmUpAnalyticsCache( JobConfiguration jobId )
+    {
+        try
+        {
+            int refreshed = analyticsCacheWarmer.warmUp();
+
+            if ( refreshed > 0 )
+            {
+                notifier.notify( jobId, "Analytics cache warmed up, refreshed queries: " + refreshed );
+            }
+        }
+        catch ( Exception ex )
+        {
+            log.warn( "Analytics cache warm-up failed: " + ex.getMessage(), ex );
+        }
+    }
+
     private void generateResourceTables()
     {
         final Date startTime = new Date();
@@ -31,12 +31,16 @@ package org.hisp.dhis.analytics.table;
 import lombok.extern.slf4j.Slf4j;
 import org.hisp.dhis.analytics.AnalyticsIndex;
 import org.hisp.dhis.analytics.AnalyticsTable;
-import org.hisp.dhis.analytics.AnalyticsTableColumn;
+import org.hisp.dhis.analytics.AnalyticsTableChanges;
+import org.hisp.dhis.analytics.AnalyticsTableChunk;
 import org.hisp.dhis.analytics.AnalyticsTableManager;
 import org.hisp.dhis.analytics.AnalyticsTablePartition;
 import org.hisp.dhis.analytics.AnalyticsTableService;
 import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.cache.AnalyticsCache;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler.PhaseTimer;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.commons.util.ConcurrentUtils;
 import org.hisp.dhis.commons.util.SystemUtils;
@@ -49,11 +53,12 @@ import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.system.notification.Notifier;
 import org.hisp.dhis.system.util.Clock;
 
-import com.google.common.collect.Lists;
-
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
@@ -80,9 +85,14 @@ public class DefaultAnalyticsTableService
 
     private SystemSettingManager systemSettingManager;
 
+    private AnalyticsCache analyticsCache;
+
+    private AnalyticsTableProfiler profiler;
+
     public DefaultAnalyticsTableService( AnalyticsTableManager tableManager,
         OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-        ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+        ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+        AnalyticsCache analyticsCache, AnalyticsTableProfiler profiler )
     {
         checkNotNull( tableManager );
         checkNotNull( organisationUnitService );
@@ -90,6 +100,8 @@ public class DefaultAnalyticsTableService
         checkNotNull( resourceTableService );
         checkNotNull( notifier );
         checkNotNull( systemSettingManager );
+        checkNotNull( analyticsCache );
+        checkNotNull( profiler );
 
         this.tableManager = tableManager;
         this.organisationUnitService = organisationUnitService;
@@ -97,6 +109,8 @@ public class DefaultAnalyticsTableService
         this.resourceTableService = resourceTableService;
         this.notifier = notifier;
         this.systemSettingManager = systemSettingManager;
+        this.analyticsCache = analyticsCache;
+        this.profiler = profiler;
     }
 
     // -------------------------------------------------------------------------
@@ -135,8 +149,28 @@ public class DefaultAnalyticsTableService
             return;
         }
 
+        if ( params.isIncrementalUpdate() )
+        {
+            if ( tableManager.isIncrementalUpdateSupported() )
+            {
+                updateChangedData( params, clock );
+                return;
+            }
+
+            log.info( String.format( "Incremental update not supported for table type: %s, updating latest partition", tableType ) );
+
+            params = AnalyticsTableUpdateParams.newBuilder( params )
+                .withIncrementalUpdate( false )
+                .withLatestPartition()
+                .build();
+        }
+
+        final PhaseTimer phaseTimer = profiler.startPhases( params, tableType );
+
         final List<AnalyticsTable> tables = tableManager.getAnalyticsTables( params );
 
+        phaseTimer.endPhase( "getTables" );
+
         if ( tables.isEmpty() )
         {
             clock.logTime( String.format( "Table update aborted, no table or partitions to be updated: '%s'", tableType.getTableName() ) );
@@ -150,37 +184,58 @@ public class DefaultAnalyticsTableService
 
         tableManager.preCreateTables( params );
 
+        phaseTimer.endPhase( "preCreateTables" );
+
         clock.logTime( "Performed pre-create table work" );
         notifier.notify( jobId, "Dropping temp tables" );
 
         dropTempTables( tables );
 
+        phaseTimer.endPhase( "dropTempTables" );
+
         clock.logTime( "Dropped temp tables" );
         notifier.notify( jobId, "Creating analytics tables" );
 
-        createTables( tables );
+        createTables( params, tables );
+
+        phaseTimer.endPhase( "createTables" );
 
         clock.logTime( "Created analytics tables" );
         notifier.notify( jobId, "Populating analytics tables" );
 
         populateTables( params, tables );
 
+        phaseTimer.endPhase( "populateTables" );
+
         clock.logTime( "Populated analytics tables" );
         notifier.notify( jobId, "Invoking analytics table hooks" );
 
         tableUpdates += tableManager.invokeAnalyticsTableSqlHooks();
 
+        phaseTimer.endPhase( "invokeHooks" );
+
         clock.logTime( "Invoked analytics table hooks" );
         notifier.notify( jobId, "Applying aggregation levels" );
 
         tableUpdates += applyAggregationLevels( tables );
 
+        phaseTimer.endPhase( "applyAggregationLevels" );
+
         clock.logTime( "Applied aggregation levels" );
 
+        notifier.notify( jobId, "Setting tables logged" );
+
+        setTablesLogged( params, tables );
+
+        phaseTimer.endPhase( "setTablesLogged" );
+
+        clock.logTime( "Set tables logged" );
+
         if ( tableUpdates > 0 )
         {
             notifier.notify( jobId, "Vacuuming tables" );
             vacuumTables( tables );
+            phaseTimer.endPhase( "vacuumTables" );
             clock.logTime( "Tables vacuumed" );
         }
 
@@ -188,21 +243,43 @@ public class DefaultAnalyticsTableService
 
         createIndexes( tables );
 
+        phaseTimer.endPhase( "createIndexes" );
+
         clock.logTime( "Created indexes" );
         notifier.notify( jobId, "Analyzing analytics tables" );
 
         analyzeTables( tables );
 
+        phaseTimer.endPhase( "analyzeTables" );
+
         clock.logTime( "Analyzed tables" );
+        notifier.notify( jobId, "Creating rollup tables" );
+
+        tableManager.createRollupTables( params, tables );
+
+        phaseTimer.endPhase( "createRollupTables" );
+
+        clock.logTime( "Created rollup tables" );
         notifier.notify( jobId, "Removing updated and deleted data" );
 
         tableManager.removeUpdatedData( params, tables );
 
+        phaseTimer.endPhase( "removeUpdatedData" );
+
         clock.logTime( "Removed updated and deleted data" );
         notifier.notify( jobId, "Swapping analytics tables" );
 
         swapTables( params, tables );
 
+        phaseTimer.endPhase( "swapTables" );
+
+        clock.logTime( "Swapped analytics tables" );
+        notifier.notify( jobId, "Invalidating analytics cache" );
+
+        invalidateAnalyticsCache( params, tables );
+
+        phaseTimer.endPhase( "invalidateCache" );
+
         clock.logTime( "Table update done: " + tableType.getTableName() );
         notifier.notify( jobId, "Table update done" );
     }
@@ -231,6 +308,67 @@ public class DefaultAnalyticsTableService
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Updates the data which was changed since the last successful analytics
+     * table update in place, and invalidates the analytics cache entries which
+     * are affected by the changed data.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param clock the {@link Clock}.
+     */
+    private void updateChangedData( AnalyticsTableUpdateParams params, Clock clock )
+    {
+        JobConfiguration jobId = params.getJobId();
+
+        notifier.notify( jobId, "Updating changed data" );
+
+        PhaseTimer phaseTimer = profiler.startPhases( params, tableManager.getAnalyticsTableType() );
+
+        AnalyticsTableChanges changes = tableManager.updateChangedData( params, getDataElementAggregationLevels() );
+
+        phaseTimer.endPhase( "updateChangedData" );
+
+        clock.logTime( String.format( "Updated changed data: %s", changes ) );
+
+        if ( changes.hasChanges() && analyticsCache.isEnabled() )
+        {
+            notifier.notify( jobId, "Invalidating analytics cache" );
+
+            analyticsCache.invalidate( changes );
+
+            phaseTimer.endPhase( "invalidateCache" );
+        }
+
+        clock.logTime( "Table update done: " + tableManager.getAnalyticsTableType().getTableName() );
+        notifier.notify( jobId, "Table update done" );
+    }
+
+    /**
+     * Returns a map of aggregation level to the identifiers of the data
+     * elements with the aggregation level, ordered by deepest level first.
+     */
+    private Map<Integer, Collection<String>> getDataElementAggregationLevels()
+    {
+        Map<Integer, Collection<String>> aggregationLevels = new LinkedHashMap<>();
+
+        int maxLevels = organisationUnitService.getNumberOfOrganisationalLevels();
+
+        for ( int i = 0; i < maxLevels; i++ )
+        {
+            int level = maxLevels - i;
+
+            Collection<String> dataElements = IdentifiableObjectUtils.getUids(
+                dataElementService.getDataElementsByAggregationLevel( level ) );
+
+            if ( !dataElements.isEmpty() )
+            {
+                aggregationLevels.put( level, dataElements );
+            }
+        }
+
+        return aggregationLevels;
+    }
+
     /**
      * Drops the given temporary analytics tables.
      *
@@ -244,11 +382,25 @@ public class DefaultAnalyticsTableService
     /**
      * Creates the given analytics tables.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param tables the list of {@link AnalyticsTable}.
+     */
+    private void createTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    {
+        tables.forEach( table -> tableManager.createTable( params, table ) );
+    }
+
+    /**
+     * Makes the given analytics tables logged if they were created as unlogged
+     * tables. Setting a table logged rewrites the table, which is why this is
+     * done before the tables are vacuumed.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param tables the list of {@link AnalyticsTable}.
      */
-    private void createTables( List<AnalyticsTable> tables )
+    private void setTablesLogged( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
     {
-        tables.forEach( table -> tableManager.createTable( table ) );
+        tables.forEach( table -> tableManager.setTableLogged( params, table ) );
     }
 
     /**
@@ -260,17 +412,19 @@ public class DefaultAnalyticsTableService
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
-        int taskNo = Math.min( getProcessNo(), partitions.size() );
+        List<AnalyticsTableChunk> chunks = tableManager.getTableChunks( params, partitions );
 
-        log.info( "Populate table task number: " + taskNo );
+        int taskNo = Math.min( getProcessNo(), chunks.size() );
 
-        ConcurrentLinkedQueue<AnalyticsTablePartition> partitionQ = new ConcurrentLinkedQueue<>( partitions );
+        log.info( String.format( "Populate table task number: %d, partitions: %d, chunks: %d", taskNo, partitions.size(), chunks.size() ) );
+
+        ConcurrentLinkedQueue<AnalyticsTableChunk> chunkQ = new ConcurrentLinkedQueue<>( chunks );
 
         List<Future<?>> futures = new ArrayList<>();
 
         for ( int i = 0; i < taskNo; i++ )
         {
-            futures.add( tableManager.populateTablesAsync( params, partitionQ ) );
+            futures.add( tableManager.populateTablesAsync( params, chunkQ ) );
         }
 
         ConcurrentUtils.waitForCompletion( futures );
@@ -349,22 +503,7 @@ public class DefaultAnalyticsTableService
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
-        ConcurrentLinkedQueue<AnalyticsIndex> indexes = new ConcurrentLinkedQueue<>();
-
-        for ( AnalyticsTablePartition partition : partitions )
-        {
-            List<AnalyticsTableColumn> columns = partition.getMasterTable().getDimensionColumns();
-
-            for ( AnalyticsTableColumn col : columns )
-            {
-                if ( !col.isSkipIndex() )
-                {
-                    List<String> indexColumns = col.hasIndexColumns() ? col.getIndexColumns() : Lists.newArrayList( col.getName() );
-
-                    indexes.add( new AnalyticsIndex( partition.getTempTableName(), indexColumns, col.getIndexType() ) );
-                }
-            }
-        }
+        ConcurrentLinkedQueue<AnalyticsIndex> indexes = new ConcurrentLinkedQueue<>( tableManager.getIndexes( partitions ) );
 
         log.info( "No of analytics table indexes: " + indexes.size() );
 
@@ -405,6 +544,68 @@ public class DefaultAnalyticsTableService
         resourceTableService.createAllSqlViews();
     }
 
+    /**
+     * Invalidates the analytics cache entries which read the given analytics
+     * tables. For partial updates, only cache entries for the years of the
+     * updated partitions are invalidated. For full updates, or if the years of
+     * any updated partition cannot be determined, all cache entries which read
+     * the table type are invalidated. Entries which are refreshed in place by
+     * the analytics cache warm-up are kept until the warm-up.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param tables the list of {@link AnalyticsTable}.
+     */
+    private void invalidateAnalyticsCache( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    {
+        if ( !analyticsCache.isEnabled() )
+        {
+            return;
+        }
+
+        Set<Integer> years = params.isPartialUpdate() ? getPartitionYears( params, tables ) : null;
+
+        if ( years == null || !years.isEmpty() )
+        {
+            analyticsCache.invalidateTables( tableManager.getAnalyticsTableType(), years );
+        }
+    }
+
+    /**
+     * Returns the years of data contained in the partitions of the given
+     * analytics tables, or null if the years cannot be determined for any of
+     * the tables.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param tables the list of {@link AnalyticsTable}.
+     * @return a set of years, or null.
+     */
+    private Set<Integer> getPartitionYears( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    {
+        Set<Integer> years = new HashSet<>();
+
+        for ( AnalyticsTable table : tables )
+        {
+            if ( !table.hasPartitionTables() && !params.isLatestUpdate() )
+            {
+                return null;
+            }
+
+            for ( AnalyticsTablePartition partition : table.getTablePartitions() )
+            {
+                Set<Integer> partitionYears = tableManager.getPartitionYears( partition );
+
+                if ( partitionYears == null )
+                {
+                    return null;
+                }
+
+                years.addAll( partitionYears );
+            }
+        }
+
+        return years;
+    }
+
     /**
      * Gets the number of available cores. Uses explicit number from system
      * setting if available. Detects number of cores from current server runtime
@@ -28,26 +28,38 @@ package org.hisp.dhis.analytics.table;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.hisp.dhis.analytics.ColumnDataType.*;
 import static org.hisp.dhis.analytics.ColumnNotNullConstraint.NOT_NULL;
 import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.quote;
+import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.removeQuote;
 import static org.hisp.dhis.commons.util.TextUtils.getQuotedCommaDelimitedString;
 import static org.hisp.dhis.dataapproval.DataApprovalLevelService.APPROVAL_LEVEL_UNAPPROVED;
 import static org.hisp.dhis.util.DateUtils.getLongDateString;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.AnalyticsTable;
+import org.hisp.dhis.analytics.AnalyticsTableChanges;
+import org.hisp.dhis.analytics.AnalyticsTableChunk;
 import org.hisp.dhis.analytics.AnalyticsTableColumn;
 import org.hisp.dhis.analytics.AnalyticsTableHookService;
 import org.hisp.dhis.analytics.AnalyticsTablePartition;
@@ -55,11 +67,16 @@ import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
 import org.hisp.dhis.analytics.ColumnDataType;
 import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.cache.AnalyticsQueryFrequencyTracker;
 import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.analytics.util.AnalyticsUtils;
 import org.hisp.dhis.category.Category;
 import org.hisp.dhis.category.CategoryOptionGroupSet;
 import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.common.DataQueryRequest;
+import org.hisp.dhis.common.DimensionalObject;
+import org.hisp.dhis.common.DimensionalObjectUtils;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.commons.collection.ListUtils;
@@ -71,6 +88,11 @@ import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnitGroupSet;
 import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.Period;
+import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.period.QuarterlyPeriodType;
+import org.hisp.dhis.period.YearlyPeriodType;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
@@ -82,6 +104,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -112,13 +135,30 @@ public class JdbcAnalyticsTableManager
         SystemSettingManager systemSettingManager, DataApprovalLevelService dataApprovalLevelService,
         ResourceTableService resourceTableService, AnalyticsTableHookService tableHookService,
         StatementBuilder statementBuilder, PartitionManager partitionManager, DatabaseInfo databaseInfo,
-        JdbcTemplate jdbcTemplate )
+        JdbcTemplate jdbcTemplate, AnalyticsQueryFrequencyTracker queryFrequencyTracker )
     {
         super( idObjectManager, organisationUnitService, categoryService, systemSettingManager,
             dataApprovalLevelService, resourceTableService, tableHookService, statementBuilder, partitionManager,
             databaseInfo, jdbcTemplate );
+
+        checkNotNull( queryFrequencyTracker );
+
+        this.queryFrequencyTracker = queryFrequencyTracker;
     }
 
+    private final AnalyticsQueryFrequencyTracker queryFrequencyTracker;
+
+    private static final String CHANGES_TABLE = "_analytics_changes";
+
+    /**
+     * The number of most frequent queries inspected for composite indexes.
+     */
+    private static final int QUERY_INDEX_SAMPLE_SIZE = 100;
+
+    private static final int MAX_QUERY_INDEXES = 3;
+
+    private static final int MAX_QUERY_INDEX_COLUMNS = 4;
+
     private static final List<AnalyticsTableColumn> FIXED_COLS = Lists.newArrayList(
         new AnalyticsTableColumn( quote( "dx" ), CHARACTER_11, NOT_NULL, "de.uid" ),
         new AnalyticsTableColumn( quote( "co" ), CHARACTER_11, NOT_NULL, "co.uid" )
@@ -186,6 +226,24 @@ public class JdbcAnalyticsTableManager
         return !jdbcTemplate.queryForList( sql ).isEmpty();
     }
 
+    @Override
+    public Set<Integer> getPartitionYears( AnalyticsTablePartition partition )
+    {
+        if ( !partition.isLatestPartition() )
+        {
+            return super.getPartitionYears( partition );
+        }
+
+        String sql =
+            "select distinct ps.year " +
+            "from datavalue dv " +
+            "inner join _periodstructure ps on dv.periodid=ps.periodid " +
+            "where dv.lastupdated >= '" + getLongDateString( partition.getStartDate() ) + "' " +
+            "and dv.lastupdated < '" + getLongDateString( partition.getEndDate() ) + "'";
+
+        return new HashSet<>( jdbcTemplate.queryForList( sql, Integer.class ) );
+    }
+
     @Override
     public void preCreateTables( AnalyticsTableUpdateParams params )
     {
@@ -222,6 +280,149 @@ public class JdbcAnalyticsTableManager
         invokeTimeAndLog( sql, "Remove updated data values" );
     }
 
+    /**
+     * Creates one rollup table per table partition, holding the sum of the
+     * values of the partition grouped by data element, yearly, quarterly and
+     * monthly period and organisation unit levels up to the rollup level. The
+     * category option combo and attribute option combo are aggregated away.
+     * Rollup tables are not created for "latest" partition updates.
+     */
+    @Override
+    public void createRollupTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    {
+        final int rollupLevel = getRollupOrgUnitLevel();
+
+        if ( rollupLevel <= 0 || params.isLatestUpdate() )
+        {
+            return;
+        }
+
+        for ( AnalyticsTablePartition partition : PartitionUtils.getTablePartitions( tables ) )
+        {
+            createRollupTable( rollupLevel, partition.getTempTableName(), partition.getYear() );
+        }
+    }
+
+    /**
+     * Swaps the analytics table and the rollup tables of the table partitions.
+     * Rollup tables of the table partitions which were created with another
+     * rollup level, or which are disabled, are dropped.
+     */
+    @Override
+    public void swapTable( AnalyticsTableUpdateParams params, AnalyticsTable table )
+    {
+        super.swapTable( params, table );
+
+        if ( params.isLatestUpdate() )
+        {
+            return;
+        }
+
+        final int rollupLevel = getRollupOrgUnitLevel();
+        final List<String> rollupTables = getRollupTables();
+
+        for ( AnalyticsTablePartition partition : table.getTablePartitions() )
+        {
+            swapRollupTable( rollupLevel, partition.getYear(), rollupTables );
+        }
+    }
+
+    /**
+     * Updates the data which was changed since the last successful full or
+     * incremental analytics table update in place. The changed data is
+     * identified by data element, period and organisation unit. The rows for
+     * the changed data are deleted from the analytics table including the
+     * "latest" partition, and re-inserted into the partition of the year of
+     * the data. Rollup tables of the affected years are rebuilt. All changes
+     * are applied in a single transaction.
+     *
+     * Changed data is found through the last updated timestamp of data values.
+     * Soft-deleted data values are hence removed from the analytics tables,
+     * while data values which are deleted from the database, e.g. together
+     * with their data element or organisation unit, remain in the analytics
+     * tables until the next full analytics table update.
+     */
+    @Override
+    public boolean isIncrementalUpdateSupported()
+    {
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public AnalyticsTableChanges updateChangedData( AnalyticsTableUpdateParams params, Map<Integer, Collection<String>> aggregationLevels )
+    {
+        Date lastFullTableUpdate = (Date) systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE );
+        Date lastIncrementalUpdate = (Date) systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_INCREMENTAL_ANALYTICS_TABLES_UPDATE );
+
+        Assert.notNull( lastFullTableUpdate, "A full analytics table update process must be run prior to an incremental update process" );
+
+        Date startDate = DateUtils.getLatest( lastFullTableUpdate, lastIncrementalUpdate );
+
+        createChangesTable( startDate, params.getStartTime() );
+
+        List<Integer> years = jdbcTemplate.queryForList( "select distinct year from " + CHANGES_TABLE, Integer.class );
+
+        if ( years.isEmpty() )
+        {
+            log.info( String.format( "No changed data found with start: '%s' and end: '%s'",
+                getLongDateString( startDate ), getLongDateString( params.getStartTime() ) ) );
+
+            dropTable( CHANGES_TABLE );
+
+            return AnalyticsTableChanges.none();
+        }
+
+        AnalyticsTable table = getRegularAnalyticsTable( params, new ArrayList<>( years ), getDimensionColumns(), getValueColumns() );
+
+        validateTableColumns( table );
+
+        String sql =
+            "delete from " + table.getTableName() + " ax " +
+            "using " + CHANGES_TABLE + " ch " +
+            "where ax.year = ch.year and ax.dx = ch.dx and ax.pe = ch.pe and ax.ou = ch.ou";
+
+        invokeTimeAndLog( sql, "Remove changed data values" );
+
+        final String joinClause =
+            "inner join " + CHANGES_TABLE + " ch on dv.dataelementid=ch.dataelementid " +
+            "and dv.periodid=ch.periodid and dv.sourceid=ch.sourceid ";
+
+        final int rollupLevel = getRollupOrgUnitLevel();
+        final List<String> rollupTables = getRollupTables();
+
+        for ( AnalyticsTablePartition partition : table.getTablePartitions() )
+        {
+            final String tableName = partition.getTableName();
+
+            if ( !partitionManager.tableExists( tableName ) )
+            {
+                createTablePartition( partition );
+            }
+
+            populateTable( params, partition, tableName, joinClause, null );
+
+            applyChangedDataAggregationLevels( tableName, aggregationLevels );
+
+            analyzeTable( tableName );
+
+            if ( rollupLevel > 0 )
+            {
+                createRollupTable( rollupLevel, tableName, partition.getYear() );
+            }
+
+            swapRollupTable( rollupLevel, partition.getYear(), rollupTables );
+        }
+
+        AnalyticsTableChanges changes = new AnalyticsTableChanges( getAnalyticsTableType(), new HashSet<>( years ),
+            new HashSet<>( jdbcTemplate.queryForList( "select distinct dx from " + CHANGES_TABLE, String.class ) ),
+            getOrgUnitsWithAncestors( jdbcTemplate.queryForList( "select distinct oupath from " + CHANGES_TABLE, String.class ) ) );
+
+        dropTable( CHANGES_TABLE );
+
+        return changes;
+    }
+
     @Override
     protected List<String> getPartitionChecks( AnalyticsTablePartition partition )
     {
@@ -232,8 +433,219 @@ public class JdbcAnalyticsTableManager
                 "pestartdate < '" + DateUtils.getMediumDateString( partition.getEndDate() ) + "'" );
     }
 
+    /**
+     * Returns the dimension columns of the most frequent queries, as recorded
+     * by the {@link AnalyticsQueryFrequencyTracker}, for the dimension
+     * combinations shared by most queries. The data dimension comes first as
+     * it is the most selective.
+     */
+    @Override
+    protected List<List<String>> getQueryIndexColumns()
+    {
+        final List<DataQueryRequest> requests = queryFrequencyTracker.getMostFrequentQueries( QUERY_INDEX_SAMPLE_SIZE );
+        final Map<String, Integer> orgUnitLevels = getOrgUnitLevels( requests );
+        final Map<List<String>, Integer> columnCounts = new HashMap<>();
+
+        for ( DataQueryRequest request : requests )
+        {
+            List<String> columns = getQueryColumns( request, orgUnitLevels );
+
+            if ( columns.size() > 1 )
+            {
+                columnCounts.merge( columns, 1, Integer::sum );
+            }
+        }
+
+        return columnCounts.entrySet().stream()
+            .sorted( Map.Entry.<List<String>, Integer> comparingByValue().reversed() )
+            .limit( MAX_QUERY_INDEXES )
+            .map( Map.Entry::getKey )
+            .collect( Collectors.toList() );
+    }
+
+    /**
+     * Returns the analytics table columns which the given query filters on.
+     * Dimensions which map to more than one column, such as organisation units
+     * of different levels, are skipped.
+     *
+     * @param request the {@link DataQueryRequest}.
+     * @param orgUnitLevels mapping of organisation unit identifiers to levels.
+     */
+    private List<String> getQueryColumns( DataQueryRequest request, Map<String, Integer> orgUnitLevels )
+    {
+        final Set<String> columns = new TreeSet<>();
+        boolean dataDimension = false;
+
+        for ( String param : getDimensionParams( request ) )
+        {
+            String dimension = DimensionalObjectUtils.getDimensionFromParam( param );
+
+            if ( DimensionalObject.DATA_X_DIM_ID.equals( dimension ) )
+            {
+                dataDimension = true;
+                continue;
+            }
+
+            Set<String> dimensionColumns = DimensionalObjectUtils.getDimensionItemsFromParam( param ).stream()
+                .map( item -> getQueryColumn( dimension, item, orgUnitLevels ) )
+                .filter( Objects::nonNull )
+                .collect( Collectors.toSet() );
+
+            if ( dimensionColumns.size() == 1 )
+            {
+                columns.addAll( dimensionColumns );
+            }
+        }
+
+        final List<String> queryColumns = new ArrayList<>();
+
+        if ( dataDimension )
+        {
+            queryColumns.add( quote( "dx" ) );
+        }
+
+        queryColumns.addAll( columns );
+
+        return queryColumns.stream().limit( MAX_QUERY_INDEX_COLUMNS ).collect( Collectors.toList() );
+    }
+
+    private String getQueryColumn( String dimension, String item, Map<String, Integer> orgUnitLevels )
+    {
+        if ( DimensionalObject.PERIOD_DIM_ID.equals( dimension ) )
+        {
+            Period period = PeriodType.getPeriodFromIsoString( item );
+
+            return period != null ? quote( period.getPeriodType().getName().toLowerCase() ) : null;
+        }
+        else if ( DimensionalObject.ORGUNIT_DIM_ID.equals( dimension ) )
+        {
+            Integer level = orgUnitLevels.get( item );
+
+            return level != null && level > 0 ? quote( PREFIX_ORGUNITLEVEL + level ) : null;
+        }
+
+        return quote( dimension );
+    }
+
+    /**
+     * Returns the levels of the organisation units of the given queries, as the
+     * queries only hold organisation unit identifiers.
+     *
+     * @param requests the list of {@link DataQueryRequest}.
+     * @return a mapping of organisation unit identifiers to levels.
+     */
+    private Map<String, Integer> getOrgUnitLevels( List<DataQueryRequest> requests )
+    {
+        final Set<String> orgUnits = requests.stream()
+            .flatMap( request -> getDimensionParams( request ).stream() )
+            .filter( param -> DimensionalObject.ORGUNIT_DIM_ID.equals( DimensionalObjectUtils.getDimensionFromParam( param ) ) )
+            .flatMap( param -> DimensionalObjectUtils.getDimensionItemsFromParam( param ).stream() )
+            .filter( CodeGenerator::isValidUid )
+            .collect( Collectors.toSet() );
+
+        final Map<String, Integer> levels = new HashMap<>();
+
+        if ( orgUnits.isEmpty() )
+        {
+            return levels;
+        }
+
+        final String sql = "select uid, hierarchylevel from organisationunit " +
+            "where uid in (" + getQuotedCommaDelimitedString( orgUnits ) + ")";
+
+        for ( Map<String, Object> row : jdbcTemplate.queryForList( sql ) )
+        {
+            Object level = row.get( "hierarchylevel" );
+
+            if ( level != null )
+            {
+                levels.put( (String) row.get( "uid" ), ((Number) level).intValue() );
+            }
+        }
+
+        return levels;
+    }
+
+    private Set<String> getDimensionParams( DataQueryRequest request )
+    {
+        final Set<String> params = new HashSet<>();
+
+        if ( request.getDimension() != null )
+        {
+            params.addAll( request.getDimension() );
+        }
+
+        if ( request.getFilter() != null )
+        {
+            params.addAll( request.getFilter() );
+        }
+
+        return params;
+    }
+
+    /**
+     * Splits the regular table partitions into chunks of data elements with
+     * contiguous identifiers, so that the partitions of large years can be
+     * populated concurrently. Chunks of the most recent years come first as
+     * those tend to hold the most data. The "latest" partition is not split.
+     */
+    @Override
+    public List<AnalyticsTableChunk> getTableChunks( AnalyticsTableUpdateParams params, List<AnalyticsTablePartition> partitions )
+    {
+        final Integer chunkCount = (Integer) systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_POPULATE_CHUNKS );
+
+        if ( chunkCount == null || chunkCount <= 1 )
+        {
+            return super.getTableChunks( params, partitions );
+        }
+
+        final List<String> conditions = getDataElementRangeConditions( chunkCount );
+
+        final List<AnalyticsTablePartition> sortedPartitions = new ArrayList<>( partitions );
+        sortedPartitions.sort( Comparator.comparing( AnalyticsTablePartition::getYear, Comparator.nullsLast( Comparator.<Integer>reverseOrder() ) ) );
+
+        final List<AnalyticsTableChunk> chunks = new ArrayList<>();
+
+        for ( AnalyticsTablePartition partition : sortedPartitions )
+        {
+            if ( partition.isLatestPartition() || conditions.size() <= 1 )
+            {
+                chunks.add( new AnalyticsTableChunk( partition ) );
+                continue;
+            }
+
+            for ( int i = 0; i < conditions.size(); i++ )
+            {
+                chunks.add( new AnalyticsTableChunk( partition, conditions.get( i ), i + 1, conditions.size() ) );
+            }
+        }
+
+        return chunks;
+    }
+
     @Override
     protected void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition )
+    {
+        populateTable( params, partition, partition.getTempTableName(), StringUtils.EMPTY, null );
+    }
+
+    @Override
+    protected void populateTable( AnalyticsTableUpdateParams params, AnalyticsTableChunk chunk )
+    {
+        final AnalyticsTablePartition partition = chunk.getPartition();
+
+        populateTable( params, partition, partition.getTempTableName(), StringUtils.EMPTY, chunk.getCondition() );
+    }
+
+    /**
+     * Populates the given table with the data of the given partition.
+     *
+     * @param tableName the name of the table to insert into.
+     * @param joinClause join clause to constrain the data query.
+     * @param condition condition to constrain the data query, can be null.
+     */
+    private void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition,
+        String tableName, String joinClause, String condition )
     {
         final String dbl = statementBuilder.getDoubleColumnType();
         final boolean skipDataTypeValidation = (Boolean) systemSettingManager.getSystemSetting( SettingKey.SKIP_DATA_TYPE_VALIDATION_IN_ANALYTICS_TABLE_EXPORT );
@@ -244,24 +656,66 @@ public class JdbcAnalyticsTableManager
         final String zeroValueClause = "(dv.value != '0' or de.aggregationtype in ('" + AggregationType.AVERAGE + ',' + AggregationType.AVERAGE_SUM_ORG_UNIT + "')" + zeroValueCondition + ") ";
         final String intClause = zeroValueClause + numericClause;
 
-        populateTable( params, partition, "cast(dv.value as " + dbl + ")", "null", ValueType.NUMERIC_TYPES, intClause );
-        populateTable( params, partition, "1", "null", Sets.newHashSet( ValueType.BOOLEAN, ValueType.TRUE_ONLY ), "dv.value = 'true'" );
-        populateTable( params, partition, "0", "null", Sets.newHashSet( ValueType.BOOLEAN ), "dv.value = 'false'" );
-        populateTable( params, partition, "null", "dv.value", Sets.union( ValueType.TEXT_TYPES, ValueType.DATE_TYPES ), null );
+        populateTable( params, partition, tableName, joinClause, "cast(dv.value as " + dbl + ")", "null", ValueType.NUMERIC_TYPES, and( condition, intClause ) );
+        populateTable( params, partition, tableName, joinClause, "1", "null", Sets.newHashSet( ValueType.BOOLEAN, ValueType.TRUE_ONLY ), and( condition, "dv.value = 'true'" ) );
+        populateTable( params, partition, tableName, joinClause, "0", "null", Sets.newHashSet( ValueType.BOOLEAN ), and( condition, "dv.value = 'false'" ) );
+        populateTable( params, partition, tableName, joinClause, "null", "dv.value", Sets.union( ValueType.TEXT_TYPES, ValueType.DATE_TYPES ), condition );
+    }
+
+    /**
+     * Returns conditions which split the aggregate data elements into the
+     * given number of ranges of contiguous identifiers with an equal number of
+     * data elements.
+     *
+     * @param chunkCount the number of ranges.
+     */
+    private List<String> getDataElementRangeConditions( int chunkCount )
+    {
+        final String sql =
+            "select dataelementid from dataelement " +
+            "where domaintype = 'AGGREGATE' " +
+            "order by dataelementid";
+
+        final List<Long> ids = jdbcTemplate.queryForList( sql, Long.class );
+
+        final List<String> conditions = new ArrayList<>();
+
+        final int rangeSize = Math.max( 1, (int) Math.ceil( (double) ids.size() / chunkCount ) );
+
+        for ( List<Long> range : Lists.partition( ids, rangeSize ) )
+        {
+            conditions.add( "dv.dataelementid between " + range.get( 0 ) + " and " + range.get( range.size() - 1 ) );
+        }
+
+        return conditions;
+    }
+
+    /**
+     * Combines the given conditions with "and". Null conditions are ignored.
+     */
+    private static String and( String condition, String otherCondition )
+    {
+        if ( condition == null )
+        {
+            return otherCondition;
+        }
+
+        return otherCondition == null ? condition : ( condition + " and " + otherCondition );
     }
 
     /**
      * Populates the given analytics table.
      *
+     * @param tableName the name of the table to insert into.
+     * @param joinClause join clause to constrain the data query.
      * @param valueExpression numeric value expression.
      * @param textValueExpression textual value expression.
      * @param valueTypes data element value types to include data for.
      * @param whereClause where clause to constrain data query.
      */
-    private void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition,
-        String valueExpression, String textValueExpression, Set<ValueType> valueTypes, String whereClause )
+    private void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition, String tableName,
+        String joinClause, String valueExpression, String textValueExpression, Set<ValueType> valueTypes, String whereClause )
     {
-        final String tableName = partition.getTempTableName();
         final String valTypes = TextUtils.getQuotedCommaDelimitedString( ObjectUtils.asStringList( valueTypes ) );
         final boolean respectStartEndDates = (Boolean) systemSettingManager.getSystemSetting( SettingKey.RESPECT_META_DATA_START_END_DATES_IN_ANALYTICS_TABLE_EXPORT );
         final String approvalClause = getApprovalJoinClause( partition.getYear() );
@@ -269,7 +723,7 @@ public class JdbcAnalyticsTableManager
             "and dv.lastupdated >= '" + getLongDateString( partition.getStartDate() ) + "' " :
             "and ps.year = " + partition.getYear() + " ";
 
-        String sql = "insert into " + partition.getTempTableName() + " (";
+        String sql = "insert into " + tableName + " (";
 
         List<AnalyticsTableColumn> columns = getDimensionColumns( partition.getYear() );
         List<AnalyticsTableColumn> values = partition.getMasterTable().getValueColumns();
@@ -294,6 +748,7 @@ public class JdbcAnalyticsTableManager
             valueExpression + " as value, " +
             textValueExpression + " as textvalue " +
             "from datavalue dv " +
+            joinClause +
             "inner join period pe on dv.periodid=pe.periodid " +
             "inner join _periodstructure ps on dv.periodid=ps.periodid " +
             "inner join dataelement de on dv.dataelementid=de.dataelementid " +
@@ -445,6 +900,232 @@ public class JdbcAnalyticsTableManager
         return filterDimensionColumns( columns );
     }
 
+    /**
+     * Creates a table holding the data element, period, organisation unit and
+     * year of the data values which were changed within the given time range,
+     * including deleted data values.
+     *
+     * @param startDate the start of the time range, inclusive.
+     * @param endDate the end of the time range, exclusive.
+     */
+    private void createChangesTable( Date startDate, Date endDate )
+    {
+        dropTable( CHANGES_TABLE );
+
+        String sql =
+            "create table " + CHANGES_TABLE + " as " +
+            "select distinct dv.dataelementid, dv.periodid, dv.sourceid, ps.year, " +
+            "de.uid as dx, ps.iso as pe, ou.uid as ou, ou.path as oupath " +
+            "from datavalue dv " +
+            "inner join _periodstructure ps on dv.periodid=ps.periodid " +
+            "inner join dataelement de on dv.dataelementid=de.dataelementid " +
+            "inner join organisationunit ou on dv.sourceid=ou.organisationunitid " +
+            "where de.domaintype = 'AGGREGATE' " +
+            "and dv.lastupdated >= '" + getLongDateString( startDate ) + "' " +
+            "and dv.lastupdated < '" + getLongDateString( endDate ) + "'";
+
+        invokeTimeAndLog( sql, "Collect changed data values" );
+
+        jdbcTemplate.execute( "create index in_" + CHANGES_TABLE + " on " + CHANGES_TABLE + " (dataelementid, periodid, sourceid)" );
+
+        analyzeTable( CHANGES_TABLE );
+    }
+
+    /**
+     * Checks that the given analytics table has all dimension columns of the
+     * given table. Columns are added for new metadata like organisation unit
+     * group sets by full analytics table updates only.
+     *
+     * @param table the {@link AnalyticsTable}.
+     * @throws IllegalStateException if a dimension column does not exist.
+     */
+    private void validateTableColumns( AnalyticsTable table )
+    {
+        final String sql =
+            "select column_name from information_schema.columns " +
+            "where table_name = '" + table.getTableName() + "'";
+
+        Set<String> tableColumns = new HashSet<>( jdbcTemplate.queryForList( sql, String.class ) );
+
+        List<String> missingColumns = table.getDimensionColumns().stream()
+            .map( col -> removeQuote( col.getName() ) )
+            .filter( col -> !tableColumns.contains( col ) )
+            .collect( Collectors.toList() );
+
+        if ( !missingColumns.isEmpty() )
+        {
+            throw new IllegalStateException( String.format(
+                "Analytics table columns do not exist: %s, a full analytics table update is required", missingColumns ) );
+        }
+    }
+
+    /**
+     * Creates the given table partition inheriting from the analytics table.
+     *
+     * @param partition the {@link AnalyticsTablePartition}.
+     */
+    private void createTablePartition( AnalyticsTablePartition partition )
+    {
+        String checks = getPartitionChecks( partition ).stream()
+            .map( check -> "check (" + check + ")" )
+            .collect( Collectors.joining( ", " ) );
+
+        String sql = "create table " + partition.getTableName() + " (" + checks + ") " +
+            "inherits (" + partition.getMasterTable().getTableName() + ")";
+
+        invokeTimeAndLog( sql, String.format( "Create partition table %s", partition.getTableName() ) );
+    }
+
+    /**
+     * Applies aggregation levels to the rows of the changed data in the given
+     * table.
+     *
+     * @param tableName the table name.
+     * @param aggregationLevels map of aggregation level to data element identifiers.
+     */
+    private void applyChangedDataAggregationLevels( String tableName, Map<Integer, Collection<String>> aggregationLevels )
+    {
+        for ( Map.Entry<Integer, Collection<String>> entry : aggregationLevels.entrySet() )
+        {
+            int aggregationLevel = entry.getKey();
+
+            String sql =
+                "update " + tableName + " ax " +
+                "set " + getAggregationLevelSetClause( aggregationLevel ) + " " +
+                "from " + CHANGES_TABLE + " ch " +
+                "where ax.dx = ch.dx and ax.pe = ch.pe and ax.ou = ch.ou " +
+                "and ax.level > " + aggregationLevel + " " +
+                "and ax.dx in (" + getQuotedCommaDelimitedString( entry.getValue() ) + ")";
+
+            log.debug( "Aggregation level SQL: " + sql );
+
+            jdbcTemplate.execute( sql );
+        }
+    }
+
+    /**
+     * Returns the identifiers of the organisation units of the given paths,
+     * which includes the organisation units and all of their ancestors.
+     *
+     * @param paths the organisation unit paths.
+     */
+    private Set<String> getOrgUnitsWithAncestors( List<String> paths )
+    {
+        return paths.stream()
+            .filter( Objects::nonNull )
+            .flatMap( path -> Arrays.stream( path.split( "/" ) ) )
+            .filter( StringUtils::isNotEmpty )
+            .collect( Collectors.toSet() );
+    }
+
+    /**
+     * Creates the temporary rollup table for the given year from the given
+     * source table.
+     *
+     * @param rollupLevel the deepest organisation unit level.
+     * @param sourceTableName the name of the table to aggregate.
+     * @param year the year.
+     */
+    private void createRollupTable( int rollupLevel, String sourceTableName, Integer year )
+    {
+        final String tableName = getRollupTempTableName( rollupLevel, year );
+        final String columns = StringUtils.join( getRollupColumns( rollupLevel ), "," );
+        final String value = quote( "value" );
+
+        dropTable( tableName );
+
+        String sql =
+            "create table " + tableName + " as " +
+            "select " + columns + ", sum(" + value + ") as " + value + " " +
+            "from " + sourceTableName + " " +
+            "where " + value + " is not null " +
+            "group by " + columns;
+
+        invokeTimeAndLog( sql, String.format( "Create rollup table %s", tableName ) );
+
+        String indexName = quote( "in_rollup_dx_" + year + "_" + CodeGenerator.generateCode( 5 ) );
+
+        jdbcTemplate.execute( "create index " + indexName + " on " + tableName + " (" + quote( "dx" ) + ")" );
+
+        analyzeTable( tableName );
+    }
+
+    /**
+     * Swaps the rollup table of the given year, and drops the rollup tables of
+     * the year which were created with another rollup level.
+     *
+     * @param rollupLevel the deepest organisation unit level, 0 if disabled.
+     * @param year the year.
+     * @param rollupTables the names of the existing rollup tables.
+     */
+    private void swapRollupTable( int rollupLevel, Integer year, List<String> rollupTables )
+    {
+        final String tableName = rollupLevel > 0 ?
+            PartitionUtils.getPartitionName( PartitionUtils.getRollupTableName( rollupLevel ), year ) : null;
+
+        rollupTables.stream()
+            .filter( t -> t.endsWith( PartitionUtils.SEP + year ) && !t.equals( tableName ) )
+            .forEach( this::dropTable );
+
+        if ( tableName != null )
+        {
+            swapTable( getRollupTempTableName( rollupLevel, year ), tableName );
+        }
+    }
+
+    private int getRollupOrgUnitLevel()
+    {
+        Integer level = (Integer) systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL );
+
+        return level != null ? level : 0;
+    }
+
+    /**
+     * Returns the quoted names of the columns which rollup tables are grouped by.
+     *
+     * @param rollupLevel the deepest organisation unit level.
+     */
+    private List<String> getRollupColumns( int rollupLevel )
+    {
+        List<String> columns = newArrayList( quote( "dx" ), quote( "year" ),
+            quote( YearlyPeriodType.NAME.toLowerCase() ),
+            quote( QuarterlyPeriodType.NAME.toLowerCase() ),
+            quote( MonthlyPeriodType.NAME.toLowerCase() ) );
+
+        for ( OrganisationUnitLevel level : organisationUnitService.getFilledOrganisationUnitLevels() )
+        {
+            if ( level.getLevel() <= rollupLevel )
+            {
+                columns.add( quote( PREFIX_ORGUNITLEVEL + level.getLevel() ) );
+            }
+        }
+
+        return columns;
+    }
+
+    private String getRollupTempTableName( int rollupLevel, Integer year )
+    {
+        return PartitionUtils.getRollupTableName( rollupLevel ) + TABLE_TEMP_SUFFIX + PartitionUtils.SEP + year;
+    }
+
+    /**
+     * Returns the names of the existing rollup tables, not including temporary
+     * rollup tables.
+     */
+    private List<String> getRollupTables()
+    {
+        final String prefix = AnalyticsTableType.DATA_VALUE.getTableName() + PartitionUtils.SEP + PartitionUtils.ROLLUP;
+
+        final String sql =
+            "select table_name from information_schema.tables " +
+            "where table_name like '" + prefix + "%' " +
+            "and table_type = 'BASE TABLE'";
+
+        return jdbcTemplate.queryForList( sql, String.class ).stream()
+            .filter( t -> !t.contains( TABLE_TEMP_SUFFIX ) )
+            .collect( Collectors.toList() );
+    }
+
     private List<AnalyticsTableColumn> getValueColumns()
     {
         return Lists.newArrayList(
@@ -487,16 +1168,7 @@ public class JdbcAnalyticsTableManager
 
             StringBuilder sql = new StringBuilder( "update " + partition.getTempTableName() + " set " );
 
-            for ( int i = 0; i < aggregationLevel; i++ )
-            {
-                int level = i + 1;
-
-                String column = quote( DataQueryParams.LEVEL_PREFIX + level );
-
-                sql.append( column + " = null," );
-            }
-
-            sql.deleteCharAt( sql.length() - ",".length() );
+            sql.append( getAggregationLevelSetClause( aggregationLevel ) );
 
             sql.append( " where level > " + aggregationLevel );
             sql.append( " and dx in (" + getQuotedCommaDelimitedString( dataElements ) + ")" );
@@ -509,6 +1181,26 @@ public class JdbcAnalyticsTableManager
         return ConcurrentUtils.getImmediateFuture();
     }
 
+    /**
+     * Returns a set clause which sets the organisation unit level columns up to
+     * and including the given aggregation level to null.
+     *
+     * @param aggregationLevel the aggregation level.
+     */
+    private String getAggregationLevelSetClause( int aggregationLevel )
+    {
+        List<String> columns = new ArrayList<>();
+
+        for ( int i = 0; i < aggregationLevel; i++ )
+        {
+            int level = i + 1;
+
+            columns.add( quote( DataQueryParams.LEVEL_PREFIX + level ) + " = null" );
+        }
+
+        return StringUtils.join( columns, "," );
+    }
+
     @Override
     @Async
     public Future<?> vacuumTablesAsync( ConcurrentLinkedQueue<AnalyticsTablePartition> partitions )
@@ -37,6 +37,7 @@ import static com.google.common.collect.Lists.newArrayList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -146,6 +147,24 @@ public class JdbcCompletenessTableManager
         return !jdbcTemplate.queryForList( sql ).isEmpty();
     }
 
+    @Override
+    public Set<Integer> getPartitionYears( AnalyticsTablePartition partition )
+    {
+        if ( !partition.isLatestPartition() )
+        {
+            return super.getPartitionYears( partition );
+        }
+
+        String sql =
+            "select distinct ps.year " +
+            "from completedatasetregistration cdr " +
+            "inner join _periodstructure ps on cdr.periodid=ps.periodid " +
+            "where cdr.lastupdated >= '" + getLongDateString( partition.getStartDate() ) + "' " +
+            "and cdr.lastupdated < '" + getLongDateString( partition.getEndDate() ) + "'";
+
+        return new HashSet<>( jdbcTemplate.queryForList( sql, Integer.class ) );
+    }
+
     @Override
     public void removeUpdatedData( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
     {
@@ -58,6 +58,8 @@ public class PartitionUtils
 {
     public static final String SEP = "_";
 
+    public static final String ROLLUP = "rollup";
+
     /**
      * Returns the start date for the given year, inclusive.
      *
@@ -141,6 +143,21 @@ public class PartitionUtils
         return getPartitions( period );
     }
 
+    /**
+     * Returns partitions for the given {@link DataQueryParams}, based on the
+     * start and end date or the periods of the query. Does not include a
+     * "latest" partition.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @return partitions for the query parameters.
+     */
+    public static Partitions getPartitions( DataQueryParams params )
+    {
+        return params.hasStartEndDate() ?
+            getPartitions( params.getStartDate(), params.getEndDate() ) :
+            getPartitions( params.getAllPeriods() );
+    }
+
     /**
      * Returns partitions for the given {@link DataQueryParams} and
      * {@link AnalyticsTableType}. Includes a "latest" partition depending
@@ -152,9 +169,7 @@ public class PartitionUtils
      */
     public static Partitions getPartitions( DataQueryParams params, AnalyticsTableType tableType )
     {
-        Partitions partitions = params.hasStartEndDate() ?
-            getPartitions( params.getStartDate(), params.getEndDate() ) :
-            getPartitions( params.getAllPeriods() );
+        Partitions partitions = getPartitions( params );
 
         if ( tableType.hasLatestPartition() )
         {
@@ -258,4 +273,16 @@ public class PartitionUtils
     {
         return tableName + SEP + partition;
     }
+
+    /**
+     * Returns the name of the rollup table of the aggregate analytics table
+     * which holds data aggregated up to the given organisation unit level.
+     *
+     * @param orgUnitLevel the deepest organisation unit level of the rollup table.
+     * @return the rollup table name.
+     */
+    public static String getRollupTableName( int orgUnitLevel )
+    {
+        return AnalyticsTableType.DATA_VALUE.getTableName() + SEP + ROLLUP + SEP + "l" + orgUnitLevel;
+    }
 }
@@ -0,0 +1,206 @@
+package org.hisp.dhis.analytics.table.profile;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Class representing the profile of a single analytics table update run, with
+ * the duration of each phase, SQL statement, partition chunk populate and
+ * index build, and the number of rows and bytes of the written tables.
+ */
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class AnalyticsTableProfile
+{
+    /**
+     * The identifier of the persisted profile.
+     */
+    private Long id;
+
+    /**
+     * The identifier of the job which ran the update.
+     */
+    private String jobId;
+
+    /**
+     * The type of update, one of full, latest or incremental.
+     */
+    private String updateType;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    /**
+     * Whether the update completed successfully.
+     */
+    private boolean success;
+
+    /**
+     * The profile entries, null if not loaded.
+     */
+    private List<AnalyticsTableProfileEntry> entries;
+
+    public AnalyticsTableProfile()
+    {
+    }
+
+    public AnalyticsTableProfile( String jobId, String updateType, Date startTime )
+    {
+        this.jobId = jobId;
+        this.updateType = updateType;
+        this.startTime = startTime;
+        this.entries = new ArrayList<>();
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds the given entry. Entries are added concurrently by the tasks of the
+     * analytics table update.
+     *
+     * @param entry the {@link AnalyticsTableProfileEntry}.
+     */
+    public synchronized void addEntry( AnalyticsTableProfileEntry entry )
+    {
+        entries.add( entry );
+    }
+
+    /**
+     * Returns the total duration in milliseconds by phase name, summed over all
+     * table types.
+     */
+    @JsonProperty
+    public synchronized Map<String, Long> getPhases()
+    {
+        if ( entries == null )
+        {
+            return null;
+        }
+
+        Map<String, Long> phases = new TreeMap<>();
+
+        entries.stream()
+            .filter( entry -> AnalyticsTableProfileEntry.Type.PHASE == entry.getType() )
+            .forEach( entry -> phases.merge( entry.getName(), entry.getDuration(), Long::sum ) );
+
+        return phases;
+    }
+
+    // -------------------------------------------------------------------------
+    // Get and set methods
+    // -------------------------------------------------------------------------
+
+    @JsonProperty
+    public Long getId()
+    {
+        return id;
+    }
+
+    public void setId( Long id )
+    {
+        this.id = id;
+    }
+
+    @JsonProperty
+    public String getJobId()
+    {
+        return jobId;
+    }
+
+    public void setJobId( String jobId )
+    {
+        this.jobId = jobId;
+    }
+
+    @JsonProperty
+    public String getUpdateType()
+    {
+        return updateType;
+    }
+
+    public void setUpdateType( String updateType )
+    {
+        this.updateType = updateType;
+    }
+
+    @JsonProperty
+    public Date getStartTime()
+    {
+        return startTime;
+    }
+
+    public void setStartTime( Date startTime )
+    {
+        this.startTime = startTime;
+    }
+
+    @JsonProperty
+    public Date getEndTime()
+    {
+        return endTime;
+    }
+
+    public void setEndTime( Date endTime )
+    {
+        this.endTime = endTime;
+    }
+
+    @JsonProperty
+    public boolean isSuccess()
+    {
+        return success;
+    }
+
+    public void setSuccess( boolean success )
+    {
+        this.success = success;
+    }
+
+    @JsonProperty
+    public synchronized List<AnalyticsTableProfileEntry> getEntries()
+    {
+        return entries != null ? Collections.unmodifiableList( new ArrayList<>( entries ) ) : null;
+    }
+
+    public synchronized void setEntries( List<AnalyticsTableProfileEntry> entries )
+    {
+        this.entries = entries != null ? new ArrayList<>( entries ) : null;
+    }
+}
@@ -0,0 +1,133 @@
+package org.hisp.dhis.analytics.table.profile;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.analytics.AnalyticsTableType;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Class representing a timed step of an analytics table update, such as an
+ * update phase, a SQL statement or an index build.
+ */
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class AnalyticsTableProfileEntry
+{
+    public enum Type
+    {
+        PHASE, STATEMENT, POPULATE, INDEX, TABLE
+    }
+
+    /**
+     * The type of step.
+     */
+    private final Type type;
+
+    /**
+     * The analytics table type, null if the step is not specific to a table type.
+     */
+    private final AnalyticsTableType tableType;
+
+    /**
+     * The name of the step, e.g. the phase name or the statement description.
+     */
+    private final String name;
+
+    /**
+     * The duration of the step in milliseconds.
+     */
+    private final long duration;
+
+    /**
+     * The number of rows of the table written by the step, null if unknown.
+     */
+    private final Long rows;
+
+    /**
+     * The number of bytes of the table or index written by the step, null if
+     * unknown.
+     */
+    private final Long bytes;
+
+    @JsonCreator
+    public AnalyticsTableProfileEntry( @JsonProperty( "type" ) Type type,
+        @JsonProperty( "tableType" ) AnalyticsTableType tableType, @JsonProperty( "name" ) String name,
+        @JsonProperty( "duration" ) long duration, @JsonProperty( "rows" ) Long rows,
+        @JsonProperty( "bytes" ) Long bytes )
+    {
+        this.type = type;
+        this.tableType = tableType;
+        this.name = name;
+        this.duration = duration;
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    // -------------------------------------------------------------------------
+    // Get methods
+    // -------------------------------------------------------------------------
+
+    @JsonProperty
+    public Type getType()
+    {
+        return type;
+    }
+
+    @JsonProperty
+    public AnalyticsTableType getTableType()
+    {
+        return tableType;
+    }
+
+    @JsonProperty
+    public String getName()
+    {
+        return name;
+    }
+
+    @JsonProperty
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    @JsonProperty
+    public Long getRows()
+    {
+        return rows;
+    }
+
+    @JsonProperty
+    public Long getBytes()
+    {
+        return bytes;
+    }
+}
@@ -0,0 +1,70 @@
+package org.hisp.dhis.analytics.table.profile;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.List;
+
+/**
+ * Store for persisted {@link AnalyticsTableProfile} instances.
+ */
+public interface AnalyticsTableProfileStore
+{
+    /**
+     * Saves the given profile including its entries.
+     *
+     * @param profile the {@link AnalyticsTableProfile}.
+     */
+    void save( AnalyticsTableProfile profile );
+
+    /**
+     * Returns the most recent profiles, most recent first. The entries of the
+     * profiles are not loaded.
+     *
+     * @param limit the max number of profiles to return.
+     * @return a list of {@link AnalyticsTableProfile}.
+     */
+    List<AnalyticsTableProfile> getProfiles( int limit );
+
+    /**
+     * Returns the profile with the given identifier including its entries.
+     *
+     * @param id the profile identifier.
+     * @return the {@link AnalyticsTableProfile}, or null if it does not exist.
+     */
+    AnalyticsTableProfile getProfile( long id );
+
+    /**
+     * Deletes all but the given number of most recent profiles of the given
+     * update type.
+     *
+     * @param updateType the update type.
+     * @param keep the number of profiles to keep.
+     */
+    void deleteOldProfiles( String updateType, int keep );
+}
@@ -0,0 +1,327 @@
+package org.hisp.dhis.analytics.table.profile;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileEntry.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records the duration of the phases, SQL statements, partition chunk
+ * populates and index builds of analytics table updates, and the number of
+ * rows and bytes of the written tables and indexes. Durations are recorded as
+ * Micrometer timers tagged by step type and table type, where phases are also
+ * tagged by phase name. The entries of an update run are persisted as an
+ * {@link AnalyticsTableProfile} when the run is finished, so that runs can be
+ * compared.
+ * <p>
+ * The profile of a run is carried in the {@link AnalyticsTableUpdateParams} of
+ * the run. Steps recorded by table managers are added to the profile of the
+ * run currently updating the table type of the step.
+ */
+@Slf4j
+@Component
+public class AnalyticsTableProfiler
+{
+    private static final String DURATION = "analytics.table.duration";
+
+    private static final String ROWS = "analytics.table.rows";
+
+    private static final String BYTES = "analytics.table.bytes";
+
+    private static final String TAG_TYPE = "type";
+
+    private static final String TAG_TABLE_TYPE = "tableType";
+
+    private static final String TAG_PHASE = "phase";
+
+    private static final String NONE = "none";
+
+    /**
+     * The max number of persisted profiles per update type.
+     */
+    private static final int MAX_PROFILES = 100;
+
+    private final AnalyticsTableProfileStore profileStore;
+
+    /**
+     * Profiles of the runs currently updating each table type.
+     */
+    private final Map<AnalyticsTableType, AnalyticsTableProfile> activeProfiles = new ConcurrentHashMap<>();
+
+    private MeterRegistry meterRegistry;
+
+    public AnalyticsTableProfiler( AnalyticsTableProfileStore profileStore )
+    {
+        checkNotNull( profileStore );
+
+        this.profileStore = profileStore;
+    }
+
+    @Autowired( required = false )
+    public void setMeterRegistry( MeterRegistry meterRegistry )
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Starts profiling an analytics table update run. The returned profile
+     * should be set on the {@link AnalyticsTableUpdateParams} of the run.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @return the {@link AnalyticsTableProfile} of the run.
+     */
+    public AnalyticsTableProfile startRun( AnalyticsTableUpdateParams params )
+    {
+        String jobId = params.getJobId() != null ? params.getJobId().getUid() : null;
+
+        return new AnalyticsTableProfile( jobId, getUpdateType( params ), new Date() );
+    }
+
+    /**
+     * Finishes profiling the analytics table update run of the given
+     * parameters and persists the profile. Persisting failures are logged and
+     * do not fail the run.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param success whether the run completed successfully.
+     * @return the {@link AnalyticsTableProfile}, or null if no run was started.
+     */
+    public AnalyticsTableProfile finishRun( AnalyticsTableUpdateParams params, boolean success )
+    {
+        AnalyticsTableProfile profile = params.getProfile();
+
+        if ( profile == null )
+        {
+            return null;
+        }
+
+        activeProfiles.values().removeIf( p -> p == profile );
+
+        profile.setEndTime( new Date() );
+        profile.setSuccess( success );
+
+        try
+        {
+            profileStore.save( profile );
+            profileStore.deleteOldProfiles( profile.getUpdateType(), MAX_PROFILES );
+        }
+        catch ( RuntimeException ex )
+        {
+            log.warn( "Failed to save analytics table profile: " + ex.getMessage(), ex );
+        }
+
+        return profile;
+    }
+
+    /**
+     * Returns a timer for the phases of an update of the given table type.
+     * Steps of the table type recorded until the run is finished are added to
+     * the profile of the given parameters.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param tableType the {@link AnalyticsTableType}, can be null.
+     */
+    public PhaseTimer startPhases( AnalyticsTableUpdateParams params, AnalyticsTableType tableType )
+    {
+        AnalyticsTableProfile profile = params.getProfile();
+
+        if ( profile != null && tableType != null )
+        {
+            activeProfiles.put( tableType, profile );
+        }
+
+        return new PhaseTimer( profile, tableType );
+    }
+
+    /**
+     * Records a timed step.
+     *
+     * @param type the step {@link Type}.
+     * @param tableType the {@link AnalyticsTableType}, can be null.
+     * @param name the name of the step.
+     * @param nanos the duration in nanoseconds.
+     */
+    public void record( Type type, AnalyticsTableType tableType, String name, long nanos )
+    {
+        record( type, tableType, name, nanos, null, null );
+    }
+
+    /**
+     * Records a timed step with the number of rows and bytes written.
+     *
+     * @param type the step {@link Type}.
+     * @param tableType the {@link AnalyticsTableType}, can be null.
+     * @param name the name of the step.
+     * @param nanos the duration in nanoseconds.
+     * @param rows the number of rows, can be null.
+     * @param bytes the number of bytes, can be null.
+     */
+    public void record( Type type, AnalyticsTableType tableType, String name, long nanos, Long rows, Long bytes )
+    {
+        AnalyticsTableProfile profile = tableType != null ? activeProfiles.get( tableType ) : null;
+
+        record( profile, type, tableType, name, nanos, rows, bytes );
+    }
+
+    /**
+     * Returns the most recent persisted profiles without entries, most recent
+     * first.
+     *
+     * @param limit the max number of profiles to return.
+     * @return a list of {@link AnalyticsTableProfile}.
+     */
+    public List<AnalyticsTableProfile> getProfiles( int limit )
+    {
+        return profileStore.getProfiles( limit );
+    }
+
+    /**
+     * Returns the persisted profile with the given identifier including its
+     * entries.
+     *
+     * @param id the profile identifier.
+     * @return the {@link AnalyticsTableProfile}, or null if it does not exist.
+     */
+    public AnalyticsTableProfile getProfile( long id )
+    {
+        return profileStore.getProfile( id );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private String getUpdateType( AnalyticsTableUpdateParams params )
+    {
+        if ( params.isLatestUpdate() )
+        {
+            return "latest";
+        }
+        else if ( params.isIncrementalUpdate() )
+        {
+            return "incremental";
+        }
+
+        return "full";
+    }
+
+    private void record( AnalyticsTableProfile profile, Type type, AnalyticsTableType tableType, String name,
+        long nanos, Long rows, Long bytes )
+    {
+        if ( profile != null )
+        {
+            profile.addEntry( new AnalyticsTableProfileEntry( type, tableType, name,
+                TimeUnit.NANOSECONDS.toMillis( nanos ), rows, bytes ) );
+        }
+
+        if ( meterRegistry != null )
+        {
+            String typeTag = type.name().toLowerCase();
+            String tableTypeTag = tableType != null ? tableType.name().toLowerCase() : NONE;
+
+            Timer.builder( DURATION )
+                .description( "The time spent on analytics table update steps" )
+                .tag( TAG_TYPE, typeTag )
+                .tag( TAG_TABLE_TYPE, tableTypeTag )
+                .tag( TAG_PHASE, Type.PHASE == type ? name : NONE )
+                .register( meterRegistry )
+                .record( nanos, TimeUnit.NANOSECONDS );
+
+            if ( rows != null )
+            {
+                DistributionSummary.builder( ROWS )
+                    .description( "The number of rows written by analytics table update steps" )
+                    .tag( TAG_TYPE, typeTag )
+                    .tag( TAG_TABLE_TYPE, tableTypeTag )
+                    .register( meterRegistry )
+                    .record( rows );
+            }
+
+            if ( bytes != null )
+            {
+                DistributionSummary.builder( BYTES )
+                    .description( "The number of bytes written by analytics table update steps" )
+                    .baseUnit( "bytes" )
+                    .tag( TAG_TYPE, typeTag )
+                    .tag( TAG_TABLE_TYPE, tableTypeTag )
+                    .register( meterRegistry )
+                    .record( bytes );
+            }
+        }
+    }
+
+    /**
+     * Times consecutive phases of an analytics table update. Each phase lasts
+     * from the end of the previous phase, or the creation of the timer.
+     */
+    public class PhaseTimer
+    {
+        private final AnalyticsTableProfile profile;
+
+        private final AnalyticsTableType tableType;
+
+        private long phaseStart = System.nanoTime();
+
+        PhaseTimer( AnalyticsTableProfile profile, AnalyticsTableType tableType )
+        {
+            this.profile = profile;
+            this.tableType = tableType;
+        }
+
+        /**
+         * Records the end of the phase with the given name.
+         *
+         * @param phase the phase name.
+         */
+        public void endPhase( String phase )
+        {
+            long now = System.nanoTime();
+
+            record( profile, Type.PHASE, tableType, phase, now - phaseStart, null, null );
+
+            phaseStart = now;
+        }
+    }
+}
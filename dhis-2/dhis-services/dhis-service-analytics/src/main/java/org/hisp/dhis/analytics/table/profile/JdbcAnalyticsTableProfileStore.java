@@ -0,0 +1,180 @@
+package org.hisp.dhis.analytics.table.profile;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.stereotype.Repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JDBC implementation of {@link AnalyticsTableProfileStore}. The entries of a
+ * profile are stored as a JSON document.
+ */
+@Repository( "org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileStore" )
+public class JdbcAnalyticsTableProfileStore
+    implements AnalyticsTableProfileStore
+{
+    private static final String TABLE = "tableupdateprofile";
+
+    private static final String COLUMNS = "tableupdateprofileid, jobid, updatetype, starttime, endtime, success";
+
+    private static final TypeReference<List<AnalyticsTableProfileEntry>> ENTRIES_TYPE = new TypeReference<List<AnalyticsTableProfileEntry>>() {};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper jsonMapper;
+
+    private final SimpleJdbcInsert profileInsert;
+
+    public JdbcAnalyticsTableProfileStore( JdbcTemplate jdbcTemplate, ObjectMapper jsonMapper )
+    {
+        checkNotNull( jdbcTemplate );
+        checkNotNull( jsonMapper );
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.profileInsert = new SimpleJdbcInsert( jdbcTemplate )
+            .withTableName( TABLE )
+            .usingColumns( "jobid", "updatetype", "starttime", "endtime", "success", "entries" )
+            .usingGeneratedKeyColumns( "tableupdateprofileid" );
+    }
+
+    @Override
+    public void save( AnalyticsTableProfile profile )
+    {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+            .addValue( "jobid", profile.getJobId() )
+            .addValue( "updatetype", profile.getUpdateType() )
+            .addValue( "starttime", profile.getStartTime() )
+            .addValue( "endtime", profile.getEndTime() )
+            .addValue( "success", profile.isSuccess() )
+            .addValue( "entries", toJson( profile.getEntries() ) );
+
+        profile.setId( profileInsert.executeAndReturnKey( parameters ).longValue() );
+    }
+
+    @Override
+    public List<AnalyticsTableProfile> getProfiles( int limit )
+    {
+        final String sql =
+            "select " + COLUMNS + " from " + TABLE + " " +
+            "order by starttime desc " +
+            "limit ?";
+
+        return jdbcTemplate.query( sql, ( rs, rowNum ) -> getProfile( rs ), limit );
+    }
+
+    @Override
+    public AnalyticsTableProfile getProfile( long id )
+    {
+        final String sql =
+            "select " + COLUMNS + ", entries from " + TABLE + " " +
+            "where tableupdateprofileid = ?";
+
+        RowMapper<AnalyticsTableProfile> mapper = ( rs, rowNum ) -> {
+            AnalyticsTableProfile profile = getProfile( rs );
+            profile.setEntries( fromJson( rs.getString( "entries" ) ) );
+            return profile;
+        };
+
+        List<AnalyticsTableProfile> profiles = jdbcTemplate.query( sql, mapper, id );
+
+        return profiles.isEmpty() ? null : profiles.get( 0 );
+    }
+
+    @Override
+    public void deleteOldProfiles( String updateType, int keep )
+    {
+        final String sql =
+            "delete from " + TABLE + " " +
+            "where updatetype = ? " +
+            "and tableupdateprofileid not in (" +
+                "select tableupdateprofileid from " + TABLE + " " +
+                "where updatetype = ? " +
+                "order by starttime desc " +
+                "limit ?)";
+
+        jdbcTemplate.update( sql, updateType, updateType, keep );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private AnalyticsTableProfile getProfile( ResultSet rs )
+        throws SQLException
+    {
+        AnalyticsTableProfile profile = new AnalyticsTableProfile();
+        profile.setId( rs.getLong( "tableupdateprofileid" ) );
+        profile.setJobId( rs.getString( "jobid" ) );
+        profile.setUpdateType( rs.getString( "updatetype" ) );
+        profile.setStartTime( rs.getTimestamp( "starttime" ) );
+        profile.setEndTime( rs.getTimestamp( "endtime" ) );
+        profile.setSuccess( rs.getBoolean( "success" ) );
+        return profile;
+    }
+
+    private String toJson( List<AnalyticsTableProfileEntry> entries )
+    {
+        try
+        {
+            return jsonMapper.writeValueAsString( entries );
+        }
+        catch ( JsonProcessingException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    private List<AnalyticsTableProfileEntry> fromJson( String entries )
+    {
+        try
+        {
+            return jsonMapper.readValue( entries, ENTRIES_TYPE );
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+}
@@ -55,7 +55,8 @@ import lombok.extern.slf4j.Slf4j;
  * which specifies the hour of day to run the full update. The next scheduled full analytics table
  * update time is persisted using a system setting. A full analytics table update is performed
  * when the current time is after the next scheduled full update time. Otherwise, a partial
- * update of the latest analytics partition table is performed.
+ * update of the latest analytics partition table is performed, or an incremental update of
+ * the changed data if {@link ContinuousAnalyticsJobParameters#getIncrementalUpdate()} is set.
  *
  * @author Lars Helge Overland
  */
@@ -118,6 +119,20 @@ public class ContinuousAnalyticsTableJob
                 log.info( String.format( "Next analytics table update: %s", getMediumDateString( update ) ) );
             }
         }
+        else if ( Boolean.TRUE.equals( parameters.getIncrementalUpdate() ) )
+        {
+            log.info( "Performing incremental analytics table update" );
+
+            AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+                .withIncrementalUpdate()
+                .withSkipResourceTables( true )
+                .withSkipTableTypes( parameters.getSkipTableTypes() )
+                .withJobId( jobConfiguration )
+                .withStartTime( now )
+                .build();
+
+            analyticsTableGenerator.generateTables( params );
+        }
         else
         {
             log.info( "Performing latest analytics table partition update" );
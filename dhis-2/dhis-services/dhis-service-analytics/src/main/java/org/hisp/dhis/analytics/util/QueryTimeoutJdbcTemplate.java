@@ -0,0 +1,73 @@
+package org.hisp.dhis.analytics.util;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.IntSupplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * {@link JdbcTemplate} which applies a query timeout to every statement, where
+ * the timeout is read on each statement so that it can be changed at runtime.
+ * A timeout of zero or less means no timeout, in which case the settings of
+ * the template itself apply.
+ */
+public class QueryTimeoutJdbcTemplate
+    extends JdbcTemplate
+{
+    private final IntSupplier queryTimeout;
+
+    /**
+     * @param dataSource the {@link DataSource}.
+     * @param queryTimeout supplier of the query timeout in seconds.
+     */
+    public QueryTimeoutJdbcTemplate( DataSource dataSource, IntSupplier queryTimeout )
+    {
+        super( dataSource );
+        this.queryTimeout = queryTimeout;
+    }
+
+    @Override
+    protected void applyStatementSettings( Statement stmt )
+        throws SQLException
+    {
+        super.applyStatementSettings( stmt );
+
+        int timeout = queryTimeout.getAsInt();
+
+        if ( timeout > 0 )
+        {
+            stmt.setQueryTimeout( timeout );
+        }
+    }
+}
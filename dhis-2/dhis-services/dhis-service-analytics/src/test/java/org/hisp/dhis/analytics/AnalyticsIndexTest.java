@@ -35,6 +35,7 @@ import com.google.common.collect.Lists;
 import static org.junit.Assert.*;
 import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.QUOTE;
 import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.quote;
+import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.removeQuote;
 
 public class AnalyticsIndexTest
 {
@@ -49,4 +50,16 @@ public class AnalyticsIndexTest
         assertTrue( indexB.getIndexName( AnalyticsTableType.DATA_VALUE ).startsWith( QUOTE + "in_ax_co_ax_2018_" ) );
         assertTrue( indexC.getIndexName( AnalyticsTableType.DATA_VALUE ).startsWith( QUOTE + "in_YtbsuPPo010_ax_2019_" ) );
     }
+
+    @Test
+    public void testGetIndexNameManyColumns()
+    {
+        AnalyticsIndex index = new AnalyticsIndex( "analytics_2019_temp", Lists.newArrayList( quote( "dx" ),
+            quote( "YtbsuPPo010" ), quote( "YtbsuPPo011" ), quote( "YtbsuPPo012" ), quote( "YtbsuPPo013" ) ), null );
+
+        String indexName = index.getIndexName( AnalyticsTableType.DATA_VALUE );
+
+        assertTrue( indexName.startsWith( QUOTE + "in_dx_YtbsuPPo010_YtbsuPPo011_YtbsuPPo012_Y_ax_2019_" ) );
+        assertTrue( removeQuote( indexName ).length() <= 63 );
+    }
 }
@@ -28,6 +28,7 @@ package org.hisp.dhis.analytics;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.hamcrest.Matchers;
@@ -619,6 +620,23 @@ public class DataQueryParamsTest
         assertNotEquals(paramsA.getKey(), paramsB.getKey()); // No collision
     }
 
+    @Test
+    public void testGetKeyWithDataApprovalLevels()
+    {
+        DataQueryParams paramsA = DataQueryParams.newBuilder()
+            .addDimension( new BaseDimensionalObject( DimensionalObject.DATA_X_DIM_ID, DimensionType.DATA_X, Lists.newArrayList( deA ) ) )
+            .addDimension( new BaseDimensionalObject( DimensionalObject.PERIOD_DIM_ID, DimensionType.PERIOD, Lists.newArrayList( peA ) ) ).build();
+
+        DataQueryParams paramsB = DataQueryParams.newBuilder( paramsA )
+            .withDataApprovalLevels( ImmutableMap.of( ouA, 1 ) ).build();
+
+        DataQueryParams paramsC = DataQueryParams.newBuilder( paramsA )
+            .withDataApprovalLevels( ImmutableMap.of( ouA, 2 ) ).build();
+
+        assertNotEquals( paramsA.getKey(), paramsB.getKey() );
+        assertNotEquals( paramsB.getKey(), paramsC.getKey() );
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testFinancialYearPeriodResultsInTwoAggregationYears() {
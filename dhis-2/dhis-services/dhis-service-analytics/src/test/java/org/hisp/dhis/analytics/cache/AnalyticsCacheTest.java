@@ -0,0 +1,332 @@
+package org.hisp.dhis.analytics.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hisp.dhis.analytics.AnalyticsTableChanges;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.common.DimensionalItemObject;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.SimpleCacheBuilder;
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.ReportingRate;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.system.grid.ListGrid;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+import org.springframework.core.env.Environment;
+
+import com.google.common.collect.Sets;
+
+public class AnalyticsCacheTest
+{
+    private static final int THREADS = 8;
+
+    @Mock
+    private CacheProvider cacheProvider;
+
+    @Mock
+    private Environment environment;
+
+    @Mock
+    private AnalyticsCacheSettings analyticsCacheSettings;
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+
+    private AnalyticsCache analyticsCache;
+
+    @Before
+    public void setUp()
+    {
+        when( cacheProvider.newCacheBuilder( Grid.class ) ).thenReturn( new SimpleCacheBuilder<Grid>() );
+        when( environment.getActiveProfiles() ).thenReturn( new String[0] );
+        when( analyticsCacheSettings.fixedExpirationTimeOrDefault() ).thenReturn( 600L );
+
+        analyticsCache = new AnalyticsCache( cacheProvider, environment, analyticsCacheSettings );
+        analyticsCache.init();
+    }
+
+    @Test
+    public void testGetOrFetchCoalescesIdenticalConcurrentQueries()
+        throws Exception
+    {
+        // Given
+        final DataQueryParams params = DataQueryParams.newBuilder().build();
+        final Grid expectedGrid = new ListGrid();
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        final List<Future<Grid>> grids = new ArrayList<>();
+
+        // When
+        try
+        {
+            for ( int i = 0; i < THREADS; i++ )
+            {
+                grids.add( executor.submit( () -> analyticsCache.getOrFetch( params, p -> {
+                    fetches.incrementAndGet();
+                    started.countDown();
+                    awaitQuietly( release );
+                    return expectedGrid;
+                } ) ) );
+            }
+
+            started.await( 10, TimeUnit.SECONDS );
+            Thread.sleep( 200 );
+            release.countDown();
+
+            // Then
+            for ( Future<Grid> grid : grids )
+            {
+                assertThat( grid.get( 10, TimeUnit.SECONDS ), is( sameInstance( expectedGrid ) ) );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat( fetches.get(), is( 1 ) );
+        assertThat( analyticsCache.getInFlightQueryCount(), is( 0 ) );
+        assertThat( analyticsCache.get( params.getKey() ).get(), is( sameInstance( expectedGrid ) ) );
+    }
+
+    @Test
+    public void testGetOrFetchReleasesFailedQuery()
+    {
+        // Given
+        final DataQueryParams params = DataQueryParams.newBuilder().build();
+        final Grid expectedGrid = new ListGrid();
+
+        // When
+        try
+        {
+            analyticsCache.getOrFetch( params, p -> {
+                throw new IllegalStateException( "Query failed" );
+            } );
+        }
+        catch ( IllegalStateException ex )
+        {
+            // Expected
+        }
+
+        // Then
+        assertThat( analyticsCache.getInFlightQueryCount(), is( 0 ) );
+        assertThat( analyticsCache.getOrFetch( params, p -> expectedGrid ), is( sameInstance( expectedGrid ) ) );
+    }
+
+    @Test
+    public void testInvalidateTables()
+    {
+        // Given
+        final DataElement deA = new DataElement( "A" );
+        deA.setUid( "deabcdefghA" );
+        final DataSet dsA = new DataSet( "A" );
+        dsA.setUid( "dsabcdefghA" );
+
+        final DataQueryParams params2019 = getParams( "201905", deA );
+        final DataQueryParams params2020 = getParams( "202003", deA );
+        final DataQueryParams paramsReportingRate = DataQueryParams.newBuilder( getParams( "202003" ) )
+            .withReportingRates( Collections.singletonList( new ReportingRate( dsA ) ) )
+            .build();
+        final DataQueryParams paramsNoItems = getParams( "202003" );
+
+        analyticsCache.put( params2019, new ListGrid() );
+        analyticsCache.put( params2020, new ListGrid() );
+        analyticsCache.put( paramsReportingRate, new ListGrid() );
+        analyticsCache.put( paramsNoItems, new ListGrid() );
+
+        // When
+        analyticsCache.invalidateTables( AnalyticsTableType.DATA_VALUE, Collections.singleton( 2020 ) );
+
+        // Then
+        assertTrue( analyticsCache.get( params2019.getKey() ).isPresent() );
+        assertFalse( analyticsCache.get( params2020.getKey() ).isPresent() );
+        assertTrue( analyticsCache.get( paramsReportingRate.getKey() ).isPresent() );
+        assertFalse( analyticsCache.get( paramsNoItems.getKey() ).isPresent() );
+
+        // When
+        analyticsCache.invalidateTables( AnalyticsTableType.COMPLETENESS, null );
+
+        // Then
+        assertTrue( analyticsCache.get( params2019.getKey() ).isPresent() );
+        assertFalse( analyticsCache.get( paramsReportingRate.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testInvalidateTablesRefreshInPlace()
+    {
+        // Given
+        final DataElement deA = new DataElement( "A" );
+        deA.setUid( "deabcdefghA" );
+
+        final DataQueryParams paramsRefreshed = getParams( "202003", deA );
+        final DataQueryParams paramsNotRefreshed = getParams( "201903", deA );
+        final DataQueryParams paramsOther = getParams( "202001", deA );
+        final Grid refreshedGrid = new ListGrid();
+
+        analyticsCache.put( paramsRefreshed, new ListGrid() );
+        analyticsCache.put( paramsNotRefreshed, new ListGrid() );
+        analyticsCache.put( paramsOther, new ListGrid() );
+
+        analyticsCache.setRefreshKeys( Sets.newHashSet( paramsRefreshed.getKey(), paramsNotRefreshed.getKey() ) );
+
+        // When
+        analyticsCache.invalidateTables( AnalyticsTableType.DATA_VALUE, null );
+
+        // Then
+        assertTrue( analyticsCache.get( paramsRefreshed.getKey() ).isPresent() );
+        assertTrue( analyticsCache.get( paramsNotRefreshed.getKey() ).isPresent() );
+        assertFalse( analyticsCache.get( paramsOther.getKey() ).isPresent() );
+
+        // When
+        analyticsCache.refresh( paramsRefreshed, p -> refreshedGrid );
+
+        // Then
+        assertThat( analyticsCache.invalidateStale(), is( 1 ) );
+        assertThat( analyticsCache.get( paramsRefreshed.getKey() ).get(), is( sameInstance( refreshedGrid ) ) );
+        assertFalse( analyticsCache.get( paramsNotRefreshed.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testInvalidateChanges()
+    {
+        // Given
+        final DataElement deA = new DataElement( "A" );
+        deA.setUid( "deabcdefghA" );
+        final DataElement deB = new DataElement( "B" );
+        deB.setUid( "deabcdefghB" );
+        final OrganisationUnit ouA = new OrganisationUnit( "A" );
+        ouA.setUid( "ouabcdefghA" );
+        final OrganisationUnit ouB = new OrganisationUnit( "B" );
+        ouB.setUid( "ouabcdefghB" );
+        final DataSet dsA = new DataSet( "A" );
+        dsA.setUid( "dsabcdefghA" );
+
+        final DataQueryParams paramsAA = getParams( "202003", deA, ouA );
+        final DataQueryParams paramsBA = getParams( "202003", deB, ouA );
+        final DataQueryParams paramsAB = getParams( "202003", deA, ouB );
+        final DataQueryParams paramsAA2019 = getParams( "201903", deA, ouA );
+        final DataQueryParams paramsNoItems = getParams( "202003" );
+        final DataQueryParams paramsReportingRate = DataQueryParams.newBuilder( getParams( "202003" ) )
+            .withReportingRates( Collections.singletonList( new ReportingRate( dsA ) ) )
+            .withOrganisationUnits( Collections.singletonList( ouA ) )
+            .build();
+
+        analyticsCache.put( paramsAA, new ListGrid() );
+        analyticsCache.put( paramsBA, new ListGrid() );
+        analyticsCache.put( paramsAB, new ListGrid() );
+        analyticsCache.put( paramsAA2019, new ListGrid() );
+        analyticsCache.put( paramsNoItems, new ListGrid() );
+        analyticsCache.put( paramsReportingRate, new ListGrid() );
+
+        // When
+        analyticsCache.invalidate( new AnalyticsTableChanges( AnalyticsTableType.DATA_VALUE, Collections.singleton( 2020 ),
+            Collections.singleton( deA.getUid() ), Collections.singleton( ouA.getUid() ) ) );
+
+        // Then
+        assertFalse( analyticsCache.get( paramsAA.getKey() ).isPresent() );
+        assertTrue( analyticsCache.get( paramsBA.getKey() ).isPresent() );
+        assertTrue( analyticsCache.get( paramsAB.getKey() ).isPresent() );
+        assertTrue( analyticsCache.get( paramsAA2019.getKey() ).isPresent() );
+        assertFalse( analyticsCache.get( paramsNoItems.getKey() ).isPresent() );
+        assertTrue( analyticsCache.get( paramsReportingRate.getKey() ).isPresent() );
+    }
+
+    private static DataQueryParams getParams( final String isoPeriod, final DataElement dataElement,
+        final OrganisationUnit orgUnit )
+    {
+        final List<DimensionalItemObject> periods = new ArrayList<>();
+        periods.add( PeriodType.getPeriodFromIsoString( isoPeriod ) );
+
+        return DataQueryParams.newBuilder()
+            .withPeriods( periods )
+            .withDataElements( Collections.singletonList( dataElement ) )
+            .withOrganisationUnits( Collections.singletonList( orgUnit ) )
+            .build();
+    }
+
+    private static DataQueryParams getParams( final String isoPeriod, final DataElement dataElement )
+    {
+        final List<DimensionalItemObject> periods = new ArrayList<>();
+        periods.add( PeriodType.getPeriodFromIsoString( isoPeriod ) );
+
+        return DataQueryParams.newBuilder()
+            .withPeriods( periods )
+            .withDataElements( Collections.singletonList( dataElement ) )
+            .build();
+    }
+
+    private static DataQueryParams getParams( final String isoPeriod )
+    {
+        final List<DimensionalItemObject> periods = new ArrayList<>();
+        periods.add( PeriodType.getPeriodFromIsoString( isoPeriod ) );
+
+        return DataQueryParams.newBuilder().withPeriods( periods ).build();
+    }
+
+    private static void awaitQuietly( final CountDownLatch latch )
+    {
+        try
+        {
+            latch.await( 10, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.hisp.dhis.analytics.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.OutputFormat;
+import org.hisp.dhis.analytics.cache.AnalyticsQueryFrequencyTracker.TrackedQuery;
+import org.hisp.dhis.common.DataQueryRequest;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.PeriodType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AnalyticsQueryFrequencyTrackerTest
+{
+    private AnalyticsQueryFrequencyTracker tracker;
+
+    @Before
+    public void setUp()
+    {
+        tracker = new AnalyticsQueryFrequencyTracker();
+    }
+
+    @Test
+    public void testGetMostFrequentQueries()
+    {
+        // Given
+        final DataQueryParams paramsA = DataQueryParams.newBuilder().withSkipMeta( true ).build();
+        final DataQueryParams paramsB = DataQueryParams.newBuilder().withSkipData( true ).build();
+        final DataQueryParams paramsC = DataQueryParams.newBuilder().withSkipRounding( true ).build();
+
+        // When
+        tracker.record( paramsA );
+        tracker.record( paramsB );
+        tracker.record( paramsB );
+        tracker.record( paramsB );
+        tracker.record( paramsC );
+        tracker.record( paramsC );
+
+        // Then
+        final List<DataQueryRequest> queries = tracker.getMostFrequentQueries( 2 );
+
+        assertThat( tracker.getTrackedQueryCount(), is( 3 ) );
+        assertThat( queries.size(), is( 2 ) );
+        assertThat( queries.get( 0 ).isSkipData(), is( true ) );
+        assertThat( queries.get( 1 ).isSkipRounding(), is( true ) );
+    }
+
+    @Test
+    public void testRecordRetainsRequest()
+    {
+        // Given
+        final DataElement deA = new DataElement( "A" );
+        deA.setUid( "deabcdefghA" );
+        final DataElement deB = new DataElement( "B" );
+        deB.setUid( "deabcdefghB" );
+        final OrganisationUnit ouA = new OrganisationUnit( "A" );
+        ouA.setUid( "ouabcdefghA" );
+
+        final DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA, deB ) )
+            .withPeriods( Lists.newArrayList( PeriodType.getPeriodFromIsoString( "202001" ) ) )
+            .withFilterOrganisationUnits( Lists.newArrayList( ouA ) )
+            .withAggregationType( AnalyticsAggregationType.fromAggregationType( AggregationType.LAST ) )
+            .build();
+
+        // When
+        tracker.record( params );
+
+        // Then
+        final DataQueryRequest request = tracker.getMostFrequentQueries( 1 ).get( 0 );
+
+        assertThat( request.getDimension(), containsInAnyOrder( "dx:deabcdefghA;deabcdefghB", "pe:202001" ) );
+        assertThat( request.getFilter(), containsInAnyOrder( "ou:ouabcdefghA" ) );
+        assertThat( request.getAggregationType(), is( AggregationType.LAST ) );
+    }
+
+    @Test
+    public void testTrackedQueryRetainsOptions()
+    {
+        // Given
+        final DataQueryParams params = DataQueryParams.newBuilder()
+            .withSkipHeaders( true )
+            .withIncludePeriodStartEndDates( true )
+            .withOutputFormat( OutputFormat.DATA_VALUE_SET )
+            .build();
+
+        // When
+        tracker.record( params );
+
+        // Then
+        final TrackedQuery query = tracker.getMostFrequentTrackedQueries( 1 ).get( 0 );
+        final DataQueryParams rebuilt = query.withOptions( DataQueryParams.newBuilder()
+            .withOutputFormat( OutputFormat.ANALYTICS ).build() );
+
+        assertThat( rebuilt.isSkipHeaders(), is( true ) );
+        assertThat( rebuilt.isIncludePeriodStartEndDates(), is( true ) );
+        assertThat( rebuilt.getOutputFormat(), is( OutputFormat.DATA_VALUE_SET ) );
+        assertThat( rebuilt.getKey(), is( query.getKey() ) );
+    }
+}
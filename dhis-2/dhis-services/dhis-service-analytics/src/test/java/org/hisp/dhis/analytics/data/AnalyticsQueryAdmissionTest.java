@@ -0,0 +1,303 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.analytics.DataQueryGroups;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.Partitions;
+import org.hisp.dhis.common.IllegalQueryException;
+import org.hisp.dhis.common.QueryRuntimeException;
+import org.hisp.dhis.feedback.ErrorCode;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class AnalyticsQueryAdmissionTest
+{
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+
+    private AnalyticsQueryAdmission queryAdmission;
+
+    @Before
+    public void setUp()
+    {
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAX_CONCURRENT_QUERY_COST ) ).thenReturn( 4 );
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAX_CONCURRENT_USER_QUERIES ) ).thenReturn( 1 );
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_QUERY_QUEUE_SIZE ) ).thenReturn( 1 );
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_QUERY_TIMEOUT ) ).thenReturn( 5 );
+
+        queryAdmission = new AnalyticsQueryAdmission( systemSettingManager );
+    }
+
+    @Test
+    public void testAcquireWhenDisabled()
+    {
+        // Given
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAX_CONCURRENT_QUERY_COST ) ).thenReturn( 0 );
+
+        // When
+        queryAdmission.acquire( "admin", 100 );
+        queryAdmission.acquire( "admin", 100 );
+
+        // Then
+        assertThat( queryAdmission.getRunningCost(), is( 0L ) );
+        assertThat( queryAdmission.getQueuedQueryCount(), is( 0 ) );
+    }
+
+    @Test
+    public void testAcquireAndRelease()
+    {
+        // When
+        AnalyticsQueryAdmission.Permit permitA = queryAdmission.acquire( "userA", 2 );
+        AnalyticsQueryAdmission.Permit permitB = queryAdmission.acquire( "userB", 2 );
+
+        // Then
+        assertThat( queryAdmission.getRunningCost(), is( 4L ) );
+
+        // When
+        permitA.close();
+        permitA.close();
+        permitB.close();
+
+        // Then
+        assertThat( queryAdmission.getRunningCost(), is( 0L ) );
+    }
+
+    @Test
+    public void testRetainedPermitHoldsCostUntilClosed()
+    {
+        // Given
+        AnalyticsQueryAdmission.Permit permit = queryAdmission.acquire( "userA", 2 );
+
+        assertTrue( permit.retain() );
+
+        // When
+        permit.close();
+
+        // Then
+        assertThat( queryAdmission.getRunningCost(), is( 2L ) );
+
+        // When
+        permit.close();
+
+        // Then
+        assertThat( queryAdmission.getRunningCost(), is( 0L ) );
+        assertFalse( permit.retain() );
+    }
+
+    @Test
+    public void testGetCost()
+    {
+        // Given
+        DataQueryGroups queryGroups = DataQueryGroups.newBuilder().withQueries( Lists.newArrayList(
+            getQuery( 2010, 2011, 2012 ),
+            getQuery( 2012 ) ) ).build();
+
+        // When
+        long cost = queryAdmission.getCost( queryGroups, query -> query.getPartitions().getPartitions().contains( 2010 ) ? 10 : 2_500_000 );
+
+        // Then
+        assertThat( cost, is( 6L ) );
+    }
+
+    @Test
+    public void testGetCostRejectsQueryAboveMaxRowEstimate()
+    {
+        // Given
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAX_QUERY_ROW_ESTIMATE ) ).thenReturn( 1000 );
+
+        DataQueryGroups queryGroups = DataQueryGroups.newBuilder().withQueries( Lists.newArrayList(
+            getQuery( 2012 ) ) ).build();
+
+        // When
+        try
+        {
+            queryAdmission.getCost( queryGroups, query -> 1001 );
+            fail( "Expected query to be rejected" );
+        }
+        catch ( IllegalQueryException ex )
+        {
+            // Then
+            assertThat( ex.getErrorCode(), is( ErrorCode.E7134 ) );
+        }
+    }
+
+    @Test
+    public void testGetCostWhenDisabled()
+    {
+        // Given
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAX_CONCURRENT_QUERY_COST ) ).thenReturn( 0 );
+
+        DataQueryGroups queryGroups = DataQueryGroups.newBuilder().withQueries( Lists.newArrayList(
+            getQuery( 2012 ) ) ).build();
+
+        // When
+        long cost = queryAdmission.getCost( queryGroups, query -> {
+            throw new AssertionError( "Row estimate should not be requested" );
+        } );
+
+        // Then
+        assertThat( cost, is( 1L ) );
+    }
+
+    @Test
+    public void testAcquireAdmitsCostlyQueryWhenIdle()
+    {
+        // When
+        try ( AnalyticsQueryAdmission.Permit permit = queryAdmission.acquire( "userA", 10 ) )
+        {
+            // Then
+            assertThat( queryAdmission.getRunningCost(), is( 10L ) );
+        }
+
+        assertThat( queryAdmission.getRunningCost(), is( 0L ) );
+    }
+
+    @Test
+    public void testAcquireRejectsWhenQueueIsFull()
+        throws Exception
+    {
+        // Given
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        AnalyticsQueryAdmission.Permit permit = queryAdmission.acquire( "userA", 4 );
+
+        try
+        {
+            Future<AnalyticsQueryAdmission.Permit> queued = executor.submit( () -> queryAdmission.acquire( "userB", 1 ) );
+
+            awaitQueuedQueries( 1 );
+
+            // When
+            try
+            {
+                queryAdmission.acquire( "userC", 1 );
+                fail( "Expected query to be rejected" );
+            }
+            catch ( QueryRuntimeException ex )
+            {
+                // Then
+                assertThat( ex.getErrorCode(), is( ErrorCode.E7132 ) );
+            }
+
+            permit.close();
+
+            queued.get( 5, TimeUnit.SECONDS ).close();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat( queryAdmission.getRunningCost(), is( 0L ) );
+    }
+
+    @Test
+    public void testAcquirePassesOverUserAboveShare()
+        throws Exception
+    {
+        // Given
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_QUERY_QUEUE_SIZE ) ).thenReturn( 10 );
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        AnalyticsQueryAdmission.Permit permit = queryAdmission.acquire( "userA", 1 );
+
+        try
+        {
+            Future<AnalyticsQueryAdmission.Permit> queued = executor.submit( () -> queryAdmission.acquire( "userA", 1 ) );
+
+            awaitQueuedQueries( 1 );
+
+            // When
+            AnalyticsQueryAdmission.Permit other = queryAdmission.acquire( "userB", 1 );
+
+            // Then
+            assertThat( queryAdmission.getRunningCost(), is( 2L ) );
+            assertThat( queryAdmission.getQueuedQueryCount(), is( 1 ) );
+
+            // When
+            permit.close();
+
+            // Then
+            queued.get( 5, TimeUnit.SECONDS ).close();
+            other.close();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat( queryAdmission.getRunningCost(), is( 0L ) );
+    }
+
+    private DataQueryParams getQuery( Integer... partitions )
+    {
+        return DataQueryParams.newBuilder()
+            .withPartitions( new Partitions( Sets.newHashSet( partitions ) ) )
+            .build();
+    }
+
+    private void awaitQueuedQueries( int count )
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while ( queryAdmission.getQueuedQueryCount() < count && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+
+        assertThat( queryAdmission.getQueuedQueryCount(), is( count ) );
+    }
+}
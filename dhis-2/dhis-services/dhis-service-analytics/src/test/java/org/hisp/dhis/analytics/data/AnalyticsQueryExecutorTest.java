@@ -0,0 +1,221 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hisp.dhis.analytics.data.AnalyticsQueryExecutor.Lane;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AnalyticsQueryExecutorTest
+{
+    private AnalyticsQueryExecutor queryExecutor;
+
+    @Before
+    public void setUp()
+    {
+        queryExecutor = new AnalyticsQueryExecutor( 8 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        queryExecutor.shutdown();
+    }
+
+    @Test
+    public void testSubmitReturnsResultsInOrder()
+        throws Exception
+    {
+        // Given
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            final int value = i;
+            tasks.add( () -> value );
+        }
+
+        // When
+        final List<Future<Integer>> futures = queryExecutor.submit( tasks, Lane.INTERACTIVE );
+
+        // Then
+        assertThat( futures.size(), is( 10 ) );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertThat( futures.get( i ).get( 5, TimeUnit.SECONDS ), is( i ) );
+        }
+    }
+
+    @Test
+    public void testSubmitLimitsFanOut()
+        throws Exception
+    {
+        // When
+        final int interactive = getMaxConcurrency( Lane.INTERACTIVE );
+        final int background = getMaxConcurrency( Lane.BACKGROUND );
+
+        // Then
+        assertThat( queryExecutor.getMaxFanOut(), is( 2 ) );
+        assertThat( interactive, is( lessThanOrEqualTo( 2 ) ) );
+        assertThat( background, is( 1 ) );
+    }
+
+    @Test
+    public void testBackgroundFanOutIsProportionalToMaxFanOut()
+    {
+        // Given
+        final AnalyticsQueryExecutor largeExecutor = new AnalyticsQueryExecutor( 32 );
+
+        try
+        {
+            // Then
+            assertThat( largeExecutor.getMaxFanOut(), is( 8 ) );
+            assertThat( largeExecutor.getMaxBackgroundFanOut(), is( 4 ) );
+        }
+        finally
+        {
+            largeExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueueTimeExcludesPreviousTasksOfRequest()
+        throws Exception
+    {
+        // Given
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queryExecutor.setMeterRegistry( meterRegistry );
+
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            tasks.add( () -> {
+                Thread.sleep( 200 );
+                return 1;
+            } );
+        }
+
+        // When
+        for ( Future<Integer> future : queryExecutor.submit( tasks, Lane.BACKGROUND ) )
+        {
+            future.get( 5, TimeUnit.SECONDS );
+        }
+
+        // Then
+        final Timer timer = meterRegistry.get( "analytics.query.queue.time" ).timer();
+
+        assertThat( timer.count(), is( 3L ) );
+        assertThat( timer.max( TimeUnit.MILLISECONDS ), is( lessThan( 200.0 ) ) );
+    }
+
+    @Test( expected = ExecutionException.class )
+    public void testSubmitPropagatesFailure()
+        throws Exception
+    {
+        // Given
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add( () -> {
+            throw new IllegalStateException( "Query failed" );
+        } );
+
+        // When
+        queryExecutor.submit( tasks, Lane.INTERACTIVE ).get( 0 ).get( 5, TimeUnit.SECONDS );
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRun()
+        throws Exception
+    {
+        // Given
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger runs = new AtomicInteger();
+
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add( () -> {
+            release.await( 5, TimeUnit.SECONDS );
+            return runs.incrementAndGet();
+        } );
+        tasks.add( runs::incrementAndGet );
+
+        // When
+        final List<Future<Integer>> futures = queryExecutor.submit( tasks, Lane.BACKGROUND );
+        futures.get( 1 ).cancel( true );
+        release.countDown();
+
+        // Then
+        assertThat( futures.get( 0 ).get( 5, TimeUnit.SECONDS ), is( 1 ) );
+        assertThat( futures.get( 1 ).isCancelled(), is( true ) );
+        assertThat( runs.get(), is( 1 ) );
+    }
+
+    private int getMaxConcurrency( Lane lane )
+        throws Exception
+    {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+
+        for ( int i = 0; i < 6; i++ )
+        {
+            tasks.add( () -> {
+                maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+                Thread.sleep( 20 );
+                return running.decrementAndGet();
+            } );
+        }
+
+        for ( Future<Integer> future : queryExecutor.submit( tasks, lane ) )
+        {
+            future.get( 5, TimeUnit.SECONDS );
+        }
+
+        return maxRunning.get();
+    }
+}
@@ -0,0 +1,324 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.AnalyticsService;
+import org.hisp.dhis.analytics.AnalyticsTableGenerator;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.MeasureFilter;
+import org.hisp.dhis.analytics.QueryPlanner;
+import org.hisp.dhis.analytics.QueryPlannerParams;
+import org.hisp.dhis.analytics.table.PartitionUtils;
+import org.hisp.dhis.analytics.util.AnalyticsTestUtils;
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.cache.CacheStrategy;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.Period;
+import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests that queries answered from rollup tables return the same results as
+ * queries answered from the analytics table partitions.
+ */
+@Category( IntegrationTest.class )
+public class AnalyticsRollupTableTest
+    extends IntegrationTestBase
+{
+    private static final int ROLLUP_LEVEL = 2;
+
+    private static final String ROLLUP_TABLE = PartitionUtils.getRollupTableName( ROLLUP_LEVEL );
+
+    @Autowired
+    private AnalyticsTableGenerator analyticsTableGenerator;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private QueryPlanner queryPlanner;
+
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
+    @Autowired
+    private DataElementService dataElementService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private DataValueService dataValueService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private PeriodService periodService;
+
+    @Autowired
+    @Qualifier( "readOnlyJdbcTemplate" )
+    private JdbcTemplate jdbcTemplate;
+
+    private DataElement deA;
+
+    private DataElement deB;
+
+    private OrganisationUnit ouA;
+
+    private OrganisationUnit ouB;
+
+    private OrganisationUnit ouC;
+
+    // Database (value, data element, period, org unit)
+    // --------------------------------------------------------------------
+    //
+    // Hierarchy: A (level 1) - B, C (level 2) - D, E (level 3, below B)
+    //
+    // deA: 4, 2017-01, D - 12, 2017-02, D - 7, 2017-01, E - 20, 2017-03, C
+    // 3, 2017-04, C
+    //
+    // deB: 1, 2017-01, D - 9, 2017-05, E - 15, 2017-06, C
+    //
+    // --------------------------------------------------------------------
+
+    @Override
+    public void setUpTest()
+    {
+        systemSettingManager.saveSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL, ROLLUP_LEVEL );
+        systemSettingManager.saveSystemSetting( SettingKey.CACHE_STRATEGY, CacheStrategy.NO_CACHE );
+
+        deA = createDataElement( 'A' );
+        deB = createDataElement( 'B' );
+
+        dataElementService.addDataElement( deA );
+        dataElementService.addDataElement( deB );
+
+        ouA = createOrganisationUnit( 'A' );
+        ouB = createOrganisationUnit( 'B' );
+        ouC = createOrganisationUnit( 'C' );
+        OrganisationUnit ouD = createOrganisationUnit( 'D' );
+        OrganisationUnit ouE = createOrganisationUnit( 'E' );
+        AnalyticsTestUtils.configureHierarchy( ouA, ouB, ouC, ouD, ouE );
+
+        organisationUnitService.addOrganisationUnit( ouA );
+        organisationUnitService.addOrganisationUnit( ouB );
+        organisationUnitService.addOrganisationUnit( ouC );
+        organisationUnitService.addOrganisationUnit( ouD );
+        organisationUnitService.addOrganisationUnit( ouE );
+
+        addDataValue( deA, "201701", ouD, "4" );
+        addDataValue( deA, "201702", ouD, "12" );
+        addDataValue( deA, "201701", ouE, "7" );
+        addDataValue( deA, "201703", ouC, "20" );
+        addDataValue( deA, "201704", ouC, "3" );
+        addDataValue( deB, "201701", ouD, "1" );
+        addDataValue( deB, "201705", ouE, "9" );
+        addDataValue( deB, "201706", ouC, "15" );
+
+        analyticsTableGenerator.generateTables( AnalyticsTableUpdateParams.newBuilder().build() );
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Override
+    public void tearDownTest()
+    {
+        analyticsTableGenerator.dropTables();
+
+        systemSettingManager.saveSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL,
+            SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL.getDefaultValue() );
+        systemSettingManager.saveSystemSetting( SettingKey.CACHE_STRATEGY,
+            SettingKey.CACHE_STRATEGY.getDefaultValue() );
+    }
+
+    @Test
+    public void testRollupTableCreated()
+    {
+        assertTrue( tableExists( PartitionUtils.getPartitionName( ROLLUP_TABLE, 2017 ) ) );
+    }
+
+    @Test
+    public void testYearlyQueryMatchesBaseTable()
+    {
+        DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA, deB ) )
+            .withPeriod( createPeriod( "2017" ) )
+            .withOrganisationUnit( ouA )
+            .withAggregationType( AnalyticsAggregationType.SUM ).build();
+
+        assertRollupMatchesBaseTable( params );
+    }
+
+    @Test
+    public void testQuarterlyQueryByOrgUnitMatchesBaseTable()
+    {
+        DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA, deB ) )
+            .withPeriods( Lists.newArrayList( createPeriod( "2017Q1" ), createPeriod( "2017Q2" ) ) )
+            .withOrganisationUnits( Lists.newArrayList( ouB, ouC ) )
+            .withAggregationType( AnalyticsAggregationType.SUM ).build();
+
+        assertRollupMatchesBaseTable( params );
+    }
+
+    @Test
+    public void testMonthlyQueryMatchesBaseTable()
+    {
+        DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA ) )
+            .withPeriods( Lists.newArrayList( createPeriod( "201701" ), createPeriod( "201702" ),
+                createPeriod( "201703" ) ) )
+            .withOrganisationUnits( Lists.newArrayList( ouA, ouB ) )
+            .withAggregationType( AnalyticsAggregationType.SUM ).build();
+
+        assertRollupMatchesBaseTable( params );
+    }
+
+    @Test
+    public void testPreAggregateMeasureCriteriaNotAnsweredFromRollupTable()
+    {
+        // Pre-aggregate criteria apply to the non-aggregated values, 12 + 7 + 20
+
+        DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA ) )
+            .withPeriod( createPeriod( "2017" ) )
+            .withOrganisationUnit( ouA )
+            .withPreAggregationMeasureCriteria( ImmutableMap.of( MeasureFilter.GT, 5d ) )
+            .withAggregationType( AnalyticsAggregationType.SUM ).build();
+
+        assertEquals( AnalyticsTableType.DATA_VALUE.getTableName(), getPlannedTableName( params ) );
+
+        Grid grid = analyticsService.getAggregatedDataValues( params );
+
+        assertEquals( 1, grid.getHeight() );
+        assertEquals( 39d, ((Number) grid.getValue( 0, grid.getWidth() - 1 )).doubleValue(), 0.01 );
+        assertEquals( getRows( grid ), getRows( getBaseTableGrid( params ) ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Asserts that the given query is answered from the rollup table, and
+     * that the rows are equal to the rows of the query answered from the
+     * analytics table partitions.
+     */
+    private void assertRollupMatchesBaseTable( DataQueryParams params )
+    {
+        assertEquals( ROLLUP_TABLE, getPlannedTableName( params ) );
+
+        List<String> rollupRows = getRows( analyticsService.getAggregatedDataValues( params ) );
+        List<String> baseRows = getRows( getBaseTableGrid( params ) );
+
+        assertFalse( baseRows.isEmpty() );
+        assertEquals( baseRows, rollupRows );
+    }
+
+    private Grid getBaseTableGrid( DataQueryParams params )
+    {
+        systemSettingManager.saveSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL, 0 );
+
+        try
+        {
+            assertEquals( AnalyticsTableType.DATA_VALUE.getTableName(), getPlannedTableName( params ) );
+
+            return analyticsService.getAggregatedDataValues( params );
+        }
+        finally
+        {
+            systemSettingManager.saveSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL, ROLLUP_LEVEL );
+        }
+    }
+
+    private String getPlannedTableName( DataQueryParams params )
+    {
+        return queryPlanner.planQuery( DataQueryParams.newBuilder( params ).build(),
+            QueryPlannerParams.newBuilder().withTableType( AnalyticsTableType.DATA_VALUE ).build() )
+            .getAllQueries().get( 0 ).getTableName();
+    }
+
+    private List<String> getRows( Grid grid )
+    {
+        return grid.getRows().stream()
+            .map( row -> row.stream().map( String::valueOf ).collect( Collectors.joining( "," ) ) )
+            .sorted()
+            .collect( Collectors.toList() );
+    }
+
+    private boolean tableExists( String tableName )
+    {
+        return jdbcTemplate.queryForObject( "select count(*) from information_schema.tables where table_name = ?",
+            Integer.class, tableName ) > 0;
+    }
+
+    private void addDataValue( DataElement dataElement, String isoPeriod, OrganisationUnit orgUnit, String value )
+    {
+        CategoryOptionCombo coc = categoryService.getDefaultCategoryOptionCombo();
+
+        Period period = periodService.reloadPeriod( createPeriod( isoPeriod ) );
+
+        DataValue dataValue = new DataValue( dataElement, period, orgUnit, coc, coc );
+        dataValue.setValue( value );
+        dataValueService.addDataValue( dataValue );
+    }
+}
@@ -31,6 +31,7 @@ package org.hisp.dhis.analytics.data;
 import org.hisp.dhis.analytics.*;
 import org.hisp.dhis.analytics.cache.AnalyticsCache;
 import org.hisp.dhis.analytics.cache.AnalyticsCacheSettings;
+import org.hisp.dhis.analytics.cache.AnalyticsQueryFrequencyTracker;
 import org.hisp.dhis.analytics.event.EventAnalyticsService;
 import org.hisp.dhis.analytics.resolver.ExpressionResolver;
 import org.hisp.dhis.constant.ConstantService;
@@ -110,7 +111,8 @@ public abstract class AnalyticsServiceBaseTest
 
         target = new DefaultAnalyticsService( analyticsManager, rawAnalyticsManager, securityManager, queryPlanner,
             queryValidator, constantService, expressionService, organisationUnitService, systemSettingManager,
-            eventAnalyticsService, dataQueryService, resolver, analyticsCache );
+            eventAnalyticsService, dataQueryService, resolver, analyticsCache, new AnalyticsQueryFrequencyTracker(),
+            new AnalyticsQueryAdmission( systemSettingManager ), new AnalyticsQueryExecutor( 2 ) );
 
         when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAINTENANCE_MODE ) ).thenReturn( false );
         when( analyticsCacheSettings.fixedExpirationTimeOrDefault() ).thenReturn( 0L );
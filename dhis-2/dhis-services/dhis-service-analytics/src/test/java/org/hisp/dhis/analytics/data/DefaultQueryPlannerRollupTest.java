@@ -0,0 +1,254 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hisp.dhis.DhisConvenienceTest.createDataElement;
+import static org.hisp.dhis.DhisConvenienceTest.createOrganisationUnit;
+import static org.hisp.dhis.analytics.DataQueryParams.DISPLAY_NAME_DATA_X;
+import static org.hisp.dhis.analytics.DataQueryParams.DISPLAY_NAME_ORGUNIT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.AnalyticsTablePartition;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.DataQueryGroups;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.MeasureFilter;
+import org.hisp.dhis.analytics.Partitions;
+import org.hisp.dhis.analytics.QueryPlannerParams;
+import org.hisp.dhis.analytics.QueryValidator;
+import org.hisp.dhis.analytics.partition.PartitionManager;
+import org.hisp.dhis.category.CategoryCombo;
+import org.hisp.dhis.common.BaseDimensionalObject;
+import org.hisp.dhis.common.DimensionType;
+import org.hisp.dhis.common.DimensionalItemObject;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.period.WeeklyPeriodType;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public class DefaultQueryPlannerRollupTest
+{
+    private static final String ROLLUP_TABLE = "analytics_rollup_l3";
+
+    private DefaultQueryPlanner subject;
+
+    @Mock
+    private QueryValidator queryValidator;
+
+    @Mock
+    private PartitionManager partitionManager;
+
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Before
+    public void setUp()
+    {
+        subject = new DefaultQueryPlanner( queryValidator, partitionManager, systemSettingManager );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL ) ).thenReturn( 3 );
+        when( partitionManager.analyticsTableExists( any( AnalyticsTableType.class ), anyString() ) ).thenReturn( false );
+        when( partitionManager.analyticsTableExists( AnalyticsTableType.DATA_VALUE, ROLLUP_TABLE + "_2014" ) ).thenReturn( true );
+    }
+
+    @Test
+    public void testRouteToRollupTable()
+    {
+        // Given
+        withoutLatestPartition();
+
+        DataQueryParams params = createParams( new MonthlyPeriodType(), 2, AnalyticsAggregationType.SUM );
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries, hasSize( 1 ) );
+        assertThat( queries.get( 0 ).getTableName(), is( ROLLUP_TABLE ) );
+    }
+
+    @Test
+    public void testNoRouteWithLatestPartition()
+    {
+        // Given
+        DataQueryParams params = createParams( new MonthlyPeriodType(), 2, AnalyticsAggregationType.SUM );
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries.get( 0 ).getTableName(), is( AnalyticsTableType.DATA_VALUE.getTableName() ) );
+    }
+
+    @Test
+    public void testNoRouteWithWeeklyPeriods()
+    {
+        // Given
+        withoutLatestPartition();
+
+        DataQueryParams params = createParams( new WeeklyPeriodType(), 2, AnalyticsAggregationType.SUM );
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries.get( 0 ).getTableName(), is( AnalyticsTableType.DATA_VALUE.getTableName() ) );
+    }
+
+    @Test
+    public void testNoRouteWithOrgUnitBelowRollupLevel()
+    {
+        // Given
+        withoutLatestPartition();
+
+        DataQueryParams params = createParams( new MonthlyPeriodType(), 4, AnalyticsAggregationType.SUM );
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries.get( 0 ).getTableName(), is( AnalyticsTableType.DATA_VALUE.getTableName() ) );
+    }
+
+    @Test
+    public void testNoRouteWithAverageAggregation()
+    {
+        // Given
+        withoutLatestPartition();
+
+        DataQueryParams params = createParams( new MonthlyPeriodType(), 2, AnalyticsAggregationType.AVERAGE );
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries.get( 0 ).getTableName(), is( AnalyticsTableType.DATA_VALUE.getTableName() ) );
+    }
+
+    @Test
+    public void testNoRouteWithPreAggregateMeasureCriteria()
+    {
+        // Given
+        withoutLatestPartition();
+
+        DataQueryParams params = DataQueryParams
+            .newBuilder( createParams( new MonthlyPeriodType(), 2, AnalyticsAggregationType.SUM ) )
+            .withPreAggregationMeasureCriteria( ImmutableMap.of( MeasureFilter.GT, 10d ) ).build();
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries.get( 0 ).getTableName(), is( AnalyticsTableType.DATA_VALUE.getTableName() ) );
+    }
+
+    @Test
+    public void testNoRouteWhenRollupDisabled()
+    {
+        // Given
+        withoutLatestPartition();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL ) ).thenReturn( 0 );
+
+        DataQueryParams params = createParams( new MonthlyPeriodType(), 2, AnalyticsAggregationType.SUM );
+
+        // When
+        List<DataQueryParams> queries = plan( params );
+
+        // Then
+        assertThat( queries.get( 0 ).getTableName(), is( AnalyticsTableType.DATA_VALUE.getTableName() ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private List<DataQueryParams> plan( DataQueryParams params )
+    {
+        DataQueryGroups queryGroups = subject.planQuery( params,
+            QueryPlannerParams.newBuilder().withTableType( AnalyticsTableType.DATA_VALUE ).build() );
+
+        return queryGroups.getAllQueries();
+    }
+
+    /**
+     * Simulates that the "latest" analytics table partition does not exist.
+     */
+    private void withoutLatestPartition()
+    {
+        doAnswer( invocation -> {
+            Partitions partitions = invocation.getArgument( 0 );
+            partitions.getPartitions().remove( AnalyticsTablePartition.LATEST_PARTITION );
+            return null;
+        } ).when( partitionManager ).filterNonExistingPartitions( any( Partitions.class ), anyString() );
+    }
+
+    private DataQueryParams createParams( PeriodType periodType, int orgUnitLevel, AnalyticsAggregationType aggregationType )
+    {
+        List<DimensionalItemObject> periods = Lists.newArrayList(
+            periodType.createPeriod( new DateTime( 2014, 4, 7, 0, 0 ).toDate() ) );
+
+        OrganisationUnit orgUnit = createOrganisationUnit( 'A' );
+        orgUnit.setPath( new String( new char[orgUnitLevel - 1] ).replace( "\0", "/parentUid1" ) + "/" + orgUnit.getUid() );
+
+        return DataQueryParams.newBuilder()
+            .withDimensions( Lists.newArrayList(
+                new BaseDimensionalObject( "pe", DimensionType.PERIOD, periods ),
+                new BaseDimensionalObject( "dx", DimensionType.DATA_X, DISPLAY_NAME_DATA_X, "display name",
+                    Lists.newArrayList( createDataElement( 'A', new CategoryCombo() ) ) ) ) )
+            .withFilters( Lists.newArrayList(
+                new BaseDimensionalObject( "ou", DimensionType.ORGANISATION_UNIT, null, DISPLAY_NAME_ORGUNIT,
+                    Lists.newArrayList( orgUnit ) ) ) )
+            .withAggregationType( aggregationType ).build();
+    }
+}
@@ -33,7 +33,8 @@ import static org.hisp.dhis.DhisConvenienceTest.*;
 import static org.hisp.dhis.common.DimensionalObject.*;
 import static org.hisp.dhis.common.DimensionalObjectUtils.getList;
 import static org.junit.Assert.assertThat;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
 
 import org.hisp.dhis.analytics.*;
 import org.hisp.dhis.analytics.partition.PartitionManager;
@@ -54,7 +55,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
 /**
  * @author Luciano Fiandesio
@@ -73,9 +74,6 @@ public class JdbcAnalyticsManagerTest
     @Mock
     private JdbcTemplate jdbcTemplate;
 
-    @Mock
-    private SqlRowSet rowSet;
-
     @Mock
     private NestedIndicatorCyclicDependencyInspector nestedIndicatorCyclicDependencyInspector;
 
@@ -89,11 +87,10 @@ public class JdbcAnalyticsManagerTest
     {
         QueryPlanner queryPlanner = new DefaultQueryPlanner(
             new DefaultQueryValidator( this.systemSettingManager, nestedIndicatorCyclicDependencyInspector ),
-            partitionManager );
+            partitionManager, systemSettingManager );
 
-        mockRowSet();
-
-        when( jdbcTemplate.queryForRowSet( sql.capture() ) ).thenReturn( rowSet );
+        // Simulate no rows
+        doNothing().when( jdbcTemplate ).query( sql.capture(), any( RowCallbackHandler.class ) );
 
         subject = new JdbcAnalyticsManager( queryPlanner, jdbcTemplate );
     }
@@ -118,12 +115,6 @@ public class JdbcAnalyticsManagerTest
         assertExpectedSql("desc");
     }
 
-    private void mockRowSet()
-    {
-        // Simulate no rows
-        when( rowSet.next() ).thenReturn( false );
-    }
-
     private DataQueryParams createParams(AggregationType aggregationType) {
 
         DataElement deA = createDataElement( 'A', ValueType.INTEGER, aggregationType );
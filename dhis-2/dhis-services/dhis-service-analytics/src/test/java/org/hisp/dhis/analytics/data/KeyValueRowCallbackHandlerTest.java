@@ -0,0 +1,174 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hisp.dhis.DhisConvenienceTest.createDataElement;
+import static org.hisp.dhis.DhisConvenienceTest.createOrganisationUnit;
+import static org.hisp.dhis.analytics.DataQueryParams.VALUE_ID;
+import static org.hisp.dhis.common.DimensionalObject.DATA_X_DIM_ID;
+import static org.hisp.dhis.common.DimensionalObject.ORGUNIT_DIM_ID;
+import static org.hisp.dhis.common.DimensionalObject.PERIOD_DIM_ID;
+import static org.hisp.dhis.common.DimensionalObjectUtils.getList;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.DataType;
+import org.hisp.dhis.common.BaseDimensionalObject;
+import org.hisp.dhis.common.DimensionType;
+import org.hisp.dhis.common.IllegalQueryException;
+import org.hisp.dhis.period.PeriodType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+public class KeyValueRowCallbackHandlerTest
+{
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private ResultSet rs;
+
+    @Test
+    public void testGetKeyValueMap()
+        throws SQLException
+    {
+        // Given
+        KeyValueRowCallbackHandler handler = new KeyValueRowCallbackHandler( createParams( DataType.NUMERIC ), 0 );
+
+        // When
+        processRow( handler, "deabcdefghA", "201501", 1d );
+        processRow( handler, "deabcdefghA", "201502", 2d );
+        processRow( handler, "deabcdefghB", "201501", 3d );
+
+        // Then
+        Map<String, Object> map = handler.getKeyValueMap();
+
+        assertThat( handler.getRowCount(), is( 3 ) );
+        assertThat( map.size(), is( 3 ) );
+        assertThat( map.get( "deabcdefghA-201501" ), is( 1d ) );
+        assertThat( map.get( "deabcdefghA-201502" ), is( 2d ) );
+        assertThat( map.get( "deabcdefghB-201501" ), is( 3d ) );
+    }
+
+    @Test
+    public void testGetKeyValueMapText()
+        throws SQLException
+    {
+        // Given
+        KeyValueRowCallbackHandler handler = new KeyValueRowCallbackHandler( createParams( DataType.TEXT ), 0 );
+
+        // When
+        processRow( handler, "deabcdefghA", "201501", "Positive" );
+        processRow( handler, "deabcdefghA", "201502", "Negative" );
+
+        // Then
+        Map<String, Object> map = handler.getKeyValueMap();
+
+        assertThat( map.size(), is( 2 ) );
+        assertThat( map.get( "deabcdefghA-201501" ), is( "Positive" ) );
+        assertThat( map.get( "deabcdefghA-201502" ), is( "Negative" ) );
+    }
+
+    @Test
+    public void testGetKeyValueMapGrowsBeyondInitialCapacity()
+        throws SQLException
+    {
+        // Given
+        KeyValueRowCallbackHandler handler = new KeyValueRowCallbackHandler( createParams( DataType.NUMERIC ), 0 );
+
+        // When
+        for ( int i = 0; i < 1000; i++ )
+        {
+            processRow( handler, "de" + i, "201501", i );
+        }
+
+        // Then
+        Map<String, Object> map = handler.getKeyValueMap();
+
+        assertThat( map.size(), is( 1000 ) );
+        assertThat( map.get( "de0-201501" ), is( 0d ) );
+        assertThat( map.get( "de999-201501" ), is( 999d ) );
+    }
+
+    @Test( expected = IllegalQueryException.class )
+    public void testProcessRowExceedsMaxLimit()
+        throws SQLException
+    {
+        // Given
+        KeyValueRowCallbackHandler handler = new KeyValueRowCallbackHandler( createParams( DataType.NUMERIC ), 1 );
+
+        // When
+        processRow( handler, "deabcdefghA", "201501", 1d );
+        processRow( handler, "deabcdefghA", "201502", 2d );
+    }
+
+    private void processRow( KeyValueRowCallbackHandler handler, String dx, String pe, double value )
+        throws SQLException
+    {
+        when( rs.getDouble( VALUE_ID ) ).thenReturn( value );
+
+        processRow( handler, dx, pe );
+    }
+
+    private void processRow( KeyValueRowCallbackHandler handler, String dx, String pe, String value )
+        throws SQLException
+    {
+        when( rs.getString( VALUE_ID ) ).thenReturn( value );
+
+        processRow( handler, dx, pe );
+    }
+
+    private void processRow( KeyValueRowCallbackHandler handler, String dx, String pe )
+        throws SQLException
+    {
+        when( rs.getString( DATA_X_DIM_ID ) ).thenReturn( dx );
+        when( rs.getString( PERIOD_DIM_ID ) ).thenReturn( pe );
+
+        handler.processRow( rs );
+    }
+
+    private DataQueryParams createParams( DataType dataType )
+    {
+        return DataQueryParams.newBuilder()
+            .withDataType( dataType )
+            .addDimension( new BaseDimensionalObject( DATA_X_DIM_ID, DimensionType.DATA_X, getList( createDataElement( 'A' ) ) ) )
+            .addDimension( new BaseDimensionalObject( PERIOD_DIM_ID, DimensionType.PERIOD, getList( PeriodType.getPeriodFromIsoString( "201501" ) ) ) )
+            .addFilter( new BaseDimensionalObject( ORGUNIT_DIM_ID, DimensionType.ORGANISATION_UNIT, getList( createOrganisationUnit( 'A' ) ) ) )
+            .build();
+    }
+}
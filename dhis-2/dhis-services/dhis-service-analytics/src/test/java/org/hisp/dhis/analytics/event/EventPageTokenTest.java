@@ -0,0 +1,70 @@
+package org.hisp.dhis.analytics.event;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Timestamp;
+
+import org.hisp.dhis.common.IllegalQueryException;
+import org.junit.Test;
+
+public class EventPageTokenTest
+{
+    @Test
+    public void testEncodeDecode()
+    {
+        EventPageToken token = new EventPageToken( Timestamp.valueOf( "2020-03-14 10:15:30.5" ), "a1234567890" );
+
+        EventPageToken decoded = EventPageToken.decode( token.encode() );
+
+        assertEquals( token.getEventDate(), decoded.getEventDate() );
+        assertEquals( token.getEvent(), decoded.getEvent() );
+    }
+
+    @Test
+    public void testDecodeBlank()
+    {
+        assertNull( EventPageToken.decode( null ) );
+        assertNull( EventPageToken.decode( " " ) );
+    }
+
+    @Test( expected = IllegalQueryException.class )
+    public void testDecodeInvalidEncoding()
+    {
+        EventPageToken.decode( "not*base64" );
+    }
+
+    @Test( expected = IllegalQueryException.class )
+    public void testDecodeInvalidEvent()
+    {
+        EventPageToken.decode( new EventPageToken( Timestamp.valueOf( "2020-03-14 10:15:30" ), "invalid" ).encode() );
+    }
+}
@@ -0,0 +1,200 @@
+package org.hisp.dhis.analytics.event.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hisp.dhis.DhisConvenienceTest.createProgram;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.hisp.dhis.analytics.AnalyticsSecurityManager;
+import org.hisp.dhis.analytics.Partitions;
+import org.hisp.dhis.analytics.cache.AnalyticsCache;
+import org.hisp.dhis.analytics.event.EnrollmentAnalyticsManager;
+import org.hisp.dhis.analytics.event.EventAnalyticsManager;
+import org.hisp.dhis.analytics.event.EventDataQueryService;
+import org.hisp.dhis.analytics.event.EventPageToken;
+import org.hisp.dhis.analytics.event.EventQueryParams;
+import org.hisp.dhis.analytics.event.EventQueryPlanner;
+import org.hisp.dhis.analytics.event.EventQueryValidator;
+import org.hisp.dhis.analytics.event.EventStreamHandler;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.system.database.DatabaseInfo;
+import org.hisp.dhis.trackedentity.TrackedEntityAttributeService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.Sets;
+
+public class EventAnalyticsServiceStreamTest
+{
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private DataElementService dataElementService;
+
+    @Mock
+    private TrackedEntityAttributeService trackedEntityAttributeService;
+
+    @Mock
+    private EventAnalyticsManager eventAnalyticsManager;
+
+    @Mock
+    private EventDataQueryService eventDataQueryService;
+
+    @Mock
+    private AnalyticsSecurityManager securityManager;
+
+    @Mock
+    private EventQueryPlanner queryPlanner;
+
+    @Mock
+    private EventQueryValidator queryValidator;
+
+    @Mock
+    private DatabaseInfo databaseInfo;
+
+    @Mock
+    private AnalyticsCache analyticsCache;
+
+    @Mock
+    private EnrollmentAnalyticsManager enrollmentAnalyticsManager;
+
+    @Mock
+    private EventStreamHandler handler;
+
+    @Captor
+    private ArgumentCaptor<EventPageToken> nextPageToken;
+
+    private DefaultEventAnalyticsService subject;
+
+    @Before
+    public void setUp()
+    {
+        subject = new DefaultEventAnalyticsService( dataElementService, trackedEntityAttributeService,
+            eventAnalyticsManager, eventDataQueryService, securityManager, queryPlanner, queryValidator,
+            databaseInfo, analyticsCache, enrollmentAnalyticsManager );
+
+        when( securityManager.withUserConstraints( any( EventQueryParams.class ) ) ).then( returnsFirstArg() );
+        when( queryPlanner.planEventQuery( any( EventQueryParams.class ) ) ).then( invocation ->
+            new EventQueryParams.Builder( invocation.<EventQueryParams> getArgument( 0 ) )
+                .withPartitions( new Partitions( Sets.newHashSet( 2017 ) ) )
+                .build() );
+    }
+
+    @Test
+    public void testStreamEventsSetsNextPageTokenWhenPageIsFull()
+    {
+        // Given
+        mockEventRows(
+            Arrays.<Object> asList( "psiabcdefgA", "psabcdefghA", "2017-01-10 08:00:00" ),
+            Arrays.<Object> asList( "psiabcdefgB", "psabcdefghA", "2017-01-15 10:30:00" ) );
+
+        // When
+        subject.streamEvents( createParams( 2 ), null, handler );
+
+        // Then
+        verify( handler, times( 2 ) ).handleRow( anyList() );
+        verify( handler ).handleMetaData( any(), nextPageToken.capture() );
+
+        assertThat( nextPageToken.getValue().getEvent(), is( "psiabcdefgB" ) );
+        assertThat( nextPageToken.getValue().getEventDate().toString(), is( "2017-01-15 10:30:00.0" ) );
+    }
+
+    @Test
+    public void testStreamEventsOmitsNextPageTokenOnLastPage()
+    {
+        // Given
+        mockEventRows(
+            Arrays.<Object> asList( "psiabcdefgA", "psabcdefghA", "2017-01-10 08:00:00" ) );
+
+        // When
+        subject.streamEvents( createParams( 2 ), null, handler );
+
+        // Then
+        verify( handler ).handleRow( anyList() );
+        verify( handler ).handleMetaData( any(), nextPageToken.capture() );
+
+        assertThat( nextPageToken.getValue(), is( nullValue() ) );
+    }
+
+    @Test
+    public void testStreamEventsOmitsNextPageTokenWithoutPaging()
+    {
+        // Given
+        mockEventRows(
+            Arrays.<Object> asList( "psiabcdefgA", "psabcdefghA", "2017-01-10 08:00:00" ),
+            Arrays.<Object> asList( "psiabcdefgB", "psabcdefghA", "2017-01-15 10:30:00" ) );
+
+        // When
+        subject.streamEvents( createParams( null ), null, handler );
+
+        // Then
+        verify( handler ).handleMetaData( any(), nextPageToken.capture() );
+
+        assertThat( nextPageToken.getValue(), is( nullValue() ) );
+    }
+
+    private EventQueryParams createParams( Integer pageSize )
+    {
+        return new EventQueryParams.Builder()
+            .withProgram( createProgram( 'A' ) )
+            .withPageSize( pageSize )
+            .withSkipMeta( true )
+            .build();
+    }
+
+    @SafeVarargs
+    private final void mockEventRows( List<Object>... rows )
+    {
+        doAnswer( invocation -> {
+            Consumer<List<Object>> rowConsumer = invocation.getArgument( 3 );
+            Arrays.stream( rows ).forEach( rowConsumer );
+            return null;
+        } ).when( eventAnalyticsManager ).streamEvents( any(), anyList(), any(), any() );
+    }
+}
@@ -45,10 +45,13 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.Timestamp;
+
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.AnalyticsAggregationType;
 import org.hisp.dhis.analytics.DataQueryParams;
 import org.hisp.dhis.analytics.DataType;
+import org.hisp.dhis.analytics.event.EventPageToken;
 import org.hisp.dhis.analytics.event.EventQueryParams;
 import org.hisp.dhis.analytics.event.data.programIndicator.DefaultProgramIndicatorSubqueryBuilder;
 import org.hisp.dhis.common.BaseDimensionalObject;
@@ -144,6 +147,37 @@ public class EventsAnalyticsManagerTest extends EventAnalyticsTest
         assertSql( expected, sql.getValue() );
     }
 
+    @Test
+    public void verifyGetEventsStreamSql()
+    {
+        String sql = subject.getEventsStreamSql( createRequestParams(), null );
+
+        String expected = "ax.\"monthly\",ax.\"ou\"  from " + getTable( programA.getUid() )
+            + " as ax where ax.\"monthly\" in ('2000Q1') and (ax.\"uidlevel0\" = 'ouabcdefghA' ) "
+            + "order by ax.\"executiondate\",ax.\"psi\" ";
+
+        assertSql( expected, sql );
+    }
+
+    @Test
+    public void verifyGetEventsStreamSqlWithPageToken()
+    {
+        EventQueryParams params = new EventQueryParams.Builder( createRequestParams() )
+            .withPageSize( 10 )
+            .build();
+
+        EventPageToken pageToken = new EventPageToken( Timestamp.valueOf( "2000-02-15 10:30:00" ), "psiabcdefgh" );
+
+        String sql = subject.getEventsStreamSql( params, pageToken );
+
+        String expected = "ax.\"monthly\",ax.\"ou\"  from " + getTable( programA.getUid() )
+            + " as ax where ax.\"monthly\" in ('2000Q1') and (ax.\"uidlevel0\" = 'ouabcdefghA' ) "
+            + "and (ax.\"executiondate\",ax.\"psi\") > (cast('2000-02-15 10:30:00.0' as timestamp),'psiabcdefgh') "
+            + "order by ax.\"executiondate\",ax.\"psi\" limit 10";
+
+        assertSql( expected, sql );
+    }
+
     @Test
     public void verifyGetEventsSqlWithProgramAndProgramStage()
     {
@@ -0,0 +1,264 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.AnalyticsService;
+import org.hisp.dhis.analytics.AnalyticsTableGenerator;
+import org.hisp.dhis.analytics.AnalyticsTableIndexStrategy;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfile;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileEntry;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileStore;
+import org.hisp.dhis.analytics.util.AnalyticsTestUtils;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.common.DimensionalItemObject;
+import org.hisp.dhis.common.cache.CacheStrategy;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.google.common.collect.Lists;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the index build time, the index size and the query latency of the
+ * {@link AnalyticsTableIndexStrategy#ALL} and
+ * {@link AnalyticsTableIndexStrategy#SELECTIVE} index strategies on generated
+ * data values. Results are logged. Only runs when the number of data values is
+ * set through the benchmark.rows system property, for instance
+ * -Dbenchmark.rows=10000000.
+ */
+@Slf4j
+@Category( IntegrationTest.class )
+public class AnalyticsTableIndexStrategyBenchmarkTest
+    extends IntegrationTestBase
+{
+    private static final int QUERY_RUNS = 5;
+
+    @Autowired
+    private AnalyticsTableGenerator analyticsTableGenerator;
+
+    @Autowired
+    private AnalyticsTableProfileStore profileStore;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
+    @Autowired
+    private DataElementService dataElementService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private PeriodService periodService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Override
+    public void tearDownTest()
+    {
+        analyticsTableGenerator.dropTables();
+
+        systemSettingManager.saveSystemSetting( SettingKey.ANALYTICS_TABLE_INDEX_STRATEGY,
+            SettingKey.ANALYTICS_TABLE_INDEX_STRATEGY.getDefaultValue() );
+        systemSettingManager.saveSystemSetting( SettingKey.CACHE_STRATEGY,
+            SettingKey.CACHE_STRATEGY.getDefaultValue() );
+    }
+
+    @Test
+    public void testIndexStrategyBenchmark()
+    {
+        Assume.assumeTrue( System.getProperty( "benchmark.rows" ) != null );
+
+        final int rows = Integer.getInteger( "benchmark.rows" );
+
+        systemSettingManager.saveSystemSetting( SettingKey.CACHE_STRATEGY, CacheStrategy.NO_CACHE );
+
+        OrganisationUnit ouA = createOrganisationUnit( 'A' );
+        OrganisationUnit ouB = createOrganisationUnit( 'B' );
+        OrganisationUnit ouC = createOrganisationUnit( 'C' );
+        OrganisationUnit ouD = createOrganisationUnit( 'D' );
+        OrganisationUnit ouE = createOrganisationUnit( 'E' );
+        AnalyticsTestUtils.configureHierarchy( ouA, ouB, ouC, ouD, ouE );
+
+        Lists.newArrayList( ouA, ouB, ouC, ouD, ouE ).forEach( organisationUnitService::addOrganisationUnit );
+
+        List<DimensionalItemObject> months = IntStream.rangeClosed( 1, 12 )
+            .mapToObj( month -> periodService.reloadPeriod( createPeriod( String.format( "2017%02d", month ) ) ) )
+            .collect( Collectors.toList() );
+
+        List<DataElement> dataElements = IntStream.range( 0, Math.max( 1, rows / ( 5 * 12 ) ) )
+            .mapToObj( this::addDataElement )
+            .collect( Collectors.toList() );
+
+        jdbcTemplate.update(
+            "insert into datavalue (dataelementid, periodid, sourceid, categoryoptioncomboid, attributeoptioncomboid, " +
+                "value, created, lastupdated, deleted) " +
+            "select de.dataelementid, pe.periodid, ou.organisationunitid, ?, ?, (random() * 100)::int::text, now(), now(), false " +
+            "from dataelement de cross join period pe cross join organisationunit ou",
+            categoryService.getDefaultCategoryOptionCombo().getId(), categoryService.getDefaultCategoryOptionCombo().getId() );
+
+        jdbcTemplate.execute( "analyze datavalue" );
+
+        List<DataQueryParams> queries = Lists.newArrayList(
+            DataQueryParams.newBuilder()
+                .withDataElements( dataElements.subList( 0, Math.min( 10, dataElements.size() ) ) )
+                .withPeriods( months )
+                .withOrganisationUnit( ouA )
+                .withAggregationType( AnalyticsAggregationType.SUM ).build(),
+            DataQueryParams.newBuilder()
+                .withDataElements( dataElements.subList( 0, 1 ) )
+                .withPeriods( Lists.newArrayList( createPeriod( "2017Q1" ), createPeriod( "2017Q2" ) ) )
+                .withOrganisationUnits( Lists.newArrayList( ouB, ouC ) )
+                .withAggregationType( AnalyticsAggregationType.SUM ).build() );
+
+        // The queries run on the tables of the first strategy are tracked and
+        // used for the composite indexes of the selective strategy
+
+        Result all = run( AnalyticsTableIndexStrategy.ALL, queries );
+        Result selective = run( AnalyticsTableIndexStrategy.SELECTIVE, queries );
+
+        log.info( String.format( "Index strategy benchmark, data values: %d", rows ) );
+        log.info( all.toString() );
+        log.info( selective.toString() );
+
+        assertTrue( selective.indexBytes < all.indexBytes );
+    }
+
+    private Result run( AnalyticsTableIndexStrategy strategy, List<DataQueryParams> queries )
+    {
+        systemSettingManager.saveSystemSetting( SettingKey.ANALYTICS_TABLE_INDEX_STRATEGY, strategy );
+
+        analyticsTableGenerator.generateTables( AnalyticsTableUpdateParams.newBuilder().build() );
+
+        AnalyticsTableProfile profile = profileStore.getProfile( profileStore.getProfiles( 1 ).get( 0 ).getId() );
+
+        List<AnalyticsTableProfileEntry> indexEntries = profile.getEntries().stream()
+            .filter( entry -> AnalyticsTableProfileEntry.Type.INDEX == entry.getType() )
+            .filter( entry -> AnalyticsTableType.DATA_VALUE == entry.getTableType() )
+            .collect( Collectors.toList() );
+
+        Result result = new Result( strategy );
+        result.indexes = indexEntries.size();
+        result.indexMillis = indexEntries.stream().mapToLong( AnalyticsTableProfileEntry::getDuration ).sum();
+        result.indexBytes = indexEntries.stream()
+            .filter( entry -> entry.getBytes() != null )
+            .mapToLong( AnalyticsTableProfileEntry::getBytes ).sum();
+
+        for ( DataQueryParams query : queries )
+        {
+            analyticsService.getAggregatedDataValues( query );
+
+            long start = System.nanoTime();
+
+            for ( int i = 0; i < QUERY_RUNS; i++ )
+            {
+                analyticsService.getAggregatedDataValues( query );
+            }
+
+            result.queryMillis.add( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) / QUERY_RUNS );
+        }
+
+        return result;
+    }
+
+    private DataElement addDataElement( int index )
+    {
+        DataElement dataElement = createDataElement( 'A' );
+        dataElement.setUid( CodeGenerator.generateUid() );
+        dataElement.setName( "DataElement" + index );
+        dataElement.setShortName( "DataElementShort" + index );
+        dataElement.setCode( "DataElementCode" + index );
+        dataElementService.addDataElement( dataElement );
+
+        return dataElement;
+    }
+
+    private static class Result
+    {
+        private final AnalyticsTableIndexStrategy strategy;
+
+        private int indexes;
+
+        private long indexMillis;
+
+        private long indexBytes;
+
+        private final List<Long> queryMillis = Lists.newArrayList();
+
+        private Result( AnalyticsTableIndexStrategy strategy )
+        {
+            this.strategy = strategy;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "Strategy: %s, indexes: %d, index build: %d ms, index size: %d bytes, " +
+                "average query time per query: %s ms", strategy, indexes, indexMillis, indexBytes, queryMillis );
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.hisp.dhis.analytics.AnalyticsTableChanges;
+import org.hisp.dhis.analytics.AnalyticsTableManager;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.cache.AnalyticsCache;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileStore;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.resourcetable.ResourceTableService;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.notification.Notifier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.Lists;
+
+public class DefaultAnalyticsTableServiceTest
+{
+    @Mock
+    private AnalyticsTableManager tableManager;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private AnalyticsTableUpdateParams params;
+
+    private DefaultAnalyticsTableService subject;
+
+    @Before
+    public void setUp()
+    {
+        params = AnalyticsTableUpdateParams.newBuilder()
+            .withIncrementalUpdate()
+            .withSkipResourceTables( true )
+            .withStartTime( new Date() )
+            .build();
+
+        subject = new DefaultAnalyticsTableService( tableManager, mock( OrganisationUnitService.class ),
+            mock( DataElementService.class ), mock( ResourceTableService.class ), mock( Notifier.class ),
+            mock( SystemSettingManager.class ), mock( AnalyticsCache.class ),
+            new AnalyticsTableProfiler( mock( AnalyticsTableProfileStore.class ) ) );
+    }
+
+    @Test
+    public void testIncrementalUpdate()
+    {
+        // Given
+        when( tableManager.getAnalyticsTableType() ).thenReturn( AnalyticsTableType.DATA_VALUE );
+        when( tableManager.isIncrementalUpdateSupported() ).thenReturn( true );
+        when( tableManager.updateChangedData( any(), anyMap() ) ).thenReturn( AnalyticsTableChanges.none() );
+
+        // When
+        subject.update( params );
+
+        // Then
+        verify( tableManager ).updateChangedData( any(), anyMap() );
+        verify( tableManager, never() ).getAnalyticsTables( any() );
+    }
+
+    @Test
+    public void testIncrementalUpdateFallsBackToLatestPartition()
+    {
+        // Given
+        when( tableManager.getAnalyticsTableType() ).thenReturn( AnalyticsTableType.EVENT );
+        when( tableManager.isIncrementalUpdateSupported() ).thenReturn( false );
+        when( tableManager.getAnalyticsTables( any() ) ).thenReturn( Lists.newArrayList() );
+
+        // When
+        subject.update( params );
+
+        // Then
+        ArgumentCaptor<AnalyticsTableUpdateParams> paramsCaptor = ArgumentCaptor.forClass( AnalyticsTableUpdateParams.class );
+        verify( tableManager ).getAnalyticsTables( paramsCaptor.capture() );
+        verify( tableManager, never() ).updateChangedData( any(), anyMap() );
+
+        assertTrue( paramsCaptor.getValue().isLatestUpdate() );
+        assertFalse( paramsCaptor.getValue().isIncrementalUpdate() );
+        assertTrue( params.isIncrementalUpdate() );
+        assertFalse( params.isLatestUpdate() );
+    }
+}
@@ -31,6 +31,7 @@ package org.hisp.dhis.analytics.table;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -45,28 +46,50 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import org.hisp.dhis.analytics.AnalyticsIndex;
 import org.hisp.dhis.analytics.AnalyticsTable;
+import org.hisp.dhis.analytics.AnalyticsTableChanges;
+import org.hisp.dhis.analytics.AnalyticsTableChunk;
+import org.hisp.dhis.analytics.AnalyticsTableColumn;
 import org.hisp.dhis.analytics.AnalyticsTableHookService;
+import org.hisp.dhis.analytics.AnalyticsTableIndexStrategy;
 import org.hisp.dhis.analytics.AnalyticsTableManager;
 import org.hisp.dhis.analytics.AnalyticsTablePartition;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.cache.AnalyticsQueryFrequencyTracker;
 import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.dataapproval.DataApprovalLevelService;
+import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.jdbc.StatementBuilder;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.system.database.DatabaseInfo;
 import org.joda.time.DateTime;
 
+import static org.hisp.dhis.analytics.ColumnDataType.CHARACTER_11;
+import static org.hisp.dhis.analytics.ColumnDataType.INTEGER;
+import static org.hisp.dhis.analytics.ColumnDataType.TEXT;
+import static org.hisp.dhis.analytics.ColumnDataType.TIMESTAMP;
+import static org.hisp.dhis.analytics.util.AnalyticsSqlUtils.quote;
+import static org.hisp.dhis.util.DateUtils.getLongDateString;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -80,18 +103,25 @@ public class JdbcAnalyticsTableManagerTest
     @Mock
     private JdbcTemplate jdbcTemplate;
 
+    @Mock
+    private OrganisationUnitService organisationUnitService;
+
     @Rule
     public MockitoRule mockitoRule = MockitoJUnit.rule();
 
+    private AnalyticsQueryFrequencyTracker queryFrequencyTracker;
+
     private AnalyticsTableManager subject;
 
     @Before
     public void setUp()
     {
-        subject = new JdbcAnalyticsTableManager( mock( IdentifiableObjectManager.class ), mock( OrganisationUnitService.class ),
+        queryFrequencyTracker = new AnalyticsQueryFrequencyTracker();
+
+        subject = new JdbcAnalyticsTableManager( mock( IdentifiableObjectManager.class ), organisationUnitService,
             mock( CategoryService.class ), systemSettingManager, mock( DataApprovalLevelService.class ),
             mock( ResourceTableService.class ), mock( AnalyticsTableHookService.class ), mock( StatementBuilder.class ),
-            mock( PartitionManager.class ), mock( DatabaseInfo.class ), jdbcTemplate );
+            mock( PartitionManager.class ), mock( DatabaseInfo.class ), jdbcTemplate, queryFrequencyTracker );
     }
 
     @Test
@@ -183,4 +213,224 @@ public class JdbcAnalyticsTableManagerTest
 
         subject.getAnalyticsTables( params );
     }
+
+    @Test
+    public void testCreateRollupTables()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new DateTime( 2019, 3, 1, 10, 0 ).toDate() )
+            .build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL ) ).thenReturn( 2 );
+        when( organisationUnitService.getFilledOrganisationUnitLevels() ).thenReturn( Lists.newArrayList(
+            new OrganisationUnitLevel( 1, "National" ), new OrganisationUnitLevel( 2, "District" ),
+            new OrganisationUnitLevel( 3, "Facility" ) ) );
+
+        subject.createRollupTables( params, Lists.newArrayList( table ) );
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass( String.class );
+
+        verify( jdbcTemplate, atLeastOnce() ).execute( sql.capture() );
+
+        String columns = "\"dx\",\"year\",\"yearly\",\"quarterly\",\"monthly\",\"uidlevel1\",\"uidlevel2\"";
+
+        assertTrue( sql.getAllValues().contains(
+            "create table analytics_rollup_l2_temp_2019 as " +
+            "select " + columns + ", sum(\"value\") as \"value\" " +
+            "from analytics_temp_2019 " +
+            "where \"value\" is not null " +
+            "group by " + columns ) );
+    }
+
+    @Test
+    public void testCreateRollupTablesDisabled()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new DateTime( 2019, 3, 1, 10, 0 ).toDate() )
+            .build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_ROLLUP_ORG_UNIT_LEVEL ) ).thenReturn( 0 );
+
+        subject.createRollupTables( params, Lists.newArrayList( table ) );
+
+        verify( jdbcTemplate, never() ).execute( Mockito.anyString() );
+    }
+
+    @Test
+    public void testGetTableChunks()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new DateTime( 2019, 3, 1, 10, 0 ).toDate() )
+            .build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(), Lists.newArrayList() )
+            .addPartitionTable( 2018, new DateTime( 2018, 1, 1, 0, 0 ).toDate(), new DateTime( 2019, 1, 1, 0, 0 ).toDate() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_POPULATE_CHUNKS ) ).thenReturn( 2 );
+        when( jdbcTemplate.queryForList( Mockito.anyString(), ArgumentMatchers.<Class<Long>>any() ) )
+            .thenReturn( Lists.newArrayList( 11L, 12L, 15L, 17L, 20L ) );
+
+        List<AnalyticsTableChunk> chunks = subject.getTableChunks( params, table.getTablePartitions() );
+
+        assertEquals( 4, chunks.size() );
+        assertEquals( 2019, chunks.get( 0 ).getPartition().getYear().intValue() );
+        assertEquals( "dv.dataelementid between 11 and 15", chunks.get( 0 ).getCondition() );
+        assertEquals( "dv.dataelementid between 17 and 20", chunks.get( 1 ).getCondition() );
+        assertEquals( 2, chunks.get( 1 ).getChunkNo() );
+        assertEquals( 2018, chunks.get( 2 ).getPartition().getYear().intValue() );
+        assertEquals( "dv.dataelementid between 11 and 15", chunks.get( 2 ).getCondition() );
+    }
+
+    @Test
+    public void testGetTableChunksDisabled()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new DateTime( 2019, 3, 1, 10, 0 ).toDate() )
+            .build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_POPULATE_CHUNKS ) ).thenReturn( 1 );
+
+        List<AnalyticsTableChunk> chunks = subject.getTableChunks( params, table.getTablePartitions() );
+
+        assertEquals( 1, chunks.size() );
+        assertFalse( chunks.get( 0 ).hasCondition() );
+    }
+
+    @Test
+    public void testGetIndexesSelective()
+    {
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(
+            new AnalyticsTableColumn( quote( "dx" ), CHARACTER_11, "de.uid" ),
+            new AnalyticsTableColumn( quote( "co" ), CHARACTER_11, "co.uid" )
+                .withIndexColumns( Lists.newArrayList( quote( "dx" ), quote( "co" ) ) ),
+            new AnalyticsTableColumn( quote( "pestartdate" ), TIMESTAMP, "pe.startdate" ),
+            new AnalyticsTableColumn( quote( "year" ), INTEGER, "ps.year" ),
+            new AnalyticsTableColumn( quote( "yearly" ), TEXT, "ps.yearly" ),
+            new AnalyticsTableColumn( quote( "quarterly" ), TEXT, "ps.quarterly" ),
+            new AnalyticsTableColumn( quote( "monthly" ), TEXT, "ps.monthly" ),
+            new AnalyticsTableColumn( quote( "uidlevel2" ), CHARACTER_11, "ous.uidlevel2" ) ), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        OrganisationUnit ouA = new OrganisationUnit( "A" );
+        ouA.setUid( "ouabcdefghA" );
+        ouA.setPath( "/ouabcdefghB/ouabcdefghA" );
+
+        DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( new DataElement( "A" ) ) )
+            .withPeriods( Lists.newArrayList( PeriodType.getPeriodFromIsoString( "201901" ) ) )
+            .withOrganisationUnits( Lists.newArrayList( ouA ) )
+            .build();
+
+        queryFrequencyTracker.record( params );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_INDEX_STRATEGY ) ).thenReturn( AnalyticsTableIndexStrategy.SELECTIVE );
+        when( jdbcTemplate.queryForList( Mockito.startsWith( "select uid, hierarchylevel from organisationunit" ) ) )
+            .thenReturn( Lists.<Map<String, Object>> newArrayList( ImmutableMap.of( "uid", "ouabcdefghA", "hierarchylevel", 2 ) ) );
+
+        List<AnalyticsIndex> indexes = subject.getIndexes( table.getTablePartitions() );
+
+        assertEquals( 5, indexes.size() );
+        assertEquals( Lists.newArrayList( quote( "dx" ), quote( "co" ) ), indexes.get( 0 ).getColumns() );
+        assertEquals( Lists.newArrayList( quote( "pestartdate" ) ), indexes.get( 1 ).getColumns() );
+        assertFalse( indexes.get( 1 ).hasType() );
+        assertEquals( Lists.newArrayList( quote( "monthly" ) ), indexes.get( 2 ).getColumns() );
+        assertEquals( Lists.newArrayList( quote( "uidlevel2" ) ), indexes.get( 3 ).getColumns() );
+        assertEquals( Lists.newArrayList( quote( "dx" ), quote( "monthly" ), quote( "uidlevel2" ) ), indexes.get( 4 ).getColumns() );
+        verify( jdbcTemplate, never() ).execute( Mockito.anyString() );
+    }
+
+    @Test
+    public void testGetIndexesAll()
+    {
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(
+            new AnalyticsTableColumn( quote( "dx" ), CHARACTER_11, "de.uid" ),
+            new AnalyticsTableColumn( quote( "pestartdate" ), TIMESTAMP, "pe.startdate" ),
+            new AnalyticsTableColumn( quote( "year" ), INTEGER, "ps.year" ) ), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        when( systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_TABLE_INDEX_STRATEGY ) ).thenReturn( AnalyticsTableIndexStrategy.ALL );
+
+        List<AnalyticsIndex> indexes = subject.getIndexes( table.getTablePartitions() );
+
+        assertEquals( 3, indexes.size() );
+        assertFalse( indexes.get( 1 ).hasType() );
+        verify( jdbcTemplate, never() ).execute( Mockito.anyString() );
+    }
+
+    @Test
+    public void testUpdateChangedDataCollectsChangedDataValues()
+    {
+        Date lastFullTableUpdate = new DateTime( 2019, 3, 1, 2, 0 ).toDate();
+        Date lastIncrementalUpdate = new DateTime( 2019, 3, 1, 9, 0 ).toDate();
+        Date startTime = new DateTime( 2019, 3, 1, 10, 0 ).toDate();
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( startTime )
+            .withIncrementalUpdate()
+            .build();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE ) ).thenReturn( lastFullTableUpdate );
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_INCREMENTAL_ANALYTICS_TABLES_UPDATE ) ).thenReturn( lastIncrementalUpdate );
+        when( jdbcTemplate.queryForList( Mockito.anyString(), ArgumentMatchers.<Class<Integer>>any() ) ).thenReturn( Lists.newArrayList() );
+
+        AnalyticsTableChanges changes = subject.updateChangedData( params, ImmutableMap.of() );
+
+        assertTrue( subject.isIncrementalUpdateSupported() );
+        assertFalse( changes.hasChanges() );
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass( String.class );
+        verify( jdbcTemplate, atLeastOnce() ).execute( sqlCaptor.capture() );
+
+        String changesSql = sqlCaptor.getAllValues().stream()
+            .filter( sql -> sql.startsWith( "create table _analytics_changes as " ) )
+            .findFirst().orElse( null );
+
+        assertNotNull( changesSql );
+        assertTrue( changesSql.contains( "select distinct dv.dataelementid, dv.periodid, dv.sourceid, ps.year" ) );
+        assertTrue( changesSql.contains( "where de.domaintype = 'AGGREGATE'" ) );
+        assertTrue( changesSql.contains( "dv.lastupdated >= '" + getLongDateString( lastIncrementalUpdate ) + "'" ) );
+        assertTrue( changesSql.contains( "dv.lastupdated < '" + getLongDateString( startTime ) + "'" ) );
+        assertFalse( changesSql.contains( "dv.deleted" ) );
+        assertTrue( sqlCaptor.getAllValues().contains( "drop table if exists _analytics_changes" ) );
+    }
+
+    @Test
+    public void testSetTableLogged()
+    {
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(
+            new AnalyticsTableColumn( quote( "dx" ), CHARACTER_11, "de.uid" ) ), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withUnloggedTables( true )
+            .build();
+
+        subject.setTableLogged( params, table );
+
+        verify( jdbcTemplate ).execute( "alter table analytics_temp_2019 set logged" );
+        verify( jdbcTemplate ).execute( "alter table analytics_temp set logged" );
+        verify( systemSettingManager, never() ).getSystemSetting( SettingKey.ANALYTICS_TABLE_UNLOGGED );
+    }
+
+    @Test
+    public void testSetTableLoggedWhenLogged()
+    {
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(
+            new AnalyticsTableColumn( quote( "dx" ), CHARACTER_11, "de.uid" ) ), Lists.newArrayList() )
+            .addPartitionTable( 2019, new DateTime( 2019, 1, 1, 0, 0 ).toDate(), new DateTime( 2020, 1, 1, 0, 0 ).toDate() );
+
+        subject.setTableLogged( AnalyticsTableUpdateParams.newBuilder().build(), table );
+
+        verify( jdbcTemplate, never() ).execute( Mockito.anyString() );
+    }
 }
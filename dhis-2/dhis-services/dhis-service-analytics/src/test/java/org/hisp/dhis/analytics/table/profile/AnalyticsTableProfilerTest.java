@@ -0,0 +1,158 @@
+package org.hisp.dhis.analytics.table.profile;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfileEntry.Type;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+
+public class AnalyticsTableProfilerTest
+{
+    @Mock
+    private AnalyticsTableProfileStore profileStore;
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+
+    private AnalyticsTableProfiler profiler;
+
+    @Before
+    public void setUp()
+    {
+        profiler = new AnalyticsTableProfiler( profileStore );
+    }
+
+    @Test
+    public void testRecordRun()
+    {
+        AnalyticsTableUpdateParams params = startRun( AnalyticsTableUpdateParams.newBuilder().build() );
+
+        profiler.startPhases( params, AnalyticsTableType.DATA_VALUE );
+        profiler.startPhases( params, AnalyticsTableType.EVENT );
+
+        profiler.record( Type.PHASE, AnalyticsTableType.DATA_VALUE, "populateTables", TimeUnit.MILLISECONDS.toNanos( 300 ) );
+        profiler.record( Type.PHASE, AnalyticsTableType.EVENT, "populateTables", TimeUnit.MILLISECONDS.toNanos( 200 ) );
+        profiler.record( Type.PHASE, AnalyticsTableType.DATA_VALUE, "createIndexes", TimeUnit.MILLISECONDS.toNanos( 100 ) );
+        profiler.record( Type.TABLE, AnalyticsTableType.DATA_VALUE, "analytics_2020_temp", TimeUnit.MILLISECONDS.toNanos( 50 ), 1000L, 8192L );
+
+        AnalyticsTableProfile profile = profiler.finishRun( params, true );
+
+        verify( profileStore ).save( profile );
+        verify( profileStore ).deleteOldProfiles( eq( "full" ), any( Integer.class ) );
+
+        assertThat( profile.isSuccess(), is( true ) );
+        assertThat( profile.getUpdateType(), is( "full" ) );
+        assertThat( profile.getEndTime(), is( notNullValue() ) );
+        assertThat( profile.getEntries().size(), is( 4 ) );
+        assertThat( profile.getPhases().size(), is( 2 ) );
+        assertThat( profile.getPhases().get( "populateTables" ), is( 500L ) );
+        assertThat( profile.getPhases().get( "createIndexes" ), is( 100L ) );
+        assertThat( profile.getEntries().get( 3 ).getRows(), is( 1000L ) );
+        assertThat( profile.getEntries().get( 3 ).getBytes(), is( 8192L ) );
+    }
+
+    @Test
+    public void testRecordConcurrentRuns()
+    {
+        AnalyticsTableUpdateParams fullParams = startRun( AnalyticsTableUpdateParams.newBuilder().build() );
+        AnalyticsTableUpdateParams latestParams = startRun( AnalyticsTableUpdateParams.newBuilder().withLatestPartition().build() );
+
+        profiler.startPhases( fullParams, AnalyticsTableType.DATA_VALUE ).endPhase( "getTables" );
+        profiler.startPhases( latestParams, AnalyticsTableType.EVENT ).endPhase( "getTables" );
+
+        profiler.record( Type.TABLE, AnalyticsTableType.DATA_VALUE, "analytics_2020_temp", 1000L );
+        profiler.record( Type.TABLE, AnalyticsTableType.EVENT, "analytics_event_2020_temp", 1000L );
+
+        AnalyticsTableProfile latestProfile = profiler.finishRun( latestParams, true );
+
+        profiler.record( Type.INDEX, AnalyticsTableType.EVENT, "in_analytics_event_2020_temp", 1000L );
+        profiler.record( Type.INDEX, AnalyticsTableType.DATA_VALUE, "in_analytics_2020_temp", 1000L );
+
+        AnalyticsTableProfile fullProfile = profiler.finishRun( fullParams, true );
+
+        verify( profileStore ).deleteOldProfiles( eq( "latest" ), any( Integer.class ) );
+        verify( profileStore ).deleteOldProfiles( eq( "full" ), any( Integer.class ) );
+
+        assertThat( latestProfile.getEntries().size(), is( 2 ) );
+        assertThat( latestProfile.getEntries().get( 1 ).getName(), is( "analytics_event_2020_temp" ) );
+        assertThat( fullProfile.getEntries().size(), is( 3 ) );
+        assertThat( fullProfile.getEntries().get( 1 ).getName(), is( "analytics_2020_temp" ) );
+        assertThat( fullProfile.getEntries().get( 2 ).getName(), is( "in_analytics_2020_temp" ) );
+    }
+
+    @Test
+    public void testFinishRunWithoutStart()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder().build();
+
+        profiler.record( Type.STATEMENT, null, "vacuum analytics_temp", 1000L );
+
+        assertThat( profiler.finishRun( params, true ), is( nullValue() ) );
+
+        verify( profileStore, never() ).save( any() );
+    }
+
+    @Test
+    public void testFinishRunStoreFailure()
+    {
+        doThrow( new IllegalStateException( "Store failed" ) ).when( profileStore ).save( any() );
+
+        AnalyticsTableUpdateParams params = startRun( AnalyticsTableUpdateParams.newBuilder().withLatestPartition().build() );
+
+        AnalyticsTableProfile profile = profiler.finishRun( params, false );
+
+        assertThat( profile.isSuccess(), is( false ) );
+        assertThat( profile.getUpdateType(), is( "latest" ) );
+    }
+
+    private AnalyticsTableUpdateParams startRun( AnalyticsTableUpdateParams params )
+    {
+        return AnalyticsTableUpdateParams.newBuilder( params )
+            .withProfile( profiler.startRun( params ) )
+            .build();
+    }
+}
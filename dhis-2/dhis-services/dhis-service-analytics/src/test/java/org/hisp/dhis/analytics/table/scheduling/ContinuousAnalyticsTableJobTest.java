@@ -0,0 +1,141 @@
+package org.hisp.dhis.analytics.table.scheduling;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.hisp.dhis.analytics.AnalyticsTableGenerator;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobType;
+import org.hisp.dhis.scheduling.parameters.ContinuousAnalyticsJobParameters;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+public class ContinuousAnalyticsTableJobTest
+{
+    @Mock
+    private AnalyticsTableGenerator analyticsTableGenerator;
+
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private ContinuousAnalyticsJobParameters parameters;
+
+    private ContinuousAnalyticsTableJob subject;
+
+    @Before
+    public void setUp()
+    {
+        parameters = new ContinuousAnalyticsJobParameters();
+
+        subject = new ContinuousAnalyticsTableJob( analyticsTableGenerator, systemSettingManager );
+    }
+
+    @Test
+    public void testFullUpdateWhenDue()
+    {
+        // Given
+        parameters.setIncrementalUpdate( true );
+        withNextFullUpdate( new DateTime().minusHours( 1 ).toDate() );
+
+        // When
+        AnalyticsTableUpdateParams params = execute();
+
+        // Then
+        assertFalse( params.isPartialUpdate() );
+        assertFalse( params.isSkipResourceTables() );
+        verify( systemSettingManager ).saveSystemSetting( eq( SettingKey.NEXT_ANALYTICS_TABLE_UPDATE ), any( Date.class ) );
+    }
+
+    @Test
+    public void testIncrementalUpdate()
+    {
+        // Given
+        parameters.setIncrementalUpdate( true );
+        withNextFullUpdate( new DateTime().plusHours( 1 ).toDate() );
+
+        // When
+        AnalyticsTableUpdateParams params = execute();
+
+        // Then
+        assertTrue( params.isIncrementalUpdate() );
+        assertFalse( params.isLatestUpdate() );
+        assertTrue( params.isSkipResourceTables() );
+    }
+
+    @Test
+    public void testLatestPartitionUpdate()
+    {
+        // Given
+        withNextFullUpdate( new DateTime().plusHours( 1 ).toDate() );
+
+        // When
+        AnalyticsTableUpdateParams params = execute();
+
+        // Then
+        assertTrue( params.isLatestUpdate() );
+        assertFalse( params.isIncrementalUpdate() );
+        assertTrue( params.isSkipResourceTables() );
+    }
+
+    private void withNextFullUpdate( Date nextFullUpdate )
+    {
+        when( systemSettingManager.getSystemSetting( eq( SettingKey.NEXT_ANALYTICS_TABLE_UPDATE ), any( Date.class ) ) )
+            .thenReturn( nextFullUpdate );
+    }
+
+    private AnalyticsTableUpdateParams execute()
+    {
+        subject.execute( new JobConfiguration( "continuousAnalytics", JobType.CONTINUOUS_ANALYTICS_TABLE, null, parameters ) );
+
+        ArgumentCaptor<AnalyticsTableUpdateParams> paramsCaptor = ArgumentCaptor.forClass( AnalyticsTableUpdateParams.class );
+        verify( analyticsTableGenerator ).generateTables( paramsCaptor.capture() );
+
+        return paramsCaptor.getValue();
+    }
+}
@@ -61,6 +61,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import lombok.extern.slf4j.Slf4j;
@@ -447,6 +448,43 @@ public class HibernateDataValueStore extends HibernateGenericStore<DataValue>
 
         sql += where;
 
+        return getDeflatedDataValues( sql );
+    }
+
+    @Override
+    public List<DeflatedDataValue> getDeflatedDataValues( Collection<DataValue> dataValues )
+    {
+        if ( dataValues.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        List<List<Long>> keys = dataValues.stream()
+            .map( dv -> Lists.newArrayList( dv.getDataElement().getId(), dv.getPeriod().getId(), dv.getSource().getId(),
+                dv.getCategoryOptionCombo().getId(), dv.getAttributeOptionCombo().getId() ) )
+            .collect( Collectors.toList() );
+
+        String sql = "select dv.dataelementid, dv.periodid, dv.sourceid" +
+            ", dv.categoryoptioncomboid, dv.attributeoptioncomboid, dv.value" +
+            ", dv.storedby, dv.created, dv.lastupdated, dv.comment, dv.followup, dv.deleted" +
+            " from datavalue dv" +
+            " join " + statementBuilder.literalLongsTable( keys, "dvk", Lists.newArrayList( "deid", "peid", "ouid", "cocid", "aocid" ) ) +
+            " on dvk.deid = dv.dataelementid and dvk.peid = dv.periodid and dvk.ouid = dv.sourceid" +
+            " and dvk.cocid = dv.categoryoptioncomboid and dvk.aocid = dv.attributeoptioncomboid";
+
+        return getDeflatedDataValues( sql );
+    }
+
+    /**
+     * Returns the deflated data values for the given SQL query. The query must
+     * select the data value columns in the order of the deflated data value
+     * constructor.
+     *
+     * @param sql the SQL query.
+     * @return a list of deflated data values.
+     */
+    private List<DeflatedDataValue> getDeflatedDataValues( String sql )
+    {
         SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
 
         List<DeflatedDataValue> result = new ArrayList<>();
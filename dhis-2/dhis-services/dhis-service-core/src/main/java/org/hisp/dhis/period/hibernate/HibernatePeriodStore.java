@@ -96,6 +96,7 @@ public class HibernatePeriodStore
             .expireAfterWrite( 24, TimeUnit.HOURS )
             .withInitialCapacity( 200 )
             .forceInMemory()
+            .withSingleFlightLoading()
             .withMaximumSize( SystemUtils.isTestRun( env.getActiveProfiles() ) ? 0 : 10000 )
             .build();
     }
@@ -0,0 +1,120 @@
+package org.hisp.dhis.trackedentity;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Set;
+
+import org.hisp.dhis.commons.timer.SystemTimer;
+import org.hisp.dhis.commons.timer.Timer;
+import org.hisp.dhis.scheduling.AbstractJob;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobType;
+import org.hisp.dhis.system.notification.NotificationLevel;
+import org.hisp.dhis.system.notification.Notifier;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Job which brings the search index of tracked entity attribute values in line
+ * with the searchable attributes. Attributes which became searchable are
+ * indexed, and attributes which are no longer searchable are removed from the
+ * index. Attributes which were registered but not fully indexed, for instance
+ * because a previous run failed, are indexed again. Values of indexed
+ * attributes are kept up to date by the database, so the job only needs to
+ * run when attributes are made searchable. If the index could not be created
+ * during database migration, the job attempts to create it.
+ */
+@Slf4j
+@Component( "trackedEntityAttributeSearchIndexJob" )
+public class TrackedEntityAttributeSearchIndexJob
+    extends AbstractJob
+{
+    private final TrackedEntityAttributeSearchIndexStore searchIndexStore;
+
+    private final Notifier notifier;
+
+    public TrackedEntityAttributeSearchIndexJob( TrackedEntityAttributeSearchIndexStore searchIndexStore,
+        Notifier notifier )
+    {
+        checkNotNull( searchIndexStore );
+        checkNotNull( notifier );
+
+        this.searchIndexStore = searchIndexStore;
+        this.notifier = notifier;
+    }
+
+    @Override
+    public JobType getJobType()
+    {
+        return JobType.TRACKED_ENTITY_ATTRIBUTE_SEARCH_INDEX;
+    }
+
+    @Override
+    public void execute( JobConfiguration jobConfiguration )
+    {
+        if ( !searchIndexStore.createIndex() )
+        {
+            notifier.notify( jobConfiguration, NotificationLevel.WARN,
+                "Tracked entity attribute search index could not be created, the pg_trgm extension might be missing", true );
+            return;
+        }
+
+        Timer timer = new SystemTimer().start();
+
+        Set<Long> searchable = searchIndexStore.getSearchableAttributes();
+        Set<Long> indexed = searchIndexStore.getIndexedAttributes();
+        Set<Long> ready = searchIndexStore.getReadyAttributes();
+
+        for ( Long attributeId : Sets.difference( indexed, searchable ) )
+        {
+            searchIndexStore.removeAttribute( attributeId );
+
+            log.info( "Removed attribute from search index: " + attributeId );
+        }
+
+        for ( Long attributeId : Sets.difference( searchable, ready ) )
+        {
+            notifier.notify( jobConfiguration, "Indexing values of attribute: " + attributeId );
+
+            int values = searchIndexStore.addAttribute( attributeId );
+
+            log.info( String.format( "Added attribute to search index: %d, values: %d", attributeId, values ) );
+        }
+
+        timer.stop();
+
+        notifier.notify( jobConfiguration, NotificationLevel.INFO,
+            "Tracked entity attribute search index updated in " + timer.toString(), true );
+    }
+}
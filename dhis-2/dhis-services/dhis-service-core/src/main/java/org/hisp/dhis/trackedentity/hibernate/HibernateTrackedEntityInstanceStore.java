@@ -51,6 +51,7 @@ import static org.hisp.dhis.util.DateUtils.getMediumDateString;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -58,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -80,6 +82,7 @@ import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitStore;
 import org.hisp.dhis.security.acl.AclService;
+import org.hisp.dhis.trackedentity.TrackedEntityAttributeSearchIndexStore;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceQueryParams;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceStore;
@@ -113,17 +116,22 @@ public class HibernateTrackedEntityInstanceStore
 
     private final StatementBuilder statementBuilder;
 
+    private final TrackedEntityAttributeSearchIndexStore searchIndexStore;
+
     public HibernateTrackedEntityInstanceStore( SessionFactory sessionFactory, JdbcTemplate jdbcTemplate,
         ApplicationEventPublisher publisher, CurrentUserService currentUserService,
-        AclService aclService, OrganisationUnitStore organisationUnitStore, StatementBuilder statementBuilder )
+        AclService aclService, OrganisationUnitStore organisationUnitStore, StatementBuilder statementBuilder,
+        TrackedEntityAttributeSearchIndexStore searchIndexStore )
     {
         super( sessionFactory, jdbcTemplate, publisher, TrackedEntityInstance.class, currentUserService, aclService, false );
 
         checkNotNull( statementBuilder );
         checkNotNull( organisationUnitStore );
+        checkNotNull( searchIndexStore );
 
         this.statementBuilder = statementBuilder;
         this.organisationUnitStore = organisationUnitStore;
+        this.searchIndexStore = searchIndexStore;
     }
 
     // -------------------------------------------------------------------------
@@ -495,6 +503,10 @@ public class HibernateTrackedEntityInstanceStore
     /**
      * From, join and where clause. For attribute params, restriction is set in
      * inner join. For query params, restriction is set in where clause.
+     * LIKE and EQ filters and query params on attributes held by the search
+     * index are additionally restricted to the instances matched by the index,
+     * which lets the database use the trigram index of the search table
+     * instead of scanning attribute values.
      */
     private String getFromWhereClause( TrackedEntityInstanceQueryParams params, SqlHelper hlp )
     {
@@ -503,6 +515,10 @@ public class HibernateTrackedEntityInstanceStore
         final String wordEnd = statementBuilder.getRegexpWordEnd();
         final String anyChar = "\\.*?";
 
+        final Set<Long> indexedAttributes = isSearchIndexApplicable( params ) ? searchIndexStore.getReadyAttributes()
+            : Collections.emptySet();
+        final List<String> searchIndexClauses = new ArrayList<>();
+
         String sql = "from trackedentityinstance tei "
             + "inner join trackedentitytype te on tei.trackedentitytypeid = te.trackedentitytypeid ";
 
@@ -596,6 +612,13 @@ public class HibernateTrackedEntityInstanceStore
 
                     sql += "and " + queryCol + " " + filter.getSqlOperator() + " "
                         + StringUtils.lowerCase( filter.getSqlFilter( encodedFilter ) ) + " ";
+
+                    if ( indexedAttributes.contains( item.getItem().getId() )
+                        && ( filter.isOperator( QueryOperator.LIKE ) || filter.isOperator( QueryOperator.EQ ) ) )
+                    {
+                        searchIndexClauses.add( getSearchIndexClause( String.valueOf( item.getItem().getId() ),
+                            "value " + filter.getSqlOperator() + " " + StringUtils.lowerCase( filter.getSqlFilter( encodedFilter ) ) ) );
+                    }
                 }
             }
         }
@@ -613,6 +636,11 @@ public class HibernateTrackedEntityInstanceStore
             sql += hlp.whereAnd() + " tei.trackedentitytypeid = " + params.getTrackedEntityType().getId() + " ";
         }
 
+        for ( String searchIndexClause : searchIndexClauses )
+        {
+            sql += hlp.whereAnd() + searchIndexClause;
+        }
+
         params.handleOrganisationUnits();
 
         if ( params.isOrganisationUnitMode( OrganisationUnitSelectionMode.ALL ) )
@@ -666,6 +694,21 @@ public class HibernateTrackedEntityInstanceStore
             }
 
             sql = removeLastAnd( sql ) + ") ";
+
+            final List<Long> attributeIds = params.getAttributesAndFilters().stream()
+                .map( item -> item.getItem().getId() )
+                .collect( Collectors.toList() );
+
+            if ( indexedAttributes.containsAll( attributeIds ) )
+            {
+                for ( String queryToken : queryTokens )
+                {
+                    final String query = statementBuilder.encode( queryToken, false );
+
+                    sql += hlp.whereAnd() + getSearchIndexClause( getCommaDelimitedString( attributeIds ),
+                        "value " + regexp + " '" + start + StringUtils.lowerCase( query ) + end + "'" );
+                }
+            }
         }
 
         if ( !params.isIncludeDeleted() )
@@ -676,6 +719,35 @@ public class HibernateTrackedEntityInstanceStore
         return sql;
     }
 
+    /**
+     * Indicates whether the given params have a LIKE or EQ filter or a query
+     * on attributes, which could be restricted through the search index.
+     */
+    private boolean isSearchIndexApplicable( TrackedEntityInstanceQueryParams params )
+    {
+        if ( params.isOrQuery() )
+        {
+            return params.hasAttributesOrFilters();
+        }
+
+        return params.getAttributesAndFilters().stream()
+            .flatMap( item -> item.getFilters().stream() )
+            .anyMatch( filter -> filter.isOperator( QueryOperator.LIKE ) || filter.isOperator( QueryOperator.EQ ) );
+    }
+
+    /**
+     * Returns a restriction of tracked entity instances to the instances with
+     * a value in the search index which matches the given condition.
+     *
+     * @param attributeIds comma separated attribute identifiers.
+     * @param condition the condition on the lower case value.
+     */
+    private String getSearchIndexClause( String attributeIds, String condition )
+    {
+        return " tei.trackedentityinstanceid in (select trackedentityinstanceid from trackedentityattributesearch "
+            + "where trackedentityattributeid in (" + attributeIds + ") and " + condition + ") ";
+    }
+
     private String getOrderClause( TrackedEntityInstanceQueryParams params )
     {
         List<String> cols = getStaticGridColumns();
@@ -0,0 +1,237 @@
+package org.hisp.dhis.trackedentity.jdbc;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hisp.dhis.db.migration.helper.TrackedEntityAttributeSearchIndexSql;
+import org.hisp.dhis.trackedentity.TrackedEntityAttributeSearchIndexStore;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JDBC implementation of the {@link TrackedEntityAttributeSearchIndexStore}.
+ * The index is available when the trigger which maintains it is present in
+ * the database, which is not the case for databases without the pg_trgm
+ * extension.
+ * <p>
+ * Indexing of attributes must not run in a transaction, as the attribute must
+ * be visible to the trigger for concurrent writes before existing values are
+ * indexed. Transactions which were in progress when the attribute was added
+ * are waited for, and values changed during indexing are corrected afterwards,
+ * before the attribute is made available for searches.
+ */
+@Slf4j
+@Repository( "org.hisp.dhis.trackedentity.TrackedEntityAttributeSearchIndexStore" )
+public class JdbcTrackedEntityAttributeSearchIndexStore
+    implements TrackedEntityAttributeSearchIndexStore
+{
+    private static final String TRIGGER_NAME = "trackedentityattributesearch_trigger";
+
+    private static final long TRANSACTION_WAIT_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean available;
+
+    public JdbcTrackedEntityAttributeSearchIndexStore( JdbcTemplate jdbcTemplate )
+    {
+        checkNotNull( jdbcTemplate );
+
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        if ( available == null )
+        {
+            final String sql =
+                "select count(*) from information_schema.triggers " +
+                "where trigger_name = '" + TRIGGER_NAME + "'";
+
+            available = jdbcTemplate.queryForObject( sql, Integer.class ) > 0;
+
+            log.info( "Tracked entity attribute search index available: " + available );
+        }
+
+        return available;
+    }
+
+    @Override
+    public synchronized boolean createIndex()
+    {
+        if ( isAvailable() )
+        {
+            return true;
+        }
+
+        try
+        {
+            TrackedEntityAttributeSearchIndexSql.CREATE_STATEMENTS.forEach( jdbcTemplate::execute );
+        }
+        catch ( DataAccessException ex )
+        {
+            log.warn( String.format( "Could not create search index for tracked entity attribute values: %s",
+                ex.getMessage() ) );
+        }
+
+        available = null;
+
+        return isAvailable();
+    }
+
+    @Override
+    public Set<Long> getReadyAttributes()
+    {
+        if ( !isAvailable() )
+        {
+            return Collections.emptySet();
+        }
+
+        return getAttributes( "select trackedentityattributeid from trackedentityattributesearchindex where ready = true" );
+    }
+
+    @Override
+    public Set<Long> getIndexedAttributes()
+    {
+        return getAttributes( "select trackedentityattributeid from trackedentityattributesearchindex" );
+    }
+
+    @Override
+    public Set<Long> getSearchableAttributes()
+    {
+        final String sql =
+            "select tea.trackedentityattributeid from trackedentityattribute tea " +
+            "where tea.confidential is not true " +
+            "and (tea.uniquefield = true " +
+            "or exists (select 1 from program_attributes pa " +
+                "where pa.trackedentityattributeid = tea.trackedentityattributeid and pa.searchable = true) " +
+            "or exists (select 1 from trackedentitytypeattribute tta " +
+                "where tta.trackedentityattributeid = tea.trackedentityattributeid and tta.searchable = true))";
+
+        return getAttributes( sql );
+    }
+
+    @Override
+    public int addAttribute( long attributeId )
+    {
+        jdbcTemplate.update(
+            "insert into trackedentityattributesearchindex (trackedentityattributeid, ready) values (?, false) " +
+            "on conflict (trackedentityattributeid) do nothing", attributeId );
+
+        // Values written from this point are indexed by the trigger, values
+        // written by transactions in flight might not be, so wait for them
+
+        waitForTransactions();
+
+        int values = jdbcTemplate.update(
+            "insert into trackedentityattributesearch (trackedentityinstanceid, trackedentityattributeid, value) " +
+            "select teav.trackedentityinstanceid, teav.trackedentityattributeid, lower(teav.value) " +
+            "from trackedentityattributevalue teav " +
+            "where teav.trackedentityattributeid = ? and teav.value is not null " +
+            "on conflict (trackedentityinstanceid, trackedentityattributeid) do nothing", attributeId );
+
+        // Values changed or deleted while the values above were read are not
+        // updated by the trigger, so bring them in line with the values
+
+        int updated = jdbcTemplate.update(
+            "update trackedentityattributesearch s set value = lower(teav.value) " +
+            "from trackedentityattributevalue teav " +
+            "where s.trackedentityattributeid = ? " +
+            "and teav.trackedentityinstanceid = s.trackedentityinstanceid " +
+            "and teav.trackedentityattributeid = s.trackedentityattributeid " +
+            "and teav.value is not null and s.value <> lower(teav.value)", attributeId );
+
+        int removed = jdbcTemplate.update(
+            "delete from trackedentityattributesearch s " +
+            "where s.trackedentityattributeid = ? and not exists (" +
+                "select 1 from trackedentityattributevalue teav " +
+                "where teav.trackedentityinstanceid = s.trackedentityinstanceid " +
+                "and teav.trackedentityattributeid = s.trackedentityattributeid " +
+                "and teav.value is not null)", attributeId );
+
+        if ( updated > 0 || removed > 0 )
+        {
+            log.info( String.format( "Corrected search index values of attribute: %d, updated: %d, removed: %d",
+                attributeId, updated, removed ) );
+        }
+
+        jdbcTemplate.update(
+            "update trackedentityattributesearchindex set ready = true, lastindexed = now() " +
+            "where trackedentityattributeid = ?", attributeId );
+
+        return values;
+    }
+
+    @Override
+    public void removeAttribute( long attributeId )
+    {
+        jdbcTemplate.update( "delete from trackedentityattributesearchindex where trackedentityattributeid = ?", attributeId );
+        jdbcTemplate.update( "delete from trackedentityattributesearch where trackedentityattributeid = ?", attributeId );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Waits until all transactions which were in progress when this method
+     * was called have ended, in the same way as concurrent index creation.
+     */
+    private void waitForTransactions()
+    {
+        final long xmax = jdbcTemplate.queryForObject( "select txid_snapshot_xmax(txid_current_snapshot())", Long.class );
+
+        while ( jdbcTemplate.queryForObject( "select txid_snapshot_xmin(txid_current_snapshot())", Long.class ) < xmax )
+        {
+            try
+            {
+                Thread.sleep( TRANSACTION_WAIT_MILLIS );
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( "Interrupted while waiting for transactions to end", ex );
+            }
+        }
+    }
+
+    private Set<Long> getAttributes( String sql )
+    {
+        return new HashSet<>( jdbcTemplate.queryForList( sql, Long.class ) );
+    }
+}
@@ -0,0 +1,297 @@
+package org.hisp.dhis.jdbc.batchhandler;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.AuditType;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.Period;
+import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.period.PeriodType;
+import org.hisp.quick.BatchHandler;
+import org.hisp.quick.BatchHandlerFactory;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Category( IntegrationTest.class )
+public class CopyBatchHandlerTest
+    extends IntegrationTestBase
+{
+    private static final int BENCHMARK_DIMENSION_SIZE = 100;
+
+    @Autowired
+    private BatchHandlerFactory batchHandlerFactory;
+
+    @Autowired
+    private DataValueService dataValueService;
+
+    @Autowired
+    private DataElementService dataElementService;
+
+    @Autowired
+    private PeriodService periodService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private DataElement dataElementA;
+
+    private CategoryOptionCombo categoryOptionComboA;
+
+    private PeriodType periodTypeA;
+
+    private Period periodA;
+
+    private OrganisationUnit unitA;
+
+    private OrganisationUnit unitB;
+
+    @Override
+    public void setUpTest()
+    {
+        dataElementA = createDataElement( 'A' );
+        dataElementService.addDataElement( dataElementA );
+
+        categoryOptionComboA = categoryService.getDefaultCategoryOptionCombo();
+
+        periodTypeA = PeriodType.getPeriodTypeByName( MonthlyPeriodType.NAME );
+
+        periodA = createPeriod( periodTypeA, getDate( 2000, 1, 1 ), getDate( 2000, 1, 31 ) );
+        periodService.addPeriod( periodA );
+
+        unitA = createOrganisationUnit( 'A' );
+        unitB = createOrganisationUnit( 'B' );
+
+        organisationUnitService.addOrganisationUnit( unitA );
+        organisationUnitService.addOrganisationUnit( unitB );
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Test
+    public void testAddObject()
+    {
+        // Given
+        DataValue dataValueA = createDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA, "10" );
+        DataValue dataValueB = createDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA, "Quoted \"value\", with comma" );
+        DataValue dataValueC = createDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA, "12" );
+
+        dataValueA.setComment( null );
+
+        BatchHandler<DataValue> batchHandler = new CopyBatchHandler<>(
+            batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ), dataSource ).init();
+
+        // When
+        assertTrue( batchHandler.addObject( dataValueA ) );
+        assertTrue( batchHandler.addObject( dataValueB ) );
+        assertFalse( batchHandler.addObject( dataValueC ) );
+
+        batchHandler.flush();
+
+        // Then
+        DataValue retrievedA = dataValueService.getDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA );
+        DataValue retrievedB = dataValueService.getDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA );
+
+        assertEquals( "10", retrievedA.getValue() );
+        assertNull( retrievedA.getComment() );
+        assertEquals( "Quoted \"value\", with comma", retrievedB.getValue() );
+    }
+
+    @Test
+    public void testAddObjectExistingIsIgnored()
+    {
+        // Given
+        dataValueService.addDataValue( createDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA, "10" ) );
+
+        CopyBatchHandler<DataValue> batchHandler = new CopyBatchHandler<>(
+            batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ), dataSource );
+        batchHandler.init();
+
+        // When
+        batchHandler.addObject( createDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA, "20" ) );
+        batchHandler.addObject( createDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA, "30" ) );
+        batchHandler.flush();
+
+        // Then
+        assertEquals( 1, batchHandler.getSkippedCount() );
+        assertEquals( "10", dataValueService.getDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA ).getValue() );
+        assertEquals( "30", dataValueService.getDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA ).getValue() );
+    }
+
+    @Test
+    public void testAddObjectAfterFlush()
+    {
+        // Given
+        BatchHandler<DataValue> batchHandler = new CopyBatchHandler<>(
+            batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ), dataSource ).init();
+
+        // When
+        batchHandler.addObject( createDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA, "10" ) );
+        batchHandler.flush();
+        batchHandler.addObject( createDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA, "20" ) );
+        batchHandler.flush();
+
+        // Then
+        assertEquals( "10", dataValueService.getDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA ).getValue() );
+        assertEquals( "20", dataValueService.getDataValue( dataElementA, periodA, unitB, categoryOptionComboA, categoryOptionComboA ).getValue() );
+    }
+
+    @Test
+    public void testAddObjectWithIdSequence()
+    {
+        // Given
+        DataValue dataValue = createDataValue( dataElementA, periodA, unitA, categoryOptionComboA, categoryOptionComboA, "10" );
+
+        BatchHandler<DataValueAudit> batchHandler = new CopyBatchHandler<>(
+            batchHandlerFactory.createBatchHandler( DataValueAuditBatchHandler.class ), dataSource ).init();
+
+        // When
+        batchHandler.addObject( new DataValueAudit( dataValue, "10", "admin", AuditType.UPDATE ) );
+        batchHandler.addObject( new DataValueAudit( dataValue, "20", "admin", AuditType.UPDATE ) );
+        batchHandler.flush();
+
+        // Then
+        assertEquals( Integer.valueOf( 2 ), jdbcTemplate.queryForObject( "select count(distinct datavalueauditid) from datavalueaudit", Integer.class ) );
+    }
+
+    /**
+     * Compares rows per second written through insert statements and through
+     * COPY for one million data values. Run manually.
+     */
+    @Test
+    @Ignore
+    public void benchmarkAddObject()
+    {
+        List<DataValue> dataValues = getBenchmarkDataValues();
+
+        long insertRate = writeDataValues( batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ), dataValues );
+
+        jdbcTemplate.execute( "delete from datavalue" );
+
+        long copyRate = writeDataValues( new CopyBatchHandler<>( batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ), dataSource ), dataValues );
+
+        log.info( "Wrote {} data values, insert: {} rows/s, copy: {} rows/s", dataValues.size(), insertRate, copyRate );
+
+        assertEquals( Integer.valueOf( dataValues.size() ), jdbcTemplate.queryForObject( "select count(*) from datavalue", Integer.class ) );
+    }
+
+    private long writeDataValues( BatchHandler<DataValue> batchHandler, List<DataValue> dataValues )
+    {
+        long start = System.nanoTime();
+
+        batchHandler.init();
+        dataValues.forEach( batchHandler::addObject );
+        batchHandler.flush();
+
+        long millis = Math.max( 1, ( System.nanoTime() - start ) / 1_000_000 );
+
+        return dataValues.size() * 1000L / millis;
+    }
+
+    private List<DataValue> getBenchmarkDataValues()
+    {
+        List<DataElement> dataElements = new ArrayList<>();
+        List<Period> periods = new ArrayList<>();
+        List<OrganisationUnit> orgUnits = new ArrayList<>();
+
+        for ( int i = 0; i < BENCHMARK_DIMENSION_SIZE; i++ )
+        {
+            DataElement dataElement = createDataElement( 'B' );
+            dataElement.setUid( CodeGenerator.generateUid() );
+            dataElement.setName( "Benchmark" + i );
+            dataElement.setShortName( "Benchmark" + i );
+            dataElement.setCode( "Benchmark" + i );
+            dataElementService.addDataElement( dataElement );
+            dataElements.add( dataElement );
+
+            Period period = periodTypeA.createPeriod( getDate( 2001 + i / 12, i % 12 + 1, 1 ) );
+            periodService.addPeriod( period );
+            periods.add( period );
+
+            OrganisationUnit orgUnit = createOrganisationUnit( "Benchmark" + i );
+            organisationUnitService.addOrganisationUnit( orgUnit );
+            orgUnits.add( orgUnit );
+        }
+
+        List<DataValue> dataValues = new ArrayList<>();
+
+        for ( DataElement dataElement : dataElements )
+        {
+            for ( Period period : periods )
+            {
+                for ( OrganisationUnit orgUnit : orgUnits )
+                {
+                    dataValues.add( createDataValue( dataElement, period, orgUnit, categoryOptionComboA, categoryOptionComboA, "1" ) );
+                }
+            }
+        }
+
+        return dataValues;
+    }
+}
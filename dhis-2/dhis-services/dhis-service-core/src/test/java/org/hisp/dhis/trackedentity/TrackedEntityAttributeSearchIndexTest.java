@@ -0,0 +1,301 @@
+package org.hisp.dhis.trackedentity;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.OrganisationUnitSelectionMode;
+import org.hisp.dhis.common.QueryItem;
+import org.hisp.dhis.common.QueryOperator;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueService;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Category( IntegrationTest.class )
+public class TrackedEntityAttributeSearchIndexTest
+    extends IntegrationTestBase
+{
+    @Autowired
+    private TrackedEntityAttributeSearchIndexStore searchIndexStore;
+
+    @Autowired
+    private TrackedEntityAttributeSearchIndexJob searchIndexJob;
+
+    @Autowired
+    private TrackedEntityInstanceStore teiStore;
+
+    @Autowired
+    private TrackedEntityInstanceService teiService;
+
+    @Autowired
+    private TrackedEntityAttributeValueService attributeValueService;
+
+    @Autowired
+    private TrackedEntityTypeService trackedEntityTypeService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private IdentifiableObjectManager idObjectManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TrackedEntityType trackedEntityType;
+
+    private OrganisationUnit organisationUnit;
+
+    private TrackedEntityAttribute atA;
+
+    private TrackedEntityAttribute atB;
+
+    @Override
+    public void setUpTest()
+    {
+        atA = createTrackedEntityAttribute( 'A' );
+        atA.setUnique( true );
+        atB = createTrackedEntityAttribute( 'B' );
+
+        idObjectManager.save( atA );
+        idObjectManager.save( atB );
+
+        trackedEntityType = createTrackedEntityType( 'A' );
+        trackedEntityTypeService.addTrackedEntityType( trackedEntityType );
+
+        organisationUnit = createOrganisationUnit( 'A' );
+        organisationUnitService.addOrganisationUnit( organisationUnit );
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Test
+    public void testIndexSearchableAttributes()
+    {
+        addTrackedEntityInstance( "Alice Smith", "Red" );
+        addTrackedEntityInstance( "Bob Smith", "Green" );
+        addTrackedEntityInstance( "Carol Jones", "Blue" );
+
+        assertTrue( searchIndexStore.isAvailable() );
+        assertEquals( 2, countGrid( atA, QueryOperator.LIKE, "smith" ) );
+
+        searchIndexJob.execute( null );
+
+        assertTrue( searchIndexStore.getReadyAttributes().contains( atA.getId() ) );
+        assertFalse( searchIndexStore.getReadyAttributes().contains( atB.getId() ) );
+        assertEquals( 3, countIndexedValues( atA ) );
+        assertEquals( 0, countIndexedValues( atB ) );
+
+        assertEquals( 2, countGrid( atA, QueryOperator.LIKE, "SMITH" ) );
+        assertEquals( 1, countGrid( atA, QueryOperator.EQ, "carol jones" ) );
+        assertEquals( 1, countGrid( atB, QueryOperator.LIKE, "gree" ) );
+    }
+
+    @Test
+    public void testIndexMaintainedOnWrite()
+    {
+        searchIndexJob.execute( null );
+
+        TrackedEntityInstance tei = addTrackedEntityInstance( "Alice Smith", "Red" );
+
+        assertEquals( 1, countIndexedValues( atA ) );
+        assertEquals( 1, countGrid( atA, QueryOperator.LIKE, "smith" ) );
+
+        TrackedEntityAttributeValue value = attributeValueService.getTrackedEntityAttributeValue( tei, atA );
+        value.setValue( "Alice Jones" );
+        attributeValueService.updateTrackedEntityAttributeValue( value );
+
+        assertEquals( 0, countGrid( atA, QueryOperator.LIKE, "smith" ) );
+        assertEquals( 1, countGrid( atA, QueryOperator.LIKE, "jones" ) );
+
+        attributeValueService.deleteTrackedEntityAttributeValue( attributeValueService.getTrackedEntityAttributeValue( tei, atA ) );
+
+        assertEquals( 0, countIndexedValues( atA ) );
+    }
+
+    @Test
+    public void testRemoveAttribute()
+    {
+        addTrackedEntityInstance( "Alice Smith", "Red" );
+
+        searchIndexJob.execute( null );
+
+        assertEquals( 1, countIndexedValues( atA ) );
+
+        atA.setUnique( false );
+        idObjectManager.update( atA );
+
+        searchIndexJob.execute( null );
+
+        assertFalse( searchIndexStore.getIndexedAttributes().contains( atA.getId() ) );
+        assertEquals( 0, countIndexedValues( atA ) );
+        assertEquals( 1, countGrid( atA, QueryOperator.LIKE, "smith" ) );
+    }
+
+    @Test
+    public void testIndexAttributeNotReady()
+    {
+        addTrackedEntityInstance( "Alice Smith", "Red" );
+
+        // Attribute registered by a run which failed before it was indexed
+
+        jdbcTemplate.update(
+            "insert into trackedentityattributesearchindex (trackedentityattributeid, ready) values (?, false)", atA.getId() );
+
+        assertTrue( searchIndexStore.createIndex() );
+
+        searchIndexJob.execute( null );
+
+        assertTrue( searchIndexStore.getReadyAttributes().contains( atA.getId() ) );
+        assertEquals( 1, countIndexedValues( atA ) );
+    }
+
+    @Test
+    public void testAddAttributeCorrectsOutdatedValues()
+    {
+        TrackedEntityInstance tei = addTrackedEntityInstance( "Alice Smith", "Red" );
+
+        TrackedEntityInstance teiWithoutValues = createTrackedEntityInstance( organisationUnit );
+        teiWithoutValues.setTrackedEntityType( trackedEntityType );
+        teiService.addTrackedEntityInstance( teiWithoutValues );
+
+        // Values indexed before they were changed or deleted by concurrent writes
+
+        jdbcTemplate.update(
+            "insert into trackedentityattributesearch (trackedentityinstanceid, trackedentityattributeid, value) " +
+            "values (?, ?, 'alice jones'), (?, ?, 'bob jones')",
+            tei.getId(), atA.getId(), teiWithoutValues.getId(), atA.getId() );
+
+        searchIndexStore.addAttribute( atA.getId() );
+
+        assertEquals( 1, countIndexedValues( atA ) );
+        assertEquals( 0, countGrid( atA, QueryOperator.LIKE, "jones" ) );
+        assertEquals( 1, countGrid( atA, QueryOperator.EQ, "alice smith" ) );
+    }
+
+    /**
+     * Compares the time spent on a LIKE search without and with the search
+     * index on generated attribute values. Timings are logged. Only runs when
+     * the number of values is set through the benchmark.rows system property,
+     * for instance -Dbenchmark.rows=10000000.
+     */
+    @Test
+    public void testSearchIndexBenchmark()
+    {
+        Assume.assumeTrue( System.getProperty( "benchmark.rows" ) != null );
+
+        final int rows = Integer.getInteger( "benchmark.rows" );
+
+        jdbcTemplate.update(
+            "insert into trackedentityinstance (trackedentityinstanceid, uid, created, lastupdated, inactive, deleted, " +
+                "organisationunitid, trackedentitytypeid) " +
+            "select nextval('trackedentityinstance_sequence'), 'B' || lpad(g::text, 10, '0'), now(), now(), false, false, ?, ? " +
+            "from generate_series(1, ?) g",
+            organisationUnit.getId(), trackedEntityType.getId(), rows );
+
+        jdbcTemplate.update(
+            "insert into trackedentityattributevalue (trackedentityinstanceid, trackedentityattributeid, created, lastupdated, value) " +
+            "select tei.trackedentityinstanceid, ?, now(), now(), 'Name ' || md5(tei.uid) " +
+            "from trackedentityinstance tei where tei.uid like 'B%'",
+            atA.getId() );
+
+        jdbcTemplate.execute( "analyze trackedentityattributevalue" );
+
+        long start = System.nanoTime();
+        int expected = countGrid( atA, QueryOperator.LIKE, "abc" );
+        long scanMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        start = System.nanoTime();
+        searchIndexJob.execute( null );
+        long indexMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        jdbcTemplate.execute( "analyze trackedentityattributesearch" );
+
+        start = System.nanoTime();
+        int actual = countGrid( atA, QueryOperator.LIKE, "abc" );
+        long searchMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        assertEquals( expected, actual );
+        assertEquals( rows, countIndexedValues( atA ) );
+
+        log.info( String.format( "Searched %d attribute values, matches: %d, without index: %d ms, " +
+            "indexing: %d ms, with index: %d ms", rows, actual, scanMillis, indexMillis, searchMillis ) );
+    }
+
+    private TrackedEntityInstance addTrackedEntityInstance( String valueA, String valueB )
+    {
+        TrackedEntityInstance tei = createTrackedEntityInstance( organisationUnit );
+        tei.setTrackedEntityType( trackedEntityType );
+        teiService.addTrackedEntityInstance( tei );
+
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, tei, valueA ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atB, tei, valueB ) );
+
+        return tei;
+    }
+
+    private int countGrid( TrackedEntityAttribute attribute, QueryOperator operator, String filter )
+    {
+        TrackedEntityInstanceQueryParams params = new TrackedEntityInstanceQueryParams()
+            .addFilter( new QueryItem( attribute, operator, filter, ValueType.TEXT, AggregationType.NONE, null ) );
+        params.setTrackedEntityType( trackedEntityType );
+        params.setOrganisationUnitMode( OrganisationUnitSelectionMode.ALL );
+
+        return teiStore.getTrackedEntityInstanceCountForGrid( params );
+    }
+
+    private int countIndexedValues( TrackedEntityAttribute attribute )
+    {
+        return jdbcTemplate.queryForObject(
+            "select count(*) from trackedentityattributesearch where trackedentityattributeid = ?",
+            Integer.class, attribute.getId() );
+    }
+}
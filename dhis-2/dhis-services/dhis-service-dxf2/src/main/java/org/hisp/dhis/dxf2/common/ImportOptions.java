@@ -102,6 +102,18 @@ public class ImportOptions
 
     private boolean skipLastUpdated;
 
+    /**
+     * Whether to write data values with the PostgreSQL COPY protocol instead
+     * of insert statements.
+     */
+    private boolean copyWrite;
+
+    /**
+     * Number of parallel workers writing data values, where values are
+     * sharded on organisation unit. Zero or one means sequential import.
+     */
+    private int parallelWorkers;
+
     //--------------------------------------------------------------------------
     // Constructors
     //--------------------------------------------------------------------------
@@ -143,6 +155,8 @@ public class ImportOptions
         options.ignoreEmptyCollection = this.ignoreEmptyCollection;
         options.firstRowIsHeader = this.firstRowIsHeader;
         options.skipLastUpdated = this.skipLastUpdated;
+        options.copyWrite = this.copyWrite;
+        options.parallelWorkers = this.parallelWorkers;
 
         return options;
     }
@@ -387,6 +401,20 @@ public class ImportOptions
         return skipLastUpdated;
     }
 
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public boolean isCopyWrite()
+    {
+        return copyWrite;
+    }
+
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public int getParallelWorkers()
+    {
+        return parallelWorkers;
+    }
+
     //--------------------------------------------------------------------------
     // Set methods
     //--------------------------------------------------------------------------
@@ -600,6 +628,18 @@ public class ImportOptions
         return this;
     }
 
+    public ImportOptions setCopyWrite( boolean copyWrite )
+    {
+        this.copyWrite = copyWrite;
+        return this;
+    }
+
+    public ImportOptions setParallelWorkers( int parallelWorkers )
+    {
+        this.parallelWorkers = parallelWorkers;
+        return this;
+    }
+
     @Override
     public String toString()
     {
@@ -625,6 +665,8 @@ public class ImportOptions
             .add( "force", force )
             .add( "firstRowIsHeader", firstRowIsHeader )
             .add( "skipLastUpdated", skipLastUpdated )
+            .add( "copyWrite", copyWrite )
+            .add( "parallelWorkers", parallelWorkers )
             .toString();
     }
 }
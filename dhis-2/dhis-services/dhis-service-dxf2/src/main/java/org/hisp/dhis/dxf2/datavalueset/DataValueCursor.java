@@ -0,0 +1,168 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * Position of a data value in the keyset order used to page through data
+ * values by last updated time. The order is last updated, data element,
+ * period, org unit, category option combo and attribute option combo, which
+ * is unique and stable for the life of a data value. The last updated
+ * timestamp keeps the full database precision, as truncating it would make
+ * data values updated within the same millisecond reappear on every page.
+ * <p>
+ * A cursor can be written to and read from a string with {@link #toString()}
+ * and {@link #valueOf(String)}, which allows for resuming paging in a later
+ * run.
+ */
+public class DataValueCursor
+{
+    private static final char SEPARATOR = ':';
+
+    private final Timestamp lastUpdated;
+
+    private final long dataElementId;
+
+    private final long periodId;
+
+    private final long orgUnitId;
+
+    private final long categoryOptionComboId;
+
+    private final long attributeOptionComboId;
+
+    public DataValueCursor( Timestamp lastUpdated, long dataElementId, long periodId, long orgUnitId,
+        long categoryOptionComboId, long attributeOptionComboId )
+    {
+        checkNotNull( lastUpdated );
+
+        this.lastUpdated = lastUpdated;
+        this.dataElementId = dataElementId;
+        this.periodId = periodId;
+        this.orgUnitId = orgUnitId;
+        this.categoryOptionComboId = categoryOptionComboId;
+        this.attributeOptionComboId = attributeOptionComboId;
+    }
+
+    /**
+     * Parses a cursor from the string representation returned by
+     * {@link #toString()}.
+     *
+     * @param value the string representation.
+     * @return a {@link DataValueCursor}.
+     * @throws IllegalArgumentException if the value is not a valid cursor.
+     */
+    public static DataValueCursor valueOf( String value )
+    {
+        checkNotNull( value );
+
+        List<String> parts = Splitter.on( SEPARATOR ).splitToList( value );
+
+        checkArgument( parts.size() == 7, "Invalid data value cursor: '%s'", value );
+
+        try
+        {
+            Timestamp lastUpdated = new Timestamp( Long.parseLong( parts.get( 0 ) ) );
+            lastUpdated.setNanos( Integer.parseInt( parts.get( 1 ) ) );
+
+            return new DataValueCursor( lastUpdated, Long.parseLong( parts.get( 2 ) ), Long.parseLong( parts.get( 3 ) ),
+                Long.parseLong( parts.get( 4 ) ), Long.parseLong( parts.get( 5 ) ), Long.parseLong( parts.get( 6 ) ) );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            throw new IllegalArgumentException( String.format( "Invalid data value cursor: '%s'", value ), ex );
+        }
+    }
+
+    /**
+     * Returns the cursor values in keyset order, suitable as arguments for a
+     * row value comparison.
+     */
+    public Object[] getKey()
+    {
+        return new Object[] { lastUpdated, dataElementId, periodId, orgUnitId, categoryOptionComboId, attributeOptionComboId };
+    }
+
+    // -------------------------------------------------------------------------
+    // Get methods
+    // -------------------------------------------------------------------------
+
+    public Timestamp getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    public long getDataElementId()
+    {
+        return dataElementId;
+    }
+
+    public long getPeriodId()
+    {
+        return periodId;
+    }
+
+    public long getOrgUnitId()
+    {
+        return orgUnitId;
+    }
+
+    public long getCategoryOptionComboId()
+    {
+        return categoryOptionComboId;
+    }
+
+    public long getAttributeOptionComboId()
+    {
+        return attributeOptionComboId;
+    }
+
+    // -------------------------------------------------------------------------
+    // toString
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the string representation of this cursor, which can be parsed
+     * with {@link #valueOf(String)}.
+     */
+    @Override
+    public String toString()
+    {
+        return Joiner.on( SEPARATOR ).join( lastUpdated.getTime(), lastUpdated.getNanos(), dataElementId, periodId,
+            orgUnitId, categoryOptionComboId, attributeOptionComboId );
+    }
+}
@@ -0,0 +1,110 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DeflatedDataValue;
+
+/**
+ * Immutable key identifying a data value by the identifiers of its data
+ * element, period, organisation unit, category option combo and attribute
+ * option combo. Holds the identifiers as primitives to avoid building a
+ * string for each data value during import.
+ */
+final class DataValueKey
+{
+    private final long dataElementId;
+
+    private final long periodId;
+
+    private final long sourceId;
+
+    private final long categoryOptionComboId;
+
+    private final long attributeOptionComboId;
+
+    DataValueKey( long dataElementId, long periodId, long sourceId, long categoryOptionComboId, long attributeOptionComboId )
+    {
+        this.dataElementId = dataElementId;
+        this.periodId = periodId;
+        this.sourceId = sourceId;
+        this.categoryOptionComboId = categoryOptionComboId;
+        this.attributeOptionComboId = attributeOptionComboId;
+    }
+
+    static DataValueKey of( DataValue dataValue )
+    {
+        return new DataValueKey( dataValue.getDataElement().getId(), dataValue.getPeriod().getId(),
+            dataValue.getSource().getId(), dataValue.getCategoryOptionCombo().getId(),
+            dataValue.getAttributeOptionCombo().getId() );
+    }
+
+    static DataValueKey of( DeflatedDataValue dataValue )
+    {
+        return new DataValueKey( dataValue.getDataElementId(), dataValue.getPeriodId(), dataValue.getSourceId(),
+            dataValue.getCategoryOptionComboId(), dataValue.getAttributeOptionComboId() );
+    }
+
+    @Override
+    public boolean equals( Object object )
+    {
+        if ( this == object )
+        {
+            return true;
+        }
+
+        if ( object == null || getClass() != object.getClass() )
+        {
+            return false;
+        }
+
+        DataValueKey other = (DataValueKey) object;
+
+        return dataElementId == other.dataElementId && periodId == other.periodId && sourceId == other.sourceId &&
+            categoryOptionComboId == other.categoryOptionComboId && attributeOptionComboId == other.attributeOptionComboId;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = Long.hashCode( dataElementId );
+        result = 31 * result + Long.hashCode( periodId );
+        result = 31 * result + Long.hashCode( sourceId );
+        result = 31 * result + Long.hashCode( categoryOptionComboId );
+        result = 31 * result + Long.hashCode( attributeOptionComboId );
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + dataElementId + ", " + periodId + ", " + sourceId + ", " + categoryOptionComboId + ", " +
+            attributeOptionComboId + "]";
+    }
+}
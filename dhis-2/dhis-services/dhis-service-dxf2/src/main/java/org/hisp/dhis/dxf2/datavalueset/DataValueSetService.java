@@ -91,16 +91,19 @@ public interface DataValueSetService
     void writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes );
 
     /**
-     * Query for {@link DataValueSet DataValueSets} and write result as JSON.
+     * Query for a page of {@link DataValueSet DataValueSets} and write result
+     * as JSON. Data values are paged in {@link DataValueCursor} order, where a
+     * page holds the data values positioned after the given cursor.
      *
      * @param lastUpdated specifies the date to filter complete data sets last updated after
      * @param outputStream the stream to write to
      * @param idSchemes idSchemes
      * @param pageSize pageSize
-     * @param page page
+     * @param cursor the cursor to write data values after, null to start from the beginning
+     * @return the cursor of the next page, or null if this was the last page
      */
-    void writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes, int pageSize,
-        int page );
+    DataValueCursor writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes, int pageSize,
+        DataValueCursor cursor );
 
     void writeDataValueSetCsv( DataExportParams params, Writer writer );
 
@@ -0,0 +1,597 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.category.CategoryCombo;
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.common.event.ApplicationCacheClearedEvent;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.dataset.DataSetElement;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.PeriodType;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.ImmutableMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Metadata lookups for data value import which are shared across imports.
+ * Assignments of data elements and organisation units to data sets, category
+ * option combos of data elements and period types of data sets are held in
+ * structures keyed on internal identifiers, with sorted arrays of identifiers
+ * as values.
+ * <p>
+ * The lookups are divided into sections which are loaded with a single query
+ * each. When a data element, data set element or organisation unit changes,
+ * only the entries of that object are marked as stale, and are reloaded on
+ * next access. When other metadata which the lookups depend on changes, the
+ * dependent sections are marked as stale as a whole. The version is
+ * incremented on every reload.
+ */
+@Slf4j
+@Component
+public class ImportLookupContext
+{
+    private enum Section
+    {
+        DATA_ELEMENT_DATA_SETS,
+        ORG_UNIT_DATA_SETS,
+        DATA_SET_PERIOD_TYPES,
+        DATA_ELEMENT_CATEGORY_OPTION_COMBOS,
+        DATA_ELEMENT_ATTRIBUTE_OPTION_COMBOS
+    }
+
+    /**
+     * Sections which are marked as stale as a whole when an object of the
+     * given type changes.
+     */
+    private static final Map<Class<?>, Set<Section>> DEPENDENCIES = ImmutableMap.<Class<?>, Set<Section>>builder()
+        .put( DataSet.class, EnumSet.allOf( Section.class ) )
+        .put( CategoryCombo.class, EnumSet.of( Section.DATA_ELEMENT_CATEGORY_OPTION_COMBOS, Section.DATA_ELEMENT_ATTRIBUTE_OPTION_COMBOS ) )
+        .put( CategoryOptionCombo.class, EnumSet.of( Section.DATA_ELEMENT_CATEGORY_OPTION_COMBOS, Section.DATA_ELEMENT_ATTRIBUTE_OPTION_COMBOS ) )
+        .put( PeriodType.class, EnumSet.of( Section.DATA_SET_PERIOD_TYPES ) )
+        .build();
+
+    /**
+     * Sections of which only the entry of the key of the changed object is
+     * marked as stale when an object of the given type changes.
+     */
+    private static final Map<Class<?>, KeyedDependency> KEYED_DEPENDENCIES = ImmutableMap.<Class<?>, KeyedDependency>builder()
+        .put( DataElement.class, new KeyedDependency( object -> ( (DataElement) object ).getId(),
+            EnumSet.of( Section.DATA_ELEMENT_DATA_SETS, Section.DATA_ELEMENT_CATEGORY_OPTION_COMBOS ) ) )
+        .put( DataSetElement.class, new KeyedDependency( ImportLookupContext::getDataElementId,
+            EnumSet.of( Section.DATA_ELEMENT_DATA_SETS, Section.DATA_ELEMENT_CATEGORY_OPTION_COMBOS, Section.DATA_ELEMENT_ATTRIBUTE_OPTION_COMBOS ) ) )
+        .put( OrganisationUnit.class, new KeyedDependency( object -> ( (OrganisationUnit) object ).getId(),
+            EnumSet.of( Section.ORG_UNIT_DATA_SETS ) ) )
+        .build();
+
+    private static final long[] EMPTY = new long[0];
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SessionFactory sessionFactory;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final LookupSection<long[]> dataElementDataSets;
+
+    private final LookupSection<long[]> orgUnitDataSets;
+
+    private final LookupSection<String> dataSetPeriodTypes;
+
+    private final LookupSection<long[]> dataElementCategoryOptionCombos;
+
+    private final LookupSection<long[]> dataElementAttributeOptionCombos;
+
+    private final Map<Section, LookupSection<?>> sections;
+
+    public ImportLookupContext( JdbcTemplate jdbcTemplate, SessionFactory sessionFactory )
+    {
+        checkNotNull( jdbcTemplate );
+        checkNotNull( sessionFactory );
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.sessionFactory = sessionFactory;
+
+        final String dataElementDataSetSql = "select dataelementid, datasetid from datasetelement where datasetid is not null";
+
+        this.dataElementDataSets = new LookupSection<>(
+            () -> getIdentifierMap( dataElementDataSetSql ),
+            key -> getIdentifierMap( dataElementDataSetSql + " and dataelementid = ?", key ).get( key ) );
+
+        final String orgUnitDataSetSql = "select sourceid, datasetid from datasetsource";
+
+        this.orgUnitDataSets = new LookupSection<>(
+            () -> getIdentifierMap( orgUnitDataSetSql ),
+            key -> getIdentifierMap( orgUnitDataSetSql + " where sourceid = ?", key ).get( key ) );
+
+        final String dataSetPeriodTypeSql = "select ds.datasetid, pt.name from dataset ds " +
+            "inner join periodtype pt on ds.periodtypeid = pt.periodtypeid";
+
+        this.dataSetPeriodTypes = new LookupSection<>(
+            () -> getDataSetPeriodTypeMap( dataSetPeriodTypeSql ),
+            key -> getDataSetPeriodTypeMap( dataSetPeriodTypeSql + " where ds.datasetid = ?", key ).get( key ) );
+
+        final String dataElementCocSql = "select de.dataelementid, cc.categoryoptioncomboid from dataelement de " +
+            "inner join categorycombos_optioncombos cc on de.categorycomboid = cc.categorycomboid";
+
+        final String dataSetElementCocSql = "select dse.dataelementid, cc.categoryoptioncomboid from datasetelement dse " +
+            "inner join categorycombos_optioncombos cc on dse.categorycomboid = cc.categorycomboid";
+
+        this.dataElementCategoryOptionCombos = new LookupSection<>(
+            () -> getIdentifierMap( dataElementCocSql + " union " + dataSetElementCocSql ),
+            key -> getIdentifierMap( dataElementCocSql + " where de.dataelementid = ? union " +
+                dataSetElementCocSql + " where dse.dataelementid = ?", key, key ).get( key ) );
+
+        final String dataElementAocSql = "select dse.dataelementid, cc.categoryoptioncomboid from datasetelement dse " +
+            "inner join dataset ds on dse.datasetid = ds.datasetid " +
+            "inner join categorycombos_optioncombos cc on ds.categorycomboid = cc.categorycomboid";
+
+        this.dataElementAttributeOptionCombos = new LookupSection<>(
+            () -> getIdentifierMap( dataElementAocSql ),
+            key -> getIdentifierMap( dataElementAocSql + " where dse.dataelementid = ?", key ).get( key ) );
+
+        this.sections = ImmutableMap.<Section, LookupSection<?>>builder()
+            .put( Section.DATA_ELEMENT_DATA_SETS, dataElementDataSets )
+            .put( Section.ORG_UNIT_DATA_SETS, orgUnitDataSets )
+            .put( Section.DATA_SET_PERIOD_TYPES, dataSetPeriodTypes )
+            .put( Section.DATA_ELEMENT_CATEGORY_OPTION_COMBOS, dataElementCategoryOptionCombos )
+            .put( Section.DATA_ELEMENT_ATTRIBUTE_OPTION_COMBOS, dataElementAttributeOptionCombos )
+            .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // Lookups
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the given period type is the period type of any of
+     * the data sets of the given data element.
+     *
+     * @param dataElementId the data element identifier.
+     * @param periodType the {@link PeriodType}.
+     */
+    public boolean isPeriodTypeValid( long dataElementId, PeriodType periodType )
+    {
+        long[] dataSetIds = dataElementDataSets.get( dataElementId );
+
+        for ( long dataSetId : dataSetIds != null ? dataSetIds : EMPTY )
+        {
+            if ( periodType.getName().equals( dataSetPeriodTypes.get( dataSetId ) ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates whether the given category option combo is part of the
+     * category combos of the given data element.
+     *
+     * @param dataElementId the data element identifier.
+     * @param categoryOptionComboId the category option combo identifier.
+     */
+    public boolean isCategoryOptionComboValid( long dataElementId, long categoryOptionComboId )
+    {
+        return contains( dataElementCategoryOptionCombos.get( dataElementId ), categoryOptionComboId );
+    }
+
+    /**
+     * Indicates whether the given attribute option combo is part of the
+     * category combos of the data sets of the given data element.
+     *
+     * @param dataElementId the data element identifier.
+     * @param attributeOptionComboId the attribute option combo identifier.
+     */
+    public boolean isAttributeOptionComboValid( long dataElementId, long attributeOptionComboId )
+    {
+        return contains( dataElementAttributeOptionCombos.get( dataElementId ), attributeOptionComboId );
+    }
+
+    /**
+     * Indicates whether the given data element is assigned to the given
+     * organisation unit through any data set.
+     *
+     * @param dataElementId the data element identifier.
+     * @param orgUnitId the organisation unit identifier.
+     */
+    public boolean isDataElementAssigned( long dataElementId, long orgUnitId )
+    {
+        long[] dataElementSets = dataElementDataSets.get( dataElementId );
+        long[] orgUnitSets = orgUnitDataSets.get( orgUnitId );
+
+        if ( dataElementSets == null || orgUnitSets == null )
+        {
+            return false;
+        }
+
+        int i = 0, j = 0;
+
+        while ( i < dataElementSets.length && j < orgUnitSets.length )
+        {
+            if ( dataElementSets[i] == orgUnitSets[j] )
+            {
+                return true;
+            }
+            else if ( dataElementSets[i] < orgUnitSets[j] )
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the version of the lookups, which is incremented every time a
+     * section or an entry of a section is reloaded.
+     */
+    public long getVersion()
+    {
+        return version.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Invalidation
+    // -------------------------------------------------------------------------
+
+    /**
+     * Marks the lookups which depend on the given changed metadata object as
+     * stale. For data elements, data set elements and organisation units only
+     * the entries of the object are marked as stale, for other types of
+     * metadata the dependent sections are marked as stale as a whole. If a
+     * transaction is active, the lookups are marked as stale again when the
+     * transaction completes, so that lookups loaded while the transaction was
+     * in progress are not kept.
+     *
+     * @param object the changed metadata object.
+     */
+    public void invalidate( Object object )
+    {
+        StaleLookups stale = new StaleLookups();
+
+        DEPENDENCIES.forEach( ( klass, dependants ) -> {
+            if ( klass.isInstance( object ) )
+            {
+                stale.sections.addAll( dependants );
+            }
+        } );
+
+        KEYED_DEPENDENCIES.forEach( ( klass, dependency ) -> {
+            if ( klass.isInstance( object ) )
+            {
+                Long key = dependency.key.apply( object );
+
+                if ( key != null )
+                {
+                    dependency.sections.forEach( section -> stale.addKey( section, key ) );
+                }
+                else
+                {
+                    stale.sections.addAll( dependency.sections );
+                }
+            }
+        } );
+
+        if ( stale.isEmpty() )
+        {
+            return;
+        }
+
+        invalidate( stale );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            getTransactionStaleLookups().addAll( stale );
+        }
+    }
+
+    /**
+     * Marks all sections as stale.
+     */
+    public void invalidateAll()
+    {
+        StaleLookups stale = new StaleLookups();
+        stale.sections.addAll( EnumSet.allOf( Section.class ) );
+
+        invalidate( stale );
+    }
+
+    @EventListener
+    public void handleApplicationCachesCleared( ApplicationCacheClearedEvent event )
+    {
+        invalidateAll();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private void invalidate( StaleLookups stale )
+    {
+        stale.sections.forEach( section -> sections.get( section ).invalidate() );
+        stale.keys.forEach( ( section, keys ) -> keys.forEach( key -> sections.get( section ).invalidate( key ) ) );
+    }
+
+    /**
+     * Returns the lookups to mark as stale when the current transaction
+     * completes, registering a transaction synchronization on first access.
+     */
+    private StaleLookups getTransactionStaleLookups()
+    {
+        StaleLookups stale = (StaleLookups) TransactionSynchronizationManager.getResource( this );
+
+        if ( stale == null )
+        {
+            final StaleLookups transactionStale = new StaleLookups();
+
+            TransactionSynchronizationManager.bindResource( this, transactionStale );
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion( int status )
+                {
+                    TransactionSynchronizationManager.unbindResourceIfPossible( ImportLookupContext.this );
+                    invalidate( transactionStale );
+                }
+            } );
+
+            stale = transactionStale;
+        }
+
+        return stale;
+    }
+
+    /**
+     * Flushes the current session, if any, so that pending metadata changes
+     * in the current transaction are visible to the lookup queries.
+     */
+    private void flushSession()
+    {
+        if ( TransactionSynchronizationManager.hasResource( sessionFactory ) &&
+            TransactionSynchronizationManager.isActualTransactionActive() &&
+            !TransactionSynchronizationManager.isCurrentTransactionReadOnly() )
+        {
+            sessionFactory.getCurrentSession().flush();
+        }
+    }
+
+    private Map<Long, long[]> getIdentifierMap( String sql, Object... args )
+    {
+        Map<Long, List<Long>> lists = new HashMap<>();
+
+        jdbcTemplate.query( sql, rs -> {
+            lists.computeIfAbsent( rs.getLong( 1 ), k -> new ArrayList<>() ).add( rs.getLong( 2 ) );
+        }, args );
+
+        Map<Long, long[]> map = new HashMap<>( lists.size() * 4 / 3 + 1 );
+
+        lists.forEach( ( key, values ) -> {
+            long[] array = values.stream().mapToLong( Long::longValue ).distinct().sorted().toArray();
+            map.put( key, array );
+        } );
+
+        return map;
+    }
+
+    private Map<Long, String> getDataSetPeriodTypeMap( String sql, Object... args )
+    {
+        Map<Long, String> map = new HashMap<>();
+
+        jdbcTemplate.query( sql, rs -> {
+            map.put( rs.getLong( 1 ), rs.getString( 2 ) );
+        }, args );
+
+        return map;
+    }
+
+    private static Long getDataElementId( Object object )
+    {
+        DataElement dataElement = ( (DataSetElement) object ).getDataElement();
+
+        return dataElement != null ? dataElement.getId() : null;
+    }
+
+    private static boolean contains( long[] sorted, long value )
+    {
+        return sorted != null && Arrays.binarySearch( sorted, value ) >= 0;
+    }
+
+    /**
+     * Sections of which only the entry of the key of a changed object depends
+     * on that object.
+     */
+    private static class KeyedDependency
+    {
+        private final Function<Object, Long> key;
+
+        private final Set<Section> sections;
+
+        KeyedDependency( Function<Object, Long> key, Set<Section> sections )
+        {
+            this.key = key;
+            this.sections = sections;
+        }
+    }
+
+    /**
+     * Sections and entries of sections to mark as stale.
+     */
+    private static class StaleLookups
+    {
+        private final Set<Section> sections = EnumSet.noneOf( Section.class );
+
+        private final Map<Section, Set<Long>> keys = new EnumMap<>( Section.class );
+
+        void addKey( Section section, long key )
+        {
+            keys.computeIfAbsent( section, s -> new HashSet<>() ).add( key );
+        }
+
+        void addAll( StaleLookups other )
+        {
+            sections.addAll( other.sections );
+            other.keys.forEach( ( section, sectionKeys ) -> sectionKeys.forEach( key -> addKey( section, key ) ) );
+        }
+
+        boolean isEmpty()
+        {
+            return sections.isEmpty() && keys.isEmpty();
+        }
+    }
+
+    /**
+     * Section of lookups keyed on internal identifier. The section is loaded
+     * as a whole on first access after being marked as stale, and single
+     * entries are reloaded on first access after being marked as stale.
+     */
+    private class LookupSection<V>
+    {
+        private final Supplier<Map<Long, V>> loader;
+
+        private final LongFunction<V> keyLoader;
+
+        private final AtomicBoolean stale = new AtomicBoolean( true );
+
+        private final Set<Long> staleKeys = ConcurrentHashMap.newKeySet();
+
+        private volatile Map<Long, V> value;
+
+        LookupSection( Supplier<Map<Long, V>> loader, LongFunction<V> keyLoader )
+        {
+            this.loader = loader;
+            this.keyLoader = keyLoader;
+        }
+
+        V get( long key )
+        {
+            if ( stale.get() )
+            {
+                reload();
+            }
+
+            if ( !staleKeys.isEmpty() && staleKeys.remove( key ) )
+            {
+                reload( key );
+            }
+
+            return value.get( key );
+        }
+
+        void invalidate()
+        {
+            stale.set( true );
+        }
+
+        void invalidate( long key )
+        {
+            staleKeys.add( key );
+        }
+
+        private synchronized void reload()
+        {
+            flushSession();
+
+            if ( !stale.getAndSet( false ) )
+            {
+                return;
+            }
+
+            staleKeys.clear();
+
+            try
+            {
+                value = new ConcurrentHashMap<>( loader.get() );
+                log.debug( "Reloaded import lookup section, version: {}", version.incrementAndGet() );
+            }
+            catch ( RuntimeException ex )
+            {
+                stale.set( true );
+                throw ex;
+            }
+        }
+
+        private synchronized void reload( long key )
+        {
+            flushSession();
+
+            try
+            {
+                V entry = keyLoader.apply( key );
+
+                if ( entry != null )
+                {
+                    value.put( key, entry );
+                }
+                else
+                {
+                    value.remove( key );
+                }
+
+                log.debug( "Reloaded import lookup entry: {}, version: {}", key, version.incrementAndGet() );
+            }
+            catch ( RuntimeException ex )
+            {
+                staleKeys.add( key );
+                throw ex;
+            }
+        }
+    }
+}
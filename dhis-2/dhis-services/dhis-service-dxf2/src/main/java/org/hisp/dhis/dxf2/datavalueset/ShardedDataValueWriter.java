@@ -0,0 +1,351 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.dxf2.importsummary.ImportCount;
+import org.hisp.dhis.jdbc.batchhandler.CopyBatchHandler;
+import org.hisp.quick.BatchHandler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes pending data values through a number of independent worker
+ * pipelines. Data values are sharded on organisation unit, so that all values
+ * for the same organisation unit are written by the same worker in the order
+ * they were added. Each worker has its own batch handlers, and with that its
+ * own database connections, and its own {@link ImportCount}.
+ * <p>
+ * Writes are not atomic across workers. Each worker writes and commits its
+ * chunks independently, and a failure in one worker does not affect the
+ * others, except that the data values queued for the failed worker are
+ * dropped. Failures are collected and reported by {@link #getFailures()} after
+ * {@link #finish()}.
+ * <p>
+ * {@link #close()} must be called when the writer is no longer used, also
+ * when adding data values fails, so that the workers stop and release their
+ * batch handlers.
+ */
+@Slf4j
+class ShardedDataValueWriter
+{
+    private static final int QUEUED_CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Writes a chunk of pending data values with the given batch handlers.
+     */
+    @FunctionalInterface
+    interface ChunkWriter
+    {
+        void write( List<PendingDataValue> chunk, BatchHandler<DataValue> dataValueBatchHandler,
+            BatchHandler<DataValueAudit> auditBatchHandler, ImportCount importCount );
+    }
+
+    private final int chunkSize;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    private final ExecutorService executor;
+
+    private final List<Throwable> failures = Collections.synchronizedList( new ArrayList<>() );
+
+    private volatile boolean aborted;
+
+    private boolean finished;
+
+    /**
+     * @param workerCount the number of workers.
+     * @param chunkSize the number of data values to write per chunk.
+     * @param dataValueBatchHandlers supplier of initialized data value batch handlers.
+     * @param auditBatchHandlers supplier of initialized audit batch handlers.
+     * @param chunkWriter the chunk writer.
+     */
+    ShardedDataValueWriter( int workerCount, int chunkSize, Supplier<BatchHandler<DataValue>> dataValueBatchHandlers,
+        Supplier<BatchHandler<DataValueAudit>> auditBatchHandlers, ChunkWriter chunkWriter )
+    {
+        this.chunkSize = chunkSize;
+        this.executor = Executors.newFixedThreadPool( workerCount );
+
+        for ( int i = 0; i < workerCount; i++ )
+        {
+            Worker worker = new Worker( dataValueBatchHandlers.get(), auditBatchHandlers.get(), chunkWriter );
+
+            workers.add( worker );
+            futures.add( executor.submit( worker ) );
+        }
+    }
+
+    /**
+     * Adds the given pending data value to the worker of its organisation
+     * unit. Blocks if the worker is falling behind.
+     *
+     * @param value the {@link PendingDataValue}.
+     */
+    void add( PendingDataValue value )
+    {
+        long orgUnitId = value.getDataValue().getSource().getId();
+
+        Worker worker = workers.get( (int) Math.floorMod( orgUnitId, (long) workers.size() ) );
+
+        if ( worker.failed )
+        {
+            return;
+        }
+
+        worker.pending.add( value );
+
+        if ( worker.pending.size() >= chunkSize )
+        {
+            worker.enqueue();
+        }
+    }
+
+    /**
+     * Writes the remaining data values, waits for all workers to complete and
+     * returns the merged import count of all workers.
+     *
+     * @return the merged {@link ImportCount}.
+     */
+    ImportCount finish()
+    {
+        finished = true;
+
+        try
+        {
+            for ( Worker worker : workers )
+            {
+                worker.enqueue();
+                worker.queue.put( Collections.emptyList() );
+            }
+
+            for ( Future<?> future : futures )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( ExecutionException ex )
+                {
+                    failures.add( ex.getCause() );
+                }
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            failures.add( ex );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        ImportCount importCount = new ImportCount();
+
+        for ( Worker worker : workers )
+        {
+            importCount.incrementImported( worker.importCount.getImported() );
+            importCount.incrementUpdated( worker.importCount.getUpdated() );
+            importCount.incrementDeleted( worker.importCount.getDeleted() );
+        }
+
+        return importCount;
+    }
+
+    /**
+     * Stops the workers if {@link #finish()} was not called or did not
+     * complete. Data values which are not yet written are dropped, and the
+     * workers release their batch handlers once the chunks being written are
+     * done. Does nothing if the writer is finished.
+     */
+    void close()
+    {
+        if ( finished )
+        {
+            return;
+        }
+
+        finished = true;
+        aborted = true;
+
+        for ( Worker worker : workers )
+        {
+            worker.pending = new ArrayList<>();
+            worker.queue.clear();
+            worker.queue.offer( Collections.emptyList() );
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the failures of the workers, empty if all writes succeeded.
+     */
+    List<Throwable> getFailures()
+    {
+        return failures;
+    }
+
+    private class Worker
+        implements Runnable
+    {
+        private final BlockingQueue<List<PendingDataValue>> queue = new ArrayBlockingQueue<>( QUEUED_CHUNKS_PER_WORKER );
+
+        private final BatchHandler<DataValue> dataValueBatchHandler;
+
+        private final BatchHandler<DataValueAudit> auditBatchHandler;
+
+        private final ChunkWriter chunkWriter;
+
+        private final ImportCount importCount = new ImportCount();
+
+        private List<PendingDataValue> pending = new ArrayList<>();
+
+        private volatile boolean failed;
+
+        Worker( BatchHandler<DataValue> dataValueBatchHandler, BatchHandler<DataValueAudit> auditBatchHandler,
+            ChunkWriter chunkWriter )
+        {
+            this.dataValueBatchHandler = dataValueBatchHandler;
+            this.auditBatchHandler = auditBatchHandler;
+            this.chunkWriter = chunkWriter;
+        }
+
+        /**
+         * Hands the pending data values over to the worker thread.
+         */
+        void enqueue()
+        {
+            if ( pending.isEmpty() )
+            {
+                return;
+            }
+
+            if ( failed )
+            {
+                pending = new ArrayList<>();
+                return;
+            }
+
+            try
+            {
+                queue.put( pending );
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( "Interrupted while queueing data values", ex );
+            }
+
+            pending = new ArrayList<>();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                List<PendingDataValue> chunk;
+
+                while ( !( chunk = queue.take() ).isEmpty() )
+                {
+                    if ( failed || aborted )
+                    {
+                        continue; // Drain queue so that producer does not block
+                    }
+
+                    try
+                    {
+                        chunkWriter.write( chunk, dataValueBatchHandler, auditBatchHandler, importCount );
+                    }
+                    catch ( Throwable ex )
+                    {
+                        log.error( "Data value import worker failed", ex );
+                        failures.add( ex );
+                        failed = true;
+                    }
+                }
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                try
+                {
+                    releaseDataValueBatchHandler();
+                }
+                finally
+                {
+                    auditBatchHandler.flush();
+                }
+
+                if ( dataValueBatchHandler instanceof CopyBatchHandler )
+                {
+                    importCount.setImported( importCount.getImported() - ( (CopyBatchHandler<?>) dataValueBatchHandler ).getSkippedCount() );
+                }
+            }
+        }
+
+        /**
+         * Flushes the data value batch handler. Once the worker has failed or
+         * the writer is aborted, data values buffered for COPY are dropped
+         * instead of written and no longer counted as imported. Audits are
+         * always flushed, as they record updates which are already written.
+         */
+        private void releaseDataValueBatchHandler()
+        {
+            if ( ( failed || aborted ) && dataValueBatchHandler instanceof CopyBatchHandler )
+            {
+                int dropped = ( (CopyBatchHandler<DataValue>) dataValueBatchHandler ).discard();
+
+                importCount.setImported( importCount.getImported() - dropped );
+            }
+            else
+            {
+                dataValueBatchHandler.flush();
+            }
+        }
+    }
+}
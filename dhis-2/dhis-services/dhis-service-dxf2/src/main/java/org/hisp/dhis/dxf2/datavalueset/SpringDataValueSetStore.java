@@ -69,6 +69,12 @@ import lombok.extern.slf4j.Slf4j;
 public class SpringDataValueSetStore
     implements DataValueSetStore
 {
+    /**
+     * Columns of the data value keyset order, see {@link DataValueCursor}.
+     */
+    private static final String KEYSET_COLUMNS = "dv.lastupdated, dv.dataelementid, dv.periodid, dv.sourceid, " +
+        "dv.categoryoptioncomboid, dv.attributeoptioncomboid";
+
     private CurrentUserService currentUserService;
 
     private final JdbcTemplate jdbcTemplate;
@@ -135,16 +141,32 @@ public class SpringDataValueSetStore
     }
 
     @Override
-    public void writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes, int pageSize,
-        int page )
+    public DataValueCursor writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes,
+        int pageSize, DataValueCursor cursor )
     {
         DataValueSet dataValueSet = new StreamingJsonDataValueSet( outputStream );
 
-        final int offset = (page - 1) * pageSize;
-        final String sql = buildDataValueSql( lastUpdated, idSchemes ) +
-            "order by pe.startdate asc, dv.created asc, deid asc limit " + pageSize + " offset " + offset;
+        String sql = buildDataValueSql( lastUpdated, idSchemes );
 
-        writeDataValueSet( sql, new DataExportParams(), null, dataValueSet );
+        Object[] args = new Object[0];
+
+        if ( cursor != null )
+        {
+            sql += "and (" + KEYSET_COLUMNS + ") > (?, ?, ?, ?, ?, ?) ";
+            args = cursor.getKey();
+        }
+
+        // Fetch one data value beyond the page to find out if there is a next page
+
+        sql += "order by " + KEYSET_COLUMNS + " limit " + ( pageSize + 1 );
+
+        DataValuePageHandler pageHandler = new DataValuePageHandler( dataValueSet, pageSize );
+
+        jdbcTemplate.query( sql, pageHandler, args );
+
+        dataValueSet.close();
+
+        return pageHandler.getNextPageCursor();
     }
 
     private String buildDataValueSql( Date lastUpdated, IdSchemes idSchemes )
@@ -156,7 +178,8 @@ public class SpringDataValueSetStore
         final String sql =
             "select de." + deScheme + " as deid, pe.startdate as pestart, pt.name as ptname, ou." + ouScheme + " as ouid, " +
                 "coc." + ocScheme + " as cocid, aoc." + ocScheme + " as aocid, " +
-                "dv.value, dv.storedby, dv.created, dv.lastupdated, dv.comment, dv.followup, dv.deleted " +
+                "dv.value, dv.storedby, dv.created, dv.lastupdated, dv.comment, dv.followup, dv.deleted, " +
+                "dv.dataelementid, dv.periodid, dv.sourceid, dv.categoryoptioncomboid, dv.attributeoptioncomboid " +
                 "from datavalue dv " +
                 "join dataelement de on (dv.dataelementid=de.dataelementid) " +
                 "join period pe on (dv.periodid=pe.periodid) " +
@@ -185,35 +208,7 @@ public class SpringDataValueSetStore
 
         final Calendar calendar = PeriodType.getCalendar();
 
-        jdbcTemplate.query( sql, new RowCallbackHandler()
-        {
-            @Override
-            public void processRow( ResultSet rs ) throws SQLException
-            {
-                DataValue dataValue = dataValueSet.getDataValueInstance();
-                PeriodType pt = PeriodType.getPeriodTypeByName( rs.getString( "ptname" ) );
-                boolean deleted = rs.getBoolean( "deleted" );
-
-                dataValue.setDataElement( rs.getString( "deid" ) );
-                dataValue.setPeriod( pt.createPeriod( rs.getDate( "pestart" ), calendar ).getIsoDate() );
-                dataValue.setOrgUnit( rs.getString( "ouid" ) );
-                dataValue.setCategoryOptionCombo( rs.getString( "cocid" ) );
-                dataValue.setAttributeOptionCombo( rs.getString( "aocid" ) );
-                dataValue.setValue( rs.getString( "value" ) );
-                dataValue.setStoredBy( rs.getString( "storedby" ) );
-                dataValue.setCreated( getLongGmtDateString( rs.getTimestamp( "created" ) ) );
-                dataValue.setLastUpdated( getLongGmtDateString( rs.getTimestamp( "lastupdated" ) ) );
-                dataValue.setComment( rs.getString( "comment" ) );
-                dataValue.setFollowup( rs.getBoolean( "followup" ) );
-
-                if ( deleted )
-                {
-                    dataValue.setDeleted( deleted );
-                }
-
-                dataValue.close();
-            }
-        } );
+        jdbcTemplate.query( sql, ( ResultSet rs ) -> writeDataValue( rs, dataValueSet, calendar ) );
 
         dataValueSet.close();
     }
@@ -222,6 +217,41 @@ public class SpringDataValueSetStore
     // Supportive methods
     //--------------------------------------------------------------------------
 
+    private void writeDataValue( ResultSet rs, DataValueSet dataValueSet, Calendar calendar )
+        throws SQLException
+    {
+        DataValue dataValue = dataValueSet.getDataValueInstance();
+        PeriodType pt = PeriodType.getPeriodTypeByName( rs.getString( "ptname" ) );
+        boolean deleted = rs.getBoolean( "deleted" );
+
+        dataValue.setDataElement( rs.getString( "deid" ) );
+        dataValue.setPeriod( pt.createPeriod( rs.getDate( "pestart" ), calendar ).getIsoDate() );
+        dataValue.setOrgUnit( rs.getString( "ouid" ) );
+        dataValue.setCategoryOptionCombo( rs.getString( "cocid" ) );
+        dataValue.setAttributeOptionCombo( rs.getString( "aocid" ) );
+        dataValue.setValue( rs.getString( "value" ) );
+        dataValue.setStoredBy( rs.getString( "storedby" ) );
+        dataValue.setCreated( getLongGmtDateString( rs.getTimestamp( "created" ) ) );
+        dataValue.setLastUpdated( getLongGmtDateString( rs.getTimestamp( "lastupdated" ) ) );
+        dataValue.setComment( rs.getString( "comment" ) );
+        dataValue.setFollowup( rs.getBoolean( "followup" ) );
+
+        if ( deleted )
+        {
+            dataValue.setDeleted( deleted );
+        }
+
+        dataValue.close();
+    }
+
+    private DataValueCursor getCursor( ResultSet rs )
+        throws SQLException
+    {
+        return new DataValueCursor( rs.getTimestamp( "lastupdated" ), rs.getLong( "dataelementid" ),
+            rs.getLong( "periodid" ), rs.getLong( "sourceid" ), rs.getLong( "categoryoptioncomboid" ),
+            rs.getLong( "attributeoptioncomboid" ) );
+    }
+
     private String getDataValueSql( DataExportParams params )
     {
         Preconditions.checkArgument( !params.getAllDataElements().isEmpty() );
@@ -402,4 +432,51 @@ public class SpringDataValueSetStore
                             "where ugm.userid = " + user.getId() + ")))) ";
 
     }
+
+    /**
+     * Writes a page of data values and keeps track of the cursor of the last
+     * written data value. Expects to be given one data value beyond the page,
+     * which is not written but tells that there is a next page.
+     */
+    private class DataValuePageHandler
+        implements RowCallbackHandler
+    {
+        private final DataValueSet dataValueSet;
+
+        private final int pageSize;
+
+        private final Calendar calendar = PeriodType.getCalendar();
+
+        private int rows = 0;
+
+        private DataValueCursor lastCursor;
+
+        private boolean nextPage = false;
+
+        DataValuePageHandler( DataValueSet dataValueSet, int pageSize )
+        {
+            this.dataValueSet = dataValueSet;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public void processRow( ResultSet rs )
+            throws SQLException
+        {
+            if ( ++rows > pageSize )
+            {
+                nextPage = true;
+                return;
+            }
+
+            writeDataValue( rs, dataValueSet, calendar );
+
+            lastCursor = getCursor( rs );
+        }
+
+        DataValueCursor getNextPageCursor()
+        {
+            return nextPage ? lastCursor : null;
+        }
+    }
 }
@@ -30,22 +30,65 @@ package org.hisp.dhis.dxf2.datavalueset;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.extern.slf4j.Slf4j;
 import org.hisp.dhis.dxf2.datavalue.DataValue;
 import org.hisp.dhis.dxf2.datavalue.StreamingJsonDataValue;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
+ * Data value set which writes to a {@link JsonGenerator} or reads from a
+ * {@link JsonParser} in a streaming fashion. When reading, data values are
+ * parsed one at a time from the "dataValues" array, so the data value set is
+ * never fully loaded into memory. Properties of the data value set may precede
+ * or follow the "dataValues" array. As the properties must be known before the
+ * first data value is read, and a property following the array can only be
+ * detected once the array has been read, the array is buffered in memory while
+ * the properties are read, and data values are then parsed from that buffer.
+ * Only when the array holds more than {@link #MAX_BUFFERED_DATA_VALUES} values
+ * is it spooled to a temporary file instead, which keeps memory use flat for
+ * large payloads.
+ *
  * @author Morten Olav Hansen <mortenoh@gmail.com>
  */
+@Slf4j
 public class StreamingJsonDataValueSet extends DataValueSet
 {
+    private static final String FIELD_DATAVALUES = "dataValues";
+
+    private static final String FIELD_STRATEGY = "strategy";
+
+    private static final String FIELD_ATTRIBUTE_CATEGORY_OPTIONS = "attributeCategoryOptions";
+
+    /**
+     * Maximum number of data values which are buffered in memory before the
+     * "dataValues" array is spooled to a temporary file.
+     */
+    static final int MAX_BUFFERED_DATA_VALUES = 10_000;
+
     private JsonGenerator generator;
 
     private boolean startedArray;
 
+    private JsonParser parser;
+
+    private boolean readingArray;
+
+    private TokenBuffer dataValuesBuffer;
+
+    private Path dataValuesFile;
+
     public StreamingJsonDataValueSet( OutputStream out )
     {
         try
@@ -63,6 +106,280 @@ public class StreamingJsonDataValueSet extends DataValueSet
         }
     }
 
+    public StreamingJsonDataValueSet( JsonParser parser )
+    {
+        this.parser = parser;
+
+        try
+        {
+            readProperties();
+        }
+        catch ( IOException ex )
+        {
+            closeParser();
+            throw new RuntimeException( "Failed to read JSON data value set", ex );
+        }
+        catch ( RuntimeException ex )
+        {
+            closeParser();
+            throw ex;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Reading
+    //--------------------------------------------------------------------------
+
+    @Override
+    public boolean hasNextDataValue()
+    {
+        if ( !readingArray )
+        {
+            return false;
+        }
+
+        try
+        {
+            JsonToken token = parser.nextToken();
+
+            if ( token == JsonToken.START_OBJECT )
+            {
+                return true;
+            }
+            else if ( token == JsonToken.END_ARRAY )
+            {
+                readingArray = false;
+                closeParser();
+                return false;
+            }
+
+            throw new IllegalArgumentException( "Data values must be JSON objects, found: " + token );
+        }
+        catch ( IOException ex )
+        {
+            throw new RuntimeException( "Failed to read JSON data value", ex );
+        }
+    }
+
+    @Override
+    public DataValue getNextDataValue()
+    {
+        try
+        {
+            return parser.readValueAs( DataValue.class );
+        }
+        catch ( IOException ex )
+        {
+            throw new RuntimeException( "Failed to read JSON data value", ex );
+        }
+    }
+
+    /**
+     * Reads the properties of the data value set and copies the "dataValues"
+     * array to a buffer or temporary file, which leaves the parser positioned
+     * at the start of the copied array.
+     */
+    private void readProperties()
+        throws IOException
+    {
+        if ( parser.nextToken() != JsonToken.START_OBJECT )
+        {
+            throw new IllegalArgumentException( "Data value set must be a JSON object" );
+        }
+
+        boolean copied = false;
+
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if ( FIELD_DATAVALUES.equals( fieldName ) && token == JsonToken.START_ARRAY && !copied )
+            {
+                copyDataValues();
+                copied = true;
+            }
+            else
+            {
+                readProperty( fieldName );
+            }
+        }
+
+        if ( copied )
+        {
+            ObjectCodec codec = parser.getCodec();
+
+            parser.close();
+            parser = dataValuesFile != null ?
+                codec.getFactory().createParser( dataValuesFile.toFile() ) :
+                dataValuesBuffer.asParser( codec );
+            parser.nextToken();
+            dataValuesBuffer = null;
+            readingArray = true;
+        }
+    }
+
+    /**
+     * Copies the "dataValues" array, value by value, from the parser to an in
+     * memory buffer. The buffer is spooled to a temporary file, and the
+     * remaining values are copied to that file, once the array holds more than
+     * {@link #MAX_BUFFERED_DATA_VALUES} values.
+     */
+    private void copyDataValues()
+        throws IOException
+    {
+        TokenBuffer buffer = new TokenBuffer( parser );
+        buffer.copyCurrentEvent( parser );
+
+        JsonGenerator target = buffer;
+
+        try
+        {
+            int count = 0;
+
+            while ( parser.nextToken() != JsonToken.END_ARRAY )
+            {
+                if ( parser.currentToken() == null )
+                {
+                    throw new JsonParseException( parser, "Unexpected end of data values" );
+                }
+
+                if ( target == buffer && ++count > MAX_BUFFERED_DATA_VALUES )
+                {
+                    target = spool( buffer );
+                }
+
+                target.copyCurrentStructure( parser );
+            }
+
+            target.copyCurrentEvent( parser );
+        }
+        finally
+        {
+            if ( target != buffer )
+            {
+                target.close();
+            }
+        }
+
+        if ( target == buffer )
+        {
+            dataValuesBuffer = buffer;
+        }
+    }
+
+    /**
+     * Writes the buffered data values to a temporary file and returns a
+     * generator for appending the remaining data values to that file.
+     */
+    private JsonGenerator spool( TokenBuffer buffer )
+        throws IOException
+    {
+        dataValuesFile = Files.createTempFile( "datavalueset", ".json" );
+
+        JsonGenerator fileGenerator = parser.getCodec().getFactory().createGenerator( Files.newOutputStream( dataValuesFile ) );
+
+        try
+        {
+            buffer.serialize( fileGenerator );
+        }
+        catch ( IOException ex )
+        {
+            fileGenerator.close();
+            throw ex;
+        }
+
+        return fileGenerator;
+    }
+
+    /**
+     * Indicates whether the "dataValues" array was spooled to a temporary file.
+     */
+    boolean isSpooled()
+    {
+        return dataValuesFile != null;
+    }
+
+    private void readProperty( String fieldName )
+        throws IOException
+    {
+        switch ( fieldName )
+        {
+            case FIELD_IDSCHEME:
+                idScheme = parser.getValueAsString();
+                break;
+            case FIELD_DATAELEMENTIDSCHEME:
+                dataElementIdScheme = parser.getValueAsString();
+                break;
+            case FIELD_ORGUNITIDSCHEME:
+                orgUnitIdScheme = parser.getValueAsString();
+                break;
+            case FIELD_CATEGORYOPTCOMBOIDSCHEME:
+                categoryOptionComboIdScheme = parser.getValueAsString();
+                break;
+            case FIELD_DATASETIDSCHEME:
+                dataSetIdScheme = parser.getValueAsString();
+                break;
+            case FIELD_DRYRUN:
+                dryRun = parser.readValueAs( Boolean.class );
+                break;
+            case FIELD_STRATEGY:
+                strategy = parser.getValueAsString();
+                break;
+            case FIELD_DATASET:
+                dataSet = parser.getValueAsString();
+                break;
+            case FIELD_COMPLETEDATE:
+                completeDate = parser.getValueAsString();
+                break;
+            case FIELD_PERIOD:
+                period = parser.getValueAsString();
+                break;
+            case FIELD_ORGUNIT:
+                orgUnit = parser.getValueAsString();
+                break;
+            case FIELD_ATTRIBUTE_OPTION_COMBO:
+                attributeOptionCombo = parser.getValueAsString();
+                break;
+            case FIELD_ATTRIBUTE_CATEGORY_OPTIONS:
+                attributeCategoryOptions = parser.readValueAs( new TypeReference<List<String>>() {} );
+                break;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    private void closeParser()
+    {
+        try
+        {
+            parser.close();
+        }
+        catch ( IOException ignored )
+        {
+        }
+
+        dataValuesBuffer = null;
+
+        if ( dataValuesFile != null )
+        {
+            try
+            {
+                Files.deleteIfExists( dataValuesFile );
+            }
+            catch ( IOException ex )
+            {
+                log.warn( String.format( "Failed to delete data value file: '%s'", dataValuesFile ), ex );
+            }
+
+            dataValuesFile = null;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Writing
+    //--------------------------------------------------------------------------
+
     @Override
     public void setDataElementIdScheme( String dataElementIdScheme )
     {
@@ -124,7 +441,7 @@ public class StreamingJsonDataValueSet extends DataValueSet
         {
             try
             {
-                generator.writeArrayFieldStart( "dataValues" );
+                generator.writeArrayFieldStart( FIELD_DATAVALUES );
                 startedArray = true;
             }
             catch ( IOException ignored )
@@ -138,6 +455,11 @@ public class StreamingJsonDataValueSet extends DataValueSet
     @Override
     public void close()
     {
+        if ( parser != null )
+        {
+            closeParser();
+        }
+
         if ( generator == null )
         {
             return;
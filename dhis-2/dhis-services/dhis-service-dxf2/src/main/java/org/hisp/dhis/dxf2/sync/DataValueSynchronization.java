@@ -30,9 +30,13 @@ package org.hisp.dhis.dxf2.sync;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 import lombok.extern.slf4j.Slf4j;
 import org.hisp.dhis.common.IdSchemes;
 import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.dxf2.datavalueset.DataValueCursor;
 import org.hisp.dhis.dxf2.datavalueset.DataValueSetService;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
@@ -55,8 +59,14 @@ public class DataValueSynchronization extends DataSynchronizationWithPaging
     private final SystemSettingManager systemSettingManager;
     private final RestTemplate restTemplate;
 
+    private static final char WINDOW_SEPARATOR = '/';
+
     private Date lastUpdatedAfter;
 
+    private DataValueCursor cursor;
+
+    private Consumer<String> cursorListener;
+
     public DataValueSynchronization( DataValueService dataValueService, DataValueSetService dataValueSetService,
         SystemSettingManager systemSettingManager, RestTemplate restTemplate )
     {
@@ -73,6 +83,26 @@ public class DataValueSynchronization extends DataSynchronizationWithPaging
 
     @Override
     public SynchronizationResult synchronizeData( final int pageSize )
+    {
+        return synchronizeData( pageSize, null, resumeCursor -> {} );
+    }
+
+    /**
+     * Synchronizes data values changed since the last successful
+     * synchronization. Data values are sent in pages in
+     * {@link DataValueCursor} order, so that every page is a seek into the
+     * data value table regardless of how many pages were sent before.
+     *
+     * @param pageSize the number of data values per page.
+     * @param resumeCursor the cursor reported by an unfinished earlier run to
+     *        resume from, or null to start from the beginning. Ignored if the
+     *        earlier run synchronized data values changed since another time.
+     * @param cursorListener given the cursor to resume from after every
+     *        synchronized page, and null once all pages are synchronized.
+     * @return a {@link SynchronizationResult}.
+     */
+    public SynchronizationResult synchronizeData( final int pageSize, final String resumeCursor,
+        final Consumer<String> cursorListener )
     {
         if ( !SyncUtils.testServerAvailability( systemSettingManager, restTemplate ).isAvailable() )
         {
@@ -82,7 +112,9 @@ public class DataValueSynchronization extends DataSynchronizationWithPaging
 
         log.info( "Starting DataValueSynchronization job." );
 
-        initializeSyncVariables( pageSize );
+        this.cursorListener = cursorListener;
+
+        initializeSyncVariables( pageSize, resumeCursor );
 
         if ( objectsToSynchronize == 0 )
         {
@@ -95,6 +127,7 @@ public class DataValueSynchronization extends DataSynchronizationWithPaging
 
         if ( syncResult )
         {
+            cursorListener.accept( null );
             clock.logTime( "SUCCESS! DataValueSynchronization job is done. It took" );
             SyncUtils.setLastSyncSuccess( systemSettingManager, SettingKey.LAST_SUCCESSFUL_DATA_VALUE_SYNC, new Date( clock.getStartTime() ));
             return SynchronizationResult
@@ -104,12 +137,13 @@ public class DataValueSynchronization extends DataSynchronizationWithPaging
         return SynchronizationResult.newFailureResultWithMessage( "DataValueSynchronization failed." );
     }
 
-    private void initializeSyncVariables( final int pageSize )
+    private void initializeSyncVariables( final int pageSize, final String resumeCursor )
     {
         clock = new Clock( log ).startClock().logTime( "Starting DataValueSynchronization job" );
         final Date lastSuccessTime = SyncUtils.getLastSyncSuccess( systemSettingManager, SettingKey.LAST_SUCCESSFUL_DATA_VALUE_SYNC );
         final Date skipChangedBefore = (Date) systemSettingManager.getSystemSetting( SettingKey.SKIP_SYNCHRONIZATION_FOR_DATA_CHANGED_BEFORE );
         lastUpdatedAfter = lastSuccessTime.after( skipChangedBefore ) ? lastSuccessTime : skipChangedBefore;
+        cursor = getResumeCursor( resumeCursor );
 
         objectsToSynchronize = dataValueService.getDataValueCountLastUpdatedAfter( lastUpdatedAfter, true );
 
@@ -119,37 +153,100 @@ public class DataValueSynchronization extends DataSynchronizationWithPaging
         {
             instance = SyncUtils.getRemoteInstance( systemSettingManager, SyncEndpoint.DATA_VALUE_SETS );
 
-            // Using this approach as (int) Match.ceil doesn't work until I cast int to double
-            pages = ( objectsToSynchronize / pageSize ) + (( objectsToSynchronize % pageSize == 0 ) ? 0 : 1 );
-
             log.info( objectsToSynchronize + " DataValues to synchronize were found." );
             log.info( "Remote server URL for DataValues POST sync: " + instance.getUrl() );
-            log.info( "DataValueSynchronization job has " + pages + " pages to sync. With page size: " + pageSize );
+            log.info( "DataValueSynchronization job syncs pages with page size: " + pageSize );
+
+            if ( cursor != null )
+            {
+                log.info( "Resuming DataValueSynchronization after data value: " + cursor );
+            }
         }
     }
 
+    /**
+     * Pages are chained through the cursor, so pages are synchronized until
+     * there is no next page, and the first failing page ends the run. The
+     * next run resumes from the failing page.
+     */
+    @Override
+    protected void runSyncWithPaging( int pageSize )
+    {
+        syncResult = true;
+
+        int page = 1;
+
+        do
+        {
+            synchronizePage( page++, pageSize );
+        }
+        while ( syncResult && cursor != null );
+    }
+
     protected void synchronizePage( int page, int pageSize )
     {
         log.info( String.format( "Synchronizing page %d with page size %d", page, pageSize ) );
 
-        if ( !sendSyncRequest( pageSize, page ) )
+        final AtomicReference<DataValueCursor> nextCursor = new AtomicReference<>();
+
+        if ( !sendSyncRequest( pageSize, nextCursor ) )
         {
             syncResult = false;
+            return;
+        }
+
+        cursor = nextCursor.get();
+
+        if ( cursor != null )
+        {
+            cursorListener.accept( lastUpdatedAfter.getTime() + String.valueOf( WINDOW_SEPARATOR ) + cursor );
         }
     }
 
-    private boolean sendSyncRequest( int syncPageSize, int page )
+    private boolean sendSyncRequest( int syncPageSize, AtomicReference<DataValueCursor> nextCursor )
     {
+        final DataValueCursor pageCursor = cursor;
+
         final RequestCallback requestCallback = request ->
         {
             request.getHeaders().setContentType( MediaType.APPLICATION_JSON );
             request.getHeaders().add( SyncUtils.HEADER_AUTHORIZATION,
                 CodecUtils.getBasicAuthString( instance.getUsername(), instance.getPassword() ) );
 
-            dataValueSetService.writeDataValueSetJson( lastUpdatedAfter, request.getBody(), new IdSchemes(),
-                syncPageSize, page );
+            nextCursor.set( dataValueSetService.writeDataValueSetJson( lastUpdatedAfter, request.getBody(),
+                new IdSchemes(), syncPageSize, pageCursor ) );
         };
 
         return SyncUtils.sendSyncRequest( systemSettingManager, restTemplate, requestCallback, instance, SyncEndpoint.DATA_VALUE_SETS );
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the cursor to resume from, which is only valid if it was
+     * reported for the current last updated after time.
+     */
+    private DataValueCursor getResumeCursor( final String resumeCursor )
+    {
+        if ( resumeCursor == null )
+        {
+            return null;
+        }
+
+        final int separator = resumeCursor.indexOf( WINDOW_SEPARATOR );
+
+        if ( separator < 0 || !String.valueOf( lastUpdatedAfter.getTime() ).equals( resumeCursor.substring( 0, separator ) ) )
+        {
+            log.info( "Ignoring DataValueSynchronization cursor of a run for other data changes: " + resumeCursor );
+            return null;
+        }
+
+        try
+        {
+            return DataValueCursor.valueOf( resumeCursor.substring( separator + 1 ) );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            log.warn( "Ignoring invalid DataValueSynchronization cursor: " + resumeCursor );
+            return null;
+        }
+    }
+}
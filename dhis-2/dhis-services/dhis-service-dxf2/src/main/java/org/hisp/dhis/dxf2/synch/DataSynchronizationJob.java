@@ -30,6 +30,7 @@ package org.hisp.dhis.dxf2.synch;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Objects;
 import java.util.Optional;
 
 import org.hisp.dhis.dxf2.sync.CompleteDataSetRegistrationSynchronization;
@@ -37,6 +38,7 @@ import org.hisp.dhis.dxf2.sync.DataValueSynchronization;
 import org.hisp.dhis.dxf2.sync.SynchronizationJob;
 import org.hisp.dhis.feedback.ErrorReport;
 import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobConfigurationService;
 import org.hisp.dhis.scheduling.JobType;
 import org.hisp.dhis.scheduling.parameters.DataSynchronizationJobParameters;
 import org.hisp.dhis.system.notification.Notifier;
@@ -53,20 +55,23 @@ public class DataSynchronizationJob extends SynchronizationJob
     private final Notifier notifier;
     private final DataValueSynchronization dataValueSynchronization;
     private final CompleteDataSetRegistrationSynchronization completenessSynchronization;
+    private final JobConfigurationService jobConfigurationService;
 
     public DataSynchronizationJob( Notifier notifier, DataValueSynchronization dataValueSynchronization,
         CompleteDataSetRegistrationSynchronization completenessSynchronization,
-        SynchronizationManager synchronizationManager )
+        SynchronizationManager synchronizationManager, JobConfigurationService jobConfigurationService )
     {
         checkNotNull( notifier );
         checkNotNull( dataValueSynchronization );
         checkNotNull( completenessSynchronization );
         checkNotNull( synchronizationManager );
+        checkNotNull( jobConfigurationService );
 
         this.notifier = notifier;
         this.dataValueSynchronization = dataValueSynchronization;
         this.completenessSynchronization = completenessSynchronization;
         this.synchronizationManager = synchronizationManager;
+        this.jobConfigurationService = jobConfigurationService;
     }
 
 
@@ -85,7 +90,8 @@ public class DataSynchronizationJob extends SynchronizationJob
     {
         DataSynchronizationJobParameters jobParameters =
             (DataSynchronizationJobParameters) jobConfiguration.getJobParameters();
-        dataValueSynchronization.synchronizeData( jobParameters.getPageSize() );
+        dataValueSynchronization.synchronizeData( jobParameters.getPageSize(), jobParameters.getDataValueCursor(),
+            cursor -> saveDataValueCursor( jobConfiguration, jobParameters, cursor ) );
         notifier.notify( jobConfiguration, "Data value sync successful" );
 
         completenessSynchronization.synchronizeData();
@@ -102,4 +108,22 @@ public class DataSynchronizationJob extends SynchronizationJob
 
         return errorReport.orElse( super.validate() );
     }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Persists the data value cursor in the job configuration, so that an
+     * interrupted synchronization resumes where it stopped.
+     */
+    private void saveDataValueCursor( JobConfiguration jobConfiguration,
+        DataSynchronizationJobParameters jobParameters, String cursor )
+    {
+        if ( !Objects.equals( jobParameters.getDataValueCursor(), cursor ) )
+        {
+            jobParameters.setDataValueCursor( cursor );
+            jobConfigurationService.updateJobConfiguration( jobConfiguration );
+        }
+    }
 }
\ No newline at end of file
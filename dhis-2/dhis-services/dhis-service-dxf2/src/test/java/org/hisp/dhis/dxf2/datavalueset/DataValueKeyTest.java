@@ -0,0 +1,88 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.common.BaseIdentifiableObject;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DeflatedDataValue;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.Period;
+import org.junit.Test;
+
+public class DataValueKeyTest
+{
+    @Test
+    public void testKeyOfDataValueEqualsKeyOfDeflatedDataValue()
+    {
+        DataValue dataValue = getDataValue( 1, 2, 3, 4, 5 );
+
+        DataValueKey keyA = DataValueKey.of( dataValue );
+        DataValueKey keyB = DataValueKey.of( new DeflatedDataValue( dataValue ) );
+
+        assertThat( keyA, is( keyB ) );
+        assertThat( keyA.hashCode(), is( keyB.hashCode() ) );
+    }
+
+    @Test
+    public void testKeysDifferOnEachIdentifier()
+    {
+        DataValueKey key = new DataValueKey( 1, 2, 3, 4, 5 );
+
+        assertThat( key, not( new DataValueKey( 9, 2, 3, 4, 5 ) ) );
+        assertThat( key, not( new DataValueKey( 1, 9, 3, 4, 5 ) ) );
+        assertThat( key, not( new DataValueKey( 1, 2, 9, 4, 5 ) ) );
+        assertThat( key, not( new DataValueKey( 1, 2, 3, 9, 5 ) ) );
+        assertThat( key, not( new DataValueKey( 1, 2, 3, 4, 9 ) ) );
+        assertThat( key, not( new DataValueKey( 12, 3, 4, 5, 0 ) ) );
+    }
+
+    private static DataValue getDataValue( long dataElementId, long periodId, long sourceId,
+        long categoryOptionComboId, long attributeOptionComboId )
+    {
+        DataValue dataValue = new DataValue();
+        dataValue.setDataElement( withId( new DataElement(), dataElementId ) );
+        dataValue.setPeriod( withId( new Period(), periodId ) );
+        dataValue.setSource( withId( new OrganisationUnit(), sourceId ) );
+        dataValue.setCategoryOptionCombo( withId( new CategoryOptionCombo(), categoryOptionComboId ) );
+        dataValue.setAttributeOptionCombo( withId( new CategoryOptionCombo(), attributeOptionComboId ) );
+        return dataValue;
+    }
+
+    private static <T extends BaseIdentifiableObject> T withId( T object, long id )
+    {
+        object.setId( id );
+        return object;
+    }
+}
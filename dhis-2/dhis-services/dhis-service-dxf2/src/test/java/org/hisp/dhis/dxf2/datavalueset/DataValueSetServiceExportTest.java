@@ -30,10 +30,14 @@ package org.hisp.dhis.dxf2.datavalueset;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.hisp.dhis.IntegrationTestBase;
 import org.hisp.dhis.attribute.Attribute;
@@ -458,6 +462,50 @@ public class DataValueSetServiceExportTest
         assertEquals( 14, dvs.getDataValues().size() );
     }
 
+    @Test
+    public void testExportLastUpdatedKeysetPages()
+        throws IOException
+    {
+        Date lastUpdated = getDate( 1970, 1, 1 );
+        Set<String> dataValues = new HashSet<>();
+        DataValueCursor cursor = null;
+        int pages = 0;
+
+        do
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            cursor = dataValueSetService.writeDataValueSetJson( lastUpdated, out, new IdSchemes(), 5, cursor );
+
+            DataValueSet dvs = jsonMapper.readValue( out.toByteArray(), DataValueSet.class );
+
+            assertEquals( ++pages < 3 ? 5 : 2, dvs.getDataValues().size() );
+
+            for ( org.hisp.dhis.dxf2.datavalue.DataValue dv : dvs.getDataValues() )
+            {
+                assertTrue( dataValues.add( dv.getDataElement() + dv.getPeriod() + dv.getOrgUnit() +
+                    dv.getCategoryOptionCombo() + dv.getAttributeOptionCombo() ) );
+            }
+        }
+        while ( cursor != null );
+
+        assertEquals( 3, pages );
+        assertEquals( 12, dataValues.size() );
+    }
+
+    @Test
+    public void testDataValueCursorToStringValueOf()
+    {
+        Timestamp lastUpdated = new Timestamp( getDate( 2020, 2, 3 ).getTime() );
+        lastUpdated.setNanos( 123456000 );
+
+        DataValueCursor cursor = DataValueCursor.valueOf( new DataValueCursor( lastUpdated, 1, 2, 3, 4, 5 ).toString() );
+
+        assertEquals( lastUpdated, cursor.getLastUpdated() );
+        assertEquals( 1, cursor.getDataElementId() );
+        assertEquals( 5, cursor.getAttributeOptionComboId() );
+    }
+
     @Test
     public void testMissingDataSetElementGroup()
     {
@@ -53,6 +53,7 @@ import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetService;
 import org.hisp.dhis.datavalue.DataValue;
 import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.dxf2.common.ImportOptions;
 import org.hisp.dhis.dxf2.importsummary.ImportStatus;
 import org.hisp.dhis.dxf2.importsummary.ImportSummary;
@@ -103,6 +104,9 @@ public class DataValueSetServiceTest
     @Autowired
     private DataElementService dataElementService;
 
+    @Autowired
+    private DataValueService dataValueService;
+
     @Autowired
     private CategoryService categoryService;
 
@@ -960,7 +964,7 @@ public class DataValueSetServiceTest
     public void testImportDataValuesUpdatedAudit()
         throws Exception
     {
-        mockDataValueBatchHandler.withFindSelf( true );
+        addExistingDataValues();
 
         in = new ClassPathResource( "datavalueset/dataValueSetA.xml" ).getInputStream();
 
@@ -987,7 +991,7 @@ public class DataValueSetServiceTest
     public void testImportDataValuesUpdatedSkipAudit()
         throws Exception
     {
-        mockDataValueBatchHandler.withFindSelf( true );
+        addExistingDataValues();
 
         in = new ClassPathResource( "datavalueset/dataValueSetA.xml" ).getInputStream();
 
@@ -1214,6 +1218,19 @@ public class DataValueSetServiceTest
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Adds the data values of dataValueSetA.xml to the database, so that the
+     * import finds them as existing data values.
+     */
+    private void addExistingDataValues()
+    {
+        dataValueService.addDataValue( createDataValue( deA, peA, ouA, ocDef, ocDef, "10001" ) );
+        dataValueService.addDataValue( createDataValue( deA, peA, ouB, ocDef, ocDef, "10002" ) );
+        dataValueService.addDataValue( createDataValue( deA, peB, ouA, ocDef, ocDef, "10003" ) );
+
+        dbmsManager.flushSession();
+    }
+
     private void assertImportDataValues( ImportSummary summary )
     {
         assertNotNull( summary );
@@ -0,0 +1,136 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hisp.dhis.TransactionalIntegrationTestBase;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.dataset.DataSetService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.QuarterlyPeriodType;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Tests that metadata changes are picked up by the shared
+ * {@link ImportLookupContext} through the {@link ImportLookupContextListener}.
+ */
+public class ImportLookupContextListenerTest
+    extends TransactionalIntegrationTestBase
+{
+    @Autowired
+    private ImportLookupContext importLookupContext;
+
+    @Autowired
+    private DataElementService dataElementService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private DataSetService dataSetService;
+
+    private DataElement dataElementA;
+
+    private OrganisationUnit orgUnitA;
+
+    private OrganisationUnit orgUnitB;
+
+    private DataSet dataSetA;
+
+    @Override
+    public void setUpTest()
+    {
+        dataElementA = createDataElement( 'A' );
+        dataElementService.addDataElement( dataElementA );
+
+        orgUnitA = createOrganisationUnit( 'A' );
+        orgUnitB = createOrganisationUnit( 'B' );
+        organisationUnitService.addOrganisationUnit( orgUnitA );
+        organisationUnitService.addOrganisationUnit( orgUnitB );
+
+        dataSetA = createDataSet( 'A', new MonthlyPeriodType() );
+        dataSetA.addDataSetElement( dataElementA );
+        dataSetA.addOrganisationUnit( orgUnitA );
+        dataSetService.addDataSet( dataSetA );
+
+        dbmsManager.flushSession();
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Test
+    public void testLookups()
+    {
+        assertTrue( importLookupContext.isDataElementAssigned( dataElementA.getId(), orgUnitA.getId() ) );
+        assertFalse( importLookupContext.isDataElementAssigned( dataElementA.getId(), orgUnitB.getId() ) );
+        assertTrue( importLookupContext.isPeriodTypeValid( dataElementA.getId(), new MonthlyPeriodType() ) );
+        assertFalse( importLookupContext.isPeriodTypeValid( dataElementA.getId(), new QuarterlyPeriodType() ) );
+    }
+
+    @Test
+    public void testInvalidateOnOrgUnitAssigned()
+    {
+        // Given
+        assertFalse( importLookupContext.isDataElementAssigned( dataElementA.getId(), orgUnitB.getId() ) );
+
+        // When
+        dataSetA.addOrganisationUnit( orgUnitB );
+        dataSetService.updateDataSet( dataSetA );
+        dbmsManager.flushSession();
+
+        // Then
+        assertTrue( importLookupContext.isDataElementAssigned( dataElementA.getId(), orgUnitB.getId() ) );
+    }
+
+    @Test
+    public void testInvalidateOnDataElementRemoved()
+    {
+        // Given
+        assertTrue( importLookupContext.isDataElementAssigned( dataElementA.getId(), orgUnitA.getId() ) );
+
+        // When
+        dataSetA.removeDataSetElement( dataElementA );
+        dataSetService.updateDataSet( dataSetA );
+        dbmsManager.flushSession();
+
+        // Then
+        assertFalse( importLookupContext.isDataElementAssigned( dataElementA.getId(), orgUnitA.getId() ) );
+    }
+}
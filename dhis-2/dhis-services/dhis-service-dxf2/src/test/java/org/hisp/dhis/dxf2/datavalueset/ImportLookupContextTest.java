@@ -0,0 +1,215 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.indicator.Indicator;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+public class ImportLookupContextTest
+{
+    private StubJdbcTemplate jdbcTemplate;
+
+    private ImportLookupContext context;
+
+    @Before
+    public void setUp()
+    {
+        jdbcTemplate = new StubJdbcTemplate();
+        jdbcTemplate.dataElementDataSets.add( new long[] { 1, 10 } );
+        jdbcTemplate.dataElementDataSets.add( new long[] { 1, 11 } );
+        jdbcTemplate.orgUnitDataSets.add( new long[] { 2, 11 } );
+        jdbcTemplate.orgUnitDataSets.add( new long[] { 3, 12 } );
+
+        context = new ImportLookupContext( jdbcTemplate, mock( SessionFactory.class ) );
+    }
+
+    @Test
+    public void testIsDataElementAssigned()
+    {
+        assertTrue( context.isDataElementAssigned( 1, 2 ) );
+        assertFalse( context.isDataElementAssigned( 1, 3 ) );
+        assertFalse( context.isDataElementAssigned( 4, 2 ) );
+        assertFalse( context.isDataElementAssigned( 1, 5 ) );
+    }
+
+    @Test
+    public void testSectionsLoadedOnce()
+    {
+        context.isDataElementAssigned( 1, 2 );
+        context.isDataElementAssigned( 1, 3 );
+
+        assertThat( jdbcTemplate.queries.size(), is( 2 ) );
+        assertThat( context.getVersion(), is( 2L ) );
+    }
+
+    @Test
+    public void testInvalidateOrgUnitReloadsEntry()
+    {
+        // Given
+        assertFalse( context.isDataElementAssigned( 1, 3 ) );
+
+        jdbcTemplate.orgUnitDataSets.add( new long[] { 3, 10 } );
+
+        OrganisationUnit orgUnit = new OrganisationUnit();
+        orgUnit.setId( 3 );
+
+        // When
+        context.invalidate( orgUnit );
+
+        // Then
+        assertTrue( context.isDataElementAssigned( 1, 3 ) );
+        assertThat( jdbcTemplate.queries.size(), is( 3 ) );
+        assertThat( jdbcTemplate.getLastQuery(), containsString( "where sourceid = ?" ) );
+        assertThat( context.getVersion(), is( 3L ) );
+
+        assertTrue( context.isDataElementAssigned( 1, 2 ) );
+        assertThat( jdbcTemplate.queries.size(), is( 3 ) );
+    }
+
+    @Test
+    public void testInvalidateOrgUnitRemovesEntry()
+    {
+        // Given
+        assertTrue( context.isDataElementAssigned( 1, 2 ) );
+
+        jdbcTemplate.orgUnitDataSets.removeIf( row -> row[0] == 2 );
+
+        OrganisationUnit orgUnit = new OrganisationUnit();
+        orgUnit.setId( 2 );
+
+        // When
+        context.invalidate( orgUnit );
+
+        // Then
+        assertFalse( context.isDataElementAssigned( 1, 2 ) );
+    }
+
+    @Test
+    public void testInvalidateDataSetReloadsSections()
+    {
+        // Given
+        assertFalse( context.isDataElementAssigned( 1, 3 ) );
+
+        jdbcTemplate.dataElementDataSets.add( new long[] { 1, 12 } );
+
+        // When
+        context.invalidate( new DataSet() );
+
+        // Then
+        assertTrue( context.isDataElementAssigned( 1, 3 ) );
+        assertThat( jdbcTemplate.queries.size(), is( 4 ) );
+        assertThat( jdbcTemplate.getLastQuery(), not( containsString( "?" ) ) );
+    }
+
+    @Test
+    public void testInvalidateUnrelatedObject()
+    {
+        // Given
+        context.isDataElementAssigned( 1, 2 );
+
+        // When
+        context.invalidate( new Indicator() );
+
+        // Then
+        context.isDataElementAssigned( 1, 2 );
+        assertThat( jdbcTemplate.queries.size(), is( 2 ) );
+    }
+
+    /**
+     * JDBC template which serves rows of data element and organisation unit
+     * data set assignments, filtered on the key argument if any.
+     */
+    private static class StubJdbcTemplate
+        extends JdbcTemplate
+    {
+        private final List<long[]> dataElementDataSets = new ArrayList<>();
+
+        private final List<long[]> orgUnitDataSets = new ArrayList<>();
+
+        private final List<String> queries = new ArrayList<>();
+
+        @Override
+        public void query( String sql, RowCallbackHandler rch, Object... args )
+        {
+            queries.add( sql );
+
+            List<long[]> rows = sql.contains( "from datasetsource" ) ? orgUnitDataSets :
+                sql.contains( "from datasetelement where" ) ? dataElementDataSets : new ArrayList<>();
+
+            for ( long[] row : rows )
+            {
+                if ( args.length == 0 || args[0].equals( row[0] ) )
+                {
+                    processRow( rch, row );
+                }
+            }
+        }
+
+        String getLastQuery()
+        {
+            return queries.get( queries.size() - 1 );
+        }
+
+        private void processRow( RowCallbackHandler rch, long[] row )
+        {
+            try
+            {
+                ResultSet rs = mock( ResultSet.class );
+                when( rs.getLong( 1 ) ).thenReturn( row[0] );
+                when( rs.getLong( 2 ) ).thenReturn( row[1] );
+
+                rch.processRow( rs );
+            }
+            catch ( SQLException ex )
+            {
+                throw new IllegalStateException( ex );
+            }
+        }
+    }
+}
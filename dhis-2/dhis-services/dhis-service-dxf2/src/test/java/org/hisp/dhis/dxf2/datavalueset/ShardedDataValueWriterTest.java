@@ -0,0 +1,216 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.dxf2.importsummary.ImportCount;
+import org.hisp.dhis.mock.batchhandler.MockBatchHandler;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.junit.Test;
+
+public class ShardedDataValueWriterTest
+{
+    private static final int ORG_UNITS = 10;
+
+    private static final int VALUES_PER_ORG_UNIT = 250;
+
+    @Test
+    public void testWriteShardsOnOrgUnit()
+    {
+        // Given
+        final List<MockBatchHandler<DataValue>> batchHandlers = new ArrayList<>();
+
+        final ShardedDataValueWriter writer = new ShardedDataValueWriter( 4, 100,
+            () -> {
+                MockBatchHandler<DataValue> batchHandler = new MockBatchHandler<>();
+                batchHandlers.add( batchHandler );
+                return batchHandler;
+            },
+            MockBatchHandler<DataValueAudit>::new,
+            ( chunk, dataValueBatchHandler, auditBatchHandler, importCount ) -> chunk.forEach( value -> {
+                dataValueBatchHandler.addObject( value.getDataValue() );
+                importCount.incrementImported();
+            } ) );
+
+        // When
+        for ( int i = 0; i < VALUES_PER_ORG_UNIT; i++ )
+        {
+            for ( int ou = 0; ou < ORG_UNITS; ou++ )
+            {
+                writer.add( new PendingDataValue( getDataValue( ou, i ), null ) );
+            }
+        }
+
+        final ImportCount importCount = writer.finish();
+
+        // Then
+        assertTrue( writer.getFailures().isEmpty() );
+        assertThat( importCount.getImported(), is( ORG_UNITS * VALUES_PER_ORG_UNIT ) );
+        assertThat( batchHandlers.size(), is( 4 ) );
+
+        for ( int ou = 0; ou < ORG_UNITS; ou++ )
+        {
+            final long orgUnitId = ou;
+
+            final List<MockBatchHandler<DataValue>> writers = batchHandlers.stream()
+                .filter( bh -> bh.getInserts().stream().anyMatch( dv -> dv.getSource().getId() == orgUnitId ) )
+                .collect( Collectors.toList() );
+
+            assertThat( writers.size(), is( 1 ) );
+
+            final List<String> values = writers.get( 0 ).getInserts().stream()
+                .filter( dv -> dv.getSource().getId() == orgUnitId )
+                .map( DataValue::getValue )
+                .collect( Collectors.toList() );
+
+            assertThat( values.size(), is( VALUES_PER_ORG_UNIT ) );
+
+            for ( int i = 0; i < VALUES_PER_ORG_UNIT; i++ )
+            {
+                assertThat( values.get( i ), is( String.valueOf( i ) ) );
+            }
+        }
+    }
+
+    @Test
+    public void testWriteReportsFailures()
+    {
+        // Given
+        final ShardedDataValueWriter writer = new ShardedDataValueWriter( 2, 10,
+            MockBatchHandler<DataValue>::new,
+            MockBatchHandler<DataValueAudit>::new,
+            ( chunk, dataValueBatchHandler, auditBatchHandler, importCount ) -> {
+                throw new IllegalStateException( "Write failed" );
+            } );
+
+        // When
+        for ( int i = 0; i < 100; i++ )
+        {
+            writer.add( new PendingDataValue( getDataValue( i % 2, i ), null ) );
+        }
+
+        final ImportCount importCount = writer.finish();
+
+        // Then
+        assertThat( writer.getFailures().size(), is( 2 ) );
+        assertThat( importCount.getImported(), is( 0 ) );
+    }
+
+    @Test
+    public void testWriteReportsErrors()
+    {
+        // Given
+        final ShardedDataValueWriter writer = new ShardedDataValueWriter( 2, 10,
+            MockBatchHandler<DataValue>::new,
+            MockBatchHandler<DataValueAudit>::new,
+            ( chunk, dataValueBatchHandler, auditBatchHandler, importCount ) -> {
+                throw new AssertionError( "Write failed" );
+            } );
+
+        // When
+        for ( int i = 0; i < 100; i++ )
+        {
+            writer.add( new PendingDataValue( getDataValue( i % 2, i ), null ) );
+        }
+
+        final ImportCount importCount = writer.finish();
+
+        // Then
+        assertThat( writer.getFailures().size(), is( 2 ) );
+        assertThat( importCount.getImported(), is( 0 ) );
+    }
+
+    @Test
+    public void testCloseReleasesBatchHandlers()
+        throws InterruptedException
+    {
+        // Given
+        final CountDownLatch flushes = new CountDownLatch( 4 );
+        final List<DataValue> written = Collections.synchronizedList( new ArrayList<>() );
+
+        final ShardedDataValueWriter writer = new ShardedDataValueWriter( 2, 10,
+            () -> new FlushCountingBatchHandler<>( flushes ),
+            () -> new FlushCountingBatchHandler<>( flushes ),
+            ( chunk, dataValueBatchHandler, auditBatchHandler, importCount ) -> chunk.forEach(
+                value -> written.add( value.getDataValue() ) ) );
+
+        // When
+        for ( int i = 0; i < 15; i++ )
+        {
+            writer.add( new PendingDataValue( getDataValue( i % 2, i ), null ) );
+        }
+
+        writer.close();
+
+        // Then
+        assertTrue( flushes.await( 10, TimeUnit.SECONDS ) );
+        assertThat( written.size(), is( 0 ) );
+    }
+
+    private static class FlushCountingBatchHandler<T>
+        extends MockBatchHandler<T>
+    {
+        private final CountDownLatch flushes;
+
+        FlushCountingBatchHandler( CountDownLatch flushes )
+        {
+            this.flushes = flushes;
+        }
+
+        @Override
+        public void flush()
+        {
+            flushes.countDown();
+        }
+    }
+
+    private static DataValue getDataValue( int orgUnitId, int value )
+    {
+        final OrganisationUnit orgUnit = new OrganisationUnit();
+        orgUnit.setId( orgUnitId );
+
+        final DataValue dataValue = new DataValue();
+        dataValue.setSource( orgUnit );
+        dataValue.setValue( String.valueOf( value ) );
+
+        return dataValue;
+    }
+}
@@ -0,0 +1,249 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+import org.hisp.dhis.commons.config.JacksonObjectMapperConfig;
+import org.hisp.dhis.dxf2.datavalue.DataValue;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+public class StreamingJsonDataValueSetTest
+{
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    public void testReadDataValueSet()
+        throws IOException
+    {
+        // Given
+        final String json = "{\"dataSet\":\"pBOMPrpg1QX\",\"period\":\"201901\",\"orgUnit\":\"DiszpKrYNg8\"," +
+            "\"dryRun\":true,\"attributeCategoryOptions\":[\"xYerKDKCefk\"],\"unknown\":{\"a\":[1,2]}," +
+            "\"dataValues\":[" +
+            "{\"dataElement\":\"f7n9E0hX8qk\",\"value\":\"12\"}," +
+            "{\"dataElement\":\"Ix2HsbDMLea\",\"period\":\"201902\",\"value\":\"14\"}]," +
+            "\"completeDate\":\"2019-02-01\",\"attributeOptionCombo\":\"HllvX50cXC0\"}";
+
+        // When
+        final StreamingJsonDataValueSet dataValueSet = new StreamingJsonDataValueSet( getParser( json ) );
+
+        // Then
+        assertFalse( dataValueSet.isSpooled() );
+        assertThat( dataValueSet.getDataSet(), is( "pBOMPrpg1QX" ) );
+        assertThat( dataValueSet.getPeriod(), is( "201901" ) );
+        assertThat( dataValueSet.getOrgUnit(), is( "DiszpKrYNg8" ) );
+        assertThat( dataValueSet.getDryRun(), is( true ) );
+        assertThat( dataValueSet.getAttributeCategoryOptions().get( 0 ), is( "xYerKDKCefk" ) );
+        assertThat( dataValueSet.getCompleteDate(), is( "2019-02-01" ) );
+        assertThat( dataValueSet.getAttributeOptionCombo(), is( "HllvX50cXC0" ) );
+
+        assertTrue( dataValueSet.hasNextDataValue() );
+        DataValue dataValue = dataValueSet.getNextDataValue();
+        assertThat( dataValue.getDataElement(), is( "f7n9E0hX8qk" ) );
+        assertThat( dataValue.getPeriod(), is( nullValue() ) );
+        assertThat( dataValue.getValue(), is( "12" ) );
+
+        assertTrue( dataValueSet.hasNextDataValue() );
+        dataValue = dataValueSet.getNextDataValue();
+        assertThat( dataValue.getDataElement(), is( "Ix2HsbDMLea" ) );
+        assertThat( dataValue.getPeriod(), is( "201902" ) );
+
+        assertFalse( dataValueSet.hasNextDataValue() );
+
+        dataValueSet.close();
+    }
+
+    @Test
+    public void testReadRoundTrippedDataValueSet()
+        throws IOException
+    {
+        // Given
+        final DataValue dataValue = new DataValue();
+        dataValue.setDataElement( "f7n9E0hX8qk" );
+        dataValue.setValue( "12" );
+
+        final DataValueSet original = new DataValueSet();
+        original.setDataSet( "pBOMPrpg1QX" );
+        original.setAttributeCategoryOptions( Lists.newArrayList( "xYerKDKCefk", "yMj2MnmNI8L" ) );
+        original.getDataValues().add( dataValue );
+
+        final String json = JacksonObjectMapperConfig.staticJsonMapper().writeValueAsString( original );
+
+        // When
+        final DataValueSet dataValueSet = new StreamingJsonDataValueSet( getParser( json ) );
+
+        // Then
+        assertThat( dataValueSet.getDataSet(), is( "pBOMPrpg1QX" ) );
+        assertThat( dataValueSet.getAttributeCategoryOptions(), is( Lists.newArrayList( "xYerKDKCefk", "yMj2MnmNI8L" ) ) );
+
+        assertTrue( dataValueSet.hasNextDataValue() );
+        assertThat( dataValueSet.getNextDataValue().getValue(), is( "12" ) );
+        assertFalse( dataValueSet.hasNextDataValue() );
+
+        dataValueSet.close();
+    }
+
+    @Test
+    public void testReadDataValueSetWithoutDataValues()
+        throws IOException
+    {
+        // Given
+        final String json = "{\"dataSet\":\"pBOMPrpg1QX\"}";
+
+        // When
+        final DataValueSet dataValueSet = new StreamingJsonDataValueSet( getParser( json ) );
+
+        // Then
+        assertThat( dataValueSet.getDataSet(), is( "pBOMPrpg1QX" ) );
+        assertFalse( dataValueSet.hasNextDataValue() );
+    }
+
+    @Test
+    public void testReadLargeDataValueSet()
+        throws IOException
+    {
+        // Given
+        final int count = 500_000;
+
+        // When
+        final DataValueSet dataValueSet = new StreamingJsonDataValueSet(
+            jsonMapper.getFactory().createParser( new GeneratedDataValueSetInputStream( count, "" ) ) );
+
+        int read = 0;
+
+        while ( dataValueSet.hasNextDataValue() )
+        {
+            dataValueSet.getNextDataValue();
+            read++;
+        }
+
+        dataValueSet.close();
+
+        // Then
+        assertThat( read, is( count ) );
+    }
+
+    @Test
+    public void testReadLargeDataValueSetWithTrailingProperties()
+        throws IOException
+    {
+        // Given
+        final int count = StreamingJsonDataValueSet.MAX_BUFFERED_DATA_VALUES + 1;
+
+        // When
+        final StreamingJsonDataValueSet dataValueSet = new StreamingJsonDataValueSet( jsonMapper.getFactory()
+            .createParser( new GeneratedDataValueSetInputStream( count, ",\"completeDate\":\"2019-02-01\"" ) ) );
+
+        // Then
+        assertTrue( dataValueSet.isSpooled() );
+        assertThat( dataValueSet.getDataSet(), is( "pBOMPrpg1QX" ) );
+        assertThat( dataValueSet.getCompleteDate(), is( "2019-02-01" ) );
+
+        int read = 0;
+
+        while ( dataValueSet.hasNextDataValue() )
+        {
+            assertThat( dataValueSet.getNextDataValue().getValue(), is( String.valueOf( read ) ) );
+            read++;
+        }
+
+        assertThat( read, is( count ) );
+        assertFalse( dataValueSet.isSpooled() );
+
+        dataValueSet.close();
+    }
+
+    private JsonParser getParser( String json )
+        throws IOException
+    {
+        return jsonMapper.getFactory().createParser( json.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Input stream which generates a data value set with the given number of
+     * data values on the fly, so that the payload is never held in memory.
+     * The given trailer is appended after the data values.
+     */
+    private static class GeneratedDataValueSetInputStream
+        extends SequenceInputStream
+    {
+        GeneratedDataValueSetInputStream( final int count, final String trailer )
+        {
+            super( new Enumeration<InputStream>()
+            {
+                private int index = -1;
+
+                @Override
+                public boolean hasMoreElements()
+                {
+                    return index <= count;
+                }
+
+                @Override
+                public InputStream nextElement()
+                {
+                    String chunk;
+
+                    if ( index == -1 )
+                    {
+                        chunk = "{\"dataSet\":\"pBOMPrpg1QX\",\"dataValues\":[";
+                    }
+                    else if ( index == count )
+                    {
+                        chunk = "]" + trailer + "}";
+                    }
+                    else
+                    {
+                        chunk = ( index > 0 ? "," : "" ) + "{\"dataElement\":\"f7n9E0hX8qk\",\"period\":\"201901\"," +
+                            "\"orgUnit\":\"DiszpKrYNg8\",\"value\":\"" + index + "\"}";
+                    }
+
+                    index++;
+
+                    return new ByteArrayInputStream( chunk.getBytes( StandardCharsets.UTF_8 ) );
+                }
+            } );
+        }
+    }
+}
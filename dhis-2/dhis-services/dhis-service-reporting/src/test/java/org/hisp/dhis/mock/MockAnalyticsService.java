@@ -96,6 +96,12 @@ public class MockAnalyticsService
         throw new NotImplementedException( "" );
     }
 
+    @Override
+    public void refreshAggregatedDataValues( DataQueryParams params )
+    {
+        throw new NotImplementedException( "" );
+    }
+
     @Override
     public Grid getRawDataValues( DataQueryParams params )
     {
@@ -41,6 +41,7 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.LocaleUtils;
 import org.hisp.dhis.analytics.AnalyticsCacheTtlMode;
 import org.hisp.dhis.analytics.AnalyticsFinancialYearStartKey;
+import org.hisp.dhis.analytics.AnalyticsTableIndexStrategy;
 import org.hisp.dhis.common.DigitGroupSeparator;
 import org.hisp.dhis.common.DisplayProperty;
 import org.hisp.dhis.common.cache.CacheStrategy;
@@ -113,6 +114,7 @@ public enum SettingKey
     DATABASE_SERVER_CPUS( "keyDatabaseServerCpus", 0, Integer.class ),
     LAST_SUCCESSFUL_ANALYTICS_TABLES_RUNTIME( "keyLastSuccessfulAnalyticsTablesRuntime" ),
     LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_RUNTIME( "keyLastSuccessfulLatestAnalyticsPartitionRuntime" ),
+    LAST_SUCCESSFUL_INCREMENTAL_ANALYTICS_TABLES_RUNTIME( "keyLastSuccessfulIncrementalAnalyticsTablesRuntime" ),
     LAST_MONITORING_RUN( "keyLastMonitoringRun", Date.class ),
     LAST_SUCCESSFUL_DATA_VALUE_SYNC( "keyLastSuccessfulDataSynch", new Date( 0 ), Date.class ),
     LAST_SUCCESSFUL_EVENT_DATA_SYNC( "keyLastSuccessfulEventsDataSynch", new Date( 0 ), Date.class ),
@@ -120,6 +122,7 @@ public enum SettingKey
     SKIP_SYNCHRONIZATION_FOR_DATA_CHANGED_BEFORE( "syncSkipSyncForDataChangedBefore", new Date( 0 ), Date.class ),
     LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE( "keyLastSuccessfulAnalyticsTablesUpdate", Date.class ),
     LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_UPDATE( "keyLastSuccessfulLatestAnalyticsPartitionUpdate", Date.class ),
+    LAST_SUCCESSFUL_INCREMENTAL_ANALYTICS_TABLES_UPDATE( "keyLastSuccessfulIncrementalAnalyticsTablesUpdate", Date.class ),
     LAST_SUCCESSFUL_RESOURCE_TABLES_UPDATE( "keyLastSuccessfulResourceTablesUpdate", Date.class ),
     LAST_SUCCESSFUL_SYSTEM_MONITORING_PUSH( "keyLastSuccessfulSystemMonitoringPush", Date.class ),
     LAST_SUCCESSFUL_MONITORING( "keyLastSuccessfulMonitoring", Date.class ),
@@ -181,7 +184,85 @@ public enum SettingKey
     /**
      * The caching strategy enabled
      */
-    ANALYTICS_CACHE_TTL_MODE( "keyAnalyticsCacheTtlMode", AnalyticsCacheTtlMode.FIXED, AnalyticsCacheTtlMode.class );
+    ANALYTICS_CACHE_TTL_MODE( "keyAnalyticsCacheTtlMode", AnalyticsCacheTtlMode.FIXED, AnalyticsCacheTtlMode.class ),
+
+    /**
+     * The number of most frequently requested analytics queries to refresh in
+     * the analytics cache after analytics table generation. 0 disables it.
+     */
+    ANALYTICS_CACHE_WARM_UP_QUERY_LIMIT( "keyAnalyticsCacheWarmUpQueryLimit", 0, Integer.class ),
+
+    /**
+     * Whether to refresh the analytics cache for the favorites on dashboards
+     * after analytics table generation.
+     */
+    ANALYTICS_CACHE_WARM_UP_DASHBOARD_ITEMS( "keyAnalyticsCacheWarmUpDashboardItems", Boolean.FALSE, Boolean.class ),
+
+    /**
+     * The max number of concurrent queries during analytics cache warm-up.
+     */
+    ANALYTICS_CACHE_WARM_UP_CONCURRENCY( "keyAnalyticsCacheWarmUpConcurrency", 2, Integer.class ),
+
+    /**
+     * The max time in seconds to spend on analytics cache warm-up.
+     */
+    ANALYTICS_CACHE_WARM_UP_TIME_BUDGET( "keyAnalyticsCacheWarmUpTimeBudget", 600, Integer.class ),
+
+    /**
+     * The statement timeout in seconds for analytics queries. 0 means no
+     * timeout.
+     */
+    ANALYTICS_QUERY_TIMEOUT( "keyAnalyticsQueryTimeout", 0, Integer.class ),
+
+    /**
+     * The max total cost of concurrently running analytics queries, where the
+     * cost of a query is the number of table partitions it reads or the number
+     * of rows it is estimated to read in millions, whichever is larger. 0
+     * disables admission control.
+     */
+    ANALYTICS_MAX_CONCURRENT_QUERY_COST( "keyAnalyticsMaxConcurrentQueryCost", 0, Integer.class ),
+
+    /**
+     * The max number of concurrently running analytics queries per user when
+     * admission control is enabled. 0 means no limit.
+     */
+    ANALYTICS_MAX_CONCURRENT_USER_QUERIES( "keyAnalyticsMaxConcurrentUserQueries", 0, Integer.class ),
+
+    /**
+     * The max number of analytics queries waiting for admission. Queries
+     * beyond it are rejected.
+     */
+    ANALYTICS_QUERY_QUEUE_SIZE( "keyAnalyticsQueryQueueSize", 100, Integer.class ),
+
+    /**
+     * The max number of rows an analytics query is estimated by the query
+     * planner to read. Queries above it are rejected. 0 disables the check.
+     */
+    ANALYTICS_MAX_QUERY_ROW_ESTIMATE( "keyAnalyticsMaxQueryRowEstimate", 0, Integer.class ),
+
+    /**
+     * The deepest organisation unit level of the pre-aggregated rollup analytics
+     * tables. Rollup tables are built on full analytics table updates. 0 disables
+     * rollup tables.
+     */
+    ANALYTICS_ROLLUP_ORG_UNIT_LEVEL( "keyAnalyticsRollupOrgUnitLevel", 0, Integer.class ),
+
+    /**
+     * The number of chunks each analytics table partition is split into during
+     * population. Chunks are populated concurrently. 1 disables chunking.
+     */
+    ANALYTICS_TABLE_POPULATE_CHUNKS( "keyAnalyticsTablePopulateChunks", 1, Integer.class ),
+
+    /**
+     * Whether analytics tables are created as unlogged tables during the analytics
+     * table update, and made logged before being swapped in.
+     */
+    ANALYTICS_TABLE_UNLOGGED( "keyAnalyticsTableUnlogged", Boolean.FALSE, Boolean.class ),
+
+    /**
+     * The strategy for creating indexes on analytics tables.
+     */
+    ANALYTICS_TABLE_INDEX_STRATEGY( "keyAnalyticsTableIndexStrategy", AnalyticsTableIndexStrategy.ALL, AnalyticsTableIndexStrategy.class );
 
     private final String name;
 
@@ -29,20 +29,32 @@ package org.hisp.dhis.tracker;
  */
 
 import com.google.common.base.Enums;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
 import org.hisp.dhis.common.CodeGenerator;
 import org.hisp.dhis.common.IdScheme;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.commons.timer.SystemTimer;
 import org.hisp.dhis.commons.timer.Timer;
+import org.hisp.dhis.dbms.DbmsUtils;
 import org.hisp.dhis.system.notification.Notifier;
 import org.hisp.dhis.tracker.bundle.TrackerBundle;
 import org.hisp.dhis.tracker.bundle.TrackerBundleMode;
 import org.hisp.dhis.tracker.bundle.TrackerBundleParams;
 import org.hisp.dhis.tracker.bundle.TrackerBundleService;
+import org.hisp.dhis.tracker.bundle.TrackerBundleSplitter;
+import org.hisp.dhis.tracker.domain.Enrollment;
+import org.hisp.dhis.tracker.domain.Event;
+import org.hisp.dhis.tracker.domain.Relationship;
+import org.hisp.dhis.tracker.domain.TrackedEntity;
 import org.hisp.dhis.tracker.report.TrackerBundleReport;
+import org.hisp.dhis.tracker.report.TrackerErrorReport;
 import org.hisp.dhis.tracker.report.TrackerImportReport;
+import org.hisp.dhis.tracker.report.TrackerObjectReport;
 import org.hisp.dhis.tracker.report.TrackerStatus;
+import org.hisp.dhis.tracker.report.TrackerTypeReport;
 import org.hisp.dhis.tracker.report.TrackerValidationReport;
 import org.hisp.dhis.tracker.validation.TrackerValidationService;
 import org.hisp.dhis.user.CurrentUserService;
@@ -51,8 +63,18 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
@@ -62,6 +84,17 @@ import java.util.Map;
 public class DefaultTrackerImportService
     implements TrackerImportService
 {
+    /**
+     * Max number of objects per bundle when a payload is split into
+     * independent bundles.
+     */
+    private static final int MAX_BUNDLE_SIZE = 5000;
+
+    /**
+     * Max number of bundles imported concurrently, across all imports.
+     */
+    private static final int MAX_CONCURRENT_BUNDLES = Runtime.getRuntime().availableProcessors();
+
     private final TrackerBundleService trackerBundleService;
 
     private final TrackerValidationService trackerValidationService;
@@ -72,18 +105,36 @@ public class DefaultTrackerImportService
 
     private final Notifier notifier;
 
+    private final SessionFactory sessionFactory;
+
+    /**
+     * Executor for importing independent bundles, shared by all imports.
+     */
+    private final ThreadPoolExecutor executor;
+
     public DefaultTrackerImportService(
         TrackerBundleService trackerBundleService,
         TrackerValidationService trackerValidationService,
         CurrentUserService currentUserService,
         IdentifiableObjectManager manager,
-        Notifier notifier )
+        Notifier notifier,
+        SessionFactory sessionFactory )
     {
         this.trackerBundleService = trackerBundleService;
         this.trackerValidationService = trackerValidationService;
         this.currentUserService = currentUserService;
         this.manager = manager;
         this.notifier = notifier;
+        this.sessionFactory = sessionFactory;
+        this.executor = new ThreadPoolExecutor( MAX_CONCURRENT_BUNDLES, MAX_CONCURRENT_BUNDLES, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat( "tracker-import-%d" ).setDaemon( true ).build() );
+        this.executor.allowCoreThreadTimeOut( true );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
     }
 
     @Override
@@ -104,6 +155,36 @@ public class DefaultTrackerImportService
         TrackerImportReport importReport = new TrackerImportReport();
 
         TrackerBundleParams bundleParams = params.toTrackerBundleParams();
+
+        List<TrackerBundleParams> splitBundleParams = AtomicMode.NONE == params.getAtomicMode() ?
+            TrackerBundleSplitter.split( bundleParams, MAX_BUNDLE_SIZE ) : Collections.singletonList( bundleParams );
+
+        if ( splitBundleParams.size() > 1 )
+        {
+            importConcurrently( params, splitBundleParams, importReport );
+        }
+        else
+        {
+            importBundles( params, bundleParams, importReport );
+        }
+
+        message = "(" + params.getUsername() + ") Import:Done took " + timer.toString();
+        log.info( message );
+
+        TrackerBundleReportModeUtils.filter( importReport, params.getReportMode() );
+
+        if ( params.hasJobConfiguration() )
+        {
+            notifier.update( params.getJobConfiguration(), message, true );
+            notifier.addJobSummary( params.getJobConfiguration(), importReport, TrackerImportReport.class );
+        }
+
+        return importReport;
+    }
+
+    private void importBundles( TrackerImportParams params, TrackerBundleParams bundleParams,
+        TrackerImportReport importReport )
+    {
         List<TrackerBundle> trackerBundles = trackerBundleService.create( bundleParams );
 
         Timer validationTimer = new SystemTimer().start();
@@ -111,7 +192,7 @@ public class DefaultTrackerImportService
         TrackerValidationReport validationReport = new TrackerValidationReport();
         trackerBundles.forEach( tb -> validationReport.add( trackerValidationService.validate( tb ) ) );
 
-        message = "(" + params.getUsername() + ") Import:Validation took " + validationTimer.toString();
+        String message = "(" + params.getUsername() + ") Import:Validation took " + validationTimer.toString();
         log.info( message );
 
         if ( params.hasJobConfiguration() )
@@ -145,19 +226,140 @@ public class DefaultTrackerImportService
         {
             importReport.setStatus( TrackerStatus.ERROR );
         }
+    }
 
-        message = "(" + params.getUsername() + ") Import:Done took " + timer.toString();
-        log.info( message );
+    /**
+     * Imports independent bundles concurrently, each in its own transaction.
+     * Only used for non-atomic imports, as a failing bundle does not roll back
+     * the other bundles. The bundle reports are merged into the given import
+     * report in bundle order. The objects of a failed bundle are reported with
+     * an error each.
+     */
+    private void importConcurrently( TrackerImportParams params, List<TrackerBundleParams> bundleParams,
+        TrackerImportReport importReport )
+    {
+        Timer commitTimer = new SystemTimer().start();
 
-        TrackerBundleReportModeUtils.filter( importReport, params.getReportMode() );
+        int threads = Math.min( MAX_CONCURRENT_BUNDLES, bundleParams.size() );
+
+        List<Future<List<TrackerBundleReport>>> futures = new ArrayList<>();
+
+        try
+        {
+            bundleParams.forEach( bp -> futures.add( executor.submit( () -> importBundle( bp ) ) ) );
+
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                try
+                {
+                    importReport.getBundleReports().addAll( futures.get( i ).get() );
+                }
+                catch ( ExecutionException ex )
+                {
+                    log.error( "(" + params.getUsername() + ") Import of tracker bundle failed", ex.getCause() );
+                    importReport.getBundleReports().add( getFailedBundleReport( bundleParams.get( i ), ex.getCause() ) );
+                    importReport.setStatus( TrackerStatus.ERROR );
+                }
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            futures.forEach( future -> future.cancel( true ) );
+            importReport.setStatus( TrackerStatus.ERROR );
+        }
+
+        if ( TrackerStatus.OK == importReport.getStatus() && !importReport.isEmpty() )
+        {
+            importReport.setStatus( TrackerStatus.WARNING );
+        }
+
+        String message = "(" + params.getUsername() + ") Import:Validation and commit of " + bundleParams.size() +
+            " bundles on " + threads + " threads took " + commitTimer.toString();
+        log.info( message );
 
         if ( params.hasJobConfiguration() )
         {
-            notifier.update( params.getJobConfiguration(), message, true );
-            notifier.addJobSummary( params.getJobConfiguration(), importReport, TrackerImportReport.class );
+            notifier.update( params.getJobConfiguration(), message );
         }
+    }
 
-        return importReport;
+    /**
+     * Preheats, validates and commits a single bundle on the current thread,
+     * using a session of its own.
+     */
+    private List<TrackerBundleReport> importBundle( TrackerBundleParams bundleParams )
+    {
+        DbmsUtils.bindSessionToThread( sessionFactory );
+
+        try
+        {
+            List<TrackerBundleReport> bundleReports = new ArrayList<>();
+
+            for ( TrackerBundle trackerBundle : trackerBundleService.create( bundleParams ) )
+            {
+                trackerValidationService.validate( trackerBundle );
+                bundleReports.add( trackerBundleService.commit( trackerBundle ) );
+            }
+
+            return bundleReports;
+        }
+        finally
+        {
+            DbmsUtils.unbindSessionFromThread( sessionFactory );
+        }
+    }
+
+    /**
+     * Returns a report for a bundle which failed to import, with an error for
+     * each object of the bundle.
+     */
+    private TrackerBundleReport getFailedBundleReport( TrackerBundleParams bundleParams, Throwable cause )
+    {
+        String reason = cause != null && cause.getMessage() != null ? cause.getMessage() : String.valueOf( cause );
+
+        TrackerBundleReport bundleReport = TrackerBundleReport.builder()
+            .bundleParams( bundleParams )
+            .status( TrackerStatus.ERROR )
+            .build();
+
+        addFailedTypeReport( bundleReport, TrackerType.TRACKED_ENTITY, TrackedEntity.class,
+            bundleParams.getTrackedEntities(), TrackedEntity::getTrackedEntity, reason );
+        addFailedTypeReport( bundleReport, TrackerType.ENROLLMENT, Enrollment.class,
+            bundleParams.getEnrollments(), Enrollment::getEnrollment, reason );
+        addFailedTypeReport( bundleReport, TrackerType.EVENT, Event.class,
+            bundleParams.getEvents(), Event::getEvent, reason );
+        addFailedTypeReport( bundleReport, TrackerType.RELATIONSHIP, Relationship.class,
+            bundleParams.getRelationships(), Relationship::getRelationship, reason );
+
+        return bundleReport;
+    }
+
+    private <T> void addFailedTypeReport( TrackerBundleReport bundleReport, TrackerType trackerType, Class<T> klass,
+        List<T> objects, Function<T, String> uidGetter, String reason )
+    {
+        if ( objects.isEmpty() )
+        {
+            return;
+        }
+
+        TrackerTypeReport typeReport = new TrackerTypeReport( trackerType );
+
+        for ( int idx = 0; idx < objects.size(); idx++ )
+        {
+            String uid = uidGetter.apply( objects.get( idx ) );
+
+            TrackerErrorReport errorReport = new TrackerErrorReport( klass, TrackerErrorCode.E9999, reason );
+            errorReport.setMainId( uid );
+
+            TrackerObjectReport objectReport = new TrackerObjectReport( trackerType, uid, idx );
+            objectReport.getErrorReportsByCode().put( TrackerErrorCode.E9999, Lists.newArrayList( errorReport ) );
+
+            typeReport.addObjectReport( objectReport );
+            typeReport.getStats().incIgnored();
+        }
+
+        bundleReport.getTypeReportMap().put( trackerType, typeReport );
     }
 
     @Override
@@ -42,4 +42,12 @@ public enum FlushMode
      * Let the importer decide the flushing.
      */
     AUTO,
+
+    /**
+     * Write new tracked entities, attribute values, enrollments and events
+     * with JDBC batch inserts instead of through the Hibernate session. Only
+     * applies to bundles with the CREATE import strategy, other bundles are
+     * flushed as {@link #AUTO}.
+     */
+    BULK,
 }
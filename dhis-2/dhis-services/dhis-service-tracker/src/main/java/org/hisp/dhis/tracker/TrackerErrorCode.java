@@ -33,7 +33,9 @@ package org.hisp.dhis.tracker;
  */
 public enum TrackerErrorCode
 {
-    NONE( "No error message given." );
+    NONE( "No error message given." ),
+
+    E9999( "Object was not imported, import of its bundle failed: `{0}`" );
 
     private String message;
 
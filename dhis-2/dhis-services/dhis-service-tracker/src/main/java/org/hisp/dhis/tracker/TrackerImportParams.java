@@ -113,6 +113,14 @@ public class TrackerImportParams
     @JsonProperty
     private String filename;
 
+    /**
+     * Path of the staged payload to read the tracker objects from, used by
+     * asynchronous imports so that the objects are not part of the queued
+     * message.
+     */
+    @JsonProperty
+    private String payload;
+
     /**
      * Give full report, or only include errors.
      */
@@ -171,6 +179,11 @@ public class TrackerImportParams
         return User.username( user );
     }
 
+    public boolean hasPayload()
+    {
+        return payload != null;
+    }
+
     public boolean hasJobConfiguration()
     {
         return jobConfiguration != null;
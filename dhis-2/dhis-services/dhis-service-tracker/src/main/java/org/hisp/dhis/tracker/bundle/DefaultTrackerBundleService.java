@@ -31,6 +31,7 @@ package org.hisp.dhis.tracker.bundle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -50,6 +51,7 @@ import org.hisp.dhis.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
 import org.hisp.dhis.tracker.FlushMode;
 import org.hisp.dhis.tracker.TrackerIdScheme;
+import org.hisp.dhis.tracker.TrackerImportStrategy;
 import org.hisp.dhis.tracker.TrackerProgramRuleService;
 import org.hisp.dhis.tracker.TrackerType;
 import org.hisp.dhis.tracker.converter.TrackerConverterService;
@@ -104,6 +106,8 @@ public class DefaultTrackerBundleService
 
     private final ReservedValueService reservedValueService;
 
+    private final TrackerBulkPersister bulkPersister;
+
     private List<TrackerBundleHook> bundleHooks = new ArrayList<>();
 
     private List<SideEffectHandlerService> sideEffectHandlers = new ArrayList<>();
@@ -131,7 +135,8 @@ public class DefaultTrackerBundleService
         HibernateCacheManager cacheManager,
         DbmsManager dbmsManager,
         TrackerProgramRuleService trackerProgramRuleService,
-        ReservedValueService reservedValueService )
+        ReservedValueService reservedValueService,
+        TrackerBulkPersister bulkPersister )
 
     {
         this.trackerPreheatService = trackerPreheatService;
@@ -146,6 +151,7 @@ public class DefaultTrackerBundleService
         this.dbmsManager = dbmsManager;
         this.trackerProgramRuleService = trackerProgramRuleService;
         this.reservedValueService = reservedValueService;
+        this.bulkPersister = bulkPersister;
     }
 
     @Override
@@ -212,6 +218,10 @@ public class DefaultTrackerBundleService
 
         Date now = new Date();
 
+        boolean bulk = isBulk( bundle );
+        List<TrackedEntityInstance> bulkTrackedEntityInstances = new ArrayList<>();
+        Map<String, TrackedEntityAttributeValue> bulkAttributeValues = bulk ? new LinkedHashMap<>() : null;
+
         for ( int idx = 0; idx < trackedEntities.size(); idx++ )
         {
             TrackedEntity trackedEntity = trackedEntities.get( idx );
@@ -232,12 +242,20 @@ public class DefaultTrackerBundleService
             trackedEntityInstance.setLastUpdatedAtClient( now );
             trackedEntityInstance.setLastUpdatedBy( bundle.getUser() );
 
-            session.persist( trackedEntityInstance );
+            if ( bulk )
+            {
+                bulkTrackedEntityInstances.add( trackedEntityInstance );
+            }
+            else
+            {
+                session.persist( trackedEntityInstance );
+            }
+
             bundle.getPreheat().putTrackedEntities( bundle.getIdentifier(),
                 Collections.singletonList( trackedEntityInstance ) );
 
             handleTrackedEntityAttributeValues( session, bundle.getPreheat(), trackedEntity.getAttributes(),
-                trackedEntityInstance );
+                trackedEntityInstance, bulkAttributeValues );
 
             if ( FlushMode.OBJECT == bundle.getFlushMode() )
             {
@@ -245,6 +263,12 @@ public class DefaultTrackerBundleService
             }
         }
 
+        if ( bulk )
+        {
+            bulkPersister.persistTrackedEntityInstances( bulkTrackedEntityInstances );
+            persistAttributeValues( session, bulkAttributeValues );
+        }
+
         session.flush();
         trackedEntities
             .forEach( o -> bundleHooks.forEach( hook -> hook.postCreate( TrackedEntity.class, o, bundle ) ) );
@@ -262,6 +286,11 @@ public class DefaultTrackerBundleService
 
         Date now = new Date();
 
+        boolean bulk = isBulk( bundle );
+        List<ProgramInstance> bulkProgramInstances = new ArrayList<>();
+        Map<String, TrackedEntityAttributeValue> bulkAttributeValues = bulk ? new LinkedHashMap<>() : null;
+        List<TrackerSideEffectDataBundle> bulkSideEffects = new ArrayList<>();
+
         for ( int idx = 0; idx < enrollments.size(); idx++ )
         {
             Enrollment enrollment = enrollments.get( idx );
@@ -281,11 +310,19 @@ public class DefaultTrackerBundleService
             programInstance.setLastUpdatedAtClient( now );
             programInstance.setLastUpdatedBy( bundle.getUser() );
 
-            session.persist( programInstance );
+            if ( bulk )
+            {
+                bulkProgramInstances.add( programInstance );
+            }
+            else
+            {
+                session.persist( programInstance );
+            }
+
             bundle.getPreheat().putEnrollments( bundle.getIdentifier(), Collections.singletonList( programInstance ) );
 
             handleTrackedEntityAttributeValues( session, bundle.getPreheat(), enrollment.getAttributes(),
-                programInstance.getEntityInstance() );
+                programInstance.getEntityInstance(), bulkAttributeValues );
 
             if ( FlushMode.OBJECT == bundle.getFlushMode() )
             {
@@ -301,7 +338,14 @@ public class DefaultTrackerBundleService
                 .accessedBy( bundle.getUsername() )
                 .build();
 
-            sideEffectHandlers.forEach( handler -> handler.handleSideEffect( sideEffectDataBundle ) );
+            handleSideEffect( sideEffectDataBundle, bulk, bulkSideEffects );
+        }
+
+        if ( bulk )
+        {
+            bulkPersister.persistProgramInstances( bulkProgramInstances );
+            persistAttributeValues( session, bulkAttributeValues );
+            bulkSideEffects.forEach( this::handleSideEffect );
         }
 
         session.flush();
@@ -318,6 +362,10 @@ public class DefaultTrackerBundleService
         events.forEach( o -> bundleHooks.forEach( hook -> hook.preCreate( Event.class, o, bundle ) ) );
         session.flush();
 
+        boolean bulk = isBulk( bundle );
+        List<ProgramStageInstance> bulkProgramStageInstances = new ArrayList<>();
+        List<TrackerSideEffectDataBundle> bulkSideEffects = new ArrayList<>();
+
         for ( int idx = 0; idx < events.size(); idx++ )
         {
             Event event = events.get( idx );
@@ -339,7 +387,15 @@ public class DefaultTrackerBundleService
             programStageInstance.setLastUpdatedAtClient( now );
             programStageInstance.setLastUpdatedBy( bundle.getUser() );
 
-            session.persist( programStageInstance );
+            if ( bulk )
+            {
+                bulkProgramStageInstances.add( programStageInstance );
+            }
+            else
+            {
+                session.persist( programStageInstance );
+            }
+
             bundle.getPreheat().putEvents( bundle.getIdentifier(), Collections.singletonList( programStageInstance ) );
 
             typeReport.getStats().incCreated();
@@ -358,7 +414,13 @@ public class DefaultTrackerBundleService
                 .accessedBy( bundle.getUsername() )
                 .build();
 
-            sideEffectHandlers.forEach( handler -> handler.handleSideEffect( sideEffectDataBundle ) );
+            handleSideEffect( sideEffectDataBundle, bulk, bulkSideEffects );
+        }
+
+        if ( bulk )
+        {
+            bulkPersister.persistProgramStageInstances( bulkProgramStageInstances );
+            bulkSideEffects.forEach( this::handleSideEffect );
         }
 
         session.flush();
@@ -412,8 +474,15 @@ public class DefaultTrackerBundleService
     // Utility Methods
     // -----------------------------------------------------------------------------------
 
+    /**
+     * Handles the attribute values of the given tracked entity instance. When
+     * the bulk attribute value map is given, new attribute values are added to
+     * the map instead of being persisted, keyed on tracked entity instance and
+     * attribute.
+     */
     private void handleTrackedEntityAttributeValues( Session session, TrackerPreheat preheat,
-        List<Attribute> attributes, TrackedEntityInstance trackedEntityInstance )
+        List<Attribute> attributes, TrackedEntityInstance trackedEntityInstance,
+        Map<String, TrackedEntityAttributeValue> bulkAttributeValues )
     {
         List<TrackedEntityAttributeValue> attributeValues = new ArrayList<>();
         List<String> attributeValuesForDeletion = new ArrayList<>();
@@ -486,7 +555,15 @@ public class DefaultTrackerBundleService
             else
             {
                 attributeValue.setEntityInstance( trackedEntityInstance );
-                session.persist( attributeValue );
+
+                if ( bulkAttributeValues != null && !attributeValueMap.containsKey( attributeValue.getAttribute().getUid() ) )
+                {
+                    bulkAttributeValues.put( trackedEntityInstance.getUid() + attributeValue.getAttribute().getUid(), attributeValue );
+                }
+                else
+                {
+                    session.persist( attributeValue );
+                }
             }
 
             if ( attributeValue.getAttribute().isGenerated() && attributeValue.getAttribute().getTextPattern() != null )
@@ -500,6 +577,59 @@ public class DefaultTrackerBundleService
         unassignedFileResources.forEach( fr -> unassignFileResource( session, preheat, fr ) );
     }
 
+    /**
+     * Persists attribute values which were collected in bulk mode, after their
+     * tracked entity instances have been inserted. Values of confidential
+     * attributes are encrypted by Hibernate and are persisted through the
+     * session.
+     */
+    private void persistAttributeValues( Session session, Map<String, TrackedEntityAttributeValue> attributeValues )
+    {
+        List<TrackedEntityAttributeValue> bulkAttributeValues = new ArrayList<>();
+
+        for ( TrackedEntityAttributeValue attributeValue : attributeValues.values() )
+        {
+            if ( attributeValue.getAttribute().isConfidentialBool() )
+            {
+                session.persist( attributeValue );
+            }
+            else
+            {
+                bulkAttributeValues.add( attributeValue );
+            }
+        }
+
+        bulkPersister.persistTrackedEntityAttributeValues( bulkAttributeValues );
+    }
+
+    private void handleSideEffect( TrackerSideEffectDataBundle sideEffectDataBundle, boolean bulk,
+        List<TrackerSideEffectDataBundle> bulkSideEffects )
+    {
+        if ( bulk )
+        {
+            bulkSideEffects.add( sideEffectDataBundle );
+        }
+        else
+        {
+            handleSideEffect( sideEffectDataBundle );
+        }
+    }
+
+    private void handleSideEffect( TrackerSideEffectDataBundle sideEffectDataBundle )
+    {
+        sideEffectHandlers.forEach( handler -> handler.handleSideEffect( sideEffectDataBundle ) );
+    }
+
+    /**
+     * Indicates whether objects of the given bundle should be written through
+     * the {@link TrackerBulkPersister}. Only bundles which exclusively create
+     * objects qualify, as existing objects are managed by the session.
+     */
+    private boolean isBulk( TrackerBundle bundle )
+    {
+        return FlushMode.BULK == bundle.getFlushMode() && TrackerImportStrategy.CREATE == bundle.getImportStrategy();
+    }
+
     private void assignFileResource( Session session, TrackerPreheat preheat, String fr )
     {
         FileResource fileResource = preheat.get( TrackerIdScheme.UID, FileResource.class, fr );
@@ -0,0 +1,353 @@
+package org.hisp.dhis.tracker.bundle;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.hisp.dhis.artemis.audit.Audit;
+import org.hisp.dhis.artemis.audit.AuditManager;
+import org.hisp.dhis.artemis.audit.AuditableEntity;
+import org.hisp.dhis.artemis.config.UsernameSupplier;
+import org.hisp.dhis.audit.AuditType;
+import org.hisp.dhis.audit.Auditable;
+import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.hibernate.jsonb.type.JsonEventDataValueSetBinaryType;
+import org.hisp.dhis.program.ProgramInstance;
+import org.hisp.dhis.program.ProgramStageInstance;
+import org.hisp.dhis.system.util.AnnotationUtils;
+import org.hisp.dhis.system.util.GeoUtils;
+import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link TrackerBulkPersister} which writes objects through JDBC batch
+ * inserts. The inserts take part in the current transaction.
+ * <p>
+ * The inserts bypass the Hibernate event listeners, so create audits are
+ * sent explicitly once the current transaction commits, as the listeners do
+ * for objects saved through the session.
+ */
+@Slf4j
+@Component
+public class JdbcTrackerBulkPersister
+    implements TrackerBulkPersister
+{
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String GEOMETRY = "ST_GeomFromText(?, " + GeoUtils.SRID + ")";
+
+    private static final String INSERT_TEI_SQL = "insert into trackedentityinstance (trackedentityinstanceid, " +
+        "uid, code, created, lastupdated, lastupdatedby, createdatclient, lastupdatedatclient, storedby, " +
+        "inactive, deleted, lastsynchronized, geometry, organisationunitid, trackedentitytypeid) " +
+        "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " + GEOMETRY + ", ?, ?)";
+
+    private static final String INSERT_TEAV_SQL = "insert into trackedentityattributevalue (trackedentityinstanceid, " +
+        "trackedentityattributeid, created, lastupdated, value, storedby) " +
+        "values (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PI_SQL = "insert into programinstance (programinstanceid, uid, created, " +
+        "lastupdated, createdatclient, lastupdatedatclient, incidentdate, enrollmentdate, enddate, followup, " +
+        "completedby, geometry, deleted, storedby, status, trackedentityinstanceid, programid, organisationunitid) " +
+        "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " + GEOMETRY + ", ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PSI_SQL = "insert into programstageinstance (programstageinstanceid, uid, " +
+        "code, created, lastupdated, createdatclient, lastupdatedatclient, lastsynchronized, programinstanceid, " +
+        "programstageid, attributeoptioncomboid, deleted, storedby, duedate, executiondate, organisationunitid, " +
+        "status, completedby, completeddate, geometry, assigneduserid, eventdatavalues) " +
+        "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " + GEOMETRY + ", ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AuditManager auditManager;
+
+    private final UsernameSupplier usernameSupplier;
+
+    private final JsonEventDataValueSetBinaryType eventDataValuesType = new JsonEventDataValueSetBinaryType();
+
+    public JdbcTrackerBulkPersister( JdbcTemplate jdbcTemplate, AuditManager auditManager,
+        UsernameSupplier usernameSupplier )
+    {
+        checkNotNull( jdbcTemplate );
+        checkNotNull( auditManager );
+        checkNotNull( usernameSupplier );
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditManager = auditManager;
+        this.usernameSupplier = usernameSupplier;
+    }
+
+    @Override
+    public void persistTrackedEntityInstances( List<TrackedEntityInstance> trackedEntityInstances )
+    {
+        List<Long> ids = getIds( "trackedentityinstance_sequence", trackedEntityInstances.size() );
+
+        for ( int i = 0; i < trackedEntityInstances.size(); i++ )
+        {
+            trackedEntityInstances.get( i ).setId( ids.get( i ) );
+        }
+
+        jdbcTemplate.batchUpdate( INSERT_TEI_SQL, trackedEntityInstances, BATCH_SIZE, ( ps, tei ) -> {
+            ps.setLong( 1, tei.getId() );
+            ps.setString( 2, tei.getUid() );
+            ps.setString( 3, tei.getCode() );
+            setTimestamp( ps, 4, tei.getCreated() );
+            setTimestamp( ps, 5, tei.getLastUpdated() );
+            setId( ps, 6, tei.getLastUpdatedBy() );
+            setTimestamp( ps, 7, tei.getCreatedAtClient() );
+            setTimestamp( ps, 8, tei.getLastUpdatedAtClient() );
+            ps.setString( 9, tei.getStoredBy() );
+            ps.setBoolean( 10, Boolean.TRUE.equals( tei.isInactive() ) );
+            ps.setBoolean( 11, tei.isDeleted() );
+            setTimestamp( ps, 12, tei.getLastSynchronized() );
+            setGeometry( ps, 13, tei.getGeometry() );
+            setId( ps, 14, tei.getOrganisationUnit() );
+            setId( ps, 15, tei.getTrackedEntityType() );
+        } );
+
+        log.debug( String.format( "Inserted %d tracked entity instances", trackedEntityInstances.size() ) );
+
+        sendCreateAudits( trackedEntityInstances );
+    }
+
+    @Override
+    public void persistTrackedEntityAttributeValues( List<TrackedEntityAttributeValue> attributeValues )
+    {
+        jdbcTemplate.batchUpdate( INSERT_TEAV_SQL, attributeValues, BATCH_SIZE, ( ps, av ) -> {
+            checkArgument( !av.getAttribute().isConfidentialBool(), "Confidential attribute values are not supported" );
+
+            Date created = av.getCreated() != null ? av.getCreated() : new Date();
+            Date lastUpdated = av.getLastUpdated() != null ? av.getLastUpdated() : created;
+
+            ps.setLong( 1, av.getEntityInstance().getId() );
+            ps.setLong( 2, av.getAttribute().getId() );
+            setTimestamp( ps, 3, created );
+            setTimestamp( ps, 4, lastUpdated );
+            ps.setString( 5, av.getPlainValue() );
+            ps.setString( 6, av.getStoredBy() );
+        } );
+
+        log.debug( String.format( "Inserted %d tracked entity attribute values", attributeValues.size() ) );
+
+        sendCreateAudits( attributeValues );
+    }
+
+    @Override
+    public void persistProgramInstances( List<ProgramInstance> programInstances )
+    {
+        List<Long> ids = getIds( "programinstance_sequence", programInstances.size() );
+
+        for ( int i = 0; i < programInstances.size(); i++ )
+        {
+            programInstances.get( i ).setId( ids.get( i ) );
+        }
+
+        jdbcTemplate.batchUpdate( INSERT_PI_SQL, programInstances, BATCH_SIZE, ( ps, pi ) -> {
+            ps.setLong( 1, pi.getId() );
+            ps.setString( 2, pi.getUid() );
+            setTimestamp( ps, 3, pi.getCreated() );
+            setTimestamp( ps, 4, pi.getLastUpdated() );
+            setTimestamp( ps, 5, pi.getCreatedAtClient() );
+            setTimestamp( ps, 6, pi.getLastUpdatedAtClient() );
+            setTimestamp( ps, 7, pi.getIncidentDate() );
+            setTimestamp( ps, 8, pi.getEnrollmentDate() );
+            setTimestamp( ps, 9, pi.getEndDate() );
+            ps.setBoolean( 10, Boolean.TRUE.equals( pi.getFollowup() ) );
+            ps.setString( 11, pi.getCompletedBy() );
+            setGeometry( ps, 12, pi.getGeometry() );
+            ps.setBoolean( 13, pi.isDeleted() );
+            ps.setString( 14, pi.getStoredBy() );
+            ps.setString( 15, pi.getStatus() != null ? pi.getStatus().name() : null );
+            setId( ps, 16, pi.getEntityInstance() );
+            setId( ps, 17, pi.getProgram() );
+            setId( ps, 18, pi.getOrganisationUnit() );
+        } );
+
+        log.debug( String.format( "Inserted %d enrollments", programInstances.size() ) );
+
+        sendCreateAudits( programInstances );
+    }
+
+    @Override
+    public void persistProgramStageInstances( List<ProgramStageInstance> programStageInstances )
+    {
+        List<Long> ids = getIds( "programstageinstance_sequence", programStageInstances.size() );
+
+        for ( int i = 0; i < programStageInstances.size(); i++ )
+        {
+            programStageInstances.get( i ).setId( ids.get( i ) );
+        }
+
+        jdbcTemplate.batchUpdate( INSERT_PSI_SQL, programStageInstances, BATCH_SIZE, ( ps, psi ) -> {
+            ps.setLong( 1, psi.getId() );
+            ps.setString( 2, psi.getUid() );
+            ps.setString( 3, psi.getCode() );
+            setTimestamp( ps, 4, psi.getCreated() );
+            setTimestamp( ps, 5, psi.getLastUpdated() );
+            setTimestamp( ps, 6, psi.getCreatedAtClient() );
+            setTimestamp( ps, 7, psi.getLastUpdatedAtClient() );
+            setTimestamp( ps, 8, psi.getLastSynchronized() );
+            setId( ps, 9, psi.getProgramInstance() );
+            setId( ps, 10, psi.getProgramStage() );
+            setId( ps, 11, psi.getAttributeOptionCombo() );
+            ps.setBoolean( 12, psi.isDeleted() );
+            ps.setString( 13, psi.getStoredBy() );
+            setTimestamp( ps, 14, psi.getDueDate() );
+            setTimestamp( ps, 15, psi.getExecutionDate() );
+            setId( ps, 16, psi.getOrganisationUnit() );
+            ps.setString( 17, psi.getStatus() != null ? psi.getStatus().name() : null );
+            ps.setString( 18, psi.getCompletedBy() );
+            setTimestamp( ps, 19, psi.getCompletedDate() );
+            setGeometry( ps, 20, psi.getGeometry() );
+            setId( ps, 21, psi.getAssignedUser() );
+            eventDataValuesType.nullSafeSet( ps, psi.getEventDataValues(), 22, null );
+        } );
+
+        log.debug( String.format( "Inserted %d events", programStageInstances.size() ) );
+
+        sendCreateAudits( programStageInstances );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sends create audits for the given objects after the current transaction
+     * commits, or immediately if no transaction synchronization is active.
+     *
+     * @param objects the inserted objects.
+     */
+    private void sendCreateAudits( List<?> objects )
+    {
+        if ( objects.isEmpty() )
+        {
+            return;
+        }
+
+        final List<Object> auditObjects = new ArrayList<>( objects );
+        final String createdBy = usernameSupplier.get();
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    auditObjects.forEach( object -> sendCreateAudit( object, createdBy ) );
+                }
+            } );
+        }
+        else
+        {
+            auditObjects.forEach( object -> sendCreateAudit( object, createdBy ) );
+        }
+    }
+
+    private void sendCreateAudit( Object object, String createdBy )
+    {
+        Auditable auditable = AnnotationUtils.getAnnotation( object.getClass(), Auditable.class );
+
+        if ( auditable == null || Arrays.stream( auditable.eventType() )
+            .noneMatch( type -> type.contains( "all" ) || type.contains( "create" ) ) )
+        {
+            return;
+        }
+
+        auditManager.send( Audit.builder()
+            .auditType( AuditType.CREATE )
+            .auditScope( auditable.scope() )
+            .createdAt( LocalDateTime.now() )
+            .createdBy( createdBy )
+            .object( object )
+            .auditableEntity( new AuditableEntity( object ) )
+            .build() );
+    }
+
+    /**
+     * Allocates the given number of identifiers from the given sequence.
+     */
+    private List<Long> getIds( String sequence, int count )
+    {
+        String sql = "select nextval('" + sequence + "') from generate_series(1, " + count + ")";
+
+        return jdbcTemplate.queryForList( sql, Long.class );
+    }
+
+    private static void setTimestamp( PreparedStatement ps, int index, Date date )
+        throws SQLException
+    {
+        ps.setTimestamp( index, date != null ? new Timestamp( date.getTime() ) : null );
+    }
+
+    private static void setId( PreparedStatement ps, int index, IdentifiableObject object )
+        throws SQLException
+    {
+        if ( object != null )
+        {
+            ps.setLong( index, object.getId() );
+        }
+        else
+        {
+            ps.setNull( index, Types.BIGINT );
+        }
+    }
+
+    private static void setGeometry( PreparedStatement ps, int index, Geometry geometry )
+        throws SQLException
+    {
+        if ( geometry != null )
+        {
+            ps.setString( index, geometry.toText() );
+        }
+        else
+        {
+            ps.setNull( index, Types.VARCHAR );
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.hisp.dhis.tracker.bundle;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.List;
+
+import org.hisp.dhis.program.ProgramInstance;
+import org.hisp.dhis.program.ProgramStageInstance;
+import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
+
+/**
+ * Writes new tracker objects directly to the database in batches, bypassing
+ * the Hibernate session. Identifiers are allocated from the table sequences
+ * up front and set on the given objects, so that objects which are persisted
+ * later can refer to them. Objects must be persisted in dependency order,
+ * i.e. tracked entity instances before attribute values and enrollments, and
+ * enrollments before events.
+ */
+public interface TrackerBulkPersister
+{
+    /**
+     * Inserts the given tracked entity instances.
+     *
+     * @param trackedEntityInstances the tracked entity instances.
+     */
+    void persistTrackedEntityInstances( List<TrackedEntityInstance> trackedEntityInstances );
+
+    /**
+     * Inserts the given tracked entity attribute values. Values of
+     * confidential attributes are not supported.
+     *
+     * @param attributeValues the tracked entity attribute values.
+     */
+    void persistTrackedEntityAttributeValues( List<TrackedEntityAttributeValue> attributeValues );
+
+    /**
+     * Inserts the given enrollments.
+     *
+     * @param programInstances the enrollments.
+     */
+    void persistProgramInstances( List<ProgramInstance> programInstances );
+
+    /**
+     * Inserts the given events.
+     *
+     * @param programStageInstances the events.
+     */
+    void persistProgramStageInstances( List<ProgramStageInstance> programStageInstances );
+}
@@ -60,7 +60,7 @@ import lombok.NoArgsConstructor;
  * @author Morten Olav Hansen <mortenoh@gmail.com>
  */
 @Data
-@Builder
+@Builder( toBuilder = true )
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonDeserialize( converter = TrackerBundleParamsConverter.class )
@@ -0,0 +1,283 @@
+package org.hisp.dhis.tracker.bundle;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hisp.dhis.tracker.domain.Enrollment;
+import org.hisp.dhis.tracker.domain.Event;
+import org.hisp.dhis.tracker.domain.Relationship;
+import org.hisp.dhis.tracker.domain.RelationshipItem;
+import org.hisp.dhis.tracker.domain.TrackedEntity;
+
+/**
+ * Splits the objects of a tracker payload into independent groups. Objects
+ * which refer to each other, directly or through other objects, end up in the
+ * same group: a tracked entity with its enrollments, the events of those
+ * enrollments or of the tracked entity, and relationships between any of them. References to objects
+ * which are not part of the payload, like the enrollment of an event for an
+ * existing enrollment, also keep the referring objects together. Groups are
+ * packed into bundles of a bounded size, and a group is never split across
+ * bundles, so bundles do not refer to objects of other bundles.
+ */
+public final class TrackerBundleSplitter
+{
+    private static final String TRACKED_ENTITY = "te:";
+
+    private static final String ENROLLMENT = "en:";
+
+    private static final String EVENT = "ev:";
+
+    private static final String RELATIONSHIP = "rel:";
+
+    private TrackerBundleSplitter()
+    {
+    }
+
+    /**
+     * Splits the given bundle parameters into parameters for independent
+     * bundles. The order of objects within each bundle follows the order in
+     * the given parameters.
+     *
+     * @param params the {@link TrackerBundleParams}.
+     * @param maxBundleSize the max number of objects per bundle. A group of
+     *        dependent objects which is larger ends up in a bundle of its own.
+     * @return a list of {@link TrackerBundleParams}, with a single element if
+     *         the payload cannot be split.
+     */
+    public static List<TrackerBundleParams> split( TrackerBundleParams params, int maxBundleSize )
+    {
+        if ( size( params ) <= maxBundleSize )
+        {
+            return Collections.singletonList( params );
+        }
+
+        Groups groups = new Groups();
+
+        List<String> trackedEntityKeys = getKeys( params.getTrackedEntities(), TRACKED_ENTITY, TrackedEntity::getTrackedEntity );
+        List<String> enrollmentKeys = getKeys( params.getEnrollments(), ENROLLMENT, Enrollment::getEnrollment );
+        List<String> eventKeys = getKeys( params.getEvents(), EVENT, Event::getEvent );
+        List<String> relationshipKeys = getKeys( params.getRelationships(), RELATIONSHIP, Relationship::getRelationship );
+
+        trackedEntityKeys.forEach( groups::add );
+
+        for ( int i = 0; i < enrollmentKeys.size(); i++ )
+        {
+            groups.union( enrollmentKeys.get( i ), key( TRACKED_ENTITY, params.getEnrollments().get( i ).getTrackedEntity() ) );
+        }
+
+        for ( int i = 0; i < eventKeys.size(); i++ )
+        {
+            Event event = params.getEvents().get( i );
+
+            groups.union( eventKeys.get( i ), key( ENROLLMENT, event.getEnrollment() ) );
+            groups.union( eventKeys.get( i ), key( TRACKED_ENTITY, event.getTrackedEntity() ) );
+        }
+
+        for ( int i = 0; i < relationshipKeys.size(); i++ )
+        {
+            Relationship relationship = params.getRelationships().get( i );
+
+            groups.union( relationshipKeys.get( i ), key( relationship.getFrom() ) );
+            groups.union( relationshipKeys.get( i ), key( relationship.getTo() ) );
+        }
+
+        Map<String, TrackerBundleParams> groupParams = new LinkedHashMap<>();
+
+        addToGroups( groups, trackedEntityKeys, params.getTrackedEntities(), groupParams, params, TrackerBundleParams::getTrackedEntities );
+        addToGroups( groups, enrollmentKeys, params.getEnrollments(), groupParams, params, TrackerBundleParams::getEnrollments );
+        addToGroups( groups, eventKeys, params.getEvents(), groupParams, params, TrackerBundleParams::getEvents );
+        addToGroups( groups, relationshipKeys, params.getRelationships(), groupParams, params, TrackerBundleParams::getRelationships );
+
+        return pack( new ArrayList<>( groupParams.values() ), params, maxBundleSize );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Packs groups into bundles, in order, until the max bundle size is
+     * reached.
+     */
+    private static List<TrackerBundleParams> pack( List<TrackerBundleParams> groups, TrackerBundleParams params, int maxBundleSize )
+    {
+        List<TrackerBundleParams> bundles = new ArrayList<>();
+
+        TrackerBundleParams bundle = emptyCopy( params );
+
+        for ( TrackerBundleParams group : groups )
+        {
+            if ( size( bundle ) > 0 && size( bundle ) + size( group ) > maxBundleSize )
+            {
+                bundles.add( bundle );
+                bundle = emptyCopy( params );
+            }
+
+            bundle.getTrackedEntities().addAll( group.getTrackedEntities() );
+            bundle.getEnrollments().addAll( group.getEnrollments() );
+            bundle.getEvents().addAll( group.getEvents() );
+            bundle.getRelationships().addAll( group.getRelationships() );
+        }
+
+        if ( size( bundle ) > 0 )
+        {
+            bundles.add( bundle );
+        }
+
+        return bundles;
+    }
+
+    private static <T> void addToGroups( Groups groups, List<String> keys, List<T> objects,
+        Map<String, TrackerBundleParams> groupParams, TrackerBundleParams params,
+        Function<TrackerBundleParams, List<T>> listGetter )
+    {
+        for ( int i = 0; i < objects.size(); i++ )
+        {
+            TrackerBundleParams group = groupParams.computeIfAbsent( groups.find( keys.get( i ) ), k -> emptyCopy( params ) );
+            listGetter.apply( group ).add( objects.get( i ) );
+        }
+    }
+
+    /**
+     * Returns the group keys of the given objects. Objects without identifier
+     * get a key of their own, as they cannot be referred to.
+     */
+    private static <T> List<String> getKeys( List<T> objects, String prefix, Function<T, String> uidGetter )
+    {
+        List<String> keys = new ArrayList<>();
+
+        for ( int i = 0; i < objects.size(); i++ )
+        {
+            String uid = uidGetter.apply( objects.get( i ) );
+            keys.add( StringUtils.isEmpty( uid ) ? prefix + "#" + i : key( prefix, uid ) );
+        }
+
+        return keys;
+    }
+
+    private static String key( RelationshipItem item )
+    {
+        if ( item == null )
+        {
+            return null;
+        }
+        else if ( StringUtils.isNotEmpty( item.getTrackedEntity() ) )
+        {
+            return key( TRACKED_ENTITY, item.getTrackedEntity() );
+        }
+        else if ( StringUtils.isNotEmpty( item.getEnrollment() ) )
+        {
+            return key( ENROLLMENT, item.getEnrollment() );
+        }
+
+        return key( EVENT, item.getEvent() );
+    }
+
+    private static String key( String prefix, String uid )
+    {
+        return StringUtils.isEmpty( uid ) ? null : prefix + uid;
+    }
+
+    private static TrackerBundleParams emptyCopy( TrackerBundleParams params )
+    {
+        return params.toBuilder()
+            .trackedEntities( new ArrayList<>() )
+            .enrollments( new ArrayList<>() )
+            .events( new ArrayList<>() )
+            .relationships( new ArrayList<>() )
+            .build();
+    }
+
+    private static int size( TrackerBundleParams params )
+    {
+        return params.getTrackedEntities().size() + params.getEnrollments().size() +
+            params.getEvents().size() + params.getRelationships().size();
+    }
+
+    /**
+     * Union-find structure over object keys.
+     */
+    private static class Groups
+    {
+        private final Map<String, String> parents = new HashMap<>();
+
+        void add( String key )
+        {
+            parents.putIfAbsent( key, key );
+        }
+
+        String find( String key )
+        {
+            add( key );
+
+            String root = key;
+
+            while ( !root.equals( parents.get( root ) ) )
+            {
+                root = parents.get( root );
+            }
+
+            while ( !key.equals( root ) )
+            {
+                String parent = parents.get( key );
+                parents.put( key, root );
+                key = parent;
+            }
+
+            return root;
+        }
+
+        /**
+         * Joins the groups of the given keys. A null reference leaves the
+         * group of the first key unchanged.
+         */
+        void union( String key, String reference )
+        {
+            String root = find( key );
+
+            if ( reference != null )
+            {
+                String referenceRoot = find( reference );
+
+                if ( !root.equals( referenceRoot ) )
+                {
+                    parents.put( referenceRoot, root );
+                }
+            }
+        }
+    }
+}
@@ -28,28 +28,41 @@ package org.hisp.dhis.tracker.job;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.io.IOException;
+
 import org.hisp.dhis.security.SecurityContextRunnable;
+import org.hisp.dhis.system.notification.NotificationLevel;
+import org.hisp.dhis.system.notification.Notifier;
 import org.hisp.dhis.tracker.TrackerImportParams;
 import org.hisp.dhis.tracker.TrackerImportService;
+import org.hisp.dhis.tracker.bundle.TrackerBundleParams;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
  */
+@Slf4j
 @Component
 @Scope( BeanDefinition.SCOPE_PROTOTYPE )
 public class TrackerImportThread
     extends SecurityContextRunnable
 {
     private final TrackerImportService trackerImportService;
+    private final TrackerPayloadStore trackerPayloadStore;
+    private final Notifier notifier;
     private TrackerImportParams trackerImportParams;
 
-    public TrackerImportThread( TrackerImportService trackerImportService )
+    public TrackerImportThread( TrackerImportService trackerImportService, TrackerPayloadStore trackerPayloadStore,
+        Notifier notifier )
     {
         this.trackerImportService = trackerImportService;
+        this.trackerPayloadStore = trackerPayloadStore;
+        this.notifier = notifier;
     }
 
     @Override
@@ -58,9 +71,49 @@ public class TrackerImportThread
         Assert.notNull( trackerImportParams, "Field trackerImportParams can not be null. " );
 
         trackerImportParams.setUser( null ); // set user to null to force reload in importer
+
+        if ( trackerImportParams.hasPayload() )
+        {
+            if ( !trackerPayloadStore.isStaged( trackerImportParams.getPayload() ) )
+            {
+                log.error( String.format( "Tracker payload is not a staged payload: '%s'",
+                    trackerImportParams.getPayload() ) );
+                notifier.notify( trackerImportParams.getJobConfiguration(), NotificationLevel.ERROR,
+                    "Tracker payload is not a staged payload", true );
+                return;
+            }
+
+            try
+            {
+                readPayload();
+            }
+            catch ( IOException ex )
+            {
+                log.error( "Tracker payload could not be read", ex );
+                notifier.notify( trackerImportParams.getJobConfiguration(), NotificationLevel.ERROR,
+                    "Tracker payload could not be read: " + ex.getMessage(), true );
+                return;
+            }
+            finally
+            {
+                trackerPayloadStore.delete( trackerImportParams.getPayload() );
+            }
+        }
+
         trackerImportService.importTracker( trackerImportParams ); // discard returned report, it has been put on the jobs endpoint
     }
 
+    private void readPayload()
+        throws IOException
+    {
+        TrackerBundleParams payload = trackerPayloadStore.read( trackerImportParams.getPayload() );
+
+        trackerImportParams.setTrackedEntities( payload.getTrackedEntities() );
+        trackerImportParams.setEnrollments( payload.getEnrollments() );
+        trackerImportParams.setEvents( payload.getEvents() );
+        trackerImportParams.setRelationships( payload.getRelationships() );
+    }
+
     public void setTrackerImportParams( TrackerImportParams trackerImportParams )
     {
         this.trackerImportParams = trackerImportParams;
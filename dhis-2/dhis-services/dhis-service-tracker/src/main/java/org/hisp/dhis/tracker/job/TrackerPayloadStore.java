@@ -0,0 +1,365 @@
+package org.hisp.dhis.tracker.job;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.io.input.TeeInputStream;
+import org.hisp.dhis.artemis.config.ArtemisConfigData;
+import org.hisp.dhis.artemis.config.ArtemisMode;
+import org.hisp.dhis.tracker.bundle.TrackerBundleParams;
+import org.hisp.dhis.tracker.converter.TrackerBundleParamsConverter;
+import org.hisp.dhis.tracker.domain.Enrollment;
+import org.hisp.dhis.tracker.domain.Event;
+import org.hisp.dhis.tracker.domain.Relationship;
+import org.hisp.dhis.tracker.domain.TrackedEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stages tracker import payloads in temporary files, so that asynchronous
+ * imports queue a reference to the payload instead of the payload itself. The
+ * structure of the request body is validated with the streaming parser while
+ * it is copied to the file, without binding objects, and the file is parsed
+ * incrementally when the import job runs, so that the payload is never held in
+ * memory as text. Note that this does not bound the heap used by the import,
+ * which still holds all objects of the payload, as dependent objects must be
+ * imported together.
+ * <p>
+ * Staged files are local to the server which received the request, so
+ * staging is only enabled with the embedded message broker, where the import
+ * job runs on the same server. Staged files are kept in a dedicated staging
+ * directory, and are deleted when the import job completes. Files left behind
+ * by a previous run of the server are deleted on startup.
+ */
+@Slf4j
+@Component
+public class TrackerPayloadStore
+{
+    private static final String TRACKED_ENTITIES = "trackedEntities";
+
+    private static final String ENROLLMENTS = "enrollments";
+
+    private static final String EVENTS = "events";
+
+    private static final String RELATIONSHIPS = "relationships";
+
+    private static final String PREFIX = "tracker";
+
+    private static final String SUFFIX = ".json";
+
+    private static final Path STAGING_DIR = Paths.get( System.getProperty( "java.io.tmpdir" ), "dhis2-tracker" )
+        .toAbsolutePath().normalize();
+
+    private final ObjectMapper objectMapper;
+
+    private final ArtemisConfigData artemisConfigData;
+
+    private final TrackerBundleParamsConverter converter = new TrackerBundleParamsConverter();
+
+    public TrackerPayloadStore( ObjectMapper objectMapper, ArtemisConfigData artemisConfigData )
+    {
+        checkNotNull( objectMapper );
+        checkNotNull( artemisConfigData );
+
+        this.objectMapper = objectMapper;
+        this.artemisConfigData = artemisConfigData;
+    }
+
+    /**
+     * Indicates whether payloads can be staged. Staged payloads are local to
+     * this server, so staging requires the embedded message broker, which
+     * delivers import jobs to the server which queued them.
+     */
+    public boolean isEnabled()
+    {
+        return ArtemisMode.EMBEDDED == artemisConfigData.getMode();
+    }
+
+    /**
+     * Deletes payloads staged before the server was started, as the import
+     * jobs referencing them did not survive the restart.
+     */
+    @PostConstruct
+    public void deleteStalePayloads()
+    {
+        if ( !Files.isDirectory( STAGING_DIR ) )
+        {
+            return;
+        }
+
+        long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        try ( DirectoryStream<Path> files = Files.newDirectoryStream( STAGING_DIR, PREFIX + "*" + SUFFIX ) )
+        {
+            for ( Path file : files )
+            {
+                if ( Files.getLastModifiedTime( file ).toMillis() < startTime )
+                {
+                    delete( file.toString() );
+                }
+            }
+        }
+        catch ( IOException ex )
+        {
+            log.warn( String.format( "Could not delete stale tracker payloads in: '%s'", STAGING_DIR ), ex );
+        }
+    }
+
+    /**
+     * Copies the given payload to a temporary file. The payload is validated
+     * to be a JSON object where tracked entities, enrollments, events and
+     * relationships are arrays of objects while it is copied.
+     *
+     * @param in the payload input stream.
+     * @return the path of the staged payload.
+     * @throws JsonParseException if the payload is not valid.
+     * @throws IOException if the payload could not be written.
+     */
+    public String stage( InputStream in )
+        throws IOException
+    {
+        Files.createDirectories( STAGING_DIR );
+
+        Path file = Files.createTempFile( STAGING_DIR, PREFIX, SUFFIX );
+
+        try ( OutputStream out = Files.newOutputStream( file );
+            JsonParser parser = objectMapper.getFactory().createParser( new TeeInputStream( in, out ) ) )
+        {
+            validate( parser );
+        }
+        catch ( IOException ex )
+        {
+            Files.deleteIfExists( file );
+            throw ex;
+        }
+
+        log.debug( String.format( "Staged tracker payload: '%s', size: %d bytes", file, Files.size( file ) ) );
+
+        return file.toString();
+    }
+
+    /**
+     * Indicates whether the given path refers to a payload staged by this
+     * store, that is a file in the staging directory.
+     *
+     * @param payload the path of the staged payload.
+     * @return true if the path resolves inside the staging directory.
+     */
+    public boolean isStaged( String payload )
+    {
+        if ( payload == null )
+        {
+            return false;
+        }
+
+        Path file = Paths.get( payload ).toAbsolutePath().normalize();
+
+        return file.startsWith( STAGING_DIR ) && !file.equals( STAGING_DIR );
+    }
+
+    /**
+     * Reads the tracked entities, enrollments, events and relationships of the
+     * given staged payload. Objects are read one at a time from the file, and
+     * other properties of the payload are skipped. Nested payloads are
+     * flattened as for payloads passed in the request.
+     *
+     * @param payload the path of the staged payload.
+     * @return a {@link TrackerBundleParams} holding the objects.
+     * @throws IOException if the payload could not be read or parsed.
+     */
+    public TrackerBundleParams read( String payload )
+        throws IOException
+    {
+        TrackerBundleParams params = TrackerBundleParams.builder().build();
+
+        try ( InputStream in = new BufferedInputStream( Files.newInputStream( Paths.get( payload ) ) );
+            JsonParser parser = objectMapper.getFactory().createParser( in ) )
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                throw new JsonParseException( parser, "Tracker payload must be a JSON object" );
+            }
+
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+
+                switch ( field )
+                {
+                case TRACKED_ENTITIES:
+                    readArray( parser, params.getTrackedEntities(), TrackedEntity.class );
+                    break;
+                case ENROLLMENTS:
+                    readArray( parser, params.getEnrollments(), Enrollment.class );
+                    break;
+                case EVENTS:
+                    readArray( parser, params.getEvents(), Event.class );
+                    break;
+                case RELATIONSHIPS:
+                    readArray( parser, params.getRelationships(), Relationship.class );
+                    break;
+                default:
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return converter.convert( params );
+    }
+
+    /**
+     * Deletes the given staged payload. Failures are logged, as the file is
+     * only a copy of the payload. Paths outside the staging directory are
+     * ignored.
+     *
+     * @param payload the path of the staged payload.
+     */
+    public void delete( String payload )
+    {
+        if ( !isStaged( payload ) )
+        {
+            log.warn( String.format( "Not deleting tracker payload outside staging directory: '%s'", payload ) );
+            return;
+        }
+
+        try
+        {
+            Files.deleteIfExists( Paths.get( payload ) );
+        }
+        catch ( IOException ex )
+        {
+            log.warn( String.format( "Could not delete staged tracker payload: '%s'", payload ), ex );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Validates the structure of the payload read by the given parser. The
+     * parser reads the payload to the end, so that the complete payload is
+     * checked to be well-formed JSON.
+     */
+    private void validate( JsonParser parser )
+        throws IOException
+    {
+        if ( parser.nextToken() != JsonToken.START_OBJECT )
+        {
+            throw new JsonParseException( parser, "Tracker payload must be a JSON object" );
+        }
+
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch ( field )
+            {
+            case TRACKED_ENTITIES:
+            case ENROLLMENTS:
+            case EVENTS:
+            case RELATIONSHIPS:
+                validateArray( parser );
+                break;
+            default:
+                parser.skipChildren();
+            }
+        }
+
+        if ( parser.nextToken() != null )
+        {
+            throw new JsonParseException( parser, "Unexpected content after tracker payload" );
+        }
+    }
+
+    private void validateArray( JsonParser parser )
+        throws IOException
+    {
+        if ( parser.getCurrentToken() == JsonToken.VALUE_NULL )
+        {
+            return;
+        }
+
+        if ( parser.getCurrentToken() != JsonToken.START_ARRAY )
+        {
+            throw new JsonParseException( parser, "Expected array of tracker objects" );
+        }
+
+        while ( parser.nextToken() != JsonToken.END_ARRAY )
+        {
+            if ( parser.getCurrentToken() != JsonToken.START_OBJECT )
+            {
+                throw new JsonParseException( parser, "Expected tracker object" );
+            }
+
+            parser.skipChildren();
+        }
+    }
+
+    private <T> void readArray( JsonParser parser, List<T> objects, Class<T> klass )
+        throws IOException
+    {
+        if ( parser.getCurrentToken() == JsonToken.VALUE_NULL )
+        {
+            return;
+        }
+
+        if ( parser.getCurrentToken() != JsonToken.START_ARRAY )
+        {
+            throw new JsonParseException( parser, "Expected array of tracker objects" );
+        }
+
+        while ( parser.nextToken() != JsonToken.END_ARRAY )
+        {
+            objects.add( objectMapper.readValue( parser, klass ) );
+        }
+    }
+}
@@ -52,6 +52,7 @@ import org.hisp.dhis.query.Restrictions;
 import org.hisp.dhis.relationship.RelationshipStore;
 import org.hisp.dhis.relationship.RelationshipType;
 import org.hisp.dhis.schema.Schema;
+import org.hisp.dhis.security.acl.AclService;
 import org.hisp.dhis.schema.SchemaService;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceStore;
@@ -64,6 +65,7 @@ import org.hisp.dhis.tracker.domain.Event;
 import org.hisp.dhis.tracker.domain.Relationship;
 import org.hisp.dhis.tracker.domain.TrackedEntity;
 import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -102,6 +104,10 @@ public class DefaultTrackerPreheatService
 
     private final RelationshipStore relationshipStore;
 
+    private final TrackerPreheatMetadataCache metadataCache;
+
+    private final AclService aclService;
+
     private List<TrackerPreheatHook> preheatHooks = new ArrayList<>();
 
     @Autowired( required = false )
@@ -120,7 +126,9 @@ public class DefaultTrackerPreheatService
         ProgramInstanceStore programInstanceStore,
         ProgramStageInstanceStore programStageInstanceStore,
         IdentifiableObjectManager identifiableObjectManager,
-        RelationshipStore relationshipStore )
+        RelationshipStore relationshipStore,
+        TrackerPreheatMetadataCache metadataCache,
+        AclService aclService )
     {
         this.schemaService = schemaService;
         this.queryService = queryService;
@@ -132,6 +140,8 @@ public class DefaultTrackerPreheatService
         this.identifiableObjectManager = identifiableObjectManager;
         this.programStageInstanceStore = programStageInstanceStore;
         this.relationshipStore = relationshipStore;
+        this.metadataCache = metadataCache;
+        this.aclService = aclService;
     }
 
     @Override
@@ -265,31 +275,98 @@ public class DefaultTrackerPreheatService
         }
     }
 
+    /**
+     * Puts the metadata objects with the given identifiers in the preheat. The
+     * internal identifiers of metadata objects are taken from the
+     * {@link TrackerPreheatMetadataCache} where available, in which case the
+     * objects are loaded by primary key through the second level cache.
+     * Remaining objects are queried and added to the metadata cache.
+     */
     @SuppressWarnings("unchecked")
     private void queryForIdentifiableObjects( TrackerPreheat preheat, Schema schema, TrackerIdentifier identifier,
         List<List<String>> splitList )
     {
-        TrackerIdScheme idScheme = identifier.getIdScheme();
+        Class<? extends IdentifiableObject> klass = (Class<? extends IdentifiableObject>) schema.getKlass();
+        boolean cacheable = metadataCache.isCacheable( klass );
+
         for ( List<String> ids : splitList )
         {
-            List<? extends IdentifiableObject> objects;
+            List<String> missingIds = ids;
 
-            if ( TrackerIdScheme.ATTRIBUTE.equals( idScheme ) )
+            if ( cacheable )
             {
-                Attribute attribute = new Attribute();
-                attribute.setUid( identifier.getValue() );
-                objects = identifiableObjectManager.getAllByAttributeAndValues(
-                    (Class<? extends IdentifiableObject>) schema.getKlass(), attribute, ids );
+                missingIds = new ArrayList<>();
+                preheat.put( identifier, getCachedObjects( preheat.getUser(), klass, identifier, ids, missingIds ) );
             }
-            else
+
+            if ( missingIds.isEmpty() )
             {
-                Query query = Query.from( schema );
-                query.setUser( preheat.getUser() );
-                query.add( generateRestrictionFromIdentifiers( idScheme, ids ) );
-                objects = queryService.query( query );
+                continue;
             }
 
+            long generation = metadataCache.getGeneration();
+
+            List<? extends IdentifiableObject> objects = queryForIdentifiableObjects( preheat.getUser(), schema,
+                identifier, missingIds );
+
             preheat.put( identifier, objects );
+
+            if ( cacheable )
+            {
+                metadataCache.put( identifier, klass, objects, generation );
+            }
         }
     }
+
+    /**
+     * Loads the metadata objects with the given identifiers which are held by
+     * the metadata cache. Identifiers which are not held by the cache are added
+     * to the given list of missing identifiers. Objects which the user cannot
+     * read are skipped, as they would be filtered out by the query.
+     */
+    private List<IdentifiableObject> getCachedObjects( User user, Class<? extends IdentifiableObject> klass,
+        TrackerIdentifier identifier, List<String> ids, List<String> missingIds )
+    {
+        Map<String, Long> cachedIds = metadataCache.getIds( identifier, klass );
+        boolean aclCheck = user != null && !TrackerIdScheme.ATTRIBUTE.equals( identifier.getIdScheme() );
+
+        List<IdentifiableObject> objects = new ArrayList<>();
+
+        for ( String id : ids )
+        {
+            Long internalId = cachedIds.get( id );
+            IdentifiableObject object = internalId != null ? manager.get( klass, internalId ) : null;
+
+            if ( object == null )
+            {
+                missingIds.add( id );
+            }
+            else if ( !aclCheck || aclService.canRead( user, object ) )
+            {
+                objects.add( object );
+            }
+        }
+
+        return objects;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<? extends IdentifiableObject> queryForIdentifiableObjects( User user, Schema schema,
+        TrackerIdentifier identifier, List<String> ids )
+    {
+        TrackerIdScheme idScheme = identifier.getIdScheme();
+
+        if ( TrackerIdScheme.ATTRIBUTE.equals( idScheme ) )
+        {
+            Attribute attribute = new Attribute();
+            attribute.setUid( identifier.getValue() );
+            return identifiableObjectManager.getAllByAttributeAndValues(
+                (Class<? extends IdentifiableObject>) schema.getKlass(), attribute, ids );
+        }
+
+        Query query = Query.from( schema );
+        query.setUser( user );
+        query.add( generateRestrictionFromIdentifiers( idScheme, ids ) );
+        return queryService.query( query );
+    }
 }
@@ -0,0 +1,217 @@
+package org.hisp.dhis.tracker.preheat;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.common.MetadataObject;
+import org.hisp.dhis.common.event.ApplicationCacheClearedEvent;
+import org.hisp.dhis.tracker.TrackerIdentifier;
+import org.hisp.dhis.user.User;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Snapshot of metadata identifiers for tracker preheat which is shared across
+ * imports. For each identifier scheme and metadata type, the snapshot maps
+ * external identifiers (uid, code or attribute value) to internal
+ * identifiers, so that metadata can be loaded by primary key, which is served
+ * by the second level cache, instead of being queried for every import. The
+ * metadata objects themselves are not shared, as they are bound to the
+ * session of each import.
+ * <p>
+ * Maps are immutable and replaced on every change. The snapshot of a type is
+ * dropped when metadata of the type is updated or deleted. Identifiers of
+ * objects which are not found are not held, so new metadata does not require
+ * invalidation.
+ */
+@Component
+public class TrackerPreheatMetadataCache
+{
+    private final ConcurrentMap<Class<?>, ConcurrentMap<TrackerIdentifier, Map<String, Long>>> snapshots = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Indicates whether objects of the given type are held by the snapshot.
+     * Users are excluded as they are updated frequently, e.g. on login.
+     *
+     * @param klass the object type.
+     */
+    public boolean isCacheable( Class<?> klass )
+    {
+        return MetadataObject.class.isAssignableFrom( klass ) && !User.class.isAssignableFrom( klass );
+    }
+
+    /**
+     * Returns the current generation of the snapshot, which is incremented on
+     * every invalidation. Must be read before querying objects which are to be
+     * put in the snapshot.
+     */
+    public long getGeneration()
+    {
+        return generation.get();
+    }
+
+    /**
+     * Returns an immutable map of external to internal identifiers for the
+     * given identifier scheme and type.
+     *
+     * @param identifier the {@link TrackerIdentifier}.
+     * @param klass the object type.
+     * @return a map of identifiers, empty if there is no snapshot.
+     */
+    public Map<String, Long> getIds( TrackerIdentifier identifier, Class<?> klass )
+    {
+        Map<TrackerIdentifier, Map<String, Long>> identifierSnapshots = snapshots.get( klass );
+
+        Map<String, Long> ids = identifierSnapshots != null ? identifierSnapshots.get( identifier ) : null;
+
+        return ids != null ? ids : Collections.emptyMap();
+    }
+
+    /**
+     * Adds the identifiers of the given objects to the snapshot. The objects
+     * are ignored if the snapshot was invalidated after the given generation,
+     * as they might have been loaded before the change.
+     *
+     * @param identifier the {@link TrackerIdentifier}.
+     * @param klass the object type.
+     * @param objects the objects.
+     * @param loadGeneration the generation read before loading the objects.
+     */
+    public void put( TrackerIdentifier identifier, Class<?> klass, Collection<? extends IdentifiableObject> objects,
+        long loadGeneration )
+    {
+        if ( objects.isEmpty() || !isCacheable( klass ) )
+        {
+            return;
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+
+        for ( IdentifiableObject object : objects )
+        {
+            String key = identifier.getIdentifier( object );
+
+            if ( StringUtils.isNotEmpty( key ) )
+            {
+                ids.put( key, object.getId() );
+            }
+        }
+
+        synchronized ( snapshots )
+        {
+            if ( loadGeneration != generation.get() || TransactionSynchronizationManager.hasResource( this ) )
+            {
+                return;
+            }
+
+            snapshots.computeIfAbsent( klass, k -> new ConcurrentHashMap<>() ).merge( identifier, ids, ( existing, added ) -> {
+                Map<String, Long> merged = new HashMap<>( existing );
+                merged.putAll( added );
+                return Collections.unmodifiableMap( merged );
+            } );
+        }
+    }
+
+    /**
+     * Drops the snapshots of the given type. If a transaction is active, the
+     * snapshots are dropped again when the transaction completes, and no
+     * identifiers are added in the transaction, so that identifiers of
+     * uncommitted changes are not kept.
+     *
+     * @param type the type of the changed metadata object.
+     */
+    public void invalidate( Class<?> type )
+    {
+        if ( !isCacheable( type ) )
+        {
+            return;
+        }
+
+        drop( type );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive() &&
+            !TransactionSynchronizationManager.hasResource( this ) )
+        {
+            TransactionSynchronizationManager.bindResource( this, Boolean.TRUE );
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion( int status )
+                {
+                    TransactionSynchronizationManager.unbindResourceIfPossible( TrackerPreheatMetadataCache.this );
+                    invalidateAll();
+                }
+            } );
+        }
+    }
+
+    /**
+     * Drops all snapshots.
+     */
+    public void invalidateAll()
+    {
+        synchronized ( snapshots )
+        {
+            generation.incrementAndGet();
+            snapshots.clear();
+        }
+    }
+
+    @EventListener
+    public void handleApplicationCachesCleared( ApplicationCacheClearedEvent event )
+    {
+        invalidateAll();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private void drop( Class<?> type )
+    {
+        synchronized ( snapshots )
+        {
+            generation.incrementAndGet();
+            snapshots.keySet().removeIf( klass -> klass.isAssignableFrom( type ) || type.isAssignableFrom( klass ) );
+        }
+    }
+}
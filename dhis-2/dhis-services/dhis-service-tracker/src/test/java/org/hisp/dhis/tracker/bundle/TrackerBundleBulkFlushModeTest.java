@@ -0,0 +1,206 @@
+package org.hisp.dhis.tracker.bundle;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundle;
+import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundleMode;
+import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundleParams;
+import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundleService;
+import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundleValidationService;
+import org.hisp.dhis.dxf2.metadata.objectbundle.feedback.ObjectBundleValidationReport;
+import org.hisp.dhis.importexport.ImportStrategy;
+import org.hisp.dhis.program.ProgramInstance;
+import org.hisp.dhis.program.ProgramStageInstance;
+import org.hisp.dhis.program.ProgramStageInstanceStore;
+import org.hisp.dhis.render.RenderFormat;
+import org.hisp.dhis.render.RenderService;
+import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.tracker.FlushMode;
+import org.hisp.dhis.tracker.domain.Event;
+import org.hisp.dhis.user.UserService;
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class TrackerBundleBulkFlushModeTest
+    extends IntegrationTestBase
+{
+    @Autowired
+    private ObjectBundleService objectBundleService;
+
+    @Autowired
+    private ObjectBundleValidationService objectBundleValidationService;
+
+    @Autowired
+    private RenderService _renderService;
+
+    @Autowired
+    private UserService _userService;
+
+    @Autowired
+    private TrackerBundleService trackerBundleService;
+
+    @Autowired
+    private ProgramStageInstanceStore programStageInstanceStore;
+
+    @Autowired
+    private IdentifiableObjectManager manager;
+
+    @Override
+    protected void setUpTest()
+        throws IOException
+    {
+        renderService = _renderService;
+        userService = _userService;
+
+        Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> metadata = renderService
+            .fromMetadata( new ClassPathResource( "tracker/event_metadata.json" ).getInputStream(), RenderFormat.JSON );
+
+        ObjectBundleParams params = new ObjectBundleParams();
+        params.setObjectBundleMode( ObjectBundleMode.COMMIT );
+        params.setImportStrategy( ImportStrategy.CREATE );
+        params.setObjects( metadata );
+
+        ObjectBundle bundle = objectBundleService.create( params );
+        ObjectBundleValidationReport validationReport = objectBundleValidationService.validate( bundle );
+        assertTrue( validationReport.getErrorReports().isEmpty() );
+
+        objectBundleService.commit( bundle );
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Test
+    public void testCreateWithBulkFlushMode()
+        throws IOException
+    {
+        TrackerBundle trackerBundle = getTrackerBundle();
+
+        commit( TrackerBundleParams.builder().flushMode( FlushMode.BULK )
+            .trackedEntities( trackerBundle.getTrackedEntities() ).enrollments( trackerBundle.getEnrollments() )
+            .events( trackerBundle.getEvents() ).build() );
+
+        assertEquals( 1, manager.getAll( TrackedEntityInstance.class ).size() );
+        assertEquals( 1, manager.getAll( ProgramInstance.class ).size() );
+
+        List<ProgramStageInstance> programStageInstances = programStageInstanceStore.getAll();
+        assertEquals( 8, programStageInstances.size() );
+
+        ProgramStageInstance programStageInstance = programStageInstanceStore.getByUid( "OOPh5soZawq" );
+        assertEquals( "TvctPPhpD8u", programStageInstance.getProgramInstance().getUid() );
+        assertEquals( 5, programStageInstance.getEventDataValues().size() );
+    }
+
+    /**
+     * Compares the time spent importing the same events through the Hibernate
+     * session and through batch inserts. Timings are logged. Only runs when the
+     * benchmark.copies system property holds the number of copies of the test
+     * events to import.
+     */
+    @Test
+    public void testBulkFlushModeBenchmark()
+        throws IOException
+    {
+        Integer copies = Integer.getInteger( "benchmark.copies" );
+
+        Assume.assumeTrue( copies != null );
+
+        TrackerBundle trackerBundle = getTrackerBundle();
+
+        commit( TrackerBundleParams.builder()
+            .trackedEntities( trackerBundle.getTrackedEntities() ).enrollments( trackerBundle.getEnrollments() )
+            .build() );
+
+        long autoMillis = commitEvents( FlushMode.AUTO, copies );
+        assertEquals( 8 * copies, programStageInstanceStore.getAll().size() );
+
+        long bulkMillis = commitEvents( FlushMode.BULK, copies );
+        assertEquals( 2 * 8 * copies, programStageInstanceStore.getAll().size() );
+
+        log.info( String.format( "Imported %d events, flush mode AUTO: %d ms, flush mode BULK: %d ms",
+            8 * copies, autoMillis, bulkMillis ) );
+    }
+
+    private long commitEvents( FlushMode flushMode, int copies )
+        throws IOException
+    {
+        List<Event> events = new ArrayList<>();
+
+        for ( int i = 0; i < copies; i++ )
+        {
+            for ( Event event : getTrackerBundle().getEvents() )
+            {
+                event.setEvent( CodeGenerator.generateUid() );
+                events.add( event );
+            }
+        }
+
+        long start = System.nanoTime();
+
+        commit( TrackerBundleParams.builder().flushMode( flushMode ).events( events ).build() );
+
+        return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+    }
+
+    private void commit( TrackerBundleParams params )
+    {
+        List<TrackerBundle> trackerBundles = trackerBundleService.create( params );
+        assertEquals( 1, trackerBundles.size() );
+
+        trackerBundleService.commit( trackerBundles.get( 0 ) );
+    }
+
+    private TrackerBundle getTrackerBundle()
+        throws IOException
+    {
+        return renderService.fromJson( new ClassPathResource( "tracker/event_events_and_enrollment.json" )
+            .getInputStream(), TrackerBundleParams.class ).toTrackerBundle();
+    }
+}
@@ -0,0 +1,148 @@
+package org.hisp.dhis.tracker.bundle;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.hisp.dhis.tracker.domain.Enrollment;
+import org.hisp.dhis.tracker.domain.Event;
+import org.hisp.dhis.tracker.domain.Relationship;
+import org.hisp.dhis.tracker.domain.RelationshipItem;
+import org.hisp.dhis.tracker.domain.TrackedEntity;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TrackerBundleSplitterTest
+{
+    @Test
+    public void testSplitDisjointGraphs()
+    {
+        TrackerBundleParams params = TrackerBundleParams.builder()
+            .trackedEntities( Lists.newArrayList( trackedEntity( "teA" ), trackedEntity( "teB" ) ) )
+            .enrollments( Lists.newArrayList( enrollment( "enA", "teA" ), enrollment( "enB", "teB" ) ) )
+            .events( Lists.newArrayList( event( "evA", "enA" ), event( "evB", "enB" ), event( "evC", "enB" ) ) )
+            .build();
+
+        List<TrackerBundleParams> split = TrackerBundleSplitter.split( params, 1 );
+
+        assertEquals( 2, split.size() );
+        assertEquals( "teA", split.get( 0 ).getTrackedEntities().get( 0 ).getTrackedEntity() );
+        assertEquals( 1, split.get( 0 ).getEnrollments().size() );
+        assertEquals( 1, split.get( 0 ).getEvents().size() );
+        assertEquals( "teB", split.get( 1 ).getTrackedEntities().get( 0 ).getTrackedEntity() );
+        assertEquals( 1, split.get( 1 ).getEnrollments().size() );
+        assertEquals( 2, split.get( 1 ).getEvents().size() );
+    }
+
+    @Test
+    public void testSplitKeepsRelatedGraphsTogether()
+    {
+        TrackerBundleParams params = TrackerBundleParams.builder()
+            .trackedEntities( Lists.newArrayList( trackedEntity( "teA" ), trackedEntity( "teB" ), trackedEntity( "teC" ) ) )
+            .relationships( Lists.newArrayList( relationship( "relA", "teA", "teC" ) ) )
+            .build();
+
+        List<TrackerBundleParams> split = TrackerBundleSplitter.split( params, 1 );
+
+        assertEquals( 2, split.size() );
+        assertEquals( 2, split.get( 0 ).getTrackedEntities().size() );
+        assertEquals( "teC", split.get( 0 ).getTrackedEntities().get( 1 ).getTrackedEntity() );
+        assertEquals( 1, split.get( 0 ).getRelationships().size() );
+        assertEquals( "teB", split.get( 1 ).getTrackedEntities().get( 0 ).getTrackedEntity() );
+    }
+
+    @Test
+    public void testSplitGroupsEventsOfExistingEnrollment()
+    {
+        TrackerBundleParams params = TrackerBundleParams.builder()
+            .events( Lists.newArrayList( event( "evA", "enA" ), event( "evB", null ), event( "evC", "enA" ) ) )
+            .build();
+
+        List<TrackerBundleParams> split = TrackerBundleSplitter.split( params, 2 );
+
+        assertEquals( 2, split.size() );
+        assertEquals( "evA", split.get( 0 ).getEvents().get( 0 ).getEvent() );
+        assertEquals( "evC", split.get( 0 ).getEvents().get( 1 ).getEvent() );
+        assertEquals( "evB", split.get( 1 ).getEvents().get( 0 ).getEvent() );
+    }
+
+    @Test
+    public void testSplitKeepsEventsWithTrackedEntity()
+    {
+        TrackerBundleParams params = TrackerBundleParams.builder()
+            .trackedEntities( Lists.newArrayList( trackedEntity( "teA" ), trackedEntity( "teB" ) ) )
+            .events( Lists.newArrayList( Event.builder().event( "evA" ).trackedEntity( "teB" ).build() ) )
+            .build();
+
+        List<TrackerBundleParams> split = TrackerBundleSplitter.split( params, 1 );
+
+        assertEquals( 2, split.size() );
+        assertEquals( "teA", split.get( 0 ).getTrackedEntities().get( 0 ).getTrackedEntity() );
+        assertEquals( 0, split.get( 0 ).getEvents().size() );
+        assertEquals( "teB", split.get( 1 ).getTrackedEntities().get( 0 ).getTrackedEntity() );
+        assertEquals( "evA", split.get( 1 ).getEvents().get( 0 ).getEvent() );
+    }
+
+    @Test
+    public void testSplitPacksGroupsUpToMaxSize()
+    {
+        TrackerBundleParams params = TrackerBundleParams.builder()
+            .events( Lists.newArrayList( event( "evA", null ), event( "evB", null ), event( "evC", null ) ) )
+            .build();
+
+        assertEquals( 1, TrackerBundleSplitter.split( params, 3 ).size() );
+        assertEquals( 2, TrackerBundleSplitter.split( params, 2 ).size() );
+        assertEquals( 3, TrackerBundleSplitter.split( params, 1 ).size() );
+    }
+
+    private TrackedEntity trackedEntity( String uid )
+    {
+        return TrackedEntity.builder().trackedEntity( uid ).build();
+    }
+
+    private Enrollment enrollment( String uid, String trackedEntity )
+    {
+        return Enrollment.builder().enrollment( uid ).trackedEntity( trackedEntity ).build();
+    }
+
+    private Event event( String uid, String enrollment )
+    {
+        return Event.builder().event( uid ).enrollment( enrollment ).build();
+    }
+
+    private Relationship relationship( String uid, String from, String to )
+    {
+        return Relationship.builder().relationship( uid )
+            .from( RelationshipItem.builder().trackedEntity( from ).build() )
+            .to( RelationshipItem.builder().trackedEntity( to ).build() ).build();
+    }
+}
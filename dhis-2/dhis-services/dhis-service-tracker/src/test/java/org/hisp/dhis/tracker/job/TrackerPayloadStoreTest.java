@@ -0,0 +1,226 @@
+package org.hisp.dhis.tracker.job;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.hisp.dhis.artemis.config.ArtemisConfigData;
+import org.hisp.dhis.artemis.config.ArtemisMode;
+import org.hisp.dhis.tracker.bundle.TrackerBundleParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TrackerPayloadStoreTest
+{
+    private ArtemisConfigData artemisConfigData;
+
+    private TrackerPayloadStore payloadStore;
+
+    private String payload;
+
+    @Before
+    public void setUp()
+    {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
+        artemisConfigData = new ArtemisConfigData();
+
+        payloadStore = new TrackerPayloadStore( objectMapper, artemisConfigData );
+    }
+
+    @After
+    public void tearDown()
+    {
+        if ( payload != null )
+        {
+            payloadStore.delete( payload );
+        }
+    }
+
+    @Test
+    public void testStageAndReadFlatPayload()
+        throws IOException
+    {
+        payload = stage( "{'importMode':'VALIDATE','trackedEntities':[{'trackedEntity':'teiabcdefgA'}]," +
+            "'enrollments':[{'enrollment':'enrabcdefgA','trackedEntity':'teiabcdefgA'}]," +
+            "'events':[{'event':'evtabcdefgA','enrollment':'enrabcdefgA'},{'event':'evtabcdefgB'}]," +
+            "'relationships':null}" );
+
+        TrackerBundleParams params = payloadStore.read( payload );
+
+        assertEquals( 1, params.getTrackedEntities().size() );
+        assertEquals( 1, params.getEnrollments().size() );
+        assertEquals( 2, params.getEvents().size() );
+        assertTrue( params.getRelationships().isEmpty() );
+        assertEquals( "evtabcdefgB", params.getEvents().get( 1 ).getEvent() );
+    }
+
+    @Test
+    public void testReadNestedPayload()
+        throws IOException
+    {
+        payload = stage( "{'trackedEntities':[{'trackedEntity':'teiabcdefgA','enrollments':[" +
+            "{'enrollment':'enrabcdefgA','events':[{'event':'evtabcdefgA'},{'event':'evtabcdefgB'}]}]}]}" );
+
+        TrackerBundleParams params = payloadStore.read( payload );
+
+        assertEquals( 1, params.getTrackedEntities().size() );
+        assertEquals( 1, params.getEnrollments().size() );
+        assertEquals( 2, params.getEvents().size() );
+        assertEquals( "teiabcdefgA", params.getEnrollments().get( 0 ).getTrackedEntity() );
+        assertEquals( "enrabcdefgA", params.getEvents().get( 0 ).getEnrollment() );
+    }
+
+    @Test( expected = JsonParseException.class )
+    public void testReadInvalidPayload()
+        throws IOException
+    {
+        payload = stage( "{'events':{'event':'evtabcdefgA'}}" );
+
+        payloadStore.read( payload );
+    }
+
+    @Test
+    public void testStageRejectsInvalidPayload()
+        throws IOException
+    {
+        assertStageRejected( "['events']" );
+        assertStageRejected( "{'events':[{'event':'evtabcdefgA'}" );
+        assertStageRejected( "{'events':['evtabcdefgA']}" );
+        assertStageRejected( "{'importMode':'VALIDATE'} {}" );
+    }
+
+    @Test
+    public void testIsEnabled()
+    {
+        assertTrue( payloadStore.isEnabled() );
+
+        artemisConfigData.setMode( ArtemisMode.NATIVE );
+
+        assertFalse( payloadStore.isEnabled() );
+    }
+
+    @Test
+    public void testDelete()
+        throws IOException
+    {
+        payload = stage( "{}" );
+
+        assertTrue( Files.exists( Paths.get( payload ) ) );
+
+        payloadStore.delete( payload );
+
+        assertFalse( Files.exists( Paths.get( payload ) ) );
+    }
+
+    @Test
+    public void testIsStaged()
+        throws IOException
+    {
+        payload = stage( "{}" );
+
+        Path file = Paths.get( payload );
+
+        assertTrue( payloadStore.isStaged( payload ) );
+        assertFalse( payloadStore.isStaged( file.getParent().toString() ) );
+        assertFalse( payloadStore.isStaged( file.resolve( "../../tracker.json" ).toString() ) );
+        assertFalse( payloadStore.isStaged( "/etc/passwd" ) );
+        assertFalse( payloadStore.isStaged( null ) );
+    }
+
+    @Test
+    public void testDeleteIgnoresPathOutsideStagingDirectory()
+        throws IOException
+    {
+        Path file = Files.createTempFile( "tracker", ".json" );
+
+        try
+        {
+            payloadStore.delete( file.toString() );
+
+            assertTrue( Files.exists( file ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( file );
+        }
+    }
+
+    @Test
+    public void testDeleteStalePayloads()
+        throws IOException
+    {
+        payload = stage( "{}" );
+        String stale = stage( "{}" );
+
+        Files.setLastModifiedTime( Paths.get( stale ), FileTime.fromMillis( 0 ) );
+
+        payloadStore.deleteStalePayloads();
+
+        assertTrue( Files.exists( Paths.get( payload ) ) );
+        assertFalse( Files.exists( Paths.get( stale ) ) );
+    }
+
+    private void assertStageRejected( String json )
+        throws IOException
+    {
+        try
+        {
+            payload = stage( json );
+            fail( "Payload should be rejected: " + json );
+        }
+        catch ( JsonParseException ex )
+        {
+            // expected
+        }
+    }
+
+    private String stage( String json )
+        throws IOException
+    {
+        return payloadStore.stage( new ByteArrayInputStream( json.replace( '\'', '"' ).getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+}
@@ -0,0 +1,142 @@
+package org.hisp.dhis.tracker.preheat;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.tracker.TrackerIdentifier;
+import org.hisp.dhis.user.User;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrackerPreheatMetadataCacheTest
+{
+    private TrackerPreheatMetadataCache metadataCache;
+
+    private DataElement deA;
+
+    private DataElement deB;
+
+    private Program programA;
+
+    @Before
+    public void setUp()
+    {
+        metadataCache = new TrackerPreheatMetadataCache();
+
+        deA = new DataElement( "dataElementA" );
+        deA.setAutoFields();
+        deA.setId( 1L );
+        deA.setCode( "DE_A" );
+
+        deB = new DataElement( "dataElementB" );
+        deB.setAutoFields();
+        deB.setId( 2L );
+
+        programA = new Program( "programA", "programA" );
+        programA.setAutoFields();
+        programA.setId( 3L );
+    }
+
+    @Test
+    public void testPutAndGetIds()
+    {
+        metadataCache.put( TrackerIdentifier.UID, DataElement.class, Arrays.asList( deA, deB ), metadataCache.getGeneration() );
+        metadataCache.put( TrackerIdentifier.CODE, DataElement.class, Arrays.asList( deA, deB ), metadataCache.getGeneration() );
+
+        Map<String, Long> uids = metadataCache.getIds( TrackerIdentifier.UID, DataElement.class );
+        Map<String, Long> codes = metadataCache.getIds( TrackerIdentifier.CODE, DataElement.class );
+
+        assertEquals( 2, uids.size() );
+        assertEquals( Long.valueOf( 1L ), uids.get( deA.getUid() ) );
+        assertEquals( Long.valueOf( 2L ), uids.get( deB.getUid() ) );
+        assertEquals( 1, codes.size() );
+        assertEquals( Long.valueOf( 1L ), codes.get( "DE_A" ) );
+        assertTrue( metadataCache.getIds( TrackerIdentifier.UID, Program.class ).isEmpty() );
+    }
+
+    @Test
+    public void testPutMergesIds()
+    {
+        metadataCache.put( TrackerIdentifier.UID, DataElement.class, Collections.singletonList( deA ), metadataCache.getGeneration() );
+        metadataCache.put( TrackerIdentifier.UID, DataElement.class, Collections.singletonList( deB ), metadataCache.getGeneration() );
+
+        assertEquals( 2, metadataCache.getIds( TrackerIdentifier.UID, DataElement.class ).size() );
+    }
+
+    @Test
+    public void testInvalidateType()
+    {
+        metadataCache.put( TrackerIdentifier.UID, DataElement.class, Arrays.asList( deA, deB ), metadataCache.getGeneration() );
+        metadataCache.put( TrackerIdentifier.UID, Program.class, Collections.singletonList( programA ), metadataCache.getGeneration() );
+
+        metadataCache.invalidate( DataElement.class );
+
+        assertTrue( metadataCache.getIds( TrackerIdentifier.UID, DataElement.class ).isEmpty() );
+        assertEquals( 1, metadataCache.getIds( TrackerIdentifier.UID, Program.class ).size() );
+
+        metadataCache.invalidateAll();
+
+        assertTrue( metadataCache.getIds( TrackerIdentifier.UID, Program.class ).isEmpty() );
+    }
+
+    @Test
+    public void testPutIgnoredAfterInvalidation()
+    {
+        long generation = metadataCache.getGeneration();
+
+        metadataCache.invalidate( DataElement.class );
+        metadataCache.put( TrackerIdentifier.UID, DataElement.class, Arrays.asList( deA, deB ), generation );
+
+        assertTrue( metadataCache.getIds( TrackerIdentifier.UID, DataElement.class ).isEmpty() );
+    }
+
+    @Test
+    public void testUsersNotCached()
+    {
+        User user = new User();
+        user.setAutoFields();
+        user.setId( 4L );
+
+        assertFalse( metadataCache.isCacheable( User.class ) );
+        assertTrue( metadataCache.isCacheable( DataElement.class ) );
+
+        metadataCache.put( TrackerIdentifier.UID, User.class, Collections.singletonList( user ), metadataCache.getGeneration() );
+
+        assertTrue( metadataCache.getIds( TrackerIdentifier.UID, User.class ).isEmpty() );
+    }
+}
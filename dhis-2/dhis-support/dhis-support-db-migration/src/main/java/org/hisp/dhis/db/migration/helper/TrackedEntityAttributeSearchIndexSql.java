@@ -0,0 +1,99 @@
+package org.hisp.dhis.db.migration.helper;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statements which create the search index for tracked entity attribute
+ * values. The index is a side table holding lower case values of searchable
+ * attributes with a trigram index, which is maintained by a trigger on the
+ * trackedentityattributevalue table for attributes listed in the
+ * trackedentityattributesearchindex table. The statements are idempotent and
+ * are run by migration, and by the tracked entity attribute search index job
+ * when the index could not be created during migration, for instance because
+ * the pg_trgm extension was not yet installed. The trigger is created last, as
+ * its presence signals that the index is available.
+ */
+public class TrackedEntityAttributeSearchIndexSql
+{
+    public static final List<String> CREATE_STATEMENTS = Collections.unmodifiableList( Arrays.asList(
+        "create extension if not exists pg_trgm",
+
+        "create table if not exists trackedentityattributesearchindex (" +
+            "trackedentityattributeid bigint not null primary key references trackedentityattribute (trackedentityattributeid) on delete cascade, " +
+            "ready boolean not null default false, " +
+            "lastindexed timestamp)",
+
+        "create table if not exists trackedentityattributesearch (" +
+            "trackedentityinstanceid bigint not null, " +
+            "trackedentityattributeid bigint not null, " +
+            "value varchar(1200) not null, " +
+            "primary key (trackedentityinstanceid, trackedentityattributeid))",
+
+        "create index if not exists in_trackedentityattributesearch_value_trgm " +
+            "on trackedentityattributesearch using gin (value gin_trgm_ops)",
+
+        "create index if not exists in_trackedentityattributesearch_attribute_value " +
+            "on trackedentityattributesearch (trackedentityattributeid, value)",
+
+        "create or replace function trackedentityattributesearch_update() returns trigger as $$ " +
+        "begin " +
+            "if tg_op = 'DELETE' then " +
+                "delete from trackedentityattributesearch " +
+                "where trackedentityinstanceid = old.trackedentityinstanceid " +
+                "and trackedentityattributeid = old.trackedentityattributeid; " +
+                "return null; " +
+            "end if; " +
+            "if new.value is not null and exists (select 1 from trackedentityattributesearchindex i " +
+                "where i.trackedentityattributeid = new.trackedentityattributeid) then " +
+                "insert into trackedentityattributesearch (trackedentityinstanceid, trackedentityattributeid, value) " +
+                "values (new.trackedentityinstanceid, new.trackedentityattributeid, lower(new.value)) " +
+                "on conflict (trackedentityinstanceid, trackedentityattributeid) do update set value = excluded.value; " +
+            "elsif tg_op = 'UPDATE' then " +
+                "delete from trackedentityattributesearch " +
+                "where trackedentityinstanceid = new.trackedentityinstanceid " +
+                "and trackedentityattributeid = new.trackedentityattributeid; " +
+            "end if; " +
+            "return null; " +
+        "end; " +
+        "$$ language plpgsql",
+
+        "drop trigger if exists trackedentityattributesearch_trigger on trackedentityattributevalue",
+
+        "create trigger trackedentityattributesearch_trigger " +
+            "after insert or update of value or delete on trackedentityattributevalue " +
+            "for each row execute procedure trackedentityattributesearch_update()" ) );
+
+    private TrackedEntityAttributeSearchIndexSql()
+    {
+    }
+}
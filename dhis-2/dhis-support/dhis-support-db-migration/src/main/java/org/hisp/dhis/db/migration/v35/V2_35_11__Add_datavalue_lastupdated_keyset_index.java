@@ -0,0 +1,97 @@
+package org.hisp.dhis.db.migration.v35;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This Java migration adds an index on the keyset order used for paging
+ * through data values by last updated time in data synchronization. The
+ * datavalue table is typically the largest table, so the index is created
+ * concurrently, which does not block writes while the index is built but
+ * cannot run in a transaction.
+ * <p>
+ * A concurrent index build which fails leaves an invalid index behind, which
+ * would be skipped by "if not exists". Due to this, an invalid index from a
+ * previous attempt is dropped before the index is created.
+ */
+public class V2_35_11__Add_datavalue_lastupdated_keyset_index
+    extends BaseJavaMigration
+{
+    private static final Logger log = LoggerFactory.getLogger( V2_35_11__Add_datavalue_lastupdated_keyset_index.class );
+
+    private static final String INDEX_NAME = "in_datavalue_lastupdated_keyset";
+
+    private static final String CHECK_INVALID_INDEX_SQL = "select count(*) from pg_index i " +
+        "inner join pg_class c on c.oid = i.indexrelid " +
+        "where c.relname = '" + INDEX_NAME + "' and not i.indisvalid";
+
+    @Override
+    public void migrate( Context context )
+    {
+        try ( Statement statement = context.getConnection().createStatement() )
+        {
+            boolean invalid;
+
+            try ( ResultSet rs = statement.executeQuery( CHECK_INVALID_INDEX_SQL ) )
+            {
+                invalid = rs.next() && rs.getInt( 1 ) > 0;
+            }
+
+            if ( invalid )
+            {
+                log.info( String.format( "Dropping invalid index: '%s'", INDEX_NAME ) );
+
+                statement.execute( "drop index concurrently if exists " + INDEX_NAME );
+            }
+
+            statement.execute( "create index concurrently if not exists " + INDEX_NAME + " " +
+                "on datavalue (lastupdated, dataelementid, periodid, sourceid, categoryoptioncomboid, attributeoptioncomboid)" );
+        }
+        catch ( SQLException e )
+        {
+            log.error( "Flyway java migration error:", e );
+            throw new FlywayException( e );
+        }
+    }
+
+    @Override
+    public boolean canExecuteInTransaction()
+    {
+        return false;
+    }
+}
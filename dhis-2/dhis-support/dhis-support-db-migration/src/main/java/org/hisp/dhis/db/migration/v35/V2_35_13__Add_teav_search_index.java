@@ -0,0 +1,82 @@
+package org.hisp.dhis.db.migration.v35;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.hisp.dhis.db.migration.helper.TrackedEntityAttributeSearchIndexSql;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This Java migration adds the search index for tracked entity attribute
+ * values. The index is a side table holding lower case values of searchable
+ * attributes with a trigram index, which is maintained by a trigger on the
+ * trackedentityattributevalue table for attributes listed in the
+ * trackedentityattributesearchindex table. Attributes are added to the index
+ * by the tracked entity attribute search index job.
+ * <p>
+ * The trigram index requires the pg_trgm extension, which might not be
+ * available or require privileges the database user does not have. Due to
+ * this, we catch any SQLException and log a warning, in which case searches
+ * are done without the index until the tracked entity attribute search index
+ * job creates it. The statements are defined in
+ * {@link TrackedEntityAttributeSearchIndexSql}.
+ */
+public class V2_35_13__Add_teav_search_index
+    extends BaseJavaMigration
+{
+    private static final Logger log = LoggerFactory.getLogger( V2_35_13__Add_teav_search_index.class );
+
+    @Override
+    public void migrate( Context context )
+    {
+        try ( Statement statement = context.getConnection().createStatement() )
+        {
+            for ( String sql : TrackedEntityAttributeSearchIndexSql.CREATE_STATEMENTS )
+            {
+                statement.execute( sql );
+            }
+        }
+        catch ( SQLException e )
+        {
+            log.warn( String.format( "Could not create search index for tracked entity attribute values, " +
+                "attribute searches will not use the index. Error message was: %s", e.getMessage() ) );
+        }
+    }
+
+    @Override
+    public boolean canExecuteInTransaction()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,13 @@
+-- Add table for profiles of analytics table update runs, named without the analytics table prefix to not be treated as an analytics table
+
+create table if not exists tableupdateprofile (
+    tableupdateprofileid bigserial primary key,
+    jobid character varying(11),
+    updatetype character varying(50) not null,
+    starttime timestamp without time zone not null,
+    endtime timestamp without time zone,
+    success boolean not null,
+    entries text
+);
+
+create index if not exists in_tableupdateprofile_starttime on tableupdateprofile (starttime);
@@ -263,6 +263,18 @@ public interface StatementBuilder
     String literalLongLongTable( List<Long> long1Values,
         List<Long> long2Values, String table, String long1Column, String long2Column );
 
+    /**
+     * Generates a derived table containing literals in any number of long
+     * columns.
+     *
+     * @param rows (non-empty) rows of long values for the table, each with
+     *        one value per column
+     * @param table the desired table name alias
+     * @param columns the desired column names
+     * @return the derived literal table
+     */
+    String literalLongsTable( List<List<Long>> rows, String table, List<String> columns );
+
     /**
      * Indicates whether the DBMS supports partial indexes (index statements with
      * {@code where} clauses).
@@ -0,0 +1,459 @@
+package org.hisp.dhis.jdbc.batchhandler;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hisp.quick.BatchHandler;
+import org.hisp.quick.JdbcConfiguration;
+import org.hisp.quick.StatementDialect;
+import org.hisp.quick.batchhandler.AbstractBatchHandler;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batch handler which writes added objects through the PostgreSQL COPY
+ * protocol instead of multi-row insert statements. Rows are streamed into a
+ * temporary staging table and merged into the target table with a single
+ * {@code insert ... on conflict do nothing} statement per buffer of rows.
+ * <p>
+ * Rows which are skipped by the merge because a row with the same unique
+ * values already exists are counted and returned by {@link #getSkippedCount()}
+ * once the rows are flushed, as {@link #addObject(Object)} returns before the
+ * rows are written.
+ * <p>
+ * The COPY connection is taken from the given data source and returned to it
+ * on {@link #flush()}. The handler initializes itself again when used after
+ * a flush.
+ * <p>
+ * Table and column definitions, as well as find, update and delete operations,
+ * are delegated to the wrapped batch handler. For databases other than
+ * PostgreSQL, all operations are delegated to the wrapped batch handler.
+ *
+ * @param <T> the type of object to write.
+ */
+@Slf4j
+public class CopyBatchHandler<T>
+    implements BatchHandler<T>
+{
+    private static final int MAX_BUFFERED_ROWS = 50000;
+
+    private static final String CSV_NULL = "";
+
+    private final AbstractBatchHandler<T> delegate;
+
+    private final DataSource dataSource;
+
+    /**
+     * Unique values of the buffered rows, cleared with the buffer.
+     */
+    private final Set<List<Object>> uniqueValues = new HashSet<>();
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    private boolean initialized;
+
+    private boolean copyEnabled;
+
+    private Connection connection;
+
+    private CopyManager copyManager;
+
+    private int bufferedRows;
+
+    private int skippedCount;
+
+    /**
+     * Creates a COPY batch handler wrapping the given batch handler.
+     *
+     * @param delegate the batch handler, which must extend
+     *        {@link AbstractBatchHandler}.
+     * @param dataSource the data source to take the COPY connection from.
+     */
+    public CopyBatchHandler( BatchHandler<T> delegate, DataSource dataSource )
+    {
+        checkNotNull( delegate );
+        checkNotNull( dataSource );
+        checkArgument( delegate instanceof AbstractBatchHandler, "Batch handler must extend AbstractBatchHandler" );
+
+        this.delegate = (AbstractBatchHandler<T>) delegate;
+        this.dataSource = dataSource;
+    }
+
+    // -------------------------------------------------------------------------
+    // BatchHandler implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public BatchHandler<T> init()
+    {
+        delegate.init();
+
+        JdbcConfiguration config = delegate.getConfiguration();
+
+        copyEnabled = StatementDialect.POSTGRESQL.equals( config.getDialect() );
+
+        if ( copyEnabled )
+        {
+            openConnection();
+        }
+        else
+        {
+            log.info( "COPY is only supported on PostgreSQL, writing to table: '{}' with insert statements", delegate.getTableName() );
+        }
+
+        initialized = true;
+
+        return this;
+    }
+
+    @Override
+    public JdbcConfiguration getConfiguration()
+    {
+        return delegate.getConfiguration();
+    }
+
+    @Override
+    public boolean addObject( T object )
+    {
+        ensureInitialized();
+
+        if ( !copyEnabled )
+        {
+            return delegate.addObject( object );
+        }
+
+        List<Object> unique = delegate.getUniqueValues( object );
+
+        if ( !unique.isEmpty() && !uniqueValues.add( unique ) )
+        {
+            return false;
+        }
+
+        appendRow( delegate.getValues( object ) );
+
+        if ( ++bufferedRows >= MAX_BUFFERED_ROWS )
+        {
+            copyAndMerge();
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean insertObject( T object )
+    {
+        ensureInitialized();
+
+        return delegate.insertObject( object );
+    }
+
+    @Override
+    public T findObject( T object )
+    {
+        ensureInitialized();
+
+        return delegate.findObject( object );
+    }
+
+    @Override
+    public void updateObject( T object )
+    {
+        ensureInitialized();
+
+        delegate.updateObject( object );
+    }
+
+    @Override
+    public void deleteObject( T object )
+    {
+        ensureInitialized();
+
+        delegate.deleteObject( object );
+    }
+
+    @Override
+    public boolean objectExists( T object )
+    {
+        ensureInitialized();
+
+        return delegate.objectExists( object );
+    }
+
+    @Override
+    public void flush()
+    {
+        if ( !initialized )
+        {
+            return;
+        }
+
+        try
+        {
+            if ( copyEnabled )
+            {
+                copyAndMerge();
+            }
+        }
+        finally
+        {
+            initialized = false;
+            closeConnection();
+            delegate.flush();
+        }
+    }
+
+    /**
+     * Drops the rows which are added but not yet written and releases the
+     * connections of this handler, as opposed to {@link #flush()} which writes
+     * the rows first.
+     *
+     * @return the number of dropped rows.
+     */
+    public int discard()
+    {
+        if ( !initialized )
+        {
+            return 0;
+        }
+
+        int dropped = bufferedRows;
+
+        initialized = false;
+
+        try
+        {
+            closeConnection();
+        }
+        finally
+        {
+            delegate.flush();
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Returns the number of added rows which were not inserted because a row
+     * with the same unique values already existed in the target table. Only
+     * includes rows which are flushed.
+     *
+     * @return the number of skipped rows.
+     */
+    public int getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private void ensureInitialized()
+    {
+        if ( !initialized )
+        {
+            init();
+        }
+    }
+
+    /**
+     * Streams the buffered rows into the staging table and merges the staging
+     * table into the target table.
+     */
+    private void copyAndMerge()
+    {
+        if ( bufferedRows == 0 )
+        {
+            return;
+        }
+
+        String staging = getStagingTableName();
+        String columns = getColumnNames();
+
+        try
+        {
+            long rows = copyManager.copyIn( "copy " + staging + " (" + columns + ") from stdin with (format csv)",
+                new StringReader( buffer.toString() ) );
+
+            int merged = execute( getMergeSql( staging, columns ) );
+
+            execute( "truncate " + staging );
+
+            skippedCount += rows - merged;
+
+            log.debug( "Copied {} rows, merged {} rows into table: '{}'", rows, merged, delegate.getTableName() );
+        }
+        catch ( SQLException | IOException ex )
+        {
+            throw new RuntimeException( "Failed to copy rows into table: " + delegate.getTableName(), ex );
+        }
+        finally
+        {
+            buffer.setLength( 0 );
+            bufferedRows = 0;
+            uniqueValues.clear();
+        }
+    }
+
+    private String getMergeSql( String staging, String columns )
+    {
+        String autoIncrementColumn = delegate.getAutoIncrementColumn();
+        String sequence = delegate.getIdSequenceName();
+
+        if ( autoIncrementColumn != null && sequence != null )
+        {
+            return "insert into " + delegate.getTableName() + " (" + autoIncrementColumn + "," + columns + ") " +
+                "select nextval('" + sequence + "')," + columns + " from " + staging + " on conflict do nothing";
+        }
+
+        return "insert into " + delegate.getTableName() + " (" + columns + ") " +
+            "select " + columns + " from " + staging + " on conflict do nothing";
+    }
+
+    /**
+     * Appends the given values as a CSV row to the buffer. Null values are
+     * written as unquoted empty values, which COPY reads as null, whereas
+     * all other values are quoted.
+     */
+    private void appendRow( List<Object> values )
+    {
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            if ( i > 0 )
+            {
+                buffer.append( ',' );
+            }
+
+            Object value = values.get( i );
+
+            if ( value == null )
+            {
+                buffer.append( CSV_NULL );
+            }
+            else
+            {
+                buffer.append( '"' ).append( StringUtils.replace( String.valueOf( value ), "\"", "\"\"" ) ).append( '"' );
+            }
+        }
+
+        buffer.append( '\n' );
+    }
+
+    private int execute( String sql )
+        throws SQLException
+    {
+        try ( Statement statement = connection.createStatement() )
+        {
+            return statement.executeUpdate( sql );
+        }
+    }
+
+    private String getStagingTableName()
+    {
+        return "pg_temp." + delegate.getTableName() + "_copy";
+    }
+
+    private String getColumnNames()
+    {
+        return StringUtils.join( delegate.getColumns(), "," );
+    }
+
+    /**
+     * Takes a connection from the data source and creates the staging table,
+     * dropping a staging table left on the pooled connection by a previous
+     * user.
+     */
+    private void openConnection()
+    {
+        try
+        {
+            connection = dataSource.getConnection();
+            copyManager = connection.unwrap( PGConnection.class ).getCopyAPI();
+
+            execute( "drop table if exists " + getStagingTableName() );
+            execute( "create temporary table " + getStagingTableName() + " as select " +
+                getColumnNames() + " from " + delegate.getTableName() + " limit 0" );
+        }
+        catch ( SQLException ex )
+        {
+            closeConnection();
+            throw new RuntimeException( "Failed to initialize COPY for table: " + delegate.getTableName(), ex );
+        }
+    }
+
+    /**
+     * Drops the staging table and returns the connection to the data source.
+     */
+    private void closeConnection()
+    {
+        if ( connection != null )
+        {
+            try
+            {
+                execute( "drop table if exists " + getStagingTableName() );
+            }
+            catch ( SQLException ex )
+            {
+                log.warn( "Failed to drop COPY staging table for table: " + delegate.getTableName(), ex );
+            }
+
+            try
+            {
+                connection.close();
+            }
+            catch ( SQLException ex )
+            {
+                log.warn( "Failed to close COPY connection for table: " + delegate.getTableName(), ex );
+            }
+
+            connection = null;
+            copyManager = null;
+        }
+
+        buffer.setLength( 0 );
+        bufferedRows = 0;
+        uniqueValues.clear();
+    }
+}
@@ -294,6 +294,53 @@ public abstract class AbstractStatementBuilder
         return sb.append( ") " ).append( table ).toString();
     }
 
+    /**
+     * Generates a derived table containing literals in any number of long
+     * columns.
+     *
+     * @param rows (non-empty) rows of long values for the table, each with
+     *        one value per column
+     * @param table the desired table name alias
+     * @param columns the desired column names
+     * @return the derived literal table
+     *
+     * The generic implementation, which works in all supported database
+     * types, returns a subquery in the following form:
+     * <code>
+     *     (select i1_1 as column1, i2_1 as column2
+     *      union select i1_2, i2_2
+     *      union select i1_3, i2_3) table
+     * </code>
+     */
+    @Override
+    public String literalLongsTable( List<List<Long>> rows, String table, List<String> columns )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        String before = "(select ";
+
+        for ( int i = 0; i < rows.size(); i++ )
+        {
+            List<Long> row = rows.get( i );
+
+            sb.append( before );
+
+            for ( int j = 0; j < columns.size(); j++ )
+            {
+                sb.append( j > 0 ? ", " : "" ).append( row.get( j ) );
+
+                if ( i == 0 )
+                {
+                    sb.append( " as " ).append( columns.get( j ) );
+                }
+            }
+
+            before = " union select ";
+        }
+
+        return sb.append( ") " ).append( table ).toString();
+    }
+
     @Override
     public boolean supportsPartialIndexes()
     {
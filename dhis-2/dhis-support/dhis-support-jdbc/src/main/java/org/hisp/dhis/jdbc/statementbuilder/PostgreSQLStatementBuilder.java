@@ -31,6 +31,8 @@ package org.hisp.dhis.jdbc.statementbuilder;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+
 /**
  * @author Lars Helge Overland
  */
@@ -256,6 +258,37 @@ public class PostgreSQLStatementBuilder
             .toString();
     }
 
+    /**
+     * Generates a derived table containing literals in any number of long
+     * columns.
+     *
+     * @param rows (non-empty) rows of long values for the table, each with
+     *        one value per column
+     * @param table the desired table name alias
+     * @param columns the desired column names
+     * @return the derived literal table
+     *
+     * The PostgreSQL implementation returns the following form:
+     * <code>
+     *     (values (i1_1, i2_1),(i1_2, i2_2),(i1_3, i2_3)) table (column1, column2)
+     * </code>
+     */
+    @Override
+    public String literalLongsTable( List<List<Long>> rows, String table, List<String> columns )
+    {
+        StringBuilder sb = new StringBuilder( "(values " );
+
+        for ( List<Long> row : rows )
+        {
+            sb.append( "(" ).append( StringUtils.join( row, ", " ) ).append( ")," );
+        }
+
+        return sb.deleteCharAt( sb.length() - 1 ) // Remove the final ','.
+            .append( ") " ).append( table )
+            .append( " (" ).append( StringUtils.join( columns, ", " ) ).append( ")" )
+            .toString();
+    }
+
     @Override
     public boolean supportsPartialIndexes()
     {
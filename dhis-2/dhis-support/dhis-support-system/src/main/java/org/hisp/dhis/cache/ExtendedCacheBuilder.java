@@ -28,6 +28,8 @@ package org.hisp.dhis.cache;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.hisp.dhis.external.conf.ConfigurationKey;
 import org.hisp.dhis.external.conf.DhisConfigurationProvider;
@@ -48,13 +50,22 @@ public class ExtendedCacheBuilder<V> extends SimpleCacheBuilder<V>
 
     private RedisTemplate<String, ?> redisTemplate;
 
+    private MeterRegistry meterRegistry;
+
     private boolean forceInMemory;
     
     public ExtendedCacheBuilder( RedisTemplate<String, ?> redisTemplate, DhisConfigurationProvider configurationProvider )
+    {
+        this( redisTemplate, configurationProvider, null );
+    }
+
+    public ExtendedCacheBuilder( RedisTemplate<String, ?> redisTemplate, DhisConfigurationProvider configurationProvider,
+        MeterRegistry meterRegistry )
     {
         super();
         this.configurationProvider = configurationProvider;
         this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
         this.forceInMemory = false;
     }
 
@@ -100,18 +111,39 @@ public class ExtendedCacheBuilder<V> extends SimpleCacheBuilder<V>
         else if ( forceInMemory )
         {
             log.info( String.format( "Local Cache (forced) instance created for region:'%s'", getRegion() ) );
-            return new LocalCache<V>( this );
+            return registerMetrics( new LocalCache<V>( this ) );
         }
         else if ( configurationProvider.getProperty( ConfigurationKey.REDIS_ENABLED ).equalsIgnoreCase( "true" ) )
         {
             log.info( String.format( "Redis Cache instance created for region:'%s'", getRegion() ) );
-            return new RedisCache<V>( this );
+            return registerMetrics( new RedisCache<V>( this ) );
         }
         else
         {
             log.info( String.format( "Local Cache instance created for region:'%s'", getRegion() ) );
-            return new LocalCache<V>( this );
+            return registerMetrics( new LocalCache<V>( this ) );
+        }
+    }
+
+    /**
+     * Registers a counter of coalesced loads for the given cache if
+     * single-flight loading is enabled and a meter registry is available.
+     *
+     * @param cache the cache.
+     * @return the given cache.
+     */
+    private Cache<V> registerMetrics( Cache<V> cache )
+    {
+        if ( isSingleFlightLoading() && meterRegistry != null )
+        {
+            FunctionCounter.builder( "cache.loads.coalesced", cache, Cache::getCoalescedLoadCount )
+                .description( "The number of cache loads served by waiting for an in-flight load of the same key" )
+                .tag( "region", getRegion() )
+                .tag( "type", cache.getCacheType().name() )
+                .register( meterRegistry );
         }
+
+        return cache;
     }
 
     public RedisTemplate<String, ?> getRedisTemplate()
@@ -34,9 +34,17 @@ import static org.springframework.util.Assert.hasText;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * A redis backed implementation of {@link Cache}. This implementation uses a
@@ -44,8 +52,23 @@ import org.springframework.data.redis.core.RedisTemplate;
  * 
  * @author Ameen Mohamed
  */
+@Slf4j
 public class RedisCache<V> implements Cache<V>
 {
+    /**
+     * Time to live for the lock held by a node while loading a value for a key
+     * in single-flight mode. Nodes waiting for the value fall back to loading
+     * the value themselves once the lock expires.
+     */
+    private static final long LOAD_LOCK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis( 60 );
+
+    private static final long LOAD_POLL_INTERVAL_MILLIS = 50;
+
+    private static final String LOAD_LOCK_SUFFIX = ":loading";
+
+    private static final byte[] RELEASE_LOCK_SCRIPT = ( "if redis.call('get', KEYS[1]) == ARGV[1] " +
+        "then return redis.call('del', KEYS[1]) else return 0 end" ).getBytes();
+
     private RedisTemplate<String, V> redisTemplate;
 
     private boolean refreshExpriryOnAccess;
@@ -58,6 +81,8 @@ public class RedisCache<V> implements Cache<V>
 
     private boolean expiryEnabled;
 
+    private SingleFlightLoader<V> singleFlightLoader;
+
     /**
      * Constructor for instantiating RedisCache.
      * 
@@ -72,6 +97,7 @@ public class RedisCache<V> implements Cache<V>
         this.cacheRegion = cacheBuilder.getRegion();
         this.defaultValue = cacheBuilder.getDefaultValue();
         this.expiryEnabled = cacheBuilder.isExpiryEnabled();
+        this.singleFlightLoader = cacheBuilder.isSingleFlightLoading() ? new SingleFlightLoader<>() : null;
     }
 
     @Override
@@ -113,20 +139,17 @@ public class RedisCache<V> implements Cache<V>
         
         V value = redisTemplate.boundValueOps( redisKey ).get();
 
-        if ( null == value )
+        if ( null == value && null != singleFlightLoader )
+        {
+            value = singleFlightLoader.load( key, k -> loadExclusively( redisKey, k, mappingFunction ) );
+        }
+        else if ( null == value )
         {
             value = mappingFunction.apply( key );
 
             if ( null != value )
             {
-                if ( expiryEnabled )
-                {
-                    redisTemplate.boundValueOps( redisKey ).set( value, expiryInSeconds, SECONDS );
-                }
-                else
-                {
-                    redisTemplate.boundValueOps( redisKey ).set( value );
-                }
+                putValue( redisKey, value );
             }
         }
 
@@ -137,6 +160,7 @@ public class RedisCache<V> implements Cache<V>
     public Collection<V> getAll()
     {
         Set<String> keySet = redisTemplate.keys( cacheRegion + "*" );
+        keySet.removeIf( key -> key.endsWith( LOAD_LOCK_SUFFIX ) );
         return redisTemplate.opsForValue().multiGet( keySet );
     }
 
@@ -148,16 +172,7 @@ public class RedisCache<V> implements Cache<V>
             throw new IllegalArgumentException( "Value cannot be null" );
         }
         
-        String redisKey = generateActualKey( key );
-
-        if ( expiryEnabled )
-        {
-            redisTemplate.boundValueOps( redisKey ).set( value, expiryInSeconds, SECONDS );
-        }
-        else
-        {
-            redisTemplate.boundValueOps( redisKey ).set( value );
-        }
+        putValue( generateActualKey( key ), value );
     }
 
     @Override
@@ -187,9 +202,135 @@ public class RedisCache<V> implements Cache<V>
         redisTemplate.delete( keysToDelete );
     }
 
+    @Override
+    public long getCoalescedLoadCount()
+    {
+        return singleFlightLoader != null ? singleFlightLoader.getCoalescedLoadCount() : 0;
+    }
+
     @Override
     public CacheType getCacheType()
     {
         return CacheType.REDIS;
     }
+
+    private void putValue( String redisKey, V value )
+    {
+        if ( expiryEnabled )
+        {
+            redisTemplate.boundValueOps( redisKey ).set( value, expiryInSeconds, SECONDS );
+        }
+        else
+        {
+            redisTemplate.boundValueOps( redisKey ).set( value );
+        }
+    }
+
+    /**
+     * Loads the value for the given key while holding a cluster wide lock for
+     * the key, so that only one node evaluates the mapping function at a time.
+     * If another node holds the lock, waits for that node to store the value
+     * until the lock is released or expires, and then falls back to loading
+     * the value locally.
+     */
+    private V loadExclusively( String redisKey, String key, Function<String, V> mappingFunction )
+    {
+        V value = redisTemplate.boundValueOps( redisKey ).get();
+
+        if ( null != value )
+        {
+            return value;
+        }
+
+        String lockKey = redisKey.concat( LOAD_LOCK_SUFFIX );
+        byte[] lockToken = UUID.randomUUID().toString().getBytes();
+
+        boolean locked = acquireLoadLock( lockKey, lockToken );
+
+        if ( !locked )
+        {
+            value = awaitRemoteLoad( redisKey, lockKey );
+
+            if ( null != value )
+            {
+                singleFlightLoader.recordCoalescedLoad();
+                return value;
+            }
+
+            log.debug( String.format( "Remote load for key '%s' did not complete, loading locally", redisKey ) );
+
+            locked = acquireLoadLock( lockKey, lockToken );
+        }
+
+        try
+        {
+            value = mappingFunction.apply( key );
+
+            if ( null != value )
+            {
+                putValue( redisKey, value );
+            }
+
+            return value;
+        }
+        finally
+        {
+            if ( locked )
+            {
+                releaseLoadLock( lockKey, lockToken );
+            }
+        }
+    }
+
+    private V awaitRemoteLoad( String redisKey, String lockKey )
+    {
+        long deadline = System.currentTimeMillis() + LOAD_LOCK_TIMEOUT_MILLIS;
+
+        while ( System.currentTimeMillis() < deadline )
+        {
+            try
+            {
+                Thread.sleep( LOAD_POLL_INTERVAL_MILLIS );
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+
+            V value = redisTemplate.boundValueOps( redisKey ).get();
+
+            if ( null != value )
+            {
+                return value;
+            }
+
+            if ( !Boolean.TRUE.equals( redisTemplate.hasKey( lockKey ) ) )
+            {
+                return redisTemplate.boundValueOps( redisKey ).get();
+            }
+        }
+
+        return null;
+    }
+
+    private boolean acquireLoadLock( String lockKey, byte[] lockToken )
+    {
+        Boolean acquired = redisTemplate.execute( (RedisCallback<Boolean>) connection -> connection.set(
+            lockKey.getBytes(), lockToken, Expiration.milliseconds( LOAD_LOCK_TIMEOUT_MILLIS ),
+            SetOption.SET_IF_ABSENT ) );
+
+        return Boolean.TRUE.equals( acquired );
+    }
+
+    /**
+     * Deletes the lock only if it still holds the given token. The compare and
+     * delete run as a single script so that a lock which expired and was taken
+     * by another node in the meantime is not released.
+     */
+    private void releaseLoadLock( String lockKey, byte[] lockToken )
+    {
+        redisTemplate.execute( (RedisCallback<Long>) connection -> connection.eval(
+            RELEASE_LOCK_SCRIPT, ReturnType.INTEGER, 1, lockKey.getBytes(), lockToken ) );
+    }
 }
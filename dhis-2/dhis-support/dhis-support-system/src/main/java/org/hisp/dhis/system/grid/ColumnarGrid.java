@@ -0,0 +1,1089 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.apache.commons.lang3.Validate;
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.adapter.JacksonRowDataSerializer;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.collect.Iterables;
+
+/**
+ * {@link Grid} implementation which stores values column by column. Columns
+ * holding only doubles are stored as primitive arrays with a null bitmap.
+ * Other columns are dictionary encoded, where each distinct value is held once
+ * and rows refer to it by an int code, which suits columns of dimension item
+ * identifiers. Dictionary encoded columns with mostly distinct values fall
+ * back to plain object arrays.
+ * <p>
+ * Rows are exposed as views on the columns. Row views support reading and
+ * replacing values, but not adding or removing values. Sorting, limiting and
+ * meta data substitution operate on the columns. Rows with fewer values than
+ * the grid has columns are padded with null values when the next row is
+ * added.
+ */
+public class ColumnarGrid
+    extends AbstractGrid
+{
+    /**
+     * The columns of the grid.
+     */
+    private List<Column> columns = new ArrayList<>();
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int height = 0;
+
+    /**
+     * The number of values written to the current row for writing data,
+     * which is the last row.
+     */
+    private int currentRowWidth = 0;
+
+    /**
+     * Default constructor.
+     */
+    public ColumnarGrid()
+    {
+        super( new HashMap<>(), new HashMap<>() );
+    }
+
+    /**
+     * @param metaData meta data.
+     * @param internalMetaData internal meta data.
+     */
+    public ColumnarGrid( Map<String, Object> metaData, Map<String, Object> internalMetaData )
+    {
+        super( metaData, internalMetaData );
+    }
+
+    // ---------------------------------------------------------------------
+    // Public methods
+    // ---------------------------------------------------------------------
+
+    @Override
+    @JsonProperty
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    @JsonProperty
+    public int getWidth()
+    {
+        return height > 0 ? columns.size() : 0;
+    }
+
+    @Override
+    public int getVisibleWidth()
+    {
+        if ( height == 0 || headers.isEmpty() )
+        {
+            return 0;
+        }
+
+        int width = 0;
+
+        for ( int i = 0; i < getRow( 0 ).size(); i++ )
+        {
+            if ( !headers.get( i ).isHidden() )
+            {
+                width++;
+            }
+        }
+
+        return width;
+    }
+
+    @Override
+    public Grid addRow()
+    {
+        completeRows();
+
+        height++;
+        currentRowWidth = 0;
+
+        return this;
+    }
+
+    @Override
+    public Grid addRows( Grid grid )
+    {
+        for ( List<Object> row : grid.getRows() )
+        {
+            addRow();
+            addValuesAsList( row );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addValue( Object value )
+    {
+        if ( height == 0 )
+        {
+            throw new IllegalStateException( "Grid has no row to add values to" );
+        }
+
+        if ( currentRowWidth == columns.size() )
+        {
+            columns.add( new DoubleColumn() );
+        }
+
+        Column column = columns.get( currentRowWidth );
+        column.padTo( height - 1 );
+        columns.set( currentRowWidth, column.add( value ) );
+
+        currentRowWidth++;
+
+        return this;
+    }
+
+    @Override
+    public Grid addValues( Object[] values )
+    {
+        for ( Object value : values )
+        {
+            addValue( value );
+        }
+
+        return this;
+    }
+
+    @Override
+    public List<Object> getRow( int rowIndex )
+    {
+        if ( rowIndex < 0 || rowIndex >= height )
+        {
+            throw new IndexOutOfBoundsException( "Row index: " + rowIndex + ", height: " + height );
+        }
+
+        return new RowView( rowIndex );
+    }
+
+    @Override
+    @JsonProperty
+    @JsonSerialize( using = JacksonRowDataSerializer.class )
+    public List<List<Object>> getRows()
+    {
+        return new RowsView();
+    }
+
+    @Override
+    public List<List<Object>> getVisibleRows()
+    {
+        List<List<Object>> tempGrid = new ArrayList<>();
+
+        if ( headers != null && headers.size() > 0 )
+        {
+            for ( int row = 0; row < height; row++ )
+            {
+                List<Object> tempRow = new ArrayList<>();
+
+                for ( int i = 0; i < getRowWidth( row ); i++ )
+                {
+                    if ( !headers.get( i ).isHidden() )
+                    {
+                        tempRow.add( columns.get( i ).get( row ) );
+                    }
+                }
+
+                tempGrid.add( tempRow );
+            }
+        }
+
+        return tempGrid;
+    }
+
+    @Override
+    public List<Object> getColumn( int columnIndex )
+    {
+        List<Object> column = new ArrayList<>( height );
+
+        if ( height > 0 )
+        {
+            Column values = columns.get( columnIndex );
+
+            for ( int row = 0; row < height; row++ )
+            {
+                column.add( row < values.size() ? values.get( row ) : null );
+            }
+        }
+
+        return column;
+    }
+
+    @Override
+    public Object getValue( int rowIndex, int columnIndex )
+    {
+        if ( rowIndex < 0 || rowIndex >= height || columnIndex < 0 || columnIndex >= getRowWidth( rowIndex ) )
+        {
+            throw new IllegalArgumentException( "Grid does not contain the requested row / column" );
+        }
+
+        return columns.get( columnIndex ).get( rowIndex );
+    }
+
+    @Override
+    public Grid addColumn( List<Object> columnValues )
+    {
+        return addColumn( columns.size(), columnValues );
+    }
+
+    @Override
+    public Grid addColumn( int columnIndex, List<Object> columnValues )
+    {
+        if ( height != columnValues.size() )
+        {
+            throw new IllegalStateException( "Number of column values (" + columnValues.size() + ") is not equal to number of rows (" + height + ")" );
+        }
+
+        if ( height == 0 )
+        {
+            return this;
+        }
+
+        completeRows();
+
+        Column column = new DoubleColumn();
+
+        for ( Object value : columnValues )
+        {
+            column = column.add( value );
+        }
+
+        columns.add( columnIndex, column );
+        currentRowWidth = columns.size();
+
+        return this;
+    }
+
+    @Override
+    public Grid addAndPopulateColumnsBefore( int referenceColumnIndex, Map<Object, List<?>> valueMap, int newColumns )
+    {
+        Validate.inclusiveBetween( 0, getWidth() - 1, referenceColumnIndex );
+        Validate.notNull( valueMap );
+
+        completeRows();
+
+        Column referenceColumn = columns.get( referenceColumnIndex );
+
+        List<Column> populatedColumns = new ArrayList<>();
+
+        for ( int i = 0; i < newColumns; i++ )
+        {
+            populatedColumns.add( new DoubleColumn() );
+        }
+
+        for ( int row = 0; row < height; row++ )
+        {
+            List<?> list = valueMap.get( referenceColumn.get( row ) );
+
+            for ( int i = 0; i < newColumns; i++ )
+            {
+                Object value = list == null ? null : Iterables.get( list, i, null );
+                populatedColumns.set( i, populatedColumns.get( i ).add( value ) );
+            }
+        }
+
+        columns.addAll( referenceColumnIndex, populatedColumns );
+        currentRowWidth = columns.size();
+
+        return this;
+    }
+
+    @Override
+    public boolean columnIsEmpty( int columnIndex )
+    {
+        if ( height == 0 )
+        {
+            return true;
+        }
+
+        Column column = columns.get( columnIndex );
+
+        for ( int row = 0; row < column.size(); row++ )
+        {
+            if ( !column.isNull( row ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public Grid removeColumn( int columnIndex )
+    {
+        if ( headers.size() > 0 )
+        {
+            headers.remove( columnIndex );
+        }
+
+        if ( height > 0 )
+        {
+            completeRows();
+
+            columns.remove( columnIndex );
+            currentRowWidth = columns.size();
+        }
+
+        updateColumnIndexMap();
+
+        return this;
+    }
+
+    @Override
+    public Grid removeCurrentWriteRow()
+    {
+        if ( height == 0 )
+        {
+            throw new IndexOutOfBoundsException( "Grid has no row to remove" );
+        }
+
+        height--;
+
+        for ( Column column : columns )
+        {
+            column.truncate( height );
+        }
+
+        if ( height == 0 )
+        {
+            columns.clear();
+        }
+
+        currentRowWidth = height > 0 ? columns.size() : 0;
+
+        return this;
+    }
+
+    @Override
+    public Grid limitGrid( int limit )
+    {
+        if ( limit < 0 )
+        {
+            throw new IllegalStateException( "Illegal limit: " + limit );
+        }
+
+        if ( limit > 0 && limit <= height )
+        {
+            slice( 0, limit );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid limitGrid( int startPos, int endPos )
+    {
+        if ( startPos < 0 || endPos < startPos || endPos > height )
+        {
+            throw new IllegalStateException( "Illegal start / end pos: " + startPos + ", " + endPos + ", " + height );
+        }
+
+        slice( startPos, endPos );
+
+        return this;
+    }
+
+    @Override
+    public Grid sortGrid( int columnIndex, int order )
+    {
+        if ( order == 0 )
+        {
+            return this; // No sorting
+        }
+
+        columnIndex--;
+
+        if ( columnIndex < 0 || columnIndex >= getWidth() )
+        {
+            throw new IllegalArgumentException( "Column index out of bounds: " + columnIndex );
+        }
+
+        completeRows();
+
+        final Column column = columns.get( columnIndex );
+
+        Integer[] rows = new Integer[height];
+
+        for ( int row = 0; row < height; row++ )
+        {
+            rows[row] = row;
+        }
+
+        Arrays.sort( rows, new ColumnRowComparator( column, order ) );
+
+        int[] permutation = new int[height];
+
+        for ( int row = 0; row < height; row++ )
+        {
+            permutation[row] = rows[row];
+        }
+
+        columns.replaceAll( c -> c.permute( permutation ) );
+
+        return this;
+    }
+
+    @Override
+    public Grid substituteMetaData( int sourceColumnIndex, int targetColumnIndex, Map<? extends Object, ? extends Object> metaDataMap )
+    {
+        if ( metaDataMap == null || height == 0 )
+        {
+            return this;
+        }
+
+        completeRows();
+
+        Column source = columns.get( sourceColumnIndex );
+
+        if ( sourceColumnIndex == targetColumnIndex && source instanceof DictionaryColumn )
+        {
+            ((DictionaryColumn) source).substitute( metaDataMap );
+
+            return this;
+        }
+
+        Column target = columns.get( targetColumnIndex );
+
+        for ( int row = 0; row < height; row++ )
+        {
+            Object metaValue = metaDataMap.get( source.get( row ) );
+
+            if ( metaValue != null )
+            {
+                target = target.set( row, metaValue );
+            }
+        }
+
+        columns.set( targetColumnIndex, target );
+
+        return this;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Completes the current row for writing data, as rows with fewer values
+     * than the grid has columns are padded with null values.
+     */
+    @Override
+    protected void verifyGridState()
+    {
+        completeRows();
+    }
+
+    /**
+     * Pads all columns with null values up to the height of the grid, which
+     * completes the current row for writing data.
+     */
+    private void completeRows()
+    {
+        for ( Column column : columns )
+        {
+            column.padTo( height );
+        }
+
+        currentRowWidth = columns.size();
+    }
+
+    private int getRowWidth( int rowIndex )
+    {
+        return rowIndex == height - 1 ? currentRowWidth : columns.size();
+    }
+
+    private void slice( int startPos, int endPos )
+    {
+        completeRows();
+
+        columns.replaceAll( c -> c.slice( startPos, endPos ) );
+
+        height = endPos - startPos;
+
+        if ( height == 0 )
+        {
+            columns.clear();
+        }
+
+        currentRowWidth = height > 0 ? columns.size() : 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Row views
+    // -------------------------------------------------------------------------
+
+    private class RowsView
+        extends AbstractList<List<Object>>
+        implements RandomAccess
+    {
+        @Override
+        public List<Object> get( int index )
+        {
+            return getRow( index );
+        }
+
+        @Override
+        public int size()
+        {
+            return height;
+        }
+    }
+
+    private class RowView
+        extends AbstractList<Object>
+        implements RandomAccess
+    {
+        private final int row;
+
+        RowView( int row )
+        {
+            this.row = row;
+        }
+
+        @Override
+        public Object get( int index )
+        {
+            return getValue( row, index );
+        }
+
+        @Override
+        public Object set( int index, Object value )
+        {
+            Object previous = getValue( row, index );
+
+            columns.set( index, columns.get( index ).set( row, value ) );
+
+            return previous;
+        }
+
+        @Override
+        public int size()
+        {
+            return getRowWidth( row );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Comparator
+    // -------------------------------------------------------------------------
+
+    /**
+     * Compares rows by the values of a column, with the same ordering as
+     * {@link ListGrid.GridRowComparator}.
+     */
+    private static class ColumnRowComparator
+        implements Comparator<Integer>
+    {
+        private final Column column;
+
+        private final int order;
+
+        ColumnRowComparator( Column column, int order )
+        {
+            this.column = column;
+            this.order = order;
+        }
+
+        @Override
+        public int compare( Integer row1, Integer row2 )
+        {
+            boolean row1Invalid = !column.isComparable( row1 );
+            boolean row2Invalid = !column.isComparable( row2 );
+
+            if ( row1Invalid && row2Invalid )
+            {
+                return 0;
+            }
+            else if ( row1Invalid )
+            {
+                return order > 0 ? 1 : -1;
+            }
+            else if ( row2Invalid )
+            {
+                return order > 0 ? -1 : 1;
+            }
+
+            return order > 0 ? column.compare( row2, row1 ) : column.compare( row1, row2 );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Columns
+    // -------------------------------------------------------------------------
+
+    /**
+     * Storage of the values of a column. Operations which add or replace
+     * values return the column to use from then on, as a column might have to
+     * convert itself to another kind of column to store a value.
+     */
+    private abstract static class Column
+        implements Serializable
+    {
+        protected int size = 0;
+
+        int size()
+        {
+            return size;
+        }
+
+        abstract Object get( int row );
+
+        abstract boolean isNull( int row );
+
+        abstract Column set( int row, Object value );
+
+        abstract Column add( Object value );
+
+        abstract Column slice( int from, int to );
+
+        abstract Column permute( int[] rows );
+
+        void padTo( int rows )
+        {
+            while ( size < rows )
+            {
+                add( null );
+            }
+        }
+
+        void truncate( int rows )
+        {
+            size = Math.min( size, rows );
+        }
+
+        boolean isComparable( int row )
+        {
+            return !isNull( row ) && get( row ) instanceof Comparable<?>;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        int compare( int row1, int row2 )
+        {
+            return ((Comparable<Object>) get( row1 )).compareTo( get( row2 ) );
+        }
+
+        Column toObjectColumn()
+        {
+            ObjectColumn column = new ObjectColumn( Math.max( size, 16 ) );
+
+            for ( int row = 0; row < size; row++ )
+            {
+                column.add( get( row ) );
+            }
+
+            return column;
+        }
+
+        static int grow( int capacity )
+        {
+            return Math.max( 16, capacity + ( capacity >> 1 ) );
+        }
+    }
+
+    /**
+     * Column of doubles, stored as primitive values with a null bitmap.
+     */
+    private static class DoubleColumn
+        extends Column
+    {
+        private double[] values;
+
+        private BitSet nulls = new BitSet();
+
+        DoubleColumn()
+        {
+            this( 16 );
+        }
+
+        DoubleColumn( int capacity )
+        {
+            this.values = new double[capacity];
+        }
+
+        @Override
+        Object get( int row )
+        {
+            return nulls.get( row ) ? null : values[row];
+        }
+
+        @Override
+        boolean isNull( int row )
+        {
+            return nulls.get( row );
+        }
+
+        @Override
+        Column set( int row, Object value )
+        {
+            if ( value != null && value.getClass() != Double.class )
+            {
+                return toDictionaryColumn().set( row, value );
+            }
+
+            nulls.set( row, value == null );
+            values[row] = value == null ? 0d : (Double) value;
+
+            return this;
+        }
+
+        @Override
+        Column add( Object value )
+        {
+            if ( value != null && value.getClass() != Double.class )
+            {
+                return toDictionaryColumn().add( value );
+            }
+
+            if ( size == values.length )
+            {
+                values = Arrays.copyOf( values, grow( size ) );
+            }
+
+            size++;
+
+            return set( size - 1, value );
+        }
+
+        @Override
+        Column slice( int from, int to )
+        {
+            DoubleColumn column = new DoubleColumn( Math.max( to - from, 1 ) );
+            System.arraycopy( values, from, column.values, 0, to - from );
+            column.nulls = nulls.get( from, to );
+            column.size = to - from;
+
+            return column;
+        }
+
+        @Override
+        Column permute( int[] rows )
+        {
+            DoubleColumn column = new DoubleColumn( Math.max( rows.length, 1 ) );
+
+            for ( int i = 0; i < rows.length; i++ )
+            {
+                column.values[i] = values[rows[i]];
+                column.nulls.set( i, nulls.get( rows[i] ) );
+            }
+
+            column.size = rows.length;
+
+            return column;
+        }
+
+        @Override
+        void truncate( int rows )
+        {
+            super.truncate( rows );
+
+            nulls.clear( size, Math.max( size, nulls.length() ) );
+        }
+
+        @Override
+        boolean isComparable( int row )
+        {
+            return !nulls.get( row );
+        }
+
+        @Override
+        int compare( int row1, int row2 )
+        {
+            return Double.compare( values[row1], values[row2] );
+        }
+
+        private Column toDictionaryColumn()
+        {
+            DictionaryColumn column = new DictionaryColumn( Math.max( size, 16 ) );
+
+            for ( int row = 0; row < size; row++ )
+            {
+                column.add( get( row ) );
+            }
+
+            return column;
+        }
+    }
+
+    /**
+     * Column of arbitrary values, where each distinct value is stored once
+     * in a dictionary and rows hold the code of the value in the dictionary.
+     * Converts to an {@link ObjectColumn} when most values are distinct.
+     */
+    private static class DictionaryColumn
+        extends Column
+    {
+        private static final int NULL_CODE = -1;
+
+        private static final int MIN_DICTIONARY_SIZE = 1024;
+
+        private int[] codes;
+
+        private List<Object> dictionary = new ArrayList<>();
+
+        private Map<Object, Integer> lookup = new HashMap<>();
+
+        DictionaryColumn( int capacity )
+        {
+            this.codes = new int[capacity];
+        }
+
+        @Override
+        Object get( int row )
+        {
+            return codes[row] == NULL_CODE ? null : dictionary.get( codes[row] );
+        }
+
+        @Override
+        boolean isNull( int row )
+        {
+            return codes[row] == NULL_CODE;
+        }
+
+        @Override
+        Column set( int row, Object value )
+        {
+            codes[row] = encode( value );
+
+            return isMostlyDistinct() ? toObjectColumn() : this;
+        }
+
+        @Override
+        Column add( Object value )
+        {
+            if ( size == codes.length )
+            {
+                codes = Arrays.copyOf( codes, grow( size ) );
+            }
+
+            size++;
+
+            return set( size - 1, value );
+        }
+
+        @Override
+        Column slice( int from, int to )
+        {
+            DictionaryColumn column = copyDictionary( Math.max( to - from, 1 ) );
+            System.arraycopy( codes, from, column.codes, 0, to - from );
+            column.size = to - from;
+
+            return column;
+        }
+
+        @Override
+        Column permute( int[] rows )
+        {
+            DictionaryColumn column = copyDictionary( Math.max( rows.length, 1 ) );
+
+            for ( int i = 0; i < rows.length; i++ )
+            {
+                column.codes[i] = codes[rows[i]];
+            }
+
+            column.size = rows.length;
+
+            return column;
+        }
+
+        /**
+         * Replaces the values of the column with the values they map to in the
+         * given map, where present. Looks up each distinct value once.
+         *
+         * @param metaDataMap the map of values to substitute values with.
+         */
+        void substitute( Map<? extends Object, ? extends Object> metaDataMap )
+        {
+            for ( int code = 0; code < dictionary.size(); code++ )
+            {
+                Object metaValue = metaDataMap.get( dictionary.get( code ) );
+
+                if ( metaValue != null )
+                {
+                    dictionary.set( code, metaValue );
+                }
+            }
+
+            lookup.clear();
+
+            for ( int code = 0; code < dictionary.size(); code++ )
+            {
+                lookup.putIfAbsent( dictionary.get( code ), code );
+            }
+
+            for ( int row = 0; row < size; row++ )
+            {
+                if ( codes[row] == NULL_CODE )
+                {
+                    Object metaValue = metaDataMap.get( null );
+
+                    if ( metaValue == null )
+                    {
+                        break;
+                    }
+
+                    codes[row] = encode( metaValue );
+                }
+            }
+        }
+
+        private int encode( Object value )
+        {
+            if ( value == null )
+            {
+                return NULL_CODE;
+            }
+
+            Integer code = lookup.get( value );
+
+            if ( code == null )
+            {
+                code = dictionary.size();
+                dictionary.add( value );
+                lookup.put( value, code );
+            }
+
+            return code;
+        }
+
+        private boolean isMostlyDistinct()
+        {
+            return dictionary.size() > MIN_DICTIONARY_SIZE && dictionary.size() > size / 2;
+        }
+
+        private DictionaryColumn copyDictionary( int capacity )
+        {
+            DictionaryColumn column = new DictionaryColumn( capacity );
+            column.dictionary = new ArrayList<>( dictionary );
+            column.lookup = new HashMap<>( lookup );
+
+            return column;
+        }
+    }
+
+    /**
+     * Column of arbitrary values stored as an object array.
+     */
+    private static class ObjectColumn
+        extends Column
+    {
+        private Object[] values;
+
+        ObjectColumn( int capacity )
+        {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        Object get( int row )
+        {
+            return values[row];
+        }
+
+        @Override
+        boolean isNull( int row )
+        {
+            return values[row] == null;
+        }
+
+        @Override
+        Column set( int row, Object value )
+        {
+            values[row] = value;
+
+            return this;
+        }
+
+        @Override
+        Column add( Object value )
+        {
+            if ( size == values.length )
+            {
+                values = Arrays.copyOf( values, grow( size ) );
+            }
+
+            values[size++] = value;
+
+            return this;
+        }
+
+        @Override
+        Column slice( int from, int to )
+        {
+            ObjectColumn column = new ObjectColumn( Math.max( to - from, 1 ) );
+            System.arraycopy( values, from, column.values, 0, to - from );
+            column.size = to - from;
+
+            return column;
+        }
+
+        @Override
+        Column permute( int[] rows )
+        {
+            ObjectColumn column = new ObjectColumn( Math.max( rows.length, 1 ) );
+
+            for ( int i = 0; i < rows.length; i++ )
+            {
+                column.values[i] = values[rows[i]];
+            }
+
+            column.size = rows.length;
+
+            return column;
+        }
+
+        @Override
+        void truncate( int rows )
+        {
+            super.truncate( rows );
+
+            Arrays.fill( values, size, values.length, null );
+        }
+    }
+}
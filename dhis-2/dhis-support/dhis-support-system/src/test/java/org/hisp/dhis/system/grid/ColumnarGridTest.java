@@ -0,0 +1,190 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.GridHeader;
+import org.hisp.dhis.common.ValueType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnarGridTest
+{
+    private Grid grid;
+
+    @Before
+    public void setUp()
+    {
+        grid = new ColumnarGrid();
+
+        grid.addHeader( new GridHeader( "ColA", "colA", ValueType.TEXT, String.class.getName(), false, true ) );
+        grid.addHeader( new GridHeader( "ColB", "colB", ValueType.TEXT, String.class.getName(), false, true ) );
+        grid.addHeader( new GridHeader( "ColC", "colC", ValueType.NUMBER, Double.class.getName(), false, false ) );
+
+        grid.addRow().addValuesVar( "de1", "ou1", 3d );
+        grid.addRow().addValuesVar( "de2", "ou1", 1d );
+        grid.addRow().addValuesVar( "de1", "ou2", null );
+        grid.addRow().addValuesVar( "de2", "ou2", 2d );
+    }
+
+    @Test
+    public void testGetRows()
+    {
+        // Then
+        assertThat( grid.getHeight(), is( 4 ) );
+        assertThat( grid.getWidth(), is( 3 ) );
+        assertThat( grid.getRows().get( 0 ), is( Arrays.asList( "de1", "ou1", 3d ) ) );
+        assertThat( grid.getRow( 2 ), is( Arrays.asList( "de1", "ou2", null ) ) );
+        assertThat( grid.getColumn( 1 ), is( Arrays.asList( "ou1", "ou1", "ou2", "ou2" ) ) );
+        assertThat( grid.getValue( 3, 2 ), is( 2d ) );
+    }
+
+    @Test
+    public void testSetRowValue()
+    {
+        // When
+        grid.getRow( 1 ).set( 2, "N/A" );
+        grid.getRow( 3 ).set( 0, "de3" );
+
+        // Then
+        assertThat( grid.getColumn( 2 ), is( Arrays.asList( 3d, "N/A", null, 2d ) ) );
+        assertThat( grid.getColumn( 0 ), is( Arrays.asList( "de1", "de2", "de1", "de3" ) ) );
+    }
+
+    @Test
+    public void testMixedValueTypes()
+    {
+        // Given
+        final Grid mixed = new ColumnarGrid();
+
+        // When
+        mixed.addRow().addValuesVar( 1d, 7 );
+        mixed.addRow().addValuesVar( "a", 8L );
+        mixed.addRow().addValuesVar( 2d );
+
+        // Then
+        assertThat( mixed.getColumn( 0 ), is( Arrays.asList( 1d, "a", 2d ) ) );
+        assertThat( mixed.getRow( 1 ), is( Arrays.asList( "a", 8L ) ) );
+        assertThat( mixed.getRow( 2 ).size(), is( 1 ) );
+
+        // When
+        mixed.addRow();
+
+        // Then
+        assertThat( mixed.getRow( 2 ), is( Arrays.asList( 2d, null ) ) );
+    }
+
+    @Test
+    public void testSortGrid()
+    {
+        // When
+        grid.sortGrid( 3, 1 );
+
+        // Then
+        assertThat( grid.getColumn( 2 ), is( Arrays.asList( 3d, 2d, 1d, null ) ) );
+        assertThat( grid.getColumn( 0 ), is( Arrays.asList( "de1", "de2", "de2", "de1" ) ) );
+
+        // When
+        grid.sortGrid( 2, -1 );
+
+        // Then
+        assertThat( grid.getColumn( 1 ), is( Arrays.asList( "ou1", "ou1", "ou2", "ou2" ) ) );
+        assertThat( grid.getColumn( 2 ), is( Arrays.asList( 3d, 1d, 2d, null ) ) );
+    }
+
+    @Test
+    public void testLimitGrid()
+    {
+        // When
+        grid.limitGrid( 1, 3 );
+
+        // Then
+        assertThat( grid.getHeight(), is( 2 ) );
+        assertThat( grid.getRow( 0 ), is( Arrays.asList( "de2", "ou1", 1d ) ) );
+        assertThat( grid.getRow( 1 ), is( Arrays.asList( "de1", "ou2", null ) ) );
+    }
+
+    @Test
+    public void testSubstituteMetaData()
+    {
+        // Given
+        final Map<Object, Object> metaData = new HashMap<>();
+        metaData.put( "de1", "Malaria" );
+        metaData.put( "ou2", "Bo" );
+
+        // When
+        grid.substituteMetaData( 0, 0, metaData );
+        grid.substituteMetaData( 1, 1, metaData );
+
+        // Then
+        assertThat( grid.getColumn( 0 ), is( Arrays.asList( "Malaria", "de2", "Malaria", "de2" ) ) );
+        assertThat( grid.getColumn( 1 ), is( Arrays.asList( "ou1", "ou1", "Bo", "Bo" ) ) );
+    }
+
+    @Test
+    public void testRemoveColumnAndCurrentWriteRow()
+    {
+        // When
+        grid.removeColumn( 1 );
+        grid.removeCurrentWriteRow();
+
+        // Then
+        final List<List<Object>> rows = grid.getRows();
+
+        assertThat( grid.getHeaders().size(), is( 2 ) );
+        assertThat( rows.size(), is( 3 ) );
+        assertThat( rows.get( 2 ), is( Arrays.asList( "de1", null ) ) );
+        assertThat( grid.getIndexOfHeader( "ColC" ), is( 1 ) );
+    }
+
+    @Test
+    public void testRemoveAllRows()
+    {
+        // When
+        grid.limitGrid( 0, 0 );
+
+        // Then
+        assertThat( grid.getHeight(), is( 0 ) );
+        assertThat( grid.getWidth(), is( 0 ) );
+        assertThat( grid.getRows().isEmpty(), is( true ) );
+        assertThat( grid.getHeaders().size(), is( 3 ) );
+        assertThat( grid.getVisibleWidth(), is( 0 ) );
+        assertThat( grid.columnIsEmpty( 0 ), is( true ) );
+        assertThat( grid.getMetaData().get( "missing" ), is( nullValue() ) );
+    }
+}
@@ -28,13 +28,16 @@ package org.hisp.dhis.webapi.controller;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.EventOutputType;
 import org.hisp.dhis.analytics.Rectangle;
 import org.hisp.dhis.analytics.SortOrder;
 import org.hisp.dhis.analytics.event.EventAnalyticsService;
 import org.hisp.dhis.analytics.event.EventDataQueryService;
+import org.hisp.dhis.analytics.event.EventPageToken;
 import org.hisp.dhis.analytics.event.EventQueryParams;
+import org.hisp.dhis.analytics.event.EventStreamHandler;
 import org.hisp.dhis.common.*;
 import org.hisp.dhis.common.cache.CacheStrategy;
 import org.hisp.dhis.event.EventStatus;
@@ -42,6 +45,7 @@ import org.hisp.dhis.program.ProgramStatus;
 import org.hisp.dhis.system.grid.GridUtils;
 import org.hisp.dhis.webapi.mvc.annotation.ApiVersion;
 import org.hisp.dhis.webapi.utils.ContextUtils;
+import org.hisp.dhis.webapi.webdomain.EventStreamParams;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -51,8 +55,18 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.csvreader.CsvWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -75,6 +89,9 @@ public class EventAnalyticsController
     @Autowired
     private ContextUtils contextUtils;
 
+    @Autowired
+    private ObjectMapper jsonMapper;
+
     // -------------------------------------------------------------------------
     // Aggregate
     // -------------------------------------------------------------------------
@@ -752,4 +769,164 @@ public class EventAnalyticsController
         Grid grid = analyticsService.getEvents( params );
         GridUtils.toHtmlCss( grid, response.getWriter() );
     }
+
+    // -------------------------------------------------------------------------
+    // Stream
+    // -------------------------------------------------------------------------
+
+    @RequestMapping( value = RESOURCE_PATH + "/stream/{program}", method = RequestMethod.GET )
+    public void getStreamJson(
+        @PathVariable String program,
+        @RequestParam Set<String> dimension,
+        EventStreamParams streamParams,
+        DhisApiVersion apiVersion,
+        HttpServletResponse response ) throws Exception
+    {
+        contextUtils.configureResponse( response, ContextUtils.CONTENT_TYPE_JSON, CacheStrategy.NO_CACHE );
+        streamEvents( program, dimension, streamParams, apiVersion, new JsonEventStreamHandler( response.getOutputStream() ) );
+    }
+
+    @RequestMapping( value = RESOURCE_PATH + "/stream/{program}.csv", method = RequestMethod.GET )
+    public void getStreamCsv(
+        @PathVariable String program,
+        @RequestParam Set<String> dimension,
+        EventStreamParams streamParams,
+        DhisApiVersion apiVersion,
+        HttpServletResponse response ) throws Exception
+    {
+        contextUtils.configureResponse( response, ContextUtils.CONTENT_TYPE_CSV, CacheStrategy.NO_CACHE, "events.csv", true );
+        streamEvents( program, dimension, streamParams, apiVersion, new CsvEventStreamHandler( response.getWriter() ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Streams the events of the query given by the request parameters to the
+     * given handler.
+     */
+    private void streamEvents( String program, Set<String> dimension, EventStreamParams streamParams,
+        DhisApiVersion apiVersion, EventStreamHandler handler )
+    {
+        EventQueryParams params = eventDataQueryService.getFromRequest( streamParams.toRequest( program, dimension, apiVersion ) );
+        EventPageToken token = EventPageToken.decode( streamParams.getPageToken() );
+
+        analyticsService.streamEvents( params, token, handler );
+    }
+
+    /**
+     * Writes streamed events as JSON on the same format as event query grids,
+     * where the page token of the next page is written last.
+     */
+    private class JsonEventStreamHandler
+        implements EventStreamHandler
+    {
+        private final JsonGenerator generator;
+
+        JsonEventStreamHandler( OutputStream out ) throws IOException
+        {
+            this.generator = jsonMapper.getFactory().createGenerator( out );
+        }
+
+        @Override
+        public void handleHeaders( List<GridHeader> headers )
+        {
+            write( () -> {
+                generator.writeStartObject();
+                generator.writeObjectField( "headers", headers );
+                generator.writeArrayFieldStart( "rows" );
+            } );
+        }
+
+        @Override
+        public void handleRow( List<Object> row )
+        {
+            write( () -> generator.writeObject( row ) );
+        }
+
+        @Override
+        public void handleMetaData( Map<String, Object> metaData, EventPageToken nextPageToken )
+        {
+            write( () -> {
+                generator.writeEndArray();
+                generator.writeObjectField( "metaData", metaData );
+
+                if ( nextPageToken != null )
+                {
+                    generator.writeStringField( "nextPageToken", nextPageToken.encode() );
+                }
+
+                generator.writeEndObject();
+                generator.flush();
+            } );
+        }
+    }
+
+    /**
+     * Writes streamed events as CSV. Meta data is not written.
+     */
+    private static class CsvEventStreamHandler
+        implements EventStreamHandler
+    {
+        private final Writer writer;
+
+        private final CsvWriter csvWriter;
+
+        CsvEventStreamHandler( Writer writer )
+        {
+            this.writer = writer;
+            this.csvWriter = new CsvWriter( writer, ',' );
+        }
+
+        @Override
+        public void handleHeaders( List<GridHeader> headers )
+        {
+            write( () -> {
+                for ( GridHeader header : headers )
+                {
+                    csvWriter.write( header.getColumn() );
+                }
+
+                csvWriter.endRecord();
+            } );
+        }
+
+        @Override
+        public void handleRow( List<Object> row )
+        {
+            write( () -> {
+                for ( Object value : row )
+                {
+                    csvWriter.write( value != null ? String.valueOf( value ) : StringUtils.EMPTY );
+                }
+
+                csvWriter.endRecord();
+            } );
+        }
+
+        @Override
+        public void handleMetaData( Map<String, Object> metaData, EventPageToken nextPageToken )
+        {
+            write( writer::flush );
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOAction
+    {
+        void run() throws IOException;
+    }
+
+    private static void write( IOAction action )
+    {
+        try
+        {
+            action.run();
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
 }
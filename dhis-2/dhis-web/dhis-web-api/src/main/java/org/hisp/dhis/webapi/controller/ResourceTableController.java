@@ -29,7 +29,11 @@ package org.hisp.dhis.webapi.controller;
  */
 
 import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfile;
+import org.hisp.dhis.analytics.table.profile.AnalyticsTableProfiler;
 import org.hisp.dhis.common.DhisApiVersion;
+import org.hisp.dhis.dxf2.webmessage.WebMessageException;
+import org.hisp.dhis.dxf2.webmessage.WebMessageUtils;
 import org.hisp.dhis.scheduling.JobConfiguration;
 import org.hisp.dhis.scheduling.JobType;
 import org.hisp.dhis.scheduling.SchedulingManager;
@@ -41,13 +45,16 @@ import org.hisp.dhis.webapi.service.WebMessageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.hisp.dhis.dxf2.webmessage.WebMessageUtils.jobConfigurationReport;
@@ -71,6 +78,9 @@ public class ResourceTableController
     @Autowired
     private WebMessageService webMessageService;
 
+    @Autowired
+    private AnalyticsTableProfiler analyticsTableProfiler;
+
     @RequestMapping( value = "/analytics", method = { RequestMethod.PUT, RequestMethod.POST } )
     @PreAuthorize( "hasRole('ALL') or hasRole('F_PERFORM_MAINTENANCE')" )
     public void analytics(
@@ -111,6 +121,29 @@ public class ResourceTableController
         webMessageService.send( jobConfigurationReport( analyticsTableJob ), response, request );
     }
 
+    @RequestMapping( value = "/analytics/profiles", method = RequestMethod.GET )
+    @PreAuthorize( "hasRole('ALL') or hasRole('F_PERFORM_MAINTENANCE')" )
+    public @ResponseBody List<AnalyticsTableProfile> getAnalyticsTableProfiles(
+        @RequestParam( required = false, defaultValue = "20" ) int limit )
+    {
+        return analyticsTableProfiler.getProfiles( limit );
+    }
+
+    @RequestMapping( value = "/analytics/profiles/{id}", method = RequestMethod.GET )
+    @PreAuthorize( "hasRole('ALL') or hasRole('F_PERFORM_MAINTENANCE')" )
+    public @ResponseBody AnalyticsTableProfile getAnalyticsTableProfile( @PathVariable long id )
+        throws WebMessageException
+    {
+        AnalyticsTableProfile profile = analyticsTableProfiler.getProfile( id );
+
+        if ( profile == null )
+        {
+            throw new WebMessageException( WebMessageUtils.notFound( "Analytics table profile does not exist: " + id ) );
+        }
+
+        return profile;
+    }
+
     @RequestMapping( method = { RequestMethod.PUT, RequestMethod.POST } )
     @PreAuthorize( "hasRole('ALL') or hasRole('F_PERFORM_MAINTENANCE')" )
     public void resourceTables( HttpServletResponse response, HttpServletRequest request )
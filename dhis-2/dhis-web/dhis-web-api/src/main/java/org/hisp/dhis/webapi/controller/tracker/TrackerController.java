@@ -39,6 +39,7 @@ import org.hisp.dhis.tracker.bundle.TrackerBundle;
 import org.hisp.dhis.tracker.bundle.TrackerBundleParams;
 import org.hisp.dhis.tracker.job.TrackerJobWebMessageResponse;
 import org.hisp.dhis.tracker.job.TrackerMessageManager;
+import org.hisp.dhis.tracker.job.TrackerPayloadStore;
 import org.hisp.dhis.tracker.report.TrackerImportReport;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.webapi.service.ContextService;
@@ -74,6 +75,7 @@ public class TrackerController
     private final RenderService renderService;
     private final ContextService contextService;
     private final TrackerMessageManager trackerMessageManager;
+    private final TrackerPayloadStore trackerPayloadStore;
     private final Notifier notifier;
 
     public TrackerController(
@@ -81,12 +83,14 @@ public class TrackerController
         RenderService renderService,
         ContextService contextService,
         TrackerMessageManager trackerMessageManager,
+        TrackerPayloadStore trackerPayloadStore,
         Notifier notifier )
     {
         this.trackerImportService = trackerImportService;
         this.renderService = renderService;
         this.contextService = contextService;
         this.trackerMessageManager = trackerMessageManager;
+        this.trackerPayloadStore = trackerPayloadStore;
         this.notifier = notifier;
     }
 
@@ -96,14 +100,38 @@ public class TrackerController
     {
         TrackerImportParams params = trackerImportService.getParamsFromMap( contextService.getParameterValuesMap() );
 
-        TrackerBundle trackerBundle = renderService.fromJson( request.getInputStream(), TrackerBundleParams.class ).toTrackerBundle();
-        params.setTrackedEntities( trackerBundle.getTrackedEntities() );
-        params.setEnrollments( trackerBundle.getEnrollments() );
-        params.setEvents( trackerBundle.getEvents() );
-        params.setRelationships( trackerBundle.getRelationships() );
+        if ( trackerPayloadStore.isEnabled() )
+        {
+            // the payload is staged and parsed by the import job, only a reference is queued
+            params.setPayload( trackerPayloadStore.stage( request.getInputStream() ) );
+        }
+        else
+        {
+            // the import job might run on another server, so the payload is queued
+            TrackerBundle trackerBundle = renderService.fromJson( request.getInputStream(), TrackerBundleParams.class ).toTrackerBundle();
+            params.setTrackedEntities( trackerBundle.getTrackedEntities() );
+            params.setEnrollments( trackerBundle.getEnrollments() );
+            params.setEvents( trackerBundle.getEvents() );
+            params.setRelationships( trackerBundle.getRelationships() );
+        }
+
         params.setUser( currentUser );
 
-        String jobId = trackerMessageManager.addJob( params );
+        String jobId;
+
+        try
+        {
+            jobId = trackerMessageManager.addJob( params );
+        }
+        catch ( RuntimeException ex )
+        {
+            if ( params.hasPayload() )
+            {
+                trackerPayloadStore.delete( params.getPayload() );
+            }
+
+            throw ex;
+        }
 
         String location = ContextUtils.getRootPath( request ) + "/tracker/jobs/" + jobId;
         response.setHeader( "Location", location );
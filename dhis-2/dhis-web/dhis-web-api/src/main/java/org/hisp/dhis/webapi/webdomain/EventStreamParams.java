@@ -0,0 +1,106 @@
+package org.hisp.dhis.webapi.webdomain;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Date;
+import java.util.Set;
+
+import org.hisp.dhis.analytics.EventOutputType;
+import org.hisp.dhis.common.DhisApiVersion;
+import org.hisp.dhis.common.DisplayProperty;
+import org.hisp.dhis.common.EventDataQueryRequest;
+import org.hisp.dhis.common.OrganisationUnitSelectionMode;
+import org.hisp.dhis.event.EventStatus;
+import org.hisp.dhis.program.ProgramStatus;
+
+import lombok.Data;
+
+/**
+ * Optional request parameters of the event analytics stream endpoints, bound
+ * from the query string by property name.
+ */
+@Data
+public class EventStreamParams
+{
+    private String stage;
+
+    private Date startDate;
+
+    private Date endDate;
+
+    private Set<String> filter;
+
+    private OrganisationUnitSelectionMode ouMode;
+
+    private boolean skipMeta;
+
+    private boolean completedOnly;
+
+    private boolean hierarchyMeta;
+
+    private boolean coordinatesOnly;
+
+    private boolean includeMetadataDetails;
+
+    private EventStatus eventStatus;
+
+    private ProgramStatus programStatus;
+
+    private Integer pageSize;
+
+    private String pageToken;
+
+    private DisplayProperty displayProperty;
+
+    private Date relativePeriodDate;
+
+    private String userOrgUnit;
+
+    private String coordinateField;
+
+    /**
+     * Returns an {@link EventDataQueryRequest} for an event query with these
+     * parameters.
+     *
+     * @param program the program identifier.
+     * @param dimension the dimensions.
+     * @param apiVersion the {@link DhisApiVersion}.
+     * @return an {@link EventDataQueryRequest}.
+     */
+    public EventDataQueryRequest toRequest( String program, Set<String> dimension, DhisApiVersion apiVersion )
+    {
+        return EventDataQueryRequest.newBuilder().program( program ).stage( stage )
+            .startDate( startDate ).endDate( endDate ).dimension( dimension ).filter( filter ).ouMode( ouMode )
+            .skipMeta( skipMeta ).completedOnly( completedOnly ).hierarchyMeta( hierarchyMeta )
+            .coordinatesOnly( coordinatesOnly ).includeMetadataDetails( includeMetadataDetails )
+            .eventStatus( eventStatus ).programStatus( programStatus ).displayProperty( displayProperty )
+            .relativePeriodDate( relativePeriodDate ).userOrgUnit( userOrgUnit ).coordinateField( coordinateField )
+            .pageSize( pageSize ).apiVersion( apiVersion ).outputType( EventOutputType.EVENT ).build();
+    }
+}